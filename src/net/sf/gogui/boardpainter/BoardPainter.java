@@ -15,13 +15,21 @@ import java.awt.MediaTracker;
 import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
 import java.net.URL;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.BoardConstants;
 import net.sf.gogui.gogui.GoGui.Orientation;
 
-/** Draws a board. */
+/** Draws a board.
+    The board is drawn in layers. The wood background, the grid and the
+    grid labels do not depend on the fields and are drawn into an image,
+    which is kept until the width, the board size, the visibility of the
+    grid labels or the orientation changes. On top of it, the shadows and
+    the fields are drawn, but only for the fields that intersect the clip
+    region of the graphics object. Stones are drawn from pre-rendered
+    images for the current field size. */
 public class BoardPainter
 {
     public BoardPainter()
@@ -61,10 +69,11 @@ public class BoardPainter
         m_fieldSize =
             Math.round((float)Math.floor(width / (m_size + 2 * borderSize)));
         m_fieldOffset = (width - m_size * m_fieldSize) / 2;
-        drawBackground(graphics);
-        drawGrid(graphics);
-        if (showGrid)
-            drawGridLabels(graphics);
+        if (m_background == null || m_backgroundWidth != m_width
+            || m_backgroundSize != m_size
+            || m_backgroundShowGrid != showGrid)
+            createBackground(showGrid);
+        graphics.drawImage(m_background, 0, 0, null);
         drawShadows(graphics, field);
         drawFields(graphics, field);
     }
@@ -156,6 +165,12 @@ public class BoardPainter
 
     private int m_width;
 
+    private boolean m_backgroundShowGrid;
+
+    private int m_backgroundSize;
+
+    private int m_backgroundWidth;
+
     private static int s_cachedFontFieldSize;
 
     private static final AlphaComposite COMPOSITE_3
@@ -171,6 +186,34 @@ public class BoardPainter
 
     private final Image m_image;
 
+    /** Cached image with the wood, the grid and the grid labels. */
+    private BufferedImage m_background;
+
+    /** Cached image with the wood scaled to the board width.
+        Used by Field for clearing the background of labels. */
+    private BufferedImage m_boardImage;
+
+    private void createBackground(boolean showGrid)
+    {
+        int width = Math.max(m_width, 1);
+        m_boardImage = BoardPainterUtil.createImage(width, width);
+        Graphics2D graphics = m_boardImage.createGraphics();
+        drawBackground(graphics);
+        graphics.dispose();
+        m_background = BoardPainterUtil.createImage(width, width);
+        graphics = m_background.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.drawImage(m_boardImage, 0, 0, null);
+        drawGrid(graphics);
+        if (showGrid)
+            drawGridLabels(graphics);
+        graphics.dispose();
+        m_backgroundWidth = m_width;
+        m_backgroundSize = m_size;
+        m_backgroundShowGrid = showGrid;
+    }
+
     private void drawBackground(Graphics graphics)
     {
         if (m_image == null)
@@ -192,7 +235,7 @@ public class BoardPainter
             {
                 Point location = getLocation(x, y);
                 field[x][y].draw(graphics, m_fieldSize, location.x,
-                                 location.y, m_image, m_width);
+                                 location.y, m_boardImage, m_width);
             }
         }
     }
@@ -311,7 +354,8 @@ public class BoardPainter
         if (graphics2D == null)
             return;
         graphics2D.setComposite(COMPOSITE_3);
-        int size = m_fieldSize - 2 * Field.getStoneMargin(m_fieldSize);
+        BufferedImage shadow = StoneImages.getShadow(m_fieldSize);
+        int size = shadow.getWidth();
         int offsetX = getShadowOffset() / 2; // Relates to stone gradient
         int offsetY = getShadowOffset();
         for (int x = 0; x < m_size; ++x)
@@ -320,10 +364,10 @@ public class BoardPainter
                 if (field[x][y].getColor() == EMPTY)
                     continue;
                 Point location = getCenter(x, y);
-                graphics.setColor(Color.black);
-                graphics.fillOval(location.x - size / 2 + offsetX,
-                                  location.y - size / 2 + offsetY,
-                                  size, size);
+                int left = location.x - size / 2 + offsetX;
+                int top = location.y - size / 2 + offsetY;
+                if (graphics.hitClip(left, top, size, size))
+                    graphics.drawImage(shadow, left, top, null);
             }
         graphics.setPaintMode();
     }
@@ -377,5 +421,6 @@ public class BoardPainter
     public void setOrientation(boolean flipHorizontal, boolean flipVertical) {
         m_flipHorizontal = flipHorizontal;
         m_flipVertical = flipVertical;
+        m_background = null;
     }
 }
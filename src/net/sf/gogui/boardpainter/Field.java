@@ -13,11 +13,11 @@ import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.Stroke;
 import java.awt.font.LineMetrics;
-import java.awt.geom.Point2D;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
+import net.sf.gogui.util.ObjectUtil;
 
 /** State of a field on the board. */
 public class Field
@@ -33,6 +33,26 @@ public class Field
         m_influence = 0;
     }
 
+    /** Copy the state of another field. */
+    public void copyState(Field field)
+    {
+        m_crossHair = field.m_crossHair;
+        m_cursor = field.m_cursor;
+        m_lastMoveMarker = field.m_lastMoveMarker;
+        m_mark = field.m_mark;
+        m_markCircle = field.m_markCircle;
+        m_markSquare = field.m_markSquare;
+        m_markTriangle = field.m_markTriangle;
+        m_influenceSet = field.m_influenceSet;
+        m_select = field.m_select;
+        m_influence = field.m_influence;
+        m_label = field.m_label;
+        m_fieldColor = field.m_fieldColor;
+        m_territory = field.m_territory;
+        m_color = field.m_color;
+        m_ghostStone = field.m_ghostStone;
+    }
+
     public void draw(Graphics graphics, int size, int x, int y,
                      Image boardImage, int boardWidth)
     {
@@ -136,6 +156,27 @@ public class Field
         return m_territory;
     }
 
+    /** Check if another field has the same state.
+        Fields with the same state are drawn identically. */
+    public boolean hasSameState(Field field)
+    {
+        return (m_crossHair == field.m_crossHair
+                && m_cursor == field.m_cursor
+                && m_lastMoveMarker == field.m_lastMoveMarker
+                && m_mark == field.m_mark
+                && m_markCircle == field.m_markCircle
+                && m_markSquare == field.m_markSquare
+                && m_markTriangle == field.m_markTriangle
+                && m_influenceSet == field.m_influenceSet
+                && m_select == field.m_select
+                && m_influence == field.m_influence
+                && ObjectUtil.equals(m_label, field.m_label)
+                && ObjectUtil.equals(m_fieldColor, field.m_fieldColor)
+                && m_territory == field.m_territory
+                && m_color == field.m_color
+                && m_ghostStone == field.m_ghostStone);
+    }
+
     public boolean isInfluenceSet()
     {
         return m_influenceSet;
@@ -243,10 +284,6 @@ public class Field
 
     private static int s_cachedFontFieldSize;
 
-    private int m_paintSizeBlack;
-
-    private int m_paintSizeWhite;
-
     private int m_size;
 
     private double m_influence;
@@ -290,16 +327,6 @@ public class Field
 
     private static final Color COLOR_MARK = Color.decode("#4040ff");
 
-    private static final Color COLOR_STONE_BLACK = Color.decode("#3b3d3a");
-
-    private static final Color COLOR_STONE_BLACK_BRIGHT
-        = Color.decode("#99998c");
-
-    private static final Color COLOR_STONE_WHITE = Color.decode("#d3d7cf");
-
-    private static final Color COLOR_STONE_WHITE_BRIGHT
-        = Color.decode("#ffffff");
-
     private static Font s_cachedFont;
 
     private GoColor m_color = EMPTY;
@@ -310,10 +337,6 @@ public class Field
 
     private Graphics2D m_graphics2D;
 
-    private RadialGradientPaint m_paintBlack;
-
-    private RadialGradientPaint m_paintWhite;
-
     private void drawCircle(Color color)
     {
         m_graphics.setColor(color);
@@ -480,30 +503,21 @@ public class Field
 
     private void drawStone(GoColor color, boolean isGhostStone)
     {
-        if (color == BLACK)
-            drawStone(color, COLOR_STONE_BLACK, COLOR_STONE_BLACK_BRIGHT,
-                      isGhostStone);
-        else if (color == WHITE)
-            drawStone(color, COLOR_STONE_WHITE, COLOR_STONE_WHITE_BRIGHT,
-                      isGhostStone);
-    }
-
-    private void drawStone(GoColor color, Color colorNormal,
-                           Color colorBright, boolean isGhostStone)
-    {
-        int margin = getStoneMargin(m_size);
+        if (color != BLACK && color != WHITE)
+            return;
+        if (isGhostStone)
+            setComposite(COMPOSITE_8);
         if (m_graphics2D != null && m_size >= 7)
         {
-            RadialGradientPaint paint =
-                getPaint(color, m_size, colorNormal, colorBright);
-            m_graphics2D.setPaint(paint);
+            m_graphics.drawImage(StoneImages.getStone(color, m_size), 0, 0,
+                                 null);
+            return;
         }
+        if (color == BLACK)
+            m_graphics.setColor(StoneImages.COLOR_BLACK);
         else
-        {
-            m_graphics.setColor(colorNormal);
-        }
-        if (isGhostStone)
-            setComposite(COMPOSITE_8);
+            m_graphics.setColor(StoneImages.COLOR_WHITE);
+        int margin = getStoneMargin(m_size);
         m_graphics.fillOval(margin, margin,
                             m_size - 2 * margin, m_size - 2 * margin);
     }
@@ -534,44 +548,6 @@ public class Field
         m_graphics2D.setPaintMode();
     }
 
-    private RadialGradientPaint getPaint(GoColor color, int size,
-                                         Color colorNormal,
-                                         Color colorBright)
-    {
-        RadialGradientPaint paint;
-        int paintSize;
-        if (color == BLACK)
-        {
-            paint = m_paintBlack;
-            paintSize = m_paintSizeBlack;
-        }
-        else
-        {
-            assert color == WHITE;
-            paint = m_paintWhite;
-            paintSize = m_paintSizeWhite;
-        }
-        if (size == paintSize && paint != null)
-            return paint;
-        Point2D.Double center = new Point2D.Double(0.43 * size, 0.21 * size);
-        Point2D.Double radius1 = new Point2D.Double(0.47 * size, -0.15 * size);
-        Point2D.Double radius2 = new Point2D.Double(0.08 * size, 0.25 * size);
-        double focus = -0.4;
-        paint = new RadialGradientPaint(center, radius1, radius2, focus,
-                                        colorBright, colorNormal);
-        if (color == BLACK)
-        {
-            m_paintBlack = paint;
-            m_paintSizeBlack = size;
-        }
-        else
-        {
-            m_paintWhite = paint;
-            m_paintSizeWhite = size;
-        }
-        return paint;
-    }
-
     private void setComposite(AlphaComposite composite)
     {
         if (m_graphics2D != null)
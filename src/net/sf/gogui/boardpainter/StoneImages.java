@@ -0,0 +1,147 @@
+// StoneImages.java
+
+package net.sf.gogui.boardpainter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+/** Cache of pre-rendered images of stones and stone shadows.
+    Painting a stone with a RadialGradientPaint is slow, because the paint
+    context is created again for each location on the board. The images
+    are rendered once for each field size and drawn with
+    Graphics.drawImage(). The images for the most recently used field sizes
+    are kept, so that painters of boards with different sizes in different
+    threads (e.g. gogui-thumbnailer in batch mode) do not render them again
+    for each board. The functions can be called from any thread. */
+final class StoneImages
+{
+    /** Get the image of the shadow of a stone.
+        The image contains an opaque black disk with the size of a stone;
+        it has to be drawn with a transparent composite. */
+    public static synchronized BufferedImage getShadow(int fieldSize)
+    {
+        return getImages(fieldSize).m_shadow;
+    }
+
+    /** Get the image of a stone.
+        The image has the size of a field and a transparent background. */
+    public static synchronized BufferedImage getStone(GoColor color,
+                                                      int fieldSize)
+    {
+        Images images = getImages(fieldSize);
+        if (color == BLACK)
+            return images.m_black;
+        assert color == WHITE;
+        return images.m_white;
+    }
+
+    public static final Color COLOR_BLACK = Color.decode("#3b3d3a");
+
+    public static final Color COLOR_BLACK_BRIGHT = Color.decode("#99998c");
+
+    public static final Color COLOR_WHITE = Color.decode("#d3d7cf");
+
+    public static final Color COLOR_WHITE_BRIGHT = Color.decode("#ffffff");
+
+    /** Images for one field size. */
+    private static final class Images
+    {
+        public Images(int fieldSize)
+        {
+            m_black = createStone(fieldSize, COLOR_BLACK, COLOR_BLACK_BRIGHT);
+            m_white = createStone(fieldSize, COLOR_WHITE, COLOR_WHITE_BRIGHT);
+            m_shadow = createShadow(fieldSize);
+        }
+
+        public final BufferedImage m_black;
+
+        public final BufferedImage m_shadow;
+
+        public final BufferedImage m_white;
+    }
+
+    /** Maximum number of field sizes, for which images are kept. */
+    private static final int MAX_SIZES = 8;
+
+    /** Images by field size in order of last access. */
+    private static final Map<Integer,Images> s_images =
+        new LinkedHashMap<Integer,Images>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<Integer,Images>
+                                                eldest)
+            {
+                return size() > MAX_SIZES;
+            }
+        };
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private StoneImages()
+    {
+    }
+
+    private static BufferedImage createImage(int size)
+    {
+        return new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static Graphics2D createGraphics(BufferedImage image)
+    {
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                                  RenderingHints.VALUE_ANTIALIAS_ON);
+        return graphics;
+    }
+
+    private static BufferedImage createShadow(int fieldSize)
+    {
+        int size = fieldSize - 2 * Field.getStoneMargin(fieldSize);
+        BufferedImage image = createImage(size);
+        Graphics2D graphics = createGraphics(image);
+        graphics.setColor(Color.black);
+        graphics.fillOval(0, 0, size, size);
+        graphics.dispose();
+        return image;
+    }
+
+    private static BufferedImage createStone(int fieldSize,
+                                             Color colorNormal,
+                                             Color colorBright)
+    {
+        BufferedImage image = createImage(fieldSize);
+        Graphics2D graphics = createGraphics(image);
+        Point2D.Double center =
+            new Point2D.Double(0.43 * fieldSize, 0.21 * fieldSize);
+        Point2D.Double radius1 =
+            new Point2D.Double(0.47 * fieldSize, -0.15 * fieldSize);
+        Point2D.Double radius2 =
+            new Point2D.Double(0.08 * fieldSize, 0.25 * fieldSize);
+        double focus = -0.4;
+        graphics.setPaint(new RadialGradientPaint(center, radius1, radius2,
+                                                  focus, colorBright,
+                                                  colorNormal));
+        int margin = Field.getStoneMargin(fieldSize);
+        graphics.fillOval(margin, margin, fieldSize - 2 * margin,
+                          fieldSize - 2 * margin);
+        graphics.dispose();
+        return image;
+    }
+
+    private static Images getImages(int fieldSize)
+    {
+        Images images = s_images.get(fieldSize);
+        if (images == null)
+        {
+            images = new Images(fieldSize);
+            s_images.put(fieldSize, images);
+        }
+        return images;
+    }
+}
@@ -3,6 +3,7 @@
 package net.sf.gogui.game;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import net.sf.gogui.go.Board;
 import net.sf.gogui.go.ConstPointList;
 import net.sf.gogui.go.GoColor;
@@ -12,73 +13,250 @@ import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
-import net.sf.gogui.gtp.GtpError;
-import net.sf.gogui.gui.MessageDialogs;
 
-/** Updates a go.Board to a node in a GameTree. */
+/** Updates a go.Board to a node in a GameTree.
+    The updater remembers the node it last synchronized the board to. If the
+    next update is for the same board and tree, it takes back the moves up to
+    the common ancestor of the old and new node with Board.undo() and only
+    plays the nodes after it. The board is initialized and all nodes are
+    replayed from the root only if the board was changed by someone else, or
+    if a node between the common ancestor and the old node contains setup
+    stones, which cannot be taken back with Board.undo(). */
 public class BoardUpdater
 {
     public BoardUpdater()
     {
         m_nodes = new ArrayList<ConstNode>(400);
+        m_states = new ArrayList<State>(400);
+        m_index = new IdentityHashMap<ConstNode,State>(400);
+    }
+
+    /** Forget the node the board was last synchronized to.
+        The next call to update() will initialize the board and replay all
+        nodes from the root. */
+    public void reset()
+    {
+        m_depth = 0;
+        m_index.clear();
+        m_board = null;
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode, Board board)
     {
-        board.init(tree.getBoardSize());
         int handicap = tree.getGameInfoConst(currentNode).getHandicap();
-        NodeUtil.getPathToRoot(currentNode, m_nodes);
-        int nuMoves = 0;
-        boolean isFirstPlacement = true;
-        boolean isHandicapSetupDone = false;
-        boolean isInInitialBlackMoveSequence = true;
+        State ancestor = findSyncedAncestor(tree, currentNode, board,
+                                            handicap);
+        if (ancestor == null)
+        {
+            reset();
+            board.init(tree.getBoardSize());
+            m_board = board;
+            m_handicap = handicap;
+            m_nuMoves = 0;
+            m_isFirstPlacement = true;
+            m_isHandicapSetupDone = false;
+            m_isInInitialBlackMoveSequence = true;
+            m_lastReset = -1;
+            NodeUtil.getPathToRoot(currentNode, m_nodes);
+        }
+        else
+        {
+            truncate(ancestor.m_depth + 1);
+            board.undo(board.getNumberMoves() - ancestor.m_numberMoves);
+            board.setToMove(ancestor.m_toMove);
+            m_nuMoves = ancestor.m_nuMoves;
+            m_isFirstPlacement = ancestor.m_isFirstPlacement;
+            m_isHandicapSetupDone = ancestor.m_isHandicapSetupDone;
+            m_isInInitialBlackMoveSequence =
+                ancestor.m_isInInitialBlackMoveSequence;
+            m_lastReset = ancestor.m_lastReset;
+        }
         for (int i = m_nodes.size() - 1; i >= 0; --i)
         {
             ConstNode node = m_nodes.get(i);
-            GoColor player = node.getPlayer();
-            if (node.hasSetup())
-            {
-                ConstPointList setupBlack = node.getSetup(BLACK);
-                ConstPointList setupWhite = node.getSetup(WHITE);
-                ConstPointList setupEmpty = node.getSetup(EMPTY);
-                if (handicap > 0 && isFirstPlacement
-                    && setupBlack.size() == handicap && setupWhite.isEmpty()
-                    && setupEmpty.isEmpty())
-                {
-                    board.setupHandicap(setupBlack);
-                    isHandicapSetupDone = true;
-                }
-                else
-                    newSetup(board, setupBlack, setupWhite, setupEmpty, player);
-                isFirstPlacement = false;
-                isInInitialBlackMoveSequence = false;
-            }
-            else if (player != null)
-                board.setToMove(player);
-            Move move = node.getMove();
-            if (move != null)
-            {
-                board.play(move);
-                ++nuMoves;
-                isFirstPlacement = false;
-                if (move.getColor() != BLACK)
-                    isInInitialBlackMoveSequence = false;
-                // Files from the KGS Go server with Chines rules store
-                // handicap stones as moves, not as setup as specified by SGF
-                if (handicap > 0 && ! isHandicapSetupDone &&
-                    isInInitialBlackMoveSequence && nuMoves == handicap)
-                {
-                    setupMovesAsHandicap(board);
-                    isHandicapSetupDone = true;
-                }
-            }
+            updateNode(node, board, handicap);
+            push(node, board);
         }
+        // A board with an attached game ruler gets its position from the
+        // ruler, which cannot be taken back with undo
+        if (board.isGameRulerAttached())
+            reset();
+    }
+
+    /** State of the board and the update after a node in the path from the
+        root to the node the board was last synchronized to. */
+    private static final class State
+    {
+        public ConstNode m_node;
+
+        /** Index of the node in the path (zero for the root). */
+        public int m_depth;
+
+        public int m_numberMoves;
+
+        public Move m_lastMove;
+
+        public GoColor m_toMove;
+
+        public int m_nuMoves;
+
+        public boolean m_isFirstPlacement;
+
+        public boolean m_isHandicapSetupDone;
+
+        public boolean m_isInInitialBlackMoveSequence;
+
+        /** Depth of the last node in the path that initialized the board
+            with a setup, -1 if none. */
+        public int m_lastReset;
     }
 
     /** Local variable used in update.
         Member variable for avoiding frequent new memory allocations. */
     private final ArrayList<ConstNode> m_nodes;
 
+    /** States of the nodes in the path to the last synchronized node.
+        Only the first m_depth elements are valid, the others are kept for
+        reuse. */
+    private final ArrayList<State> m_states;
+
+    /** Maps the nodes of the path to the last synchronized node to their
+        states. */
+    private final IdentityHashMap<ConstNode,State> m_index;
+
+    private int m_depth;
+
+    private Board m_board;
+
+    private int m_handicap;
+
+    private int m_nuMoves;
+
+    private boolean m_isFirstPlacement;
+
+    private boolean m_isHandicapSetupDone;
+
+    private boolean m_isInInitialBlackMoveSequence;
+
+    private int m_lastReset;
+
+    /** Find the state to continue the update from.
+        Fills m_nodes with the nodes that need to be played after the
+        returned state (in reverse order). The current node is always
+        included, because its setup or player could have been changed since
+        the last update.
+        @return The state of the nearest synchronized ancestor of the current
+        node, or null if the board needs to be initialized from the root. */
+    private State findSyncedAncestor(ConstGameTree tree, ConstNode currentNode,
+                                     Board board, int handicap)
+    {
+        if (m_depth == 0 || board != m_board || handicap != m_handicap
+            || board.isGameRulerAttached()
+            || board.getSize() != tree.getBoardSize()
+            || m_states.get(0).m_node != tree.getRootConst())
+            return null;
+        State last = m_states.get(m_depth - 1);
+        if (board.getNumberMoves() != last.m_numberMoves
+            || board.getLastMove() != last.m_lastMove
+            || board.getToMove() != last.m_toMove)
+            return null;
+        m_nodes.clear();
+        m_nodes.add(currentNode);
+        ConstNode node = currentNode.getFatherConst();
+        while (node != null)
+        {
+            State state = m_index.get(node);
+            if (state != null)
+            {
+                if (last.m_lastReset > state.m_depth)
+                    return null;
+                return state;
+            }
+            m_nodes.add(node);
+            node = node.getFatherConst();
+        }
+        return null;
+    }
+
+    private void push(ConstNode node, Board board)
+    {
+        State state;
+        if (m_depth < m_states.size())
+            state = m_states.get(m_depth);
+        else
+        {
+            state = new State();
+            m_states.add(state);
+        }
+        state.m_node = node;
+        state.m_depth = m_depth;
+        state.m_numberMoves = board.getNumberMoves();
+        state.m_lastMove = board.getLastMove();
+        state.m_toMove = board.getToMove();
+        state.m_nuMoves = m_nuMoves;
+        state.m_isFirstPlacement = m_isFirstPlacement;
+        state.m_isHandicapSetupDone = m_isHandicapSetupDone;
+        state.m_isInInitialBlackMoveSequence = m_isInInitialBlackMoveSequence;
+        state.m_lastReset = m_lastReset;
+        m_index.put(node, state);
+        ++m_depth;
+    }
+
+    private void truncate(int depth)
+    {
+        while (m_depth > depth)
+        {
+            --m_depth;
+            State state = m_states.get(m_depth);
+            m_index.remove(state.m_node);
+            state.m_node = null;
+            state.m_lastMove = null;
+        }
+    }
+
+    private void updateNode(ConstNode node, Board board, int handicap)
+    {
+        GoColor player = node.getPlayer();
+        if (node.hasSetup())
+        {
+            ConstPointList setupBlack = node.getSetup(BLACK);
+            ConstPointList setupWhite = node.getSetup(WHITE);
+            ConstPointList setupEmpty = node.getSetup(EMPTY);
+            if (handicap > 0 && m_isFirstPlacement
+                && setupBlack.size() == handicap && setupWhite.isEmpty()
+                && setupEmpty.isEmpty())
+            {
+                board.setupHandicap(setupBlack);
+                m_isHandicapSetupDone = true;
+            }
+            else
+                newSetup(board, setupBlack, setupWhite, setupEmpty, player);
+            m_isFirstPlacement = false;
+            m_isInInitialBlackMoveSequence = false;
+            m_lastReset = m_depth;
+        }
+        else if (player != null)
+            board.setToMove(player);
+        Move move = node.getMove();
+        if (move != null)
+        {
+            board.play(move);
+            ++m_nuMoves;
+            m_isFirstPlacement = false;
+            if (move.getColor() != BLACK)
+                m_isInInitialBlackMoveSequence = false;
+            // Files from the KGS Go server with Chines rules store
+            // handicap stones as moves, not as setup as specified by SGF
+            if (handicap > 0 && ! m_isHandicapSetupDone
+                && m_isInInitialBlackMoveSequence && m_nuMoves == handicap)
+            {
+                setupMovesAsHandicap(board);
+                m_isHandicapSetupDone = true;
+                m_lastReset = m_depth;
+            }
+        }
+    }
+
     /** Initialize board with new setup from merging the current position
         with the setup properties from a node. */
     private void newSetup(Board board, ConstPointList setupBlack,
@@ -0,0 +1,23 @@
+// ChildLoader.java
+
+package net.sf.gogui.game;
+
+/** Creates the children of a node on first access.
+    Used for game trees that are not completely created in memory, like
+    large files read by the lazy mode of sgf.SgfReader.
+    @see Node#setChildLoader(ChildLoader) */
+public interface ChildLoader
+{
+    /** Get the number of nodes that will be created below the node.
+        @return The number of descendants of the node, at least one. */
+    int getNumberDescendants();
+
+    /** Create the children of a node.
+        Called once on the first access to the children of the node.
+        The loader is removed from the node before the call and must append
+        the children with Node.append(). If the children cannot be created,
+        the loader can set itself again with Node.unloadChildren(), so that
+        the node has no children until the next access.
+        @param node The node. */
+    void loadChildren(Node node);
+}
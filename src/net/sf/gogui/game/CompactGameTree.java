@@ -0,0 +1,613 @@
+// CompactGameTree.java
+
+package net.sf.gogui.game;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import net.sf.gogui.go.ConstPointList;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.go.PointList;
+
+/** Read-only game tree stored in primitive arrays.
+    Uses much less memory than a tree of Node objects, if most nodes
+    contain only a move and a comment, as in large analysis trees. The nodes
+    are numbered in preorder; the tree structure is stored in arrays of
+    father and next sibling indices (the first child of a node is the next
+    node in preorder, if its father is the node) and the moves are packed
+    into a short. The comments are stored as UTF-8 in a shared byte array.
+    All other information of a node (setup, markup, labels, game info, time
+    and other SGF properties) is rare in large trees and is stored in a
+    detached Node without children. Comments and other information are
+    found by a binary search in the sorted indices of the nodes that have
+    them.
+    The nodes returned by this tree are light-weight views, which are
+    created on each access. Two views of the same node are equal by
+    equals(), but not necessarily identical, with the exception of the root
+    node. Keeping the views to make them identical would need more memory
+    than the whole tree once all nodes were accessed, e.g. by writing the
+    tree to a file. Code using this tree must therefore compare nodes with
+    equals(), like the functions used by sgf.SgfWriter, xml.XmlWriter and
+    NodeUtil.isInMainVariation(). Comparisons with the root node can use
+    identity. */
+public final class CompactGameTree
+    implements ConstGameTree
+{
+    /** Construct a compact copy of a game tree.
+        Nodes of the tree that have a child loader are loaded. */
+    public CompactGameTree(ConstGameTree tree)
+    {
+        m_boardSize = tree.getBoardSize();
+        ConstNode root = tree.getRootConst();
+        int numberNodes = NodeUtil.subtreeSize(root);
+        m_father = new int[numberNodes];
+        m_nextSibling = new int[numberNodes];
+        m_move = new short[numberNodes];
+        // Index of the last child created for a node, or -1
+        int[] lastChild = new int[numberNodes];
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        int[] fatherStack = new int[16];
+        stack.add(root);
+        fatherStack[0] = -1;
+        int index = 0;
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            int father = fatherStack[stack.size()];
+            m_father[index] = father;
+            m_nextSibling[index] = -1;
+            lastChild[index] = -1;
+            if (father >= 0)
+            {
+                if (lastChild[father] >= 0)
+                    m_nextSibling[lastChild[father]] = index;
+                lastChild[father] = index;
+            }
+            m_move[index] = packMove(node.getMove());
+            addComment(index, node);
+            addExtra(index, node);
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+            {
+                if (stack.size() == fatherStack.length)
+                    fatherStack = grow(fatherStack);
+                fatherStack[stack.size()] = index;
+                stack.add(node.getChildConst(i));
+            }
+            ++index;
+        }
+        assert index == numberNodes;
+        m_commentArena = trim(m_commentArena, m_commentSize);
+        m_commentNodes = trim(m_commentNodes, m_numberComments);
+        m_commentOffsets = trim(m_commentOffsets, m_numberComments);
+        m_extraIndex = trim(m_extraIndex, m_extraNodes.size());
+        m_extraNodes.trimToSize();
+        m_root = new CompactNode(this, 0);
+    }
+
+    public int getBoardSize()
+    {
+        return m_boardSize;
+    }
+
+    /** Find the game information valid for a node.
+        @return The game information from the nearest ancestor node,
+        which has a game information. */
+    public ConstGameInfo getGameInfoConst(ConstNode node)
+    {
+        while (node != null)
+        {
+            ConstGameInfo info = node.getGameInfoConst();
+            if (info != null)
+                return info;
+            node = node.getFatherConst();
+        }
+        return null;
+    }
+
+    public int getNumberNodes()
+    {
+        return m_father.length;
+    }
+
+    public ConstNode getRootConst()
+    {
+        return m_root;
+    }
+
+    public boolean hasVariations()
+    {
+        for (int i = 1; i < m_nextSibling.length; ++i)
+            if (m_nextSibling[i] >= 0)
+                return true;
+        return false;
+    }
+
+    /** View of a node of the tree. */
+    private static final class CompactNode
+        implements ConstNode
+    {
+        public CompactNode(CompactGameTree tree, int index)
+        {
+            m_tree = tree;
+            m_index = index;
+        }
+
+        public boolean equals(Object object)
+        {
+            if (! (object instanceof CompactNode))
+                return false;
+            CompactNode node = (CompactNode)object;
+            return node.m_tree == m_tree && node.m_index == m_index;
+        }
+
+        public ChildLoader getChildLoader()
+        {
+            return null;
+        }
+
+        public ConstNode getChildConst()
+        {
+            return m_tree.getNode(m_tree.getFirstChild(m_index));
+        }
+
+        public ConstNode getChildConst(int i)
+        {
+            int child = m_tree.getFirstChild(m_index);
+            for ( ; i > 0 && child >= 0; --i)
+                child = m_tree.m_nextSibling[child];
+            assert child >= 0;
+            return m_tree.getNode(child);
+        }
+
+        public int getChildIndex(ConstNode node)
+        {
+            int child = m_tree.getFirstChild(m_index);
+            for (int i = 0; child >= 0; ++i)
+            {
+                if (isNode(node, child))
+                    return i;
+                child = m_tree.m_nextSibling[child];
+            }
+            return -1;
+        }
+
+        public String getComment()
+        {
+            return m_tree.getComment(m_index);
+        }
+
+        public ConstNode getFatherConst()
+        {
+            return m_tree.getNode(m_tree.m_father[m_index]);
+        }
+
+        public ConstGameInfo getGameInfoConst()
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getGameInfoConst());
+        }
+
+        public String getLabel(GoPoint point)
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getLabel(point));
+        }
+
+        public Map<GoPoint,String> getLabelsUnmodifiable()
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getLabelsUnmodifiable());
+        }
+
+        public ConstPointList getMarkedConst(MarkType type)
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getMarkedConst(type));
+        }
+
+        public Move getMove()
+        {
+            return unpackMove(m_tree.m_move[m_index]);
+        }
+
+        public int getMovesLeft(GoColor color)
+        {
+            Node extra = getExtra();
+            return (extra == null ? -1 : extra.getMovesLeft(color));
+        }
+
+        public int getNumberChildren()
+        {
+            int n = 0;
+            int child = m_tree.getFirstChild(m_index);
+            while (child >= 0)
+            {
+                ++n;
+                child = m_tree.m_nextSibling[child];
+            }
+            return n;
+        }
+
+        public GoColor getPlayer()
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getPlayer());
+        }
+
+        public ConstPointList getSetup(GoColor c)
+        {
+            Node extra = getExtra();
+            return (extra == null ? PointList.getEmptyList()
+                    : extra.getSetup(c));
+        }
+
+        public ConstSgfProperties getSgfPropertiesConst()
+        {
+            Node extra = getExtra();
+            return (extra == null ? null : extra.getSgfPropertiesConst());
+        }
+
+        public double getTimeLeft(GoColor color)
+        {
+            Node extra = getExtra();
+            return (extra == null ? Double.NaN : extra.getTimeLeft(color));
+        }
+
+        public GoColor getToMove()
+        {
+            GoColor player = getPlayer();
+            if (player != null)
+                return player;
+            Move move = getMove();
+            if (move != null)
+                return move.getColor().otherColor();
+            return null;
+        }
+
+        public float getValue()
+        {
+            Node extra = getExtra();
+            return (extra == null ? Float.NaN : extra.getValue());
+        }
+
+        public boolean hasChildren()
+        {
+            return m_tree.getFirstChild(m_index) >= 0;
+        }
+
+        public boolean hasComment()
+        {
+            return m_tree.findComment(m_index) >= 0;
+        }
+
+        public boolean hasFather()
+        {
+            return m_tree.m_father[m_index] >= 0;
+        }
+
+        public int hashCode()
+        {
+            return m_index;
+        }
+
+        public boolean hasSetup()
+        {
+            Node extra = getExtra();
+            return (extra != null && extra.hasSetup());
+        }
+
+        public boolean isEmpty()
+        {
+            Node extra = getExtra();
+            return (m_tree.m_move[m_index] == 0 && ! hasComment()
+                    && (extra == null || extra.isEmpty()));
+        }
+
+        public ConstNode variationAfter(ConstNode node)
+        {
+            int child = m_tree.getFirstChild(m_index);
+            while (child >= 0 && ! isNode(node, child))
+                child = m_tree.m_nextSibling[child];
+            if (child < 0)
+                return null;
+            return m_tree.getNode(m_tree.m_nextSibling[child]);
+        }
+
+        public ConstNode variationBefore(ConstNode node)
+        {
+            int previous = -1;
+            int child = m_tree.getFirstChild(m_index);
+            while (child >= 0 && ! isNode(node, child))
+            {
+                previous = child;
+                child = m_tree.m_nextSibling[child];
+            }
+            if (child < 0)
+                return null;
+            return m_tree.getNode(previous);
+        }
+
+        private final int m_index;
+
+        private final CompactGameTree m_tree;
+
+        private Node getExtra()
+        {
+            int extra = Arrays.binarySearch(m_tree.m_extraIndex, m_index);
+            return (extra < 0 ? null : m_tree.m_extraNodes.get(extra));
+        }
+
+        private boolean isNode(ConstNode node, int index)
+        {
+            if (! (node instanceof CompactNode))
+                return false;
+            CompactNode compactNode = (CompactNode)node;
+            return compactNode.m_tree == m_tree
+                && compactNode.m_index == index;
+        }
+    }
+
+    private final int m_boardSize;
+
+    private int m_numberComments;
+
+    /** Number of used bytes in m_commentArena. */
+    private int m_commentSize;
+
+    /** Offsets in m_commentArena of the comments of the nodes in
+        m_commentNodes. */
+    private int[] m_commentOffsets = new int[1024];
+
+    /** Sorted indices of the nodes with comments. */
+    private int[] m_commentNodes = new int[1024];
+
+    /** Sorted indices of the nodes in m_extraNodes. */
+    private int[] m_extraIndex = new int[1024];
+
+    private final int[] m_father;
+
+    private final int[] m_nextSibling;
+
+    /** Moves packed by packMove(). */
+    private final short[] m_move;
+
+    /** Comments in UTF-8, each preceded by its length as a variable-length
+        integer with 7 bits per byte. */
+    private byte[] m_commentArena = new byte[1024];
+
+    private final ArrayList<Node> m_extraNodes = new ArrayList<Node>();
+
+    private final CompactNode m_root;
+
+    private void addComment(int index, ConstNode node)
+    {
+        if (! node.hasComment())
+            return;
+        byte[] comment;
+        try
+        {
+            comment = node.getComment().getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            comment = node.getComment().getBytes();
+        }
+        int offset = m_commentSize;
+        ensureCommentCapacity(comment.length + 5);
+        int length = comment.length;
+        while (length >= 0x80)
+        {
+            m_commentArena[m_commentSize++] = (byte)(length | 0x80);
+            length >>>= 7;
+        }
+        m_commentArena[m_commentSize++] = (byte)length;
+        System.arraycopy(comment, 0, m_commentArena, m_commentSize,
+                         comment.length);
+        m_commentSize += comment.length;
+        if (m_numberComments == m_commentNodes.length)
+        {
+            m_commentNodes = grow(m_commentNodes);
+            m_commentOffsets = grow(m_commentOffsets);
+        }
+        m_commentNodes[m_numberComments] = index;
+        m_commentOffsets[m_numberComments] = offset;
+        ++m_numberComments;
+    }
+
+    /** Copy the information other than move and comment to a detached
+        node, if the node contains such information. */
+    private void addExtra(int index, ConstNode node)
+    {
+        Node extra = new Node();
+        boolean isEmpty = true;
+        ConstGameInfo info = node.getGameInfoConst();
+        if (info != null)
+        {
+            extra.createGameInfo().copyFrom(info);
+            isEmpty = false;
+        }
+        Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
+        if (labels != null && ! labels.isEmpty())
+        {
+            for (Map.Entry<GoPoint,String> entry : labels.entrySet())
+                extra.setLabel(entry.getKey(), entry.getValue());
+            isEmpty = false;
+        }
+        for (MarkType type : MarkType.values())
+        {
+            ConstPointList marked = node.getMarkedConst(type);
+            if (marked == null || marked.isEmpty())
+                continue;
+            for (GoPoint p : marked)
+                extra.addMarked(p, type);
+            isEmpty = false;
+        }
+        if (node.getPlayer() != null)
+        {
+            extra.setPlayer(node.getPlayer());
+            isEmpty = false;
+        }
+        for (GoColor c : BLACK_WHITE_EMPTY)
+        {
+            ConstPointList setup = node.getSetup(c);
+            if (setup.isEmpty())
+                continue;
+            extra.addStones(c, setup);
+            isEmpty = false;
+        }
+        ConstSgfProperties properties = node.getSgfPropertiesConst();
+        if (properties != null && ! properties.isEmpty())
+        {
+            for (String key : properties.getKeys())
+            {
+                ArrayList<String> values = new ArrayList<String>();
+                for (int i = 0; i < properties.getNumberValues(key); ++i)
+                    values.add(properties.getValue(key, i));
+                extra.addSgfProperty(key, values);
+            }
+            isEmpty = false;
+        }
+        for (GoColor c : BLACK_WHITE)
+        {
+            if (node.getMovesLeft(c) != -1)
+            {
+                extra.setMovesLeft(c, node.getMovesLeft(c));
+                isEmpty = false;
+            }
+            if (! Double.isNaN(node.getTimeLeft(c)))
+            {
+                extra.setTimeLeft(c, node.getTimeLeft(c));
+                isEmpty = false;
+            }
+        }
+        if (! Float.isNaN(node.getValue()))
+        {
+            extra.setValue(node.getValue());
+            isEmpty = false;
+        }
+        if (isEmpty)
+            return;
+        int n = m_extraNodes.size();
+        if (n == m_extraIndex.length)
+            m_extraIndex = grow(m_extraIndex);
+        m_extraIndex[n] = index;
+        m_extraNodes.add(extra);
+    }
+
+    private void ensureCommentCapacity(int length)
+    {
+        if (m_commentSize + length <= m_commentArena.length)
+            return;
+        int newLength =
+            Math.max(2 * m_commentArena.length, m_commentSize + length);
+        byte[] arena = new byte[newLength];
+        System.arraycopy(m_commentArena, 0, arena, 0, m_commentSize);
+        m_commentArena = arena;
+    }
+
+    /** Find the position of a node in m_commentNodes.
+        @return The position or a negative number, if the node has no
+        comment. */
+    private int findComment(int index)
+    {
+        return Arrays.binarySearch(m_commentNodes, 0, m_numberComments,
+                                   index);
+    }
+
+    private String getComment(int index)
+    {
+        int i = findComment(index);
+        if (i < 0)
+            return null;
+        int offset = m_commentOffsets[i];
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do
+        {
+            b = m_commentArena[offset++];
+            length |= (b & 0x7f) << shift;
+            shift += 7;
+        }
+        while ((b & 0x80) != 0);
+        try
+        {
+            return new String(m_commentArena, offset, length, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return new String(m_commentArena, offset, length);
+        }
+    }
+
+    private int getFirstChild(int index)
+    {
+        int child = index + 1;
+        if (child < m_father.length && m_father[child] == index)
+            return child;
+        return -1;
+    }
+
+    private ConstNode getNode(int index)
+    {
+        if (index < 0)
+            return null;
+        if (index == 0)
+            return m_root;
+        return new CompactNode(this, index);
+    }
+
+    private static int[] grow(int[] array)
+    {
+        int[] result = new int[2 * array.length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /** Pack a move into a short.
+        0 is no move, 1 and 2 are passes of Black and White, larger values
+        encode the point index and the color. */
+    private static short packMove(Move move)
+    {
+        if (move == null)
+            return 0;
+        int color = (move.getColor() == BLACK ? 0 : 1);
+        GoPoint p = move.getPoint();
+        if (p == null)
+            return (short)(1 + color);
+        return (short)(3 + 2 * p.getIndex() + color);
+    }
+
+    private static Move unpackMove(short packed)
+    {
+        if (packed == 0)
+            return null;
+        if (packed <= 2)
+            return Move.getPass(packed == 1 ? BLACK : WHITE);
+        int index = (packed - 3) / 2;
+        GoColor c = ((packed - 3) % 2 == 0 ? BLACK : WHITE);
+        return Move.get(c, index % GoPoint.MAX_SIZE,
+                        index / GoPoint.MAX_SIZE);
+    }
+
+    private static byte[] trim(byte[] array, int length)
+    {
+        byte[] result = new byte[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+
+    private static int[] trim(int[] array, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, length);
+        return result;
+    }
+}
@@ -16,6 +16,8 @@ public interface ConstNode
 
     ConstNode getFatherConst();
 
+    ChildLoader getChildLoader();
+
     ConstNode getChildConst();
 
     ConstNode getChildConst(int i);
@@ -2,6 +2,13 @@
 
 package net.sf.gogui.game;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.ConstPointList;
 import net.sf.gogui.go.GenericBoard;
@@ -44,7 +51,17 @@ public class Game
     public void addMarked(GoPoint point, MarkType type)
     {
         m_current.addMarked(point, type);
-        setModified();
+        setModified(m_current);
+    }
+
+    /** Start a new recording of appended and changed nodes.
+        @see #getAppendedNodes()
+        @see #getChangedNodes() */
+    public void clearAppended()
+    {
+        m_appended = new ArrayList<ConstNode>();
+        m_appendedSet.clear();
+        m_changed = new LinkedHashSet<ConstNode>();
     }
 
     /** Clear modified flag.
@@ -63,7 +80,24 @@ public class Game
         Node node = new Node();
         m_current.append(node);
         m_current = node;
-        setModified();
+        setAppended(node);
+    }
+
+    /** Get the nodes appended to the tree since the last call of
+        clearAppended().
+        Can be used for saving a tree incrementally. The nodes are in the
+        order, in which they were appended, so the father of each node is
+        either an older node or before the node in the list. Changes of
+        appended nodes do not need to be recorded separately.
+        @return The appended nodes or null, if the structure of the tree
+        was changed in another way, e.g. by deleting nodes or replacing the
+        tree with one of the init() functions.
+        @see #getChangedNodes() */
+    public List<ConstNode> getAppendedNodes()
+    {
+        if (m_appended == null)
+            return null;
+        return Collections.unmodifiableList(m_appended);
     }
 
     public ConstBoard getBoard()
@@ -71,6 +105,20 @@ public class Game
         return m_board;
     }
 
+    /** Get the older nodes with changed properties since the last call of
+        clearAppended().
+        Contains the nodes that were not appended since the last call of
+        clearAppended() and whose properties, like the comment, markup or
+        game info, were changed, in the order of the first change.
+        @return The changed nodes or null, if getAppendedNodes() returns
+        null. */
+    public Collection<ConstNode> getChangedNodes()
+    {
+        if (m_appended == null)
+            return null;
+        return Collections.unmodifiableCollection(m_changed);
+    }
+
     public ConstClock getClock()
     {
         return m_clock;
@@ -158,6 +206,8 @@ public class Game
         m_clock.reset();
         m_clock.halt();
         m_modified = false;
+        m_appended = null;
+        m_appendedSet.clear();
         m_clockNode = null;
     }
 
@@ -172,7 +222,7 @@ public class Game
     public void keepOnlyMainVariation()
     {
         m_tree.keepOnlyMainVariation();
-        setModified();
+        setModified(null);
     }
 
     public void keepOnlyPosition()
@@ -182,14 +232,14 @@ public class Game
         m_board.init(m_board.getSize());
         m_current = m_tree.getRoot();
         updateBoard();
-        setModified();
+        setModified(null);
     }
 
     /** Make current node the main variation. */
     public void makeMainVariation()
     {
         NodeUtil.makeMainVariation(m_current);
-        setModified();
+        setModified(null);
     }
 
     public void play(Move move)
@@ -211,7 +261,7 @@ public class Game
         m_current.append(node);
         m_current = node;
         updateBoard();
-        setModified();
+        setAppended(node);
         m_clock.startMove(getToMove());
     }
 
@@ -219,7 +269,7 @@ public class Game
     public void removeMarked(GoPoint point, MarkType type)
     {
         m_current.removeMarked(point, type);
-        setModified();
+        setModified(m_current);
     }
 
     public void resetClock()
@@ -258,26 +308,40 @@ public class Game
     {
         assert NodeUtil.getRoot(node) == getRoot();
         if (! ObjectUtil.equals(comment, node.getComment()))
-            setModified();
+            setModified(node);
         ((Node)node).setComment(comment);
     }
 
+    /** Set the game info of a node.
+        @param info The new game info. Must not be the game info object of
+        the node, because changes are detected by comparing with it.
+        @param node The node. */
     public void setGameInfo(ConstGameInfo info, ConstNode node)
     {
+        assert info != node.getGameInfoConst();
         assert NodeUtil.getRoot(node) == getRoot();
         ((Node)node).createGameInfo();
         if (! ((Node)node).getGameInfo().equals(info))
         {
             ((Node)node).getGameInfo().copyFrom(info);
             updateClock();
-            setModified();
+            setModified(node);
         }
     }
 
+    /** Set modified flag.
+        Can be used for instance for a game restored from a backup, which
+        was not saved.
+        @see #isModified() */
+    public void setModified()
+    {
+        m_modified = true;
+    }
+
     public void setKomi(Komi komi)
     {
         Node node = m_tree.getGameInfoNode(m_current);
-        GameInfo info = node.getGameInfo();
+        GameInfo info = new GameInfo(node.getGameInfo());
         info.setKomi(komi);
         setGameInfo(info, node); // updates m_modified
     }
@@ -286,14 +350,14 @@ public class Game
     public void setLabel(GoPoint point, String value)
     {
         if (! ObjectUtil.equals(value, m_current.getLabel(point)))
-            setModified();
+            setModified(m_current);
         m_current.setLabel(point, value);
     }
 
     public void setPlayer(GoColor c, String name)
     {
         Node node = m_tree.getGameInfoNode(m_current);
-        GameInfo info = node.getGameInfo();
+        GameInfo info = new GameInfo(node.getGameInfo());
         info.set(StringInfoColor.NAME, c, name);
         setGameInfo(info, node); // updates m_modified
     }
@@ -301,7 +365,7 @@ public class Game
     public void setResult(String result)
     {
         Node node = m_tree.getGameInfoNode(m_current);
-        GameInfo info = node.getGameInfo();
+        GameInfo info = new GameInfo(node.getGameInfo());
         info.set(StringInfo.RESULT, result);
         setGameInfo(info, node); // updates m_modified
     }
@@ -312,7 +376,7 @@ public class Game
         assert ! color.equals(EMPTY);
         if (! ObjectUtil.equals(color, m_current.getPlayer())
             || color.equals(m_board.getToMove()))
-            setModified();
+            setModified(m_current);
         m_current.setPlayer(color);
         updateBoard();
     }
@@ -322,7 +386,7 @@ public class Game
     public void setTimeSettings(TimeSettings timeSettings)
     {
         Node node = m_tree.getGameInfoNode(m_current);
-        GameInfo info = node.getGameInfo();
+        GameInfo info = new GameInfo(node.getGameInfo());
         info.setTimeSettings(timeSettings);
         setGameInfo(info, node); // updates m_modified
         m_clock.setTimeSettings(timeSettings);
@@ -338,6 +402,7 @@ public class Game
     public void setTimeLeft(ConstNode node, GoColor c, double seconds)
     {
         ((Node)node).setTimeLeft(c, seconds);
+        setChanged(node);
     }
 
     public void setMovesLeft(GoColor c, int moves)
@@ -348,6 +413,7 @@ public class Game
     public void setMovesLeft(ConstNode node, GoColor c, int moves)
     {
         ((Node)node).setMovesLeft(c, moves);
+        setChanged(node);
     }
 
     /** Set a stone on the board or remove a stone.
@@ -370,7 +436,7 @@ public class Game
         }
         if (c != EMPTY || father != null)
             m_current.addStone(c, p);
-        setModified();
+        setModified(m_current);
         updateBoard();
     }
 
@@ -389,19 +455,29 @@ public class Game
         Node oldCurrentNode = m_current;
         m_current = father;
         m_current.removeChild(oldCurrentNode);
-        setModified();
+        setModified(null);
     }
 
     /** Remove children of currentNode. */
     public void truncateChildren()
     {
         NodeUtil.truncateChildren(m_current);
-        setModified();
+        setModified(null);
     }
 
     /** See #isModified() */
     private boolean m_modified;
 
+    /** See #getAppendedNodes() */
+    private ArrayList<ConstNode> m_appended;
+
+    /** The nodes in m_appended for a fast check in setChanged(). */
+    private final Set<ConstNode> m_appendedSet =
+        Collections.newSetFromMap(new IdentityHashMap<ConstNode,Boolean>());
+
+    /** See #getChangedNodes() */
+    private LinkedHashSet<ConstNode> m_changed;
+
     private final Board m_board;
 
     private final BoardUpdater m_boardUpdater = new BoardUpdater();
@@ -415,9 +491,37 @@ public class Game
 
     private final Clock m_clock;
 
-    private void setModified()
+    private void setAppended(ConstNode node)
+    {
+        m_modified = true;
+        if (m_appended != null)
+        {
+            m_appended.add(node);
+            m_appendedSet.add(node);
+        }
+    }
+
+    /** Record a change of a node for getAppendedNodes() and
+        getChangedNodes().
+        @param node The changed node or null, if the structure of the tree
+        was changed. */
+    private void setChanged(ConstNode node)
+    {
+        if (m_appended == null)
+            return;
+        if (node == null)
+        {
+            m_appended = null;
+            m_appendedSet.clear();
+        }
+        else if (! m_appendedSet.contains(node))
+            m_changed.add(node);
+    }
+
+    private void setModified(ConstNode node)
     {
         m_modified = true;
+        setChanged(node);
     }
 
     private void updateBoard()
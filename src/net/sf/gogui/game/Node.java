@@ -124,6 +124,11 @@ public final class Node
     public void append(Node node)
     {
         assert node.m_father == null;
+        if (m_children instanceof ChildLoader)
+            loadChildren();
+        if (m_children instanceof ChildLoader)
+            // Loading failed; the children can not be created anymore
+            m_children = null;
         if (m_children == null)
         {
             m_children = node;
@@ -215,11 +220,22 @@ public final class Node
         return moreExtraInfo.m_info;
     }
 
+    /** Get the loader for the children of this node.
+        @return The loader or null, if the children are already created or
+        the node has no children.
+        @see #setChildLoader(ChildLoader) */
+    public ChildLoader getChildLoader()
+    {
+        if (m_children instanceof ChildLoader)
+            return (ChildLoader)m_children;
+        return null;
+    }
+
     /** Child of main variation or null if no child.
         @return Node with index 0 or null, if no children. */
     public Node getChild()
     {
-        if (! hasChildren())
+        if (getNumberChildren() == 0)
             return null;
         return getChild(0);
     }
@@ -374,7 +390,10 @@ public final class Node
         @return Number of children. */
     public int getNumberChildren()
     {
-        if (m_children == null)
+        if (m_children instanceof ChildLoader)
+            loadChildren();
+        // Still a loader, if loading failed
+        if (m_children == null || m_children instanceof ChildLoader)
             return 0;
         if (m_children instanceof Node)
             return 1;
@@ -460,8 +479,12 @@ public final class Node
         return m_extraInfo.m_value;
     }
 
+    /** Check if the node has children.
+        Does not create the children, if the node has a child loader. */
     public boolean hasChildren()
     {
+        if (m_children instanceof ChildLoader)
+            return true;
         return (getNumberChildren() > 0);
     }
 
@@ -571,6 +594,18 @@ public final class Node
         m_children = child;
     }
 
+    /** Set a loader that creates the children on first access.
+        The children are created, when any function is called that needs
+        the children, apart from hasChildren() and getChildLoader().
+        @param loader The loader; must create at least one child.
+        The node must not have children. */
+    public void setChildLoader(ChildLoader loader)
+    {
+        assert m_children == null;
+        assert loader != null;
+        m_children = loader;
+    }
+
     /** Store comment in this node.
         @param comment The comment. If the parameter is null, empty or
         contains only whitespaces, then the comment will be deleted from this
@@ -669,6 +704,33 @@ public final class Node
                 Collections.sort(getSetupInfo().m_stones.get(c));
     }
 
+    /** Replace all properties by the properties of another node.
+        The father and the children of this node are not changed. The
+        properties are not copied, so the other node must not be used
+        anymore, e.g. a node read from a record of changed properties.
+        @param node The node with the new properties. */
+    public void takeProperties(Node node)
+    {
+        m_comment = node.m_comment;
+        m_extraInfo = node.m_extraInfo;
+        m_move = node.m_move;
+    }
+
+    /** Remove the children and set a loader that creates them again.
+        Frees the memory of subtrees that can be recreated, e.g. unmodified
+        subtrees of a file read in lazy mode.
+        @param loader The loader; must create at least one child. */
+    public void unloadChildren(ChildLoader loader)
+    {
+        assert loader != null;
+        if (m_children instanceof Node)
+            ((Node)m_children).m_father = null;
+        else if (m_children instanceof ArrayList)
+            for (Object child : (ArrayList)m_children)
+                ((Node)child).m_father = null;
+        m_children = loader;
+    }
+
     /** Return next child after a given child.
         @param child The child
         @return The next child or null, if there is no next child */
@@ -714,7 +776,8 @@ public final class Node
 
     private Node m_father;
 
-    /** Node if one child only, ArrayList otherwise. */
+    /** Node if one child only, ArrayList otherwise.
+        ChildLoader if the children are not created yet. */
     private Object m_children;
 
     private void createExtraInfo()
@@ -784,4 +847,11 @@ public final class Node
             return null;
         return m_extraInfo.m_moreExtraInfo.m_timeInfo;
     }
+
+    private void loadChildren()
+    {
+        ChildLoader loader = (ChildLoader)m_children;
+        m_children = null;
+        loader.loadChildren(this);
+    }
 }
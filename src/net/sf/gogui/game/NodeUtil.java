@@ -512,7 +512,7 @@ public final class NodeUtil
     {
         while (node.getFatherConst() != null)
         {
-            if (node.getFatherConst().getChildConst(0) != node)
+            if (! node.getFatherConst().getChildConst(0).equals(node))
                 return false;
             node = node.getFatherConst();
         }
@@ -753,35 +753,22 @@ public final class NodeUtil
     }
 
     /** Check if the number of nodes in the subtree of a node is greater
-        than a given limit. */
+        than a given limit.
+        Does not create children of nodes with a child loader. */
     public static boolean subtreeGreaterThan(ConstNode node, int size)
     {
-        int n = 0;
-        int depth = NodeUtil.getDepth(node);
-        while (node != null)
-        {
-            ++n;
-            if (n > size)
-                return true;
-            node = nextNode(node, depth);
-        }
-        return false;
+        return countSubtree(node, size) > size;
     }
 
     /** Count number of nodes in subtree.
+        Nodes below a node with a child loader are counted with
+        ChildLoader.getNumberDescendants() without creating them.
         @param node The root node of the subtree.
         @return The number of nodes in the subtree (including the root
         node). */
     public static int subtreeSize(ConstNode node)
     {
-        int n = 0;
-        int depth = NodeUtil.getDepth(node);
-        while (node != null)
-        {
-            ++n;
-            node = nextNode(node, depth);
-        }
-        return n;
+        return countSubtree(node, Integer.MAX_VALUE);
     }
 
     /** Return a string containing information and statistics of the subtree
@@ -909,6 +896,44 @@ public final class NodeUtil
         buffer.append(' ');
     }
 
+    /** Count the nodes in a subtree.
+        Uses an explicit stack of the variations that are not counted yet
+        instead of a recursion or the iteration with nextNode(), which needs
+        to find the depth of each node.
+        @param limit Stop counting, if the number is greater than limit.
+        @return The number of nodes or a number greater than limit. */
+    private static int countSubtree(ConstNode node, int limit)
+    {
+        int n = 0;
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(node);
+        while (! stack.isEmpty())
+        {
+            node = stack.remove(stack.size() - 1);
+            while (node != null)
+            {
+                n += 1 + getNumberNotLoaded(node);
+                if (n > limit)
+                    return n;
+                if (node.getChildLoader() != null)
+                    break;
+                int numberChildren = node.getNumberChildren();
+                for (int i = numberChildren - 1; i > 0; --i)
+                    stack.add(node.getChildConst(i));
+                node = node.getChildConst();
+            }
+        }
+        return n;
+    }
+
+    private static int getNumberNotLoaded(ConstNode node)
+    {
+        ChildLoader loader = node.getChildLoader();
+        if (loader == null)
+            return 0;
+        return loader.getNumberDescendants();
+    }
+
     private static void restoreTimeLeft(ConstNode node, Clock clock,
                                         GoColor color)
     {
@@ -0,0 +1,438 @@
+// GameJournal.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.sgf.SgfWriter;
+import net.sf.gogui.util.ErrorMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Journal for saving a game tree incrementally.
+    Used for restoring a game after a crash. The journal refers to a base
+    file, which is either the file the game was loaded from or saved to, or
+    a copy of the game tree, which is written next to the journal. It is
+    followed by records of the nodes that were appended to the tree since
+    the base was set. Each record contains a sequence of nodes in SGF format
+    (see SgfWriter#SgfWriter(OutputStream,int,List)), in which each node is
+    the child of the previous one, and a reference to the father of the
+    first node. The father is referenced by its path from the root in the
+    base tree, or by the index of an appended node in an earlier record.
+    Changes of the properties of older nodes, like comments or markup, are
+    written as records with a reference to the node and a single node in
+    SGF format, which contains all properties of the changed node.
+    Other changes, like deleting nodes, require a new base.
+    <p>
+    The records are formatted in the thread calling append(), which is
+    cheap for the few nodes added in between, and written in a background
+    thread. A new base is written to a temporary file and then replaces the
+    journal, so the journal is consistent if the application crashes while
+    writing. The journal file is locked, so that only one instance of an
+    application uses it.
+    @see GameJournalReader */
+public final class GameJournal
+{
+    /** Open a journal.
+        The journal file is not changed before the first call of one of the
+        setBase() functions, so it can still be read with GameJournalReader
+        to restore the game of a previous session.
+        @param file The journal file.
+        @throws ErrorMessage If the journal is used by another process or
+        the lock file cannot be created. */
+    public GameJournal(File file) throws ErrorMessage
+    {
+        m_file = file;
+        File lockFile = new File(file.getPath() + ".lock");
+        try
+        {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && ! dir.exists())
+                dir.mkdirs();
+            m_lockChannel =
+                FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE,
+                                 StandardOpenOption.WRITE);
+            m_lock = tryLock(m_lockChannel);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage(e.getMessage());
+        }
+        if (m_lock == null)
+        {
+            closeQuietly(m_lockChannel);
+            throw new ErrorMessage("Journal \"" + file
+                                   + "\" is used by another process");
+        }
+        m_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "GameJournal");
+                    thread.setDaemon(true);
+                    return thread;
+                } });
+    }
+
+    /** Append nodes and changes of older nodes to the journal.
+        @param tree The game tree containing the nodes.
+        @param nodes The nodes in the order they were appended to the tree
+        (see game.Game#getAppendedNodes()). The father of each node must be
+        a node of the base tree or a node appended before.
+        @param changedNodes Nodes of the base tree or nodes appended before
+        with changed properties (see game.Game#getChangedNodes()). */
+    public void append(ConstGameTree tree, List<ConstNode> nodes,
+                       Collection<ConstNode> changedNodes)
+    {
+        if (nodes.isEmpty() && changedNodes.isEmpty())
+            return;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+        ArrayList<ConstNode> sequence = new ArrayList<ConstNode>();
+        for (ConstNode node : nodes)
+        {
+            if (! sequence.isEmpty()
+                && node.getFatherConst() != sequence.get(sequence.size() - 1))
+            {
+                writeRecord(out, tree.getBoardSize(), sequence);
+                sequence.clear();
+            }
+            sequence.add(node);
+        }
+        if (! sequence.isEmpty())
+            writeRecord(out, tree.getBoardSize(), sequence);
+        for (ConstNode node : changedNodes)
+            writePropertiesRecord(out, tree.getBoardSize(), node);
+        m_executor.execute(new Runnable() {
+                public void run() {
+                    appendToFile(out);
+                } });
+    }
+
+    /** Remove the base and all records.
+        Can be used if the game cannot be journaled anymore. Appended nodes
+        are ignored until the next call of one of the setBase()
+        functions. */
+    public void clear()
+    {
+        m_index.clear();
+        m_numberNodes = 0;
+        m_executor.execute(new Runnable() {
+                public void run() {
+                    closeQuietly(m_channel);
+                    m_channel = null;
+                    m_file.delete();
+                } });
+    }
+
+    /** Close the journal.
+        Waits until all records are written and releases the lock.
+        @param delete Delete the journal and the base file written by this
+        class, e.g. if the application exits normally after the game was
+        saved or discarded. */
+    public void close(final boolean delete)
+    {
+        m_executor.execute(new Runnable() {
+                public void run() {
+                    closeQuietly(m_channel);
+                    m_channel = null;
+                    if (delete)
+                    {
+                        m_file.delete();
+                        getBaseFile(0).delete();
+                        getBaseFile(1).delete();
+                    }
+                } });
+        m_executor.shutdown();
+        try
+        {
+            m_executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        try
+        {
+            m_lock.release();
+        }
+        catch (IOException e)
+        {
+        }
+        closeQuietly(m_lockChannel);
+    }
+
+    /** Get the first error that occurred in the background thread.
+        If an error occurred, the journal is not updated anymore.
+        @return The error message or null. */
+    public synchronized String getError()
+    {
+        return m_error;
+    }
+
+    /** Use a game file as the new base.
+        The file must contain the current game tree. The length and
+        modification time of the file are stored to detect, if the file was
+        changed when the journal is read.
+        @param file The game file. */
+    public void setBase(File file)
+    {
+        m_index.clear();
+        m_numberNodes = 0;
+        final String header = getHeader(file);
+        m_executor.execute(new Runnable() {
+                public void run() {
+                    writeJournal(header);
+                } });
+    }
+
+    /** Use a copy of a game tree as the new base.
+        The tree is written to a base file next to the journal in the
+        background thread, so it must not be modified anymore, for instance
+        a game.CompactGameTree created from the current tree.
+        @param tree The game tree. */
+    public void setBase(final ConstGameTree tree)
+    {
+        m_index.clear();
+        m_numberNodes = 0;
+        m_executor.execute(new Runnable() {
+                public void run() {
+                    writeBase(tree);
+                } });
+    }
+
+    /** First line of a journal file. */
+    static final String MAGIC = "GoGui-Journal 1";
+
+    /** Index of the current base file in the background thread. */
+    private int m_baseNumber;
+
+    /** Number of appended nodes since the last base. */
+    private int m_numberNodes;
+
+    private final File m_file;
+
+    /** Channel for appending records in the background thread. */
+    private FileChannel m_channel;
+
+    private final FileChannel m_lockChannel;
+
+    private final FileLock m_lock;
+
+    private final ExecutorService m_executor;
+
+    /** Index of the nodes appended since the last base. */
+    private final IdentityHashMap<ConstNode,Integer> m_index =
+        new IdentityHashMap<ConstNode,Integer>();
+
+    private String m_error;
+
+    private void appendToFile(ByteArrayOutputStream out)
+    {
+        if (m_channel == null)
+            return;
+        try
+        {
+            m_channel.write(ByteBuffer.wrap(out.toByteArray()));
+            m_channel.force(false);
+        }
+        catch (IOException e)
+        {
+            setError(e);
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel)
+    {
+        if (channel == null)
+            return;
+        try
+        {
+            channel.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+
+    /** Get one of the two base files used alternately for tree copies.
+        The base file of a new journal is written before the journal
+        replaces the old one, so it must not be the file the old journal
+        refers to. */
+    private File getBaseFile(int number)
+    {
+        return new File(m_file.getPath() + ".base" + number + ".sgf");
+    }
+
+    private static String getHeader(File file)
+    {
+        return MAGIC + "\nF " + file.length() + " " + file.lastModified()
+            + " " + file.getAbsolutePath() + "\n";
+    }
+
+    /** Get the reference to a node for a record.
+        @return "@" and the index of the node in the records or "/" and the
+        path of child indices from the root, in which repeated indices are
+        written as index*count. */
+    private String getReference(ConstNode node)
+    {
+        Integer index = m_index.get(node);
+        if (index != null)
+            return "@" + index;
+        ArrayList<Integer> path = new ArrayList<Integer>();
+        ConstNode father = node.getFatherConst();
+        while (father != null)
+        {
+            path.add(father.getChildIndex(node));
+            node = father;
+            father = node.getFatherConst();
+        }
+        StringBuilder buffer = new StringBuilder(64);
+        buffer.append('/');
+        int i = path.size() - 1;
+        while (i >= 0)
+        {
+            int childIndex = path.get(i);
+            int count = 1;
+            while (i - count >= 0 && path.get(i - count) == childIndex)
+                ++count;
+            if (buffer.length() > 1)
+                buffer.append(',');
+            buffer.append(childIndex);
+            if (count > 1)
+            {
+                buffer.append('*');
+                buffer.append(count);
+            }
+            i -= count;
+        }
+        return buffer.toString();
+    }
+
+    private synchronized void setError(IOException e)
+    {
+        if (m_error == null)
+            m_error = e.getMessage();
+        closeQuietly(m_channel);
+        m_channel = null;
+    }
+
+    /** Try to lock a file.
+        @return The lock or null, if the file is locked by another process
+        or already by this process. */
+    private static FileLock tryLock(FileChannel channel) throws IOException
+    {
+        try
+        {
+            return channel.tryLock();
+        }
+        catch (OverlappingFileLockException e)
+        {
+            return null;
+        }
+    }
+
+    private void writeBase(ConstGameTree tree)
+    {
+        int number = 1 - m_baseNumber;
+        File file = getBaseFile(number);
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try
+        {
+            OutputStream out = new FileOutputStream(tmpFile);
+            IOException error =
+                new SgfWriter(out, tree, null, null).getError();
+            if (error != null)
+                throw error;
+            move(tmpFile, file);
+        }
+        catch (IOException e)
+        {
+            setError(e);
+            return;
+        }
+        m_baseNumber = number;
+        writeJournal(getHeader(file));
+    }
+
+    private void writeJournal(String header)
+    {
+        if (getError() != null)
+            return;
+        closeQuietly(m_channel);
+        m_channel = null;
+        File tmpFile = new File(m_file.getPath() + ".tmp");
+        try
+        {
+            Files.write(tmpFile.toPath(), header.getBytes(UTF_8));
+            move(tmpFile, m_file);
+            m_channel =
+                FileChannel.open(m_file.toPath(), StandardOpenOption.WRITE,
+                                 StandardOpenOption.APPEND);
+        }
+        catch (IOException e)
+        {
+            setError(e);
+        }
+    }
+
+    private static void move(File source, File target) throws IOException
+    {
+        try
+        {
+            Files.move(source.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(source.toPath(), target.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Write a record with the properties of a changed node. */
+    private void writePropertiesRecord(ByteArrayOutputStream out,
+                                       int boardSize, ConstNode node)
+    {
+        writeRecord(out, "P " + getReference(node), boardSize,
+                    Collections.singletonList(node));
+    }
+
+    private void writeRecord(ByteArrayOutputStream out, String type,
+                             int boardSize, List<ConstNode> nodes)
+    {
+        ByteArrayOutputStream sgf = new ByteArrayOutputStream(256);
+        new SgfWriter(sgf, boardSize, nodes);
+        byte[] header = (type + " " + sgf.size() + "\n").getBytes(UTF_8);
+        out.write(header, 0, header.length);
+        out.write(sgf.toByteArray(), 0, sgf.size());
+    }
+
+    private void writeRecord(ByteArrayOutputStream out, int boardSize,
+                             List<ConstNode> nodes)
+    {
+        writeRecord(out, "N " + getReference(nodes.get(0).getFatherConst()),
+                    boardSize, nodes);
+        for (ConstNode node : nodes)
+            m_index.put(node, m_numberNodes++);
+    }
+}
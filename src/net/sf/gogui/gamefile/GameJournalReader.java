@@ -0,0 +1,232 @@
+// GameJournalReader.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
+import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.util.ErrorMessage;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/** Restore a game tree from a journal written by GameJournal.
+    Reads the base file, appends the nodes of the records and replaces the
+    properties of changed nodes. An incomplete
+    last record, which was not completely written before a crash, is
+    ignored. */
+public final class GameJournalReader
+{
+    /** Read a journal.
+        @param file The journal file.
+        @throws ErrorMessage If the journal or the base file cannot be read,
+        or the base file was modified after the journal was written. */
+    public GameJournalReader(File file) throws ErrorMessage
+    {
+        try
+        {
+            m_data = Files.readAllBytes(file.toPath());
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage(e.getMessage());
+        }
+        if (! GameJournal.MAGIC.equals(readLine()))
+            throw new ErrorMessage("Invalid journal \"" + file + "\"");
+        readBase(readLine(), file);
+        while (m_position < m_data.length)
+        {
+            String line = readLine();
+            if (line == null || ! readRecord(line))
+            {
+                m_warnings = "Incomplete record at end of journal";
+                break;
+            }
+        }
+    }
+
+    /** Check if a journal file contains a game to restore. */
+    public static boolean exists(File file)
+    {
+        return file.length() > GameJournal.MAGIC.length();
+    }
+
+    /** Get the base file.
+        @return The base file or null, if the base was a copy of the tree
+        written by GameJournal, e.g. because the game was never saved. */
+    public GameFile getFile()
+    {
+        return m_gameFile;
+    }
+
+    /** Get the number of nodes appended from the records. */
+    public int getNumberNodes()
+    {
+        return m_nodes.size();
+    }
+
+    public GameTree getTree()
+    {
+        return m_tree;
+    }
+
+    /** Get warnings that occurred during reading.
+        @return String with warning messages or null if no warnings. */
+    public String getWarnings()
+    {
+        return m_warnings;
+    }
+
+    private int m_position;
+
+    private final byte[] m_data;
+
+    private GameFile m_gameFile;
+
+    private GameTree m_tree;
+
+    /** The appended nodes for references by index. */
+    private final ArrayList<Node> m_nodes = new ArrayList<Node>();
+
+    private String m_warnings;
+
+    private Node getNode(String reference)
+    {
+        if (reference.startsWith("@"))
+        {
+            int index = Integer.parseInt(reference.substring(1));
+            return m_nodes.get(index);
+        }
+        if (! reference.startsWith("/"))
+            throw new NumberFormatException(reference);
+        Node node = m_tree.getRoot();
+        if (reference.length() == 1)
+            return node;
+        for (String token : reference.substring(1).split(","))
+        {
+            int pos = token.indexOf('*');
+            int count = 1;
+            if (pos >= 0)
+            {
+                count = Integer.parseInt(token.substring(pos + 1));
+                token = token.substring(0, pos);
+            }
+            int childIndex = Integer.parseInt(token);
+            for (int i = 0; i < count; ++i)
+                node = node.getChild(childIndex);
+        }
+        return node;
+    }
+
+    private void readBase(String line, File journal) throws ErrorMessage
+    {
+        String[] array = (line == null ? new String[0]
+                          : line.split(" ", 4));
+        if (array.length < 4 || ! array[0].equals("F"))
+            throw new ErrorMessage("Invalid base in journal");
+        File file = new File(array[3]);
+        try
+        {
+            if (file.length() != Long.parseLong(array[1])
+                || file.lastModified() != Long.parseLong(array[2]))
+                throw new ErrorMessage("File \"" + file
+                                       + "\" was modified");
+        }
+        catch (NumberFormatException e)
+        {
+            throw new ErrorMessage("Invalid base in journal");
+        }
+        GameReader reader = new GameReader(file);
+        m_tree = reader.getTree();
+        if (! isBaseCopy(journal, file))
+            m_gameFile = reader.getFile();
+    }
+
+    /** Check if the base file is a copy of the tree written by
+        GameJournal. */
+    private static boolean isBaseCopy(File journal, File file)
+    {
+        String name = file.getName();
+        return (name.startsWith(journal.getName() + ".base")
+                && file.getAbsoluteFile().getParentFile().equals(
+                                 journal.getAbsoluteFile().getParentFile()));
+    }
+
+    /** Read a line from m_data.
+        @return The line without line end or null, if the end of the data
+        was reached without a line end. */
+    private String readLine()
+    {
+        for (int i = m_position; i < m_data.length; ++i)
+            if (m_data[i] == '\n')
+            {
+                String line = new String(m_data, m_position, i - m_position,
+                                         UTF_8);
+                m_position = i + 1;
+                return line;
+            }
+        return null;
+    }
+
+    /** Read a record and append its nodes or replace the properties of
+        the referenced node.
+        @return false if the record is incomplete or invalid. */
+    private boolean readRecord(String line)
+    {
+        String[] array = line.split(" ");
+        if (array.length != 3
+            || ! (array[0].equals("N") || array[0].equals("P")))
+            return false;
+        Node target;
+        int length;
+        try
+        {
+            target = getNode(array[1]);
+            length = Integer.parseInt(array[2]);
+        }
+        catch (RuntimeException e)
+        {
+            // Invalid number or path
+            return false;
+        }
+        if (length < 0 || m_position + length > m_data.length)
+            return false;
+        GameTree tree;
+        try
+        {
+            SgfReader reader =
+                new SgfReader(new ByteArrayInputStream(m_data, m_position,
+                                                       length),
+                              null, null, 0);
+            tree = reader.getTree();
+        }
+        catch (SgfError e)
+        {
+            return false;
+        }
+        m_position += length;
+        Node root = tree.getRoot();
+        Node node = root.getChild();
+        if (array[0].equals("P"))
+        {
+            if (node == null)
+                return false;
+            target.takeProperties(node);
+            return true;
+        }
+        if (node == null)
+            return true;
+        root.removeChild(node);
+        target.append(node);
+        while (node != null)
+        {
+            m_nodes.add(node);
+            node = node.getChild();
+        }
+        return true;
+    }
+}
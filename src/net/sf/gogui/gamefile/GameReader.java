@@ -22,6 +22,16 @@ public class GameReader
     /** Construct reader and read a game.
         @param progressShow Callback to show progress, can be null */
     public GameReader(File file, ProgressShow progressShow) throws ErrorMessage
+    {
+        this(file, progressShow, false);
+    }
+
+    /** Construct reader and read a game, optionally in lazy mode.
+        @param progressShow Callback to show progress, can be null
+        @param lazy Read SGF files in lazy mode (see
+        SgfReader.SgfReader(InputStream,File,ProgressShow,long,boolean)) */
+    public GameReader(File file, ProgressShow progressShow, boolean lazy)
+        throws ErrorMessage
     {
         m_gameFile = new GameFile();
         GameFile.Format format = detectFormat(file);
@@ -48,10 +58,12 @@ public class GameReader
             break;
         case SGF:
             {
-                SgfReader reader =
-                    new SgfReader(in, file, progressShow, file.length());
+                SgfReader reader = new SgfReader(in, file, progressShow,
+                                                 file.length(), lazy);
                 m_tree = reader.getTree();
                 m_warnings = reader.getWarnings();
+                if (lazy)
+                    m_sgfReader = reader;
             }
             break;
         }
@@ -62,28 +74,10 @@ public class GameReader
         this(file, null);
     }
 
-    public GameFile getFile()
-    {
-        return m_gameFile;
-    }
-
-    public GameTree getTree()
-    {
-        return m_tree;
-    }
-
-    public String getWarnings()
-    {
-        return m_warnings;
-    }
-
-    private GameFile m_gameFile;
-
-    private String m_warnings;
-
-    private GameTree m_tree;
-
-    private static GameFile.Format detectFormat(File file)
+    /** Detect the format of a file.
+        Uses the file extension or the start of the file, if the file has no
+        known extension. */
+    public static GameFile.Format detectFormat(File file)
     {
         String extension = FileUtil.getExtension(file);
         if (extension != null)
@@ -119,4 +113,35 @@ public class GameReader
         }
         return GameFile.Format.SGF;
     }
+
+    public GameFile getFile()
+    {
+        return m_gameFile;
+    }
+
+    /** Get the SGF reader of a file read in lazy mode.
+        @return The reader or null, if the file was not read in lazy
+        mode. */
+    public SgfReader getSgfReader()
+    {
+        return m_sgfReader;
+    }
+
+    public GameTree getTree()
+    {
+        return m_tree;
+    }
+
+    public String getWarnings()
+    {
+        return m_warnings;
+    }
+
+    private GameFile m_gameFile;
+
+    private String m_warnings;
+
+    private GameTree m_tree;
+
+    private SgfReader m_sgfReader;
 }
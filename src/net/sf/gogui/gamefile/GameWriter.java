@@ -2,18 +2,35 @@
 
 package net.sf.gogui.gamefile;
 
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.ProgressShow;
 import net.sf.gogui.xml.XmlWriter;
 
 public class GameWriter
 {
     public GameWriter(GameFile gameFile, ConstGameTree tree,
                       String application, String version) throws ErrorMessage
+    {
+        this(gameFile, tree, application, version, null);
+    }
+
+    /** Write a game tree to a file.
+        @param gameFile The file and format.
+        @param tree The game tree.
+        @param application Application name for the file.
+        @param version Version of the application, can be null.
+        @param progressShow Callback to show progress, can be null. Only
+        used for SGF files. */
+    public GameWriter(GameFile gameFile, ConstGameTree tree,
+                      String application, String version,
+                      ProgressShow progressShow) throws ErrorMessage
     {
         OutputStream out;
         try
@@ -27,13 +44,18 @@ public class GameWriter
         switch (gameFile.m_format)
         {
         case SGF:
-            new SgfWriter(out, tree, application, version);
+            IOException error =
+                new SgfWriter(out, tree, application, version,
+                              progressShow).getError();
+            if (error != null)
+                throw new ErrorMessage(error.getMessage());
             break;
         case XML:
             String xmlApplication = application;
             if (xmlApplication != null && version != null)
                 xmlApplication = xmlApplication + ":" + version;
-            new XmlWriter(out, tree, xmlApplication);
+            new XmlWriter(new BufferedOutputStream(out), tree,
+                          xmlApplication);
             break;
         }
     }
@@ -3,6 +3,7 @@
 package net.sf.gogui.go;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import net.sf.gogui.gtp.GtpClientBase;
@@ -13,7 +14,16 @@ import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import static net.sf.gogui.go.GoColor.BLACK_WHITE;
 
-/** Go board. */
+/** Go board.
+    The stones of each block are kept in union-find trees with a circular
+    list of the stones and a count of the pseudo-liberties (adjacent empty
+    points counted once per adjacent stone), which is zero exactly if the
+    block has no liberties. Playing and undoing a move updates these
+    incrementally without flood-filling the blocks. The trees do not use
+    path compression, so that merging blocks can be taken back in undo.
+    Entries of the move stack are reused, so that playing and undoing
+    moves, including isSuicide() and isCaptureOrSuicide(), does not allocate
+    memory. */
 public final class Board
 implements ConstBoard
 {
@@ -78,7 +88,10 @@ implements ConstBoard
         opponent moves or by suicide. */
     public int getCaptured(GoColor c)
     {
-        return m_captured.get(c);
+        if (c == BLACK)
+            return m_capturedBlack;
+        assert c == WHITE;
+        return m_capturedWhite;
     }
 
     /** Get state of a point on the board.
@@ -88,6 +101,63 @@ implements ConstBoard
         return m_color[p.getIndex()];
     }
 
+    /** Get the points whose color changed since a given state.
+        Allows a view of the board to update only the changed points.
+        @param changeCounter The value of getChangeCounter() at the state.
+        @param points The list to store the points in (cleared before). A
+        point can be contained more than once and its color can be the same
+        as at the given state.
+        @return false, if the changes are not available, because the board
+        size was changed or too many changes were made. In this case, all
+        points must be considered as changed.
+        @see #getChangeCounter() */
+    public boolean getChangedPoints(long changeCounter, PointList points)
+    {
+        points.clear();
+        if (changeCounter < m_changeLogStart
+            || changeCounter > getChangeCounter())
+            return false;
+        int size = m_changeLog.size();
+        for (int i = (int)(changeCounter - m_changeLogStart); i < size; ++i)
+            points.add(m_changeLog.get(i));
+        return true;
+    }
+
+    /** Get a counter that identifies the current state of the stones.
+        The counter is increased on every change of the color of a point.
+        @see #getChangedPoints(long, PointList) */
+    public long getChangeCounter()
+    {
+        return m_changeLogStart + m_changeLog.size();
+    }
+
+    /** Get Zobrist hash code of the position.
+        The hash code covers the stones on the board, the color to move and
+        the ko point. It is updated incrementally on every change of the
+        board.
+        @return The hash code.
+        @see Zobrist */
+    public long getHash()
+    {
+        return getHash(0);
+    }
+
+    /** Get Zobrist hash code of the rotated or mirrored position.
+        @param rotationMode The rotation mode in [0..NUMBER_ROTATIONS]
+        @return The hash code of the position with all points rotated with
+        BoardUtil.rotate(); the same as getHash() for mode zero.
+        @see BoardUtil#rotate */
+    public long getHash(int rotationMode)
+    {
+        long hash = m_hash[rotationMode];
+        if (m_toMove == WHITE)
+            hash ^= Zobrist.getWhiteToMove();
+        if (m_koPoint != null)
+            hash ^= Zobrist.getKo(m_constants.getRotatedIndex(rotationMode,
+                                                   m_koPoint.getIndex()));
+        return hash;
+    }
+
     /** Get location of handicap stones for a given board size.
         @param n The number of handicap stones.
         @param size The board size.
@@ -127,7 +197,7 @@ implements ConstBoard
         @see #getMove */
     public int getNumberMoves()
     {
-        return m_stack.size();
+        return m_numberMoves;
     }
 
     /** Get a move from the sequence of moves played so far.
@@ -168,10 +238,22 @@ implements ConstBoard
     /** Get stones of a block. */
     public void getStones(GoPoint p, GoColor color, PointList stones)
     {
-        assert m_mark.isCleared();
-        findStones(p, color, stones);
-        m_mark.clear(stones);
-        //assert m_mark.isCleared();
+        if (getColor(p) != color)
+            return;
+        if (color == EMPTY)
+        {
+            assert m_mark.isCleared();
+            findStones(p, color, stones);
+            m_mark.clear(stones);
+            return;
+        }
+        GoPoint stone = p;
+        do
+        {
+            stones.add(stone);
+            stone = m_nextStone[stone.getIndex()];
+        }
+        while (stone != p);
     }
 
     /** Player stones killed by suicide in last move.
@@ -204,6 +286,12 @@ implements ConstBoard
         m_size = size;
         m_mark = new Marker(m_size);
         m_constants = BoardConstants.get(size);
+        // Points of a previous larger size could keep stones otherwise
+        Arrays.fill(m_color, EMPTY);
+        // Changes before the size change cannot be used by views
+        m_changeLogStart = getChangeCounter() + 1;
+        m_changeLog.clear();
+        Arrays.fill(m_hash, 0L);
         clear();
     }
 
@@ -262,7 +350,7 @@ implements ConstBoard
     /** Check if any moves were played or setup stones placed on the board. */
     public boolean isModified()
     {
-        return (! m_stack.isEmpty()
+        return (m_numberMoves > 0
                 || m_setup.get(BLACK).size() > 0
                 || m_setup.get(WHITE).size() > 0
                 || m_toMove != BLACK);
@@ -303,12 +391,11 @@ implements ConstBoard
     {
         for (GoPoint p : this)
             setColor(p, EMPTY);
-        m_stack.clear();
+        m_numberMoves = 0;
         for (GoColor c : BLACK_WHITE)
-        {
             m_setup.get(c).clear();
-            m_captured.set(c, 0);
-        }
+        m_capturedBlack = 0;
+        m_capturedWhite = 0;
         if (isGameRulerAttached())
             try {
                 GenericBoard.playFromBeginning(m_gameRuler, new ArrayList<>(),this);
@@ -341,16 +428,14 @@ implements ConstBoard
         @param move The move (location and player) */
     public void play(Move move)
     {
-        StackEntry entry = new StackEntry(move);
+        StackEntry entry = getStackEntry(move);
         entry.execute(this);
-        m_stack.add(entry);
+        ++m_numberMoves;
     }
     
     public void playGameMove(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        play(move);
     }
 
     /** Change the color to move.
@@ -391,6 +476,7 @@ implements ConstBoard
                 m_setup.set(c, new PointList(stones));
             }
         }
+        initBlocks();
     }
     
     /**
@@ -402,6 +488,7 @@ implements ConstBoard
         {
             setColor(p, c);
         }
+        initBlocks();
     }
 
     /** Setup initial handicap stones.
@@ -423,7 +510,7 @@ implements ConstBoard
         int index = getNumberMoves() - 1;
         assert index >= 0;
         m_stack.get(index).undo(this);
-        m_stack.remove(index);
+        m_numberMoves = index;
         m_lastMoveIndex = index;
     }
 
@@ -441,7 +528,7 @@ implements ConstBoard
 
     private static class StackEntry
     {
-        public final Move m_move;
+        public Move m_move;
 
         public GoPoint m_oldKoPoint;
 
@@ -449,12 +536,42 @@ implements ConstBoard
 
         public GoColor m_oldToMove;
 
-        public PointList m_killed;
+        public final PointList m_killed = new PointList();
 
-        public PointList m_suicide;
+        public final PointList m_suicide = new PointList();
 
         public int m_moveIndex = 0;
 
+        /** Move was executed by updating the blocks incrementally.
+            Otherwise the blocks were initialized from scratch after the
+            move, for example after playing on an occupied point. */
+        public boolean m_isIncremental;
+
+        /** Value of Board.m_numberInitBlocks when the move was executed.
+            If the blocks were initialized from scratch after the move, the
+            trees of the stones captured by the move are no longer valid. */
+        public int m_numberInitBlocks;
+
+        /** Block data of the move point before the move.
+            The point can be part of the tree of a block captured by an
+            earlier move, which is restored when that move is undone. */
+        public GoPoint m_oldFather;
+
+        public GoPoint m_oldNextStone;
+
+        public int m_oldBlockSize;
+
+        public int m_oldLiberties;
+
+        /** Number of block merges done by the move. */
+        public int m_numberMerged;
+
+        /** Roots of the blocks that were merged into other blocks. */
+        public final GoPoint[] m_mergedChild = new GoPoint[4];
+
+        /** Roots of the blocks the m_mergedChild blocks were merged into. */
+        public final GoPoint[] m_mergedRoot = new GoPoint[4];
+
         public StackEntry(Move move)
         {
             m_move = move;
@@ -462,12 +579,14 @@ implements ConstBoard
 
         public void execute(Board board)
         {
-            m_killed = new PointList();
-            m_suicide = new PointList();
+            m_killed.clear();
+            m_suicide.clear();
+            m_numberMerged = 0;
+            m_isIncremental = false;
             m_oldKoPoint = board.m_koPoint;
             board.m_koPoint = null;
-            if (m_moveIndex < board.m_stack.size())
-                m_moveIndex = board.m_stack.size();
+            if (m_moveIndex < board.m_numberMoves)
+                m_moveIndex = board.m_numberMoves;
             if (board.isGameRulerAttached())
             {
                 try {
@@ -478,7 +597,14 @@ implements ConstBoard
             }
             else
             {
-                executeGo(board);
+                GoPoint p = m_move.getPoint();
+                if (p == null || board.getColor(p) == EMPTY)
+                    executeIncremental(board);
+                else
+                {
+                    executeGo(board);
+                    board.initBlocks();
+                }
             }
             if (board.m_lastMoveIndex < board.getNumberMoves()-1) {
                 board.m_lastMoveIndex = board.getNumberMoves()-1 ;
@@ -496,6 +622,78 @@ implements ConstBoard
             m_oldToMove = board.m_toMove;
         }
 
+        /** Execute a move on an empty point or a pass move. */
+        private void executeIncremental(Board board)
+        {
+            m_isIncremental = true;
+            m_numberInitBlocks = board.m_numberInitBlocks;
+            GoPoint p = m_move.getPoint();
+            GoColor c = m_move.getColor();
+            GoColor otherColor = c.otherColor();
+            m_oldToMove = board.m_toMove;
+            board.m_toMove = otherColor;
+            if (p == null)
+                return;
+            assert c != EMPTY;
+            m_oldColor = EMPTY;
+            board.setColor(p, c);
+            int index = p.getIndex();
+            m_oldFather = board.m_father[index];
+            m_oldNextStone = board.m_nextStone[index];
+            m_oldBlockSize = board.m_blockSize[index];
+            m_oldLiberties = board.m_liberties[index];
+            board.m_father[index] = p;
+            board.m_nextStone[index] = p;
+            board.m_blockSize[index] = 1;
+            board.m_liberties[index] = 0;
+            ConstPointList adjacent = board.getAdjacent(p);
+            int nuAdjacent = adjacent.size();
+            // Don't use an iterator for efficiency
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (board.getColor(adj) == EMPTY)
+                    ++board.m_liberties[index];
+                else
+                    --board.m_liberties[board.findRoot(adj).getIndex()];
+            }
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (board.getColor(adj) != c)
+                    continue;
+                GoPoint root = board.findRoot(p);
+                GoPoint adjRoot = board.findRoot(adj);
+                if (root != adjRoot)
+                {
+                    GoPoint newRoot = board.merge(root, adjRoot);
+                    m_mergedChild[m_numberMerged] =
+                        (newRoot == root ? adjRoot : root);
+                    m_mergedRoot[m_numberMerged] = newRoot;
+                    ++m_numberMerged;
+                }
+            }
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (board.getColor(adj) == otherColor)
+                {
+                    GoPoint root = board.findRoot(adj);
+                    if (board.m_liberties[root.getIndex()] == 0)
+                        board.removeBlock(root, m_killed);
+                }
+            }
+            GoPoint root = board.findRoot(p);
+            if (board.m_liberties[root.getIndex()] == 0)
+                board.removeBlock(root, m_suicide);
+            else if (m_killed.size() == 1
+                     && board.m_blockSize[root.getIndex()] == 1
+                     && board.m_liberties[root.getIndex()] == 1)
+                board.m_koPoint = m_killed.get(0);
+            board.addCaptured(c, m_suicide.size());
+            board.addCaptured(otherColor, m_killed.size());
+        }
+
         private void executeGo(Board board)
         {
             GoPoint p = m_move.getPoint();
@@ -518,18 +716,59 @@ implements ConstBoard
                 if (board.m_koPoint != null
                     && ! board.isSingleStoneSingleLib(p, c))
                     board.m_koPoint = null;
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     + m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     + m_killed.size());
+                board.addCaptured(c, m_suicide.size());
+                board.addCaptured(otherColor, m_killed.size());
             }
             m_oldToMove = board.m_toMove;
             board.m_toMove = otherColor;
         }
 
         protected void undo(Board board)
+        {
+            if (m_isIncremental
+                && m_numberInitBlocks == board.m_numberInitBlocks)
+                undoIncremental(board);
+            else
+            {
+                undoGo(board);
+                if (! board.isGameRulerAttached())
+                    board.initBlocks();
+            }
+        }
+
+        private void undoIncremental(Board board)
+        {
+            GoPoint p = m_move.getPoint();
+            if (p != null)
+            {
+                GoColor c = m_move.getColor();
+                GoColor otherColor = c.otherColor();
+                board.restoreBlock(m_suicide, c);
+                board.restoreBlock(m_killed, otherColor);
+                for (int i = m_numberMerged - 1; i >= 0; --i)
+                    board.split(m_mergedChild[i], m_mergedRoot[i]);
+                ConstPointList adjacent = board.getAdjacent(p);
+                int nuAdjacent = adjacent.size();
+                for (int i = 0; i < nuAdjacent; ++i)
+                {
+                    GoPoint adj = adjacent.get(i);
+                    if (board.getColor(adj) != EMPTY)
+                        ++board.m_liberties[board.findRoot(adj).getIndex()];
+                }
+                board.setColor(p, EMPTY);
+                int index = p.getIndex();
+                board.m_father[index] = m_oldFather;
+                board.m_nextStone[index] = m_oldNextStone;
+                board.m_blockSize[index] = m_oldBlockSize;
+                board.m_liberties[index] = m_oldLiberties;
+                board.addCaptured(c, -m_suicide.size());
+                board.addCaptured(otherColor, -m_killed.size());
+            }
+            board.m_toMove = m_oldToMove;
+            board.m_koPoint = m_oldKoPoint;
+        }
+
+        private void undoGo(Board board)
         {
             GoPoint p = m_move.getPoint();
             if (p != null)
@@ -541,12 +780,8 @@ implements ConstBoard
                 board.setColor(p, m_oldColor);
                 for (GoPoint stone : m_killed)
                     board.setColor(stone, otherColor);
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     - m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     - m_killed.size());
+                board.addCaptured(c, -m_suicide.size());
+                board.addCaptured(otherColor, -m_killed.size());
             }
             board.m_toMove = m_oldToMove;
             board.m_koPoint = m_oldKoPoint;
@@ -557,12 +792,43 @@ implements ConstBoard
 
     private int m_size;
 
-    private final BlackWhiteSet<Integer> m_captured
-        = new BlackWhiteSet<Integer>(0, 0);
+    private int m_capturedBlack;
 
+    private int m_capturedWhite;
+
+    /** Move stack.
+        Contains getNumberMoves() valid entries. Entries after them are
+        kept for reuse. */
     private final ArrayList<StackEntry> m_stack
         = new ArrayList<StackEntry>(361);
 
+    private int m_numberMoves;
+
+    /** Value of getChangeCounter() for the first entry of m_changeLog. */
+    private long m_changeLogStart;
+
+    /** Points whose color changed.
+        Limited to MAX_CHANGE_LOG entries; older entries are dropped. */
+    private final PointList m_changeLog = new PointList(MAX_CHANGE_LOG);
+
+    /** Father of a stone in the union-find tree of its block.
+        The root of the tree is its own father. Only valid for points with
+        stones. */
+    private final GoPoint[] m_father = new GoPoint[GoPoint.NUMBER_INDEXES];
+
+    /** Next stone in the circular list of stones of a block. */
+    private final GoPoint[] m_nextStone
+        = new GoPoint[GoPoint.NUMBER_INDEXES];
+
+    /** Number of stones of a block. Only valid for root stones. */
+    private final int[] m_blockSize = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of pseudo-liberties of a block. Only valid for root stones. */
+    private final int[] m_liberties = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of calls to initBlocks(). */
+    private int m_numberInitBlocks;
+
     /** Temporary variable reused for efficiency. */
     private final PointList m_checkKillStones = new PointList();
 
@@ -571,6 +837,10 @@ implements ConstBoard
 
     private GoColor[] m_color = new GoColor[GoPoint.NUMBER_INDEXES];
 
+    /** Zobrist hash codes of the stones for each rotation mode.
+        @see #getHash(int) */
+    private final long[] m_hash = new long[BoardUtil.NUMBER_ROTATIONS];
+
     private GoColor m_toMove;
 
     private GoColor m_setupPlayer;
@@ -583,11 +853,182 @@ implements ConstBoard
 
     private int m_lastMoveIndex = 0;
 
+    private static final int MAX_CHANGE_LOG = GoPoint.NUMBER_INDEXES;
+
     private final BlackWhiteSet<PointList> m_setup
         = new BlackWhiteSet<PointList>(new PointList(), new PointList());
 
     private boolean m_isSetupHandicap;
 
+    private void addCaptured(GoColor c, int n)
+    {
+        if (c == BLACK)
+            m_capturedBlack += n;
+        else
+            m_capturedWhite += n;
+    }
+
+    private GoPoint findRoot(GoPoint p)
+    {
+        GoPoint father = m_father[p.getIndex()];
+        while (father != p)
+        {
+            p = father;
+            father = m_father[p.getIndex()];
+        }
+        return p;
+    }
+
+    private StackEntry getStackEntry(Move move)
+    {
+        if (m_numberMoves < m_stack.size())
+        {
+            StackEntry entry = m_stack.get(m_numberMoves);
+            entry.m_move = move;
+            entry.m_moveIndex = 0;
+            return entry;
+        }
+        StackEntry entry = new StackEntry(move);
+        m_stack.add(entry);
+        return entry;
+    }
+
+    /** Initialize the blocks from the stones on the board.
+        Used after changes of the board that are not done incrementally. */
+    private void initBlocks()
+    {
+        ++m_numberInitBlocks;
+        for (GoPoint p : this)
+        {
+            int index = p.getIndex();
+            m_father[index] = p;
+            m_nextStone[index] = p;
+            m_blockSize[index] = 1;
+            m_liberties[index] = 0;
+        }
+        for (GoPoint p : this)
+        {
+            GoColor c = getColor(p);
+            if (c == EMPTY)
+                continue;
+            ConstPointList adjacent = getAdjacent(p);
+            int nuAdjacent = adjacent.size();
+            for (int i = 0; i < nuAdjacent; ++i)
+            {
+                GoPoint adj = adjacent.get(i);
+                if (getColor(adj) != c)
+                    continue;
+                GoPoint root = findRoot(p);
+                GoPoint adjRoot = findRoot(adj);
+                if (root != adjRoot)
+                    merge(root, adjRoot);
+            }
+        }
+        for (GoPoint p : this)
+        {
+            if (getColor(p) == EMPTY)
+                continue;
+            ConstPointList adjacent = getAdjacent(p);
+            int nuAdjacent = adjacent.size();
+            for (int i = 0; i < nuAdjacent; ++i)
+                if (getColor(adjacent.get(i)) == EMPTY)
+                    ++m_liberties[findRoot(p).getIndex()];
+        }
+    }
+
+    /** Merge two blocks.
+        @return The root of the merged block. */
+    private GoPoint merge(GoPoint root1, GoPoint root2)
+    {
+        int index1 = root1.getIndex();
+        int index2 = root2.getIndex();
+        GoPoint root;
+        GoPoint child;
+        if (m_blockSize[index1] >= m_blockSize[index2])
+        {
+            root = root1;
+            child = root2;
+        }
+        else
+        {
+            root = root2;
+            child = root1;
+        }
+        int rootIndex = root.getIndex();
+        int childIndex = child.getIndex();
+        m_father[childIndex] = root;
+        m_blockSize[rootIndex] += m_blockSize[childIndex];
+        m_liberties[rootIndex] += m_liberties[childIndex];
+        swapNextStone(rootIndex, childIndex);
+        return root;
+    }
+
+    /** Remove a block without liberties from the board.
+        Increments the pseudo-liberties of the adjacent blocks. Keeps the
+        tree and stone list of the removed block for restoreBlock().
+        @param root The root of the block.
+        @param removed List to append the removed stones to. */
+    private void removeBlock(GoPoint root, PointList removed)
+    {
+        int start = removed.size();
+        GoPoint stone = root;
+        do
+        {
+            removed.add(stone);
+            setColor(stone, EMPTY);
+            stone = m_nextStone[stone.getIndex()];
+        }
+        while (stone != root);
+        int end = removed.size();
+        for (int i = start; i < end; ++i)
+            updateAdjacentLiberties(removed.get(i), 1);
+    }
+
+    /** Take back removeBlock() for a list of removed stones.
+        The stones of several blocks can be restored together, because
+        removed blocks of the same color are never adjacent. */
+    private void restoreBlock(ConstPointList removed, GoColor c)
+    {
+        int size = removed.size();
+        for (int i = 0; i < size; ++i)
+            updateAdjacentLiberties(removed.get(i), -1);
+        for (int i = 0; i < size; ++i)
+            setColor(removed.get(i), c);
+    }
+
+    /** Take back merge(). */
+    private void split(GoPoint child, GoPoint root)
+    {
+        int rootIndex = root.getIndex();
+        int childIndex = child.getIndex();
+        m_father[childIndex] = child;
+        m_blockSize[rootIndex] -= m_blockSize[childIndex];
+        m_liberties[rootIndex] -= m_liberties[childIndex];
+        swapNextStone(rootIndex, childIndex);
+    }
+
+    /** Swap the successors of two stones.
+        Joins two circular lists if the stones are in different lists and
+        splits them again if they are in the same list. */
+    private void swapNextStone(int index1, int index2)
+    {
+        GoPoint next = m_nextStone[index1];
+        m_nextStone[index1] = m_nextStone[index2];
+        m_nextStone[index2] = next;
+    }
+
+    private void updateAdjacentLiberties(GoPoint p, int n)
+    {
+        ConstPointList adjacent = getAdjacent(p);
+        int nuAdjacent = adjacent.size();
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            GoPoint adj = adjacent.get(i);
+            if (getColor(adj) != EMPTY)
+                m_liberties[findRoot(adj).getIndex()] += n;
+        }
+    }
+
     private boolean isSingleStoneSingleLib(GoPoint point, GoColor color)
     {
         if (getColor(point) != color)
@@ -670,7 +1111,23 @@ implements ConstBoard
     private void setColor(GoPoint p, GoColor c)
     {
         assert p != null;
-        m_color[p.getIndex()] = c;
+        int index = p.getIndex();
+        GoColor oldColor = m_color[index];
+        if (oldColor == c)
+            return;
+        m_color[index] = c;
+        if (m_changeLog.size() == MAX_CHANGE_LOG)
+        {
+            m_changeLogStart += MAX_CHANGE_LOG;
+            m_changeLog.clear();
+        }
+        m_changeLog.add(p);
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+        {
+            int rotatedIndex = m_constants.getRotatedIndex(i, index);
+            m_hash[i] ^= Zobrist.getStone(oldColor, rotatedIndex)
+                ^ Zobrist.getStone(c, rotatedIndex);
+        }
     }
 
     public GtpClientBase getGameRuler() {
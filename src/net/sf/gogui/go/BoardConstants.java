@@ -80,6 +80,16 @@ public final class BoardConstants
         return m_allPoints;
     }
 
+    /** Get index of a rotated point.
+        @param rotationMode The rotation mode in [0..NUMBER_ROTATIONS]
+        @param index The index of the point (see GoPoint.getIndex())
+        @return The index of the point rotated with BoardUtil.rotate()
+        @see BoardUtil#rotate */
+    public int getRotatedIndex(int rotationMode, int index)
+    {
+        return m_rotatedIndex[rotationMode][index];
+    }
+
     /** Get board size. */
     public int getSize()
     {
@@ -134,6 +144,8 @@ public final class BoardConstants
 
     private final ConstPointList[] m_adjacent;
 
+    private final int[][] m_rotatedIndex;
+
     private BoardConstants(int size)
     {
         m_size = size;
@@ -174,5 +186,11 @@ public final class BoardConstants
                     adjacent.add(GoPoint.get(x, y + 1));
                 m_adjacent[p.getIndex()] = adjacent;
             }
+        m_rotatedIndex =
+            new int[BoardUtil.NUMBER_ROTATIONS][GoPoint.NUMBER_INDEXES];
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+            for (GoPoint p : m_allPoints)
+                m_rotatedIndex[i][p.getIndex()] =
+                    BoardUtil.rotate(i, p, size).getIndex();
     }
 }
@@ -19,8 +19,16 @@ public interface ConstBoard
 
     int getCaptured(GoColor c);
 
+    boolean getChangedPoints(long changeCounter, PointList points);
+
+    long getChangeCounter();
+
     GoColor getColor(GoPoint p);
 
+    long getHash();
+
+    long getHash(int rotationMode);
+
     ConstPointList getKilled();
 
     Move getLastMove();
@@ -0,0 +1,297 @@
+// GameRulerSynchronizer.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpClientUtil;
+import net.sf.gogui.gtp.GtpError;
+
+/** Synchronizes a game ruler with a sequence of moves.
+    The synchronizer remembers the moves the ruler has played since the last
+    clear_board. When the ruler needs to be synchronized, only the moves
+    that differ from the wanted sequence are sent; the other moves are taken
+    back with undo, if the ruler supports it, and the new moves are sent
+    with a single play sequence command, if the ruler supports one.
+    The positions reported by gogui-rules_board and gogui-rules_side_to_move
+    are cached per move sequence, so that returning to a position that was
+    already visited does not need any GTP commands. The ruler itself is only
+    synchronized with the wanted sequence, before a command that depends on
+    its state is sent.
+    If GameRulerSynchronizer is used, no game state changing GTP commands
+    (like clear_board, play, undo) should be sent to the ruler outside this
+    class without calling setOutOfSync() afterwards. */
+public final class GameRulerSynchronizer
+{
+    /** Position of the ruler after a sequence of moves. */
+    static final class Position
+    {
+        /** Point colors from gogui-rules_board, indexed by GoPoint index.
+            Null, if the ruler does not support gogui-rules_board or its
+            response could not be parsed. */
+        public GoColor[] m_color;
+
+        /** Response to gogui-rules_side_to_move.
+            Null, if the ruler does not support the command. */
+        public GoColor m_toMove;
+
+        /** Parsed response to gogui-rules_legal_moves.
+            Null, if not queried yet. */
+        public LegalMoves m_legalMoves;
+    }
+
+    /** Parsed response to gogui-rules_legal_moves. */
+    static final class LegalMoves
+    {
+        /** Legal points, indexed by GoPoint index. */
+        public final BitSet m_points = new BitSet(GoPoint.NUMBER_INDEXES);
+
+        public boolean m_isPassLegal;
+
+        /** True, if the response was empty (game over). */
+        public boolean m_isEmpty;
+
+        public boolean isLegal(GoPoint p)
+        {
+            if (p == null)
+                return m_isPassLegal;
+            return m_points.get(p.getIndex());
+        }
+    }
+
+    public GameRulerSynchronizer(GtpClientBase gameRuler)
+    {
+        m_gameRuler = gameRuler;
+    }
+
+    /** Get the cached position for the wanted move sequence.
+        Queries the ruler, if the position is not in the cache.
+        @return The position or null, if no position was set. */
+    Position getPosition() throws GtpError
+    {
+        if (m_size < 0)
+            return null;
+        Position position = m_cache.get(m_moves);
+        if (position != null)
+            return position;
+        synchronize();
+        position = new Position();
+        if (m_gameRuler.isSupported("gogui-rules_board"))
+        {
+            String response = m_gameRuler.send("gogui-rules_board");
+            if (! response.equals(""))
+                position.m_color =
+                    GenericBoard.parseBoard(response, getRulerSize());
+        }
+        if (m_gameRuler.isSupported("gogui-rules_side_to_move"))
+            position.m_toMove = GenericBoard.parseColor(
+                                 m_gameRuler.send("gogui-rules_side_to_move"));
+        m_cache.put(new ArrayList<Move>(m_moves), position);
+        return position;
+    }
+
+    /** Get the number of legal move queries answered from the cache. */
+    public int getLegalMovesCacheHits()
+    {
+        return m_legalMovesCacheHits;
+    }
+
+    /** Get the number of legal move queries sent to the ruler. */
+    public int getLegalMovesCacheMisses()
+    {
+        return m_legalMovesCacheMisses;
+    }
+
+    /** Get the cached legal moves in the wanted position.
+        Sends gogui-rules_legal_moves, if the legal moves of the position
+        are not in the cache.
+        @return The legal moves or null, if no position was set. */
+    LegalMoves getLegalMoves() throws GtpError
+    {
+        Position position = getPosition();
+        if (position == null)
+            return null;
+        if (position.m_legalMoves != null)
+            ++m_legalMovesCacheHits;
+        else
+        {
+            ++m_legalMovesCacheMisses;
+            synchronize();
+            position.m_legalMoves = GenericBoard.parseLegalMoves(
+                                  m_gameRuler.send("gogui-rules_legal_moves"));
+        }
+        return position.m_legalMoves;
+    }
+
+    /** Get the cached side to move in the wanted position.
+        @return The side to move or null, if no position was set or the
+        ruler does not support gogui-rules_side_to_move. */
+    public GoColor getSideToMove() throws GtpError
+    {
+        Position position = getPosition();
+        if (position == null)
+            return null;
+        return position.m_toMove;
+    }
+
+    /** Set the wanted position and copy it to the board.
+        Does not send any commands to the ruler, if the position is in the
+        cache.
+        @param size The board size for clear_board.
+        @param moves The moves played after clear_board in the order they
+        were played.
+        @param board The board to copy the ruler's position to. */
+    public void setPosition(int size, List<Move> moves, Board board)
+        throws GtpError
+    {
+        if (size != m_size)
+        {
+            m_size = size;
+            m_rulerSize = -1;
+            m_rulerMoves = null;
+            m_cache.clear();
+        }
+        m_moves.clear();
+        m_moves.addAll(moves);
+        Position position = getPosition();
+        if (position.m_color != null)
+            GenericBoard.setPoints(position.m_color, board);
+    }
+
+    /** Forget the state of the ruler.
+        Needs to be called if state changing commands were sent to the ruler
+        outside this class. The next synchronization will start with
+        clear_board. */
+    public void setOutOfSync()
+    {
+        m_rulerMoves = null;
+    }
+
+    /** Send the commands to bring the ruler to the wanted position.
+        Does nothing, if no position was set or the ruler is already in the
+        wanted position. */
+    public void synchronize() throws GtpError
+    {
+        if (m_size < 0)
+            return;
+        int numberCommonMoves = 0;
+        if (m_rulerMoves != null)
+        {
+            while (numberCommonMoves < m_rulerMoves.size()
+                   && numberCommonMoves < m_moves.size()
+                   && m_rulerMoves.get(numberCommonMoves)
+                      == m_moves.get(numberCommonMoves))
+                ++numberCommonMoves;
+            int numberUndo = m_rulerMoves.size() - numberCommonMoves;
+            // Replaying from clear_board is cheaper than many undos, if the
+            // moves can be sent with a single command
+            int maxUndo = (GtpClientUtil.isPlaySequenceSupported(m_gameRuler)
+                           ? 2 : numberCommonMoves + 1);
+            if (numberUndo > 0
+                && (! m_gameRuler.isSupported("undo") || numberUndo > maxUndo
+                    || ! undo(numberUndo)))
+                m_rulerMoves = null;
+        }
+        if (m_rulerMoves == null)
+        {
+            m_gameRuler.sendClearBoard(m_size);
+            m_rulerMoves = new ArrayList<Move>(m_moves.size());
+            numberCommonMoves = 0;
+        }
+        play(m_moves.subList(numberCommonMoves, m_moves.size()));
+    }
+
+    private static final int MAX_CACHE_SIZE = 2000;
+
+    private int m_size = -1;
+
+    private int m_legalMovesCacheHits;
+
+    private int m_legalMovesCacheMisses;
+
+    /** Board size reported by gogui-rules_board_size, -1 if not queried
+        yet. */
+    private int m_rulerSize = -1;
+
+    private final GtpClientBase m_gameRuler;
+
+    /** Moves played by the ruler since the last clear_board.
+        Null, if the state of the ruler is unknown. */
+    private ArrayList<Move> m_rulerMoves;
+
+    /** Wanted move sequence. */
+    private final ArrayList<Move> m_moves = new ArrayList<Move>();
+
+    private final Map<List<Move>,Position> m_cache =
+        new LinkedHashMap<List<Move>,Position>(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry<List<Move>,
+                                                Position> eldest)
+            {
+                return size() > MAX_CACHE_SIZE;
+            }
+        };
+
+    private int getRulerSize() throws GtpError
+    {
+        if (m_rulerSize < 0)
+        {
+            m_rulerSize = GenericBoard.getBoardSize(m_gameRuler);
+            if (m_rulerSize < 0)
+                m_rulerSize = m_size;
+        }
+        return m_rulerSize;
+    }
+
+    private void play(List<Move> moves) throws GtpError
+    {
+        if (moves.isEmpty())
+            return;
+        try
+        {
+            if (moves.size() > 1
+                && GtpClientUtil.isPlaySequenceSupported(m_gameRuler))
+            {
+                m_gameRuler.send(GtpClientUtil.getPlaySequenceCommand(
+                                     m_gameRuler, new ArrayList<Move>(moves)));
+                m_rulerMoves.addAll(moves);
+            }
+            else
+                for (Move move : moves)
+                {
+                    m_gameRuler.sendPlay(move);
+                    m_rulerMoves.add(move);
+                }
+        }
+        catch (GtpError e)
+        {
+            // A play sequence command could have been partially executed
+            m_rulerMoves = null;
+            throw e;
+        }
+    }
+
+    /** Take back moves with undo.
+        @return false, if an undo command failed. According to the GTP
+        standard, undo may fail even if it is supported. */
+    private boolean undo(int n)
+    {
+        for (int i = 0; i < n; ++i)
+        {
+            try
+            {
+                m_gameRuler.send("undo");
+            }
+            catch (GtpError e)
+            {
+                return false;
+            }
+            m_rulerMoves.remove(m_rulerMoves.size() - 1);
+        }
+        return true;
+    }
+}
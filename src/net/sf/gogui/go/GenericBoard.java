@@ -6,6 +6,8 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import net.sf.gogui.game.ConstNode;
 
@@ -13,6 +15,7 @@ import static net.sf.gogui.go.GoColor.EMPTY;
 
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.util.StringUtil;
 
 /**
  * final class containing the methods used if a gtp gameRuler is attached
@@ -22,10 +25,37 @@ import net.sf.gogui.gtp.GtpError;
  */
 public final class GenericBoard {
 
+    /**
+     * Get the synchronizer used for a game ruler.
+     * Creates a new synchronizer, if the game ruler has none yet.
+     */
+    public static synchronized GameRulerSynchronizer
+        getSynchronizer(GtpClientBase gameRuler)
+    {
+        GameRulerSynchronizer synchronizer = s_synchronizers.get(gameRuler);
+        if (synchronizer == null)
+        {
+            synchronizer = new GameRulerSynchronizer(gameRuler);
+            s_synchronizers.put(gameRuler, synchronizer);
+        }
+        return synchronizer;
+    }
+
     public static GoColor getSideToMove(GtpClientBase gameRuler, Move move) throws GtpError {
+        GameRulerSynchronizer synchronizer = findSynchronizer(gameRuler);
+        if (synchronizer != null)
+        {
+            GoColor sideToMove = synchronizer.getSideToMove();
+            if (sideToMove != null)
+                return sideToMove;
+        }
         if (! gameRuler.isSupported("gogui-rules_side_to_move"))
             return move.getColor().otherColor();
-        String color = gameRuler.send("gogui-rules_side_to_move");
+        return parseColor(gameRuler.send("gogui-rules_side_to_move"));
+    }
+
+    static GoColor parseColor(String color)
+    {
         char c = color.charAt(0);
         GoColor sideToMove;
         if (c == 'b' || c == 'B')
@@ -38,7 +68,7 @@ public final class GenericBoard {
     public static boolean isGameOver(GtpClientBase gameRuler) throws GtpError {
         if (! gameRuler.isSupported("gogui-rules_legal_moves"))
             return false;
-        return getLegalMoves(gameRuler).equals("");
+        return queryLegalMoves(gameRuler).m_isEmpty;
     }
 
     /**
@@ -48,13 +78,15 @@ public final class GenericBoard {
     {
         if (! gameRuler.isSupported("gogui-rules_legal_moves"))
             return false;
-        String legalMoves = getLegalMoves(gameRuler);
-        return (move.getColor().equals(GenericBoard.getSideToMove(gameRuler, move)) && (legalMoves.contains(move.getPoint().toString())
-                || legalMoves.contains("pass") && move.getPoint() == null));
+        GameRulerSynchronizer.LegalMoves legalMoves =
+            queryLegalMoves(gameRuler);
+        return (move.getColor().equals(GenericBoard.getSideToMove(gameRuler, move))
+                && legalMoves.isLegal(move.getPoint()));
     }
 
     public static String getLegalMoves(GtpClientBase gameRuler) throws GtpError
     {
+        synchronize(gameRuler);
         return gameRuler.send("gogui-rules_legal_moves");
     }
 
@@ -68,8 +100,33 @@ public final class GenericBoard {
             return true;
         if (! gameRuler.isSupported("gogui-rules_legal_moves"))
             return false;
-        String legalMoves = getLegalMoves(gameRuler);
-        return legalMoves.contains("pass") || legalMoves.contains("PASS");
+        return queryLegalMoves(gameRuler).m_isPassLegal;
+    }
+
+    /**
+     * Parses a response to gogui-rules_legal_moves.
+     * Tokens that are not valid points or pass moves are ignored.
+     */
+    static GameRulerSynchronizer.LegalMoves parseLegalMoves(String response)
+    {
+        GameRulerSynchronizer.LegalMoves legalMoves =
+            new GameRulerSynchronizer.LegalMoves();
+        legalMoves.m_isEmpty = response.equals("");
+        for (String s : StringUtil.splitArguments(response))
+        {
+            try
+            {
+                GoPoint p = GoPoint.parsePoint(s, GoPoint.MAX_SIZE);
+                if (p == null)
+                    legalMoves.m_isPassLegal = true;
+                else
+                    legalMoves.m_points.set(p.getIndex());
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+        return legalMoves;
     }
 
     /**
@@ -78,8 +135,27 @@ public final class GenericBoard {
     public static void sendPlay(GtpClientBase gameRuler, Board board, Move move)
     {
         try {
-            gameRuler.sendPlay(move);
-            GenericBoard.copyRulerBoardState(gameRuler, board);
+            if (board.getGameRuler() == gameRuler)
+            {
+                // The move is usually already played on the board
+                ArrayList<Move> moves = new ArrayList<Move>();
+                for (int i = 0; i < board.getNumberMoves(); ++i)
+                    moves.add(board.getMove(i));
+                if (board.getLastMove() != move)
+                    moves.add(move);
+                getSynchronizer(gameRuler).setPosition(board.getSize(),
+                                                       moves, board);
+            }
+            else
+            {
+                synchronize(gameRuler);
+                gameRuler.sendPlay(move);
+                GameRulerSynchronizer synchronizer =
+                    findSynchronizer(gameRuler);
+                if (synchronizer != null)
+                    synchronizer.setOutOfSync();
+                GenericBoard.copyRulerBoardState(gameRuler, board);
+            }
             GenericBoard.setToMove(gameRuler, board, move);
         } catch (GtpError e) {
         }
@@ -121,6 +197,7 @@ public final class GenericBoard {
             return;
         String rulerBoardState = "";
         try {
+            synchronize(gameRuler);
             rulerBoardState = gameRuler.send("gogui-rules_board");
         } catch (GtpError e) {
             return;
@@ -136,13 +213,23 @@ public final class GenericBoard {
     }
 
     private static void setup(String position, Board board, int size)
+    {
+        GoColor[] colors = parseBoard(position, size);
+        if (colors != null)
+            setPoints(colors, board);
+    }
+
+    /**
+     * Parses a response to gogui-rules_board.
+     * @return The point colors indexed by GoPoint index, null if the
+     * response could not be parsed.
+     */
+    static GoColor[] parseBoard(String position, int size)
     {
         try
         {
+            GoColor[] colors = new GoColor[GoPoint.NUMBER_INDEXES];
             int nbChar = 0;
-            PointList blacksSetup = new PointList();
-            PointList whitesSetup = new PointList();
-            PointList emptySetup = new PointList();
             for (int i = 0; i < size; i++) {
                 int j = -1;
                 char c = ' ';
@@ -159,47 +246,60 @@ public final class GenericBoard {
                         j++;
                     }
 
+                    GoColor color;
                     if ( c == 'X')
-                    {
-                        GoPoint black = GoPoint.get(j, size-i-1);
-                        if (board.getColor(black) != BLACK)
-                        {
-                            blacksSetup.add(black);
-                        }
-                    }
+                        color = BLACK;
                     else if (c == 'O')
-                    {
-                        GoPoint white = GoPoint.get(j, size-i-1);
-                        if (board.getColor(white) != WHITE)
-                        {
-                            whitesSetup.add(white);
-                        }
-                    }
+                        color = WHITE;
                     else if (c == '.')
-                    {
-                        GoPoint empty = GoPoint.get(j, size-i-1);
-                        if (board.getColor(empty) != EMPTY) {
-                            emptySetup.add(empty);
-                        }
-                    }
+                        color = EMPTY;
+                    else
+                        continue;
+                    colors[GoPoint.get(j, size-i-1).getIndex()] = color;
                 } while (j < size-1);
             }
-            board.setPoints(blacksSetup, BLACK);
-            board.setPoints(whitesSetup, WHITE);
-            board.setPoints(emptySetup, EMPTY);
+            return colors;
         }
         catch (Exception e)
         {
+            return null;
         }
     }
 
+    /**
+     * Forces the colors of the points that differ from the board.
+     * @param colors The point colors indexed by GoPoint index, null for
+     * points that should not be changed.
+     */
+    static void setPoints(GoColor[] colors, Board board)
+    {
+        PointList blacksSetup = new PointList();
+        PointList whitesSetup = new PointList();
+        PointList emptySetup = new PointList();
+        for (GoPoint p : board)
+        {
+            GoColor c = colors[p.getIndex()];
+            if (c == null || board.getColor(p) == c)
+                continue;
+            if (c == BLACK)
+                blacksSetup.add(p);
+            else if (c == WHITE)
+                whitesSetup.add(p);
+            else
+                emptySetup.add(p);
+        }
+        board.setPoints(blacksSetup, BLACK);
+        board.setPoints(whitesSetup, WHITE);
+        board.setPoints(emptySetup, EMPTY);
+    }
+
     public static boolean isSetupPossible(GtpClientBase gameRuler)
     {
         return gameRuler != null && gameRuler.isSupported("gogui-rules_setup");
     }
 
     /**
-     * Clears the ruler board and plays moves from the beginning.
+     * Sets the ruler position to the moves from the root to a node.
      * Then copy the ruler board changes to the board.
      */
     public static void copyBoardState(GtpClientBase gameRuler, ConstNode node, Board board)
@@ -207,7 +307,8 @@ public final class GenericBoard {
         ArrayList<Move> moves = new ArrayList<Move>();
         while (node.hasFather())
         {
-            moves.add(node.getMove());
+            if (node.getMove() != null)
+                moves.add(node.getMove());
             node = node.getFatherConst();
         }
         try {
@@ -216,15 +317,68 @@ public final class GenericBoard {
         }
     }
 
+    /**
+     * Sets the ruler position to a sequence of moves from the beginning and
+     * copies the ruler board changes to the board.
+     * Uses the synchronizer of the ruler, so that only the moves that differ
+     * from the current ruler position are sent, and no commands at all are
+     * sent if the position was already visited.
+     * @param moves The moves in reverse order (last move first).
+     */
     public static void playFromBeginning(GtpClientBase gameRuler, ArrayList<Move> moves, Board board) throws GtpError {
-        gameRuler.sendClearBoard(board.getSize());
+        ArrayList<Move> sequence = new ArrayList<Move>(moves.size());
         for (int i = moves.size() - 1; i >= 0; i--)
         {
-            gameRuler.sendPlay(moves.get(i));
+            sequence.add(moves.get(i));
+        }
+        getSynchronizer(gameRuler).setPosition(board.getSize(), sequence,
+                                               board);
+    }
+
+    /**
+     * Brings the ruler to the wanted position of its synchronizer.
+     * Needs to be called before a command that depends on the ruler state is
+     * sent directly to the ruler.
+     */
+    public static void synchronize(GtpClientBase gameRuler) throws GtpError
+    {
+        GameRulerSynchronizer synchronizer = findSynchronizer(gameRuler);
+        if (synchronizer != null)
+            synchronizer.synchronize();
+    }
+
+    /**
+     * Gets the legal moves from the cache of the synchronizer of the ruler,
+     * or queries and parses them, if the ruler has no synchronizer with a
+     * wanted position.
+     */
+    private static GameRulerSynchronizer.LegalMoves
+        queryLegalMoves(GtpClientBase gameRuler) throws GtpError
+    {
+        GameRulerSynchronizer synchronizer = findSynchronizer(gameRuler);
+        if (synchronizer != null)
+        {
+            GameRulerSynchronizer.LegalMoves legalMoves =
+                synchronizer.getLegalMoves();
+            if (legalMoves != null)
+                return legalMoves;
         }
-        GenericBoard.copyRulerBoardState(gameRuler, board);
+        return parseLegalMoves(getLegalMoves(gameRuler));
     }
 
+    /**
+     * Synchronizers of the game rulers.
+     * Weak keys, so that closed rulers can be garbage collected.
+     */
+    private static final Map<GtpClientBase,GameRulerSynchronizer>
+        s_synchronizers =
+        new WeakHashMap<GtpClientBase,GameRulerSynchronizer>();
+
+    private static synchronized GameRulerSynchronizer
+        findSynchronizer(GtpClientBase gameRuler)
+    {
+        return s_synchronizers.get(gameRuler);
+    }
     
     //Makes the constructor unavailable.
     private GenericBoard()
@@ -2,30 +2,38 @@
 
 package net.sf.gogui.go;
 
-/** Mark points on a Go board. */
+import java.util.Arrays;
+
+/** Mark points on a Go board.
+    A point is marked, if its stamp equals the current generation, so that
+    clearing all points only needs to increment the generation. */
 public class Marker
 {
     /** Constructor.
         @param size Size of the board. */
     public Marker(int size)
     {
-        m_size = size;
-        m_mark = new boolean[GoPoint.NUMBER_INDEXES];
+        m_mark = new int[GoPoint.NUMBER_INDEXES];
     }
 
     /** Clear all marked points. */
     public void clear()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                m_mark[GoPoint.getIndex(x, y)] = false;
+        ++m_generation;
+        if (m_generation == 0)
+        {
+            // Overflow, stamps of old generations could become valid again
+            Arrays.fill(m_mark, 0);
+            m_generation = 1;
+        }
+        m_numberMarked = 0;
     }
 
     /** Clear a marked point.
         @param p The point to clear. */
     public void clear(GoPoint p)
     {
-        m_mark[p.getIndex()] = false;
+        set(p, false);
     }
 
     /** Clear all points from a list.
@@ -35,7 +43,7 @@ public class Marker
         int nuPoints = points.size();
         // Don't use an iterator for efficiency
         for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = false;
+            set(points.get(i), false);
     }
 
     /** Check if a point is marked.
@@ -43,25 +51,21 @@ public class Marker
         @return true, if point is marked, false otherwise. */
     public boolean get(GoPoint p)
     {
-        return m_mark[p.getIndex()];
+        return m_mark[p.getIndex()] == m_generation;
     }
 
     /** Check if no point is marked.
         @return true, if no point is marked, false otherwise. */
     public boolean isCleared()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                if (m_mark[GoPoint.getIndex(x, y)])
-                    return false;
-        return true;
+        return m_numberMarked == 0;
     }
 
     /** Mark a point.
         @param p The point to mark. */
     public void set(GoPoint p)
     {
-        m_mark[p.getIndex()] = true;
+        set(p, true);
     }
 
     /** Mark or clear a point.
@@ -70,7 +74,20 @@ public class Marker
         be cleared. */
     public void set(GoPoint p, boolean value)
     {
-        m_mark[p.getIndex()] = value;
+        int index = p.getIndex();
+        boolean isMarked = (m_mark[index] == m_generation);
+        if (value == isMarked)
+            return;
+        if (value)
+        {
+            m_mark[index] = m_generation;
+            ++m_numberMarked;
+        }
+        else
+        {
+            m_mark[index] = 0;
+            --m_numberMarked;
+        }
     }
 
     /** Mark all points from a list.
@@ -80,10 +97,13 @@ public class Marker
         int nuPoints = points.size();
         // Don't use an iterator for efficiency
         for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = true;
+            set(points.get(i), true);
     }
 
-    private final int m_size;
+    /** Current generation, never zero. */
+    private int m_generation = 1;
+
+    private int m_numberMarked;
 
-    private boolean m_mark[];
+    private final int[] m_mark;
 }
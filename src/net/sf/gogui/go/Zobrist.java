@@ -0,0 +1,69 @@
+// Zobrist.java
+
+package net.sf.gogui.go;
+
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+/** Random values for Zobrist hashing of Go positions.
+    The hash code of a position is the exclusive or of the values of its
+    stones, its ko point and the color to move.
+    The values are generated with a fixed seed, so that hash codes are the
+    same in every run and can be stored in files.
+    @see Board#getHash() */
+public final class Zobrist
+{
+    /** Get value of a stone.
+        @param c The color of the stone.
+        @param index The index of the point (see GoPoint.getIndex())
+        @return The value, zero for EMPTY. */
+    public static long getStone(GoColor c, int index)
+    {
+        if (c == BLACK)
+            return BLACK_STONE[index];
+        if (c == WHITE)
+            return WHITE_STONE[index];
+        return 0;
+    }
+
+    /** Get value of a ko point.
+        @param index The index of the point (see GoPoint.getIndex()) */
+    public static long getKo(int index)
+    {
+        return KO[index];
+    }
+
+    /** Get value that is added if White is to move. */
+    public static long getWhiteToMove()
+    {
+        return WHITE_TO_MOVE;
+    }
+
+    private static final long[] BLACK_STONE =
+        new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long[] WHITE_STONE =
+        new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long[] KO = new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long WHITE_TO_MOVE;
+
+    static
+    {
+        Random random = new Random(0x5a6f627269737431L);
+        for (int i = 0; i < GoPoint.NUMBER_INDEXES; ++i)
+        {
+            BLACK_STONE[i] = random.nextLong();
+            WHITE_STONE[i] = random.nextLong();
+            KO[i] = random.nextLong();
+        }
+        WHITE_TO_MOVE = random.nextLong();
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private Zobrist()
+    {
+    }
+}
@@ -11,6 +11,7 @@ import java.awt.Frame;
 import java.awt.Insets;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.event.WindowAdapter;
@@ -29,6 +30,7 @@ import java.io.StringReader;
 import java.net.URL;
 import static java.text.MessageFormat.format;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 import java.util.regex.Pattern;
@@ -39,7 +41,9 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSplitPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
+import net.sf.gogui.game.CompactGameTree;
 import net.sf.gogui.game.ConstClock;
 import net.sf.gogui.game.ConstGame;
 import net.sf.gogui.game.ConstGameInfo;
@@ -54,6 +58,8 @@ import net.sf.gogui.game.StringInfo;
 import net.sf.gogui.game.StringInfoColor;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.gamefile.GameFile;
+import net.sf.gogui.gamefile.GameJournal;
+import net.sf.gogui.gamefile.GameJournalReader;
 import net.sf.gogui.gamefile.GameReader;
 import net.sf.gogui.gamefile.GameWriter;
 import net.sf.gogui.go.Board;
@@ -87,6 +93,7 @@ import net.sf.gogui.gtp.GtpClient.ExecFailed;
 import net.sf.gogui.gtp.GtpResponseFormatError;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import net.sf.gogui.gtp.GtpUtil;
+import net.sf.gogui.gui.AnalyzeCache;
 import net.sf.gogui.gui.AnalyzeDialog;
 import net.sf.gogui.gui.AnalyzeShow;
 import net.sf.gogui.gui.BoardSizeDialog;
@@ -100,6 +107,7 @@ import net.sf.gogui.gui.GameInfoDialog;
 import net.sf.gogui.gui.GameInfoPanel;
 import net.sf.gogui.gui.GameTreePanel;
 import net.sf.gogui.gui.GameTreeViewer;
+import net.sf.gogui.gui.GfxOverlay;
 import net.sf.gogui.gui.GtpShell;
 import net.sf.gogui.gui.GuiAction;
 import net.sf.gogui.gui.GuiBoard;
@@ -1648,6 +1656,8 @@ ContextMenu.Listener, LiveGfx.Listener
         }
         if (! synchronizeProgram())
             return;
+        // The command can change parameters of the program
+        m_analyzeCache.clear();
         Runnable callback = new Runnable() {
             public void run() {
                 endLengthyCommand(isCritical, showError);
@@ -1716,7 +1726,7 @@ ContextMenu.Listener, LiveGfx.Listener
             toFront();
             return;
         }
-        analyzeBegin(false);
+        analyzeBegin(false, false);
     }
 
     public void actionSetOrientation(Orientation orientation)
@@ -1794,6 +1804,14 @@ ContextMenu.Listener, LiveGfx.Listener
             m_analyzeDialog.toFront();
     }
 
+    public void actionShowMetrics()
+    {
+        if (m_gtp == null || m_shell == null)
+            return;
+        showShell();
+        m_shell.showMetrics(m_gtp.getMetrics());
+    }
+
     public void actionShowShell()
     {
         showShell();
@@ -2181,7 +2199,7 @@ ContextMenu.Listener, LiveGfx.Listener
             m_analyzeCommand.setPointArg(p);
             m_guiBoard.clearAllSelect();
             m_guiBoard.setSelect(p, true);
-            analyzeBegin(false);
+            analyzeBegin(false, false);
         }
         else if (m_analyzeCommand != null
                 && m_analyzeCommand.needsPointListArg())
@@ -2200,7 +2218,7 @@ ContextMenu.Listener, LiveGfx.Listener
             m_guiBoard.clearAllSelect();
             GuiBoardUtil.setSelect(m_guiBoard, pointListArg, true);
             if (modifiedSelect && pointListArg.size() > 0)
-                analyzeBegin(false);
+                analyzeBegin(false, false);
         }
         else if (m_scoreMode && ! modifiedSelect)
         {
@@ -2358,7 +2376,7 @@ ContextMenu.Listener, LiveGfx.Listener
         return (m_gtp != null && m_gtp.isProgramDead());
     }
 
-    public void showLiveGfx(String text)
+    public void showLiveGfx(GfxOverlay overlay)
     {
         assert SwingUtilities.isEventDispatchThread();
         // The live gfx events can arrive delayed, we don't want to allow
@@ -2367,7 +2385,7 @@ ContextMenu.Listener, LiveGfx.Listener
             return;
         m_guiBoard.clearAll();
         GuiBoardUtil.updateFromGoBoard(m_guiBoard, getBoard(), false, false);
-        AnalyzeShow.showGfx(text, m_guiBoard, m_statusBar, null);
+        overlay.show(m_guiBoard, m_statusBar, null);
     }
 
     private class AnalyzeContinue
@@ -2405,12 +2423,38 @@ ContextMenu.Listener, LiveGfx.Listener
         }
     }
 
+    private static class SaveFileRunnable
+    implements GuiUtil.ProgressRunnable
+    {
+        public SaveFileRunnable(GameFile gameFile, ConstGameTree tree)
+        {
+            m_gameFile = gameFile;
+            m_tree = tree;
+        }
+
+        public void run(ProgressShow progressShow) throws Throwable
+        {
+            new GameWriter(m_gameFile, m_tree, i18n("LB_GOGUI"),
+                    Version.get(), progressShow);
+        }
+
+        private final ConstGameTree m_tree;
+
+        private final GameFile m_gameFile;
+    }
+
     private static class LoadFileRunnable
     implements GuiUtil.ProgressRunnable
     {
-        public LoadFileRunnable(File file)
+        public LoadFileRunnable(File file, boolean lazy)
         {
             m_file = file;
+            m_lazy = lazy;
+        }
+
+        public SgfReader getSgfReader()
+        {
+            return m_reader.getSgfReader();
         }
 
         public GameTree getTree()
@@ -2430,14 +2474,36 @@ ContextMenu.Listener, LiveGfx.Listener
 
         public void run(ProgressShow progressShow) throws Throwable
         {
-            m_reader = new GameReader(m_file, progressShow);
+            m_reader = new GameReader(m_file, progressShow, m_lazy);
         }
 
+        private final boolean m_lazy;
+
         private final File m_file;
 
         private GameReader m_reader;
     }
 
+    /** Files larger than this size in bytes are read in lazy mode. */
+    private static final long LAZY_FILE_SIZE = 20000000;
+
+    /** Trees with more nodes are saved with a progress dialog. */
+    private static final int SAVE_PROGRESS_NODES = 50000;
+
+    /** Interval for writing changes to the autosave journal in ms. */
+    private static final int JOURNAL_INTERVAL = 10000;
+
+    /** Minimum interval for copying the game tree to the autosave journal
+        in ms.
+        The copy is needed after changes that cannot be written
+        incrementally, like deleting nodes, and is created in the event
+        dispatch thread. */
+    private static final int JOURNAL_COPY_INTERVAL = 60000;
+
+    /** Maximum number of created nodes of a game tree read in lazy mode.
+        @see SgfReader#unloadSubtrees(ConstNode, int) */
+    private static final int MAX_LAZY_NODES = 1000000;
+
     private boolean m_analyzeAutoRun;
 
     private boolean m_analyzeClearBoard;
@@ -2538,6 +2604,12 @@ ContextMenu.Listener, LiveGfx.Listener
 
     private final Game m_game;
 
+    /** Reader of the current game tree, if it was read in lazy mode. */
+    private SgfReader m_lazyReader;
+
+    /** Was the load error of m_lazyReader already shown? */
+    private boolean m_lazyLoadErrorShown;
+
     private GoColor m_setupColor;
 
     private final MessageDialogs m_messageDialogs = new MessageDialogs();
@@ -2574,6 +2646,31 @@ ContextMenu.Listener, LiveGfx.Listener
     private final Preferences m_prefs =
             Preferences.userNodeForPackage(getClass());
 
+    /** Responses of analyze commands for positions visited before.
+        Used if an analyze command is run automatically after a change of
+        the board. */
+    private final AnalyzeCache m_analyzeCache =
+            new AnalyzeCache(m_prefs.getInt("analyze-cache-size", 500));
+
+    /** Key for storing the response of the running analyze command.
+        Null if the response cannot be cached. */
+    private AnalyzeCache.Key m_analyzeCacheKey;
+
+    /** Journal for restoring the game after a crash.
+        Null if autosave is disabled or the journal is used by another
+        instance of GoGui. */
+    private GameJournal m_journal;
+
+    /** Earliest time for the next copy of the tree to the journal.
+        @see #JOURNAL_COPY_INTERVAL */
+    private long m_journalCopyTime;
+
+    /** The user was told that the journal is not updated anymore for the
+        current game. */
+    private boolean m_journalSuspendedShown;
+
+    private Timer m_journalTimer;
+
     private ScoreDialog m_scoreDialog;
 
     private ArrayList<AnalyzeDefinition> m_analyzeCommands;
@@ -2613,14 +2710,43 @@ ContextMenu.Listener, LiveGfx.Listener
     /** Snapshot used in actionSnapshotParameters and actionRestoreParameters. */
     private File m_parameterSnapshot;
 
-    private void analyzeBegin(boolean checkComputerMove)
+    /** Run the current analyze command.
+        @param checkComputerMove Check if the computer should move after
+        the response was shown.
+        @param useCache Show a response from m_analyzeCache if there is one
+        for the command and position, instead of sending the command.
+        Otherwise the command is sent and the stored response replaced,
+        so that running a command explicitly refreshes the cache. */
+    private void analyzeBegin(boolean checkComputerMove, boolean useCache)
     {
         if (m_gtp == null || m_analyzeCommand == null
-                || m_analyzeCommand.isPointArgMissing()
-                || ! synchronizeProgram())
+                || m_analyzeCommand.isPointArgMissing())
             return;
         GoColor toMove = getToMove();
-        m_lastAnalyzeCommand = m_analyzeCommand.replaceWildCards(toMove);
+        String command = m_analyzeCommand.replaceWildCards(toMove);
+        AnalyzeCache.Key key = null;
+        if (AnalyzeCache.isCacheable(m_analyzeCommand.getType()))
+        {
+            key = new AnalyzeCache.Key(command, getBoard(),
+                                       getGameInfo().getKomi());
+            String response = (useCache ? m_analyzeCache.get(key) : null);
+            if (response != null && ! isCommandInProgress())
+            {
+                m_lastAnalyzeCommand = command;
+                if (m_analyzeClearBoard)
+                    resetBoard();
+                clearStatus();
+                showAnalyzeResponse(response, checkComputerMove, true);
+                return;
+            }
+        }
+        else
+            // Other commands can change the state of the program
+            m_analyzeCache.clear();
+        if (! synchronizeProgram())
+            return;
+        m_lastAnalyzeCommand = command;
+        m_analyzeCacheKey = key;
         runLengthyCommand(m_lastAnalyzeCommand,
                 new AnalyzeContinue(checkComputerMove));
         showStatus(format(i18n("STAT_RUNNING"),
@@ -2641,10 +2767,25 @@ ContextMenu.Listener, LiveGfx.Listener
             resetBoard();
             return;
         }
+        String response = m_gtp.getResponse();
+        if (showAnalyzeResponse(response, checkComputerMove, false)
+            && m_analyzeCacheKey != null)
+            m_analyzeCache.put(m_analyzeCacheKey, response);
+        m_analyzeCacheKey = null;
+    }
+
+    /** Show the response to the current analyze command.
+        @param response The response.
+        @param checkComputerMove Check if the computer should move.
+        @param isCached True, if the response is from m_analyzeCache.
+        @return false, if the response had an invalid format. */
+    private boolean showAnalyzeResponse(String response,
+                                        boolean checkComputerMove,
+                                        boolean isCached)
+    {
         String title = m_analyzeCommand.getResultTitle();
         try
         {
-            String response = m_gtp.getResponse();
             StringBuilder showTextBuffer = new StringBuilder(256);
             AnalyzeShow.show(m_analyzeCommand, m_guiBoard, m_statusBar,
                     getBoard(), response, showTextBuffer);
@@ -2683,15 +2824,21 @@ ContextMenu.Listener, LiveGfx.Listener
                             m_analyzeReuseTextWindow);
                 }
             }
-            if ("".equals(m_statusBar.getText()) && type != AnalyzeType.PARAM)
+            if (isCached && (showText == null || showText.indexOf("\n") >= 0))
+                showStatus(format(i18n("STAT_ANALYZE_CACHED"), title,
+                                  m_analyzeCache.getHitRate()));
+            else if ("".equals(m_statusBar.getText())
+                     && type != AnalyzeType.PARAM)
                 showStatus(title);
             if (checkComputerMove)
                 checkComputerMove();
+            return true;
         }
         catch (GtpResponseFormatError e)
         {
             showStatus(title);
             showError(e);
+            return false;
         }
         finally
         {
@@ -2849,7 +2996,10 @@ ContextMenu.Listener, LiveGfx.Listener
 
             private final LineReader m_lineReader = new LineReader();
 
-            private LiveGfx m_liveGfx = new LiveGfx(GoGui.this);
+            private LiveGfx m_liveGfx =
+                new LiveGfx(GoGui.this,
+                            m_prefs.getInt("livegfx-max-frame-rate",
+                                           LiveGfx.DEFAULT_MAX_FRAME_RATE));
         };
         GtpSynchronizer.Listener synchronizerCallback =
                 new GtpSynchronizer.Listener() {
@@ -2910,6 +3060,7 @@ ContextMenu.Listener, LiveGfx.Listener
             {
                 m_gtp = new GuiGtpClient(gtp, this, synchronizerCallback,
                         m_messageDialogs);
+                m_analyzeCache.clear();
                 m_gtp.queryName();
                 m_gtp.queryProtocolVersion();
                 try
@@ -3017,7 +3168,6 @@ ContextMenu.Listener, LiveGfx.Listener
     private void boardChangedBegin(boolean doCheckComputerMove,
             boolean gameTreeChanged)
     {
-        updateFromGoBoard();
         updateViews(gameTreeChanged);
         if (m_analyzeDialog != null)
             m_analyzeDialog.setSelectedColor(getToMove());
@@ -3026,7 +3176,7 @@ ContextMenu.Listener, LiveGfx.Listener
                 && m_analyzeCommand != null
                 && m_analyzeAutoRun
                 && ! m_analyzeCommand.isPointArgMissing())
-            analyzeBegin(doCheckComputerMove);
+            analyzeBegin(doCheckComputerMove, true);
         else
         {
             resetBoard();
@@ -3205,6 +3355,25 @@ ContextMenu.Listener, LiveGfx.Listener
         }
     }
 
+    /** Show an error once, if creating nodes of a game tree read in lazy
+        mode failed. */
+    private void checkLazyLoadError()
+    {
+        if (m_lazyReader == null || m_lazyLoadErrorShown)
+            return;
+        final String error = m_lazyReader.getLoadError();
+        if (error == null)
+            return;
+        m_lazyLoadErrorShown = true;
+        // Not shown within updateViews()
+        SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    showError(i18n("MSG_INCOMPLETE_TREE"),
+                              format(i18n("MSG_INCOMPLETE_TREE_2"), error),
+                              false);
+                } });
+    }
+
     private void clearStatus()
     {
         m_statusBar.clear();
@@ -3214,6 +3383,7 @@ ContextMenu.Listener, LiveGfx.Listener
     {
         if (! checkSaveGame(true))
             return;
+        closeJournal(true);
         saveSession();
         setVisible(false);
         SwingUtilities.invokeLater(new Runnable() {
@@ -3229,6 +3399,15 @@ ContextMenu.Listener, LiveGfx.Listener
         });
     }
 
+    private void closeJournal(boolean delete)
+    {
+        if (m_journal == null)
+            return;
+        m_journalTimer.stop();
+        m_journal.close(delete);
+        m_journal = null;
+    }
+
     private void computerMoved()
     {
         if (! endLengthyCommand())
@@ -3444,6 +3623,7 @@ ContextMenu.Listener, LiveGfx.Listener
             }
         }
         m_gtp = null;
+        m_analyzeCache.clear();
         if (m_analyzeCommand != null)
             clearAnalyzeCommand();
         m_version = null;
@@ -3846,6 +4026,8 @@ ContextMenu.Listener, LiveGfx.Listener
             newGame(getBoardSize());
         else
             newGameFile(getBoardSize(), m_move);
+        if (m_prefs.getBoolean("autosave", true))
+            initJournal();
         if (! m_prefs.getBoolean("show-info-panel", true))
             showInfoPanel(false);
         if (m_prefs.getBoolean("show-toolbar", true))
@@ -3879,6 +4061,54 @@ ContextMenu.Listener, LiveGfx.Listener
         checkComputerMove();
     }
 
+    /** Open the autosave journal.
+        Offers to restore the game from the journal, if the previous session
+        did not exit normally. */
+    private void initJournal()
+    {
+        File file = new File(new File(System.getProperty("user.home"),
+                ".gogui"), "autosave.journal");
+        try
+        {
+            m_journal = new GameJournal(file);
+        }
+        catch (ErrorMessage e)
+        {
+            // Used by another instance of GoGui
+            return;
+        }
+        if (GameJournalReader.exists(file))
+        {
+            try
+            {
+                GameJournalReader reader = new GameJournalReader(file);
+                ConstNode root = reader.getTree().getRootConst();
+                // Nothing to restore, if the journal contains an unmodified
+                // file or an empty new game
+                boolean isUnmodified = (reader.getNumberNodes() == 0
+                        && (reader.getFile() != null || ! root.hasChildren()));
+                if (! isUnmodified
+                        && m_messageDialogs.showQuestion(null, this,
+                                i18n("MSG_RESTORE_AUTOSAVE"),
+                                i18n("MSG_RESTORE_AUTOSAVE_2"),
+                                i18n("LB_RESTORE"), i18n("LB_DISCARD"),
+                                false))
+                    restoreJournal(reader);
+            }
+            catch (ErrorMessage e)
+            {
+                showError(i18n("MSG_RESTORE_AUTOSAVE_FAILED"), e);
+            }
+        }
+        m_journalTimer = new Timer(JOURNAL_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent event) {
+                updateJournal();
+            }
+        });
+        m_journalTimer.start();
+        updateJournal();
+    }
+
     private void initScore(ConstPointList deadStones)
     {
         resetBoard();
@@ -3917,7 +4147,8 @@ ContextMenu.Listener, LiveGfx.Listener
     {
         try
         {
-            LoadFileRunnable runnable = new LoadFileRunnable(file);
+            LoadFileRunnable runnable =
+                new LoadFileRunnable(file, file.length() > LAZY_FILE_SIZE);
             if (file.length() > 500000)
             {
                 newGame(getBoardSize()); // Frees space if already large tree
@@ -3929,6 +4160,8 @@ ContextMenu.Listener, LiveGfx.Listener
             initGame(tree.getBoardSize());
             m_menuBar.addRecent(file);
             m_game.init(tree);
+            m_lazyReader = runnable.getSgfReader();
+            m_lazyLoadErrorShown = false;
             initGtp();
             if (move > 0)
             {
@@ -4071,6 +4304,22 @@ ContextMenu.Listener, LiveGfx.Listener
         m_session.restoreLocation(dialog, this, name + "-" + getBoardSize());
     }
 
+    private void restoreJournal(GameJournalReader reader)
+    {
+        GameTree tree = reader.getTree();
+        initGame(tree.getBoardSize());
+        m_game.init(tree);
+        // The restored changes were not saved
+        m_game.setModified();
+        m_lazyReader = null;
+        initGtp();
+        updateFromGoBoard();
+        setFile(reader.getFile());
+        String warnings = reader.getWarnings();
+        if (warnings != null)
+            showWarning(i18n("MSG_FILE_FORMAT_WARNING"), warnings, false);
+    }
+
     private void restoreMainWindow(int size)
     {
         setState(Frame.NORMAL);
@@ -4122,20 +4371,55 @@ ContextMenu.Listener, LiveGfx.Listener
         @return true If successfully saved. */
     private boolean save(GameFile gameFile)
     {
+        if (m_lazyReader != null && m_lazyReader.getTree() == getTree())
+        {
+            // The file, from which the nodes are read, could be overwritten
+            try
+            {
+                m_lazyReader.loadAll();
+            }
+            catch (ErrorMessage e)
+            {
+                // Do not overwrite the file with an incomplete tree
+                showError(i18n("MSG_SAVING_FAILED"), e);
+                return false;
+            }
+        }
+        // Unmodified subtrees cannot be detected anymore after saving
+        m_lazyReader = null;
+        // Large trees are written in a different thread, which must not
+        // access the tree, while events modifying it are handled
+        CompactGameTree tree = new CompactGameTree(getTree());
+        SaveFileRunnable runnable = new SaveFileRunnable(gameFile, tree);
         try
         {
-            new GameWriter(gameFile, getTree(), i18n("LB_GOGUI"),
-                    Version.get());
+            if (tree.getNumberNodes() > SAVE_PROGRESS_NODES)
+                GuiUtil.runProgress(this, i18n("LB_SAVING"), runnable);
+            else
+                runnable.run(null);
         }
         catch (ErrorMessage e)
         {
             showError(i18n("MSG_SAVING_FAILED"), e);
             return false;
         }
+        catch (Throwable t)
+        {
+            t.printStackTrace();
+            assert false;
+            return false;
+        }
         m_menuBar.addRecent(gameFile.m_file);
         createThumbnail(gameFile.m_file);
         setFile(gameFile);
         m_game.clearModified();
+        if (m_journal != null)
+        {
+            // The saved file is the new base of the journal
+            m_journal.setBase(gameFile.m_file);
+            m_game.clearAppended();
+            m_journalSuspendedShown = false;
+        }
         updateViews(false);
         return true;
     }
@@ -4276,6 +4560,7 @@ ContextMenu.Listener, LiveGfx.Listener
     {
         if (m_gtp == null)
             return;
+        m_analyzeCache.clear();
         java.io.BufferedReader in;
         in = new BufferedReader(reader);
         try
@@ -4578,6 +4863,7 @@ ContextMenu.Listener, LiveGfx.Listener
         if (m_resigned)
             return;
         try {
+            GenericBoard.synchronize(m_gameRuler);
             String disableKey = "net.sf.gogui.gogui.GoGui.game-finished";
             m_messageDialogs.showInfo(disableKey, this,
                     i18n("MSG_GAME_FINISHED"),
@@ -4790,12 +5076,90 @@ ContextMenu.Listener, LiveGfx.Listener
         });
     }
 
+    /** Limit the memory used by a game tree read in lazy mode.
+        @return true, if subtrees were unloaded. */
+    private boolean unloadSubtrees()
+    {
+        if (m_lazyReader == null)
+            return false;
+        if (m_lazyReader.getTree() != getTree())
+        {
+            m_lazyReader = null;
+            return false;
+        }
+        // Subtrees can only be created again, if the tree is unmodified
+        if (m_game.isModified())
+            return false;
+        return m_lazyReader.unloadSubtrees(getCurrentNode(), MAX_LAZY_NODES);
+    }
+
     private void unprotectGui()
     {
         getGlassPane().setVisible(false);
         setCursor(getGlassPane(), Cursor.DEFAULT_CURSOR);
     }
 
+    /** Write the changes of the game tree since the last call to the
+        autosave journal.
+        Appended nodes and property changes of older nodes are written
+        incrementally; after other changes, the journal is started again
+        with the file of the game, if the game is unchanged since it was
+        loaded or saved, or with a copy of the tree. The copy is created at
+        most every JOURNAL_COPY_INTERVAL ms, or less often if copying takes
+        long; changes in between are written with the next copy. */
+    private void updateJournal()
+    {
+        if (m_journal == null)
+            return;
+        String error = m_journal.getError();
+        if (error != null)
+        {
+            closeJournal(false);
+            showError(i18n("MSG_AUTOSAVE_FAILED"), error, false);
+            return;
+        }
+        List<ConstNode> nodes = m_game.getAppendedNodes();
+        boolean suspend = false;
+        if (nodes != null)
+            m_journal.append(getTree(), nodes, m_game.getChangedNodes());
+        else if (! m_game.isModified() && m_gameFile != null)
+        {
+            m_journal.setBase(m_gameFile.m_file);
+            m_journalSuspendedShown = false;
+        }
+        else if (m_lazyReader != null)
+        {
+            // Copying the tree would load all nodes; the journal is used
+            // again after the game was saved
+            m_journal.clear();
+            suspend = ! m_journalSuspendedShown;
+        }
+        else
+        {
+            long time = System.currentTimeMillis();
+            if (time < m_journalCopyTime)
+                return;
+            ConstGameTree tree = new CompactGameTree(getTree());
+            long copyTime = System.currentTimeMillis() - time;
+            // Spend at most about 1% of the time for copying large trees
+            m_journalCopyTime =
+                time + Math.max(JOURNAL_COPY_INTERVAL, 100 * copyTime);
+            m_journal.setBase(tree);
+            m_journalSuspendedShown = false;
+        }
+        m_game.clearAppended();
+        if (suspend)
+        {
+            m_journalSuspendedShown = true;
+            String disableKey =
+                "net.sf.gogui.gogui.GoGui.autosave-suspended";
+            m_messageDialogs.showWarning(disableKey, this,
+                                         i18n("MSG_AUTOSAVE_SUSPENDED"),
+                                         i18n("MSG_AUTOSAVE_SUSPENDED_2"),
+                                         false);
+        }
+    }
+
     private void updateViews(boolean gameTreeChanged)
     {
         updateViews(gameTreeChanged, false);
@@ -4808,6 +5172,9 @@ ContextMenu.Listener, LiveGfx.Listener
         has changed. */
     private void updateViews(boolean gameTreeChanged, boolean sync)
     {
+        if (unloadSubtrees())
+            gameTreeChanged = true;
+        checkLazyLoadError();
         m_actions.update();
         m_menuBar.update(isProgramAttached(), isRulerAttached(), isTreeShown(), isShellShown(), m_actions);
         m_gameInfoPanel.update();
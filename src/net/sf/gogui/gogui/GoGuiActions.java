@@ -537,6 +537,11 @@ public class GoGuiActions
             public void actionPerformed(ActionEvent e) {
                 m_goGui.actionShowAnalyzeDialog(); } };
 
+    public final GuiAction m_actionShowMetrics =
+        new GuiAction(i18n("ACT_SHOW_METRICS")) {
+            public void actionPerformed(ActionEvent e) {
+                m_goGui.actionShowMetrics(); } };
+
     public final GuiAction m_actionShowShell =
         new GuiAction(i18n("ACT_GTP_SHELL"), null, KeyEvent.VK_F9, FUNCTION_KEY) {
             public void actionPerformed(ActionEvent e) {
@@ -701,11 +706,10 @@ public class GoGuiActions
         boolean hasNextVariation = (NodeUtil.getNextVariation(node) != null);
         boolean hasPreviousVariation =
             (NodeUtil.getPreviousVariation(node) != null);
-        boolean hasNextEarlierVariation =
-            (NodeUtil.getNextEarlierVariation(node) != null);
-        boolean hasPrevEarlierVariation =
-            (NodeUtil.getPreviousEarlierVariation(node) != null);
-        boolean isInMain = NodeUtil.isInMainVariation(node);
+        updateVariations(node, hasNextVariation, hasPreviousVariation);
+        boolean hasNextEarlierVariation = m_hasNextEarlierVariation;
+        boolean hasPrevEarlierVariation = m_hasPrevEarlierVariation;
+        boolean isInMain = m_isInMain;
         boolean treeHasVariations = game.getTree().hasVariations();
         boolean isCommandInProgress = m_goGui.isCommandInProgress();
         boolean isProgramAttached = m_goGui.isProgramAttached();
@@ -806,6 +810,7 @@ public class GoGuiActions
                                           && hasParameterCommands);
         m_actionSendFile.setEnabled(isProgramAttached);
         m_actionShowAnalyzeDialog.setEnabled(isProgramAttached);
+        m_actionShowMetrics.setEnabled(isProgramAttached);
         m_actionShowShell.setEnabled(isProgramAttached);
         m_actionToggleAutoNumber.setSelected(m_goGui.getAutoNumber());
         m_actionToggleBeepAfterMove.setEnabled(isProgramAttached);
@@ -858,6 +863,17 @@ public class GoGuiActions
 
     private final GoGui m_goGui;
 
+    /** Node of the last update.
+        Used by updateVariations() to avoid walking up to the root after
+        each move. */
+    private ConstNode m_node;
+
+    private boolean m_isInMain;
+
+    private boolean m_hasNextEarlierVariation;
+
+    private boolean m_hasPrevEarlierVariation;
+
     private static final int SHORTCUT
         = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
 
@@ -865,6 +881,38 @@ public class GoGuiActions
         0, unless platform is Mac. */
     private static final int FUNCTION_KEY = (Platform.isMac() ? SHORTCUT : 0);
 
+    /** Update the state that depends on the path from the root to a node.
+        If the node is a child of the node of the last update, the state is
+        derived from the state of the father, otherwise it is computed by
+        walking up to the root. The first case is moving forward by one
+        move, which is done after each move played or by a program. A change
+        of the variations of the father or its ancestors together with
+        moving forward to its child in a single update is not detected, but
+        all commands that change the tree update the actions at the node of
+        the change before. */
+    private void updateVariations(ConstNode node, boolean hasNextVariation,
+                                  boolean hasPreviousVariation)
+    {
+        ConstNode father = node.getFatherConst();
+        if (father != null && father.equals(m_node))
+        {
+            m_isInMain = (m_isInMain && father.getChildConst().equals(node));
+            m_hasNextEarlierVariation =
+                (hasNextVariation || m_hasNextEarlierVariation);
+            m_hasPrevEarlierVariation =
+                (hasPreviousVariation || m_hasPrevEarlierVariation);
+        }
+        else
+        {
+            m_isInMain = NodeUtil.isInMainVariation(node);
+            m_hasNextEarlierVariation =
+                (NodeUtil.getNextEarlierVariation(node) != null);
+            m_hasPrevEarlierVariation =
+                (NodeUtil.getPreviousEarlierVariation(node) != null);
+        }
+        m_node = node;
+    }
+
     private void updateClockResume(ConstClock clock)
     {
         boolean enabled = false;
@@ -502,6 +502,7 @@ public class GoGuiMenuBar
         menu.addSeparator();
         menu.add(actions.m_actionSaveLog);
         menu.add(actions.m_actionSaveCommands);
+        menu.add(actions.m_actionShowMetrics);
         menu.add(actions.m_actionSendFile);
         m_recentGtp = new RecentFileMenu(i18n("MEN_SEND_RECENT"),
                                          "net/sf/gogui/recentgtpfiles",
@@ -10,8 +10,10 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.util.StringUtil;
@@ -249,8 +251,10 @@ public final class GtpClient
             command = Integer.toString(m_commandNumber) + " " + command;
         if (m_log)
             logOut(command);
+        long startTime = System.nanoTime();
         m_out.println(command);
         m_out.flush();
+        m_metrics.recordCharsOut(command.length() + 1);
         try
         {
             if (m_out.checkError())
@@ -260,15 +264,102 @@ public final class GtpClient
             if (m_callback != null)
                 m_callback.sentCommand(command);
             readResponse(timeout);
+            m_metrics.record(command, System.nanoTime() - startTime, false);
             return m_response;
         }
         catch (GtpError e)
         {
+            m_metrics.record(command, System.nanoTime() - startTime, true);
             e.setCommand(command);
             throw e;
         }
     }
 
+    /** Send a sequence of commands without waiting for the responses.
+        @see #sendBatch(List,long,TimeoutCallback) */
+    public ArrayList<String> sendBatch(List<String> commands) throws GtpError
+    {
+        return sendBatch(commands, -1, null);
+    }
+
+    /** Send a sequence of commands without waiting for the responses.
+        Writes all commands with a command ID and reads the responses
+        afterwards, so that the time for sending a command to the program
+        and receiving the response is needed only once instead of once for
+        each command. All commands are executed by the program, even if a
+        command fails.
+        @param commands The commands to send
+        @param timeout Timeout in milliseconds for each response or -1, if
+        no timeout
+        @param timeoutCallback Timeout callback or null if no timeout.
+        @return The response texts of the commands.
+        @throws GtpError of the first failed command after all responses were
+        received or if a response has a wrong ID. */
+    public ArrayList<String> sendBatch(List<String> commands, long timeout,
+                                       TimeoutCallback timeoutCallback)
+        throws GtpError
+    {
+        m_timeoutCallback = timeoutCallback;
+        m_fullResponse = "";
+        m_response = "";
+        int firstId = m_commandNumber + 1;
+        long startTime = System.nanoTime();
+        for (String command : commands)
+        {
+            assert ! command.trim().equals("");
+            assert ! command.trim().startsWith("#");
+            ++m_commandNumber;
+            command = Integer.toString(m_commandNumber) + " " + command;
+            if (m_log)
+                logOut(command);
+            if (m_callback != null)
+                m_callback.sentCommand(command);
+            m_out.println(command);
+            m_metrics.recordCharsOut(command.length() + 1);
+        }
+        m_out.flush();
+        if (m_out.checkError())
+            throwProgramDied();
+        ArrayList<String> responses = new ArrayList<String>(commands.size());
+        GtpError error = null;
+        for (int i = 0; i < commands.size(); ++i)
+        {
+            String response = null;
+            GtpError commandError = null;
+            try
+            {
+                response = readResponse(timeout);
+            }
+            catch (GtpError e)
+            {
+                if (m_isProgramDead)
+                {
+                    m_metrics.record(commands.get(i),
+                                     System.nanoTime() - startTime, true);
+                    e.setCommand(commands.get(i));
+                    throw e;
+                }
+                commandError = e;
+            }
+            // Responses are in the order of the commands, the IDs only
+            // detect a broken program
+            if (m_responseId >= 0 && m_responseId != firstId + i)
+                commandError = new GtpError("Response has wrong ID: "
+                                            + m_fullResponse.trim());
+            m_metrics.record(commands.get(i), System.nanoTime() - startTime,
+                             commandError != null);
+            if (commandError != null && error == null)
+            {
+                error = commandError;
+                error.setCommand(commands.get(i));
+            }
+            responses.add(response);
+        }
+        if (error != null)
+            throw error;
+        return responses;
+    }
+
     public void sendPlay(Move move, long timeout,
                          TimeoutCallback timeoutCallback) throws GtpError
     {
@@ -286,6 +377,7 @@ public final class GtpClient
             m_callback.sentCommand(comment);
         m_out.println(comment);
         m_out.flush();
+        m_metrics.recordCharsOut(comment.length() + 1);
     }
 
     /** Enable auto-numbering commands.
@@ -558,6 +650,9 @@ public final class GtpClient
 
     private int m_commandNumber;
 
+    /** ID of last response or -1, if it had no ID. */
+    private int m_responseId;
+
     private IOCallback m_callback;
 
     private PrintWriter m_out;
@@ -584,7 +679,11 @@ public final class GtpClient
     {
         m_out = new PrintWriter(out);
         m_isProgramDead = false;
-        m_queue = new ArrayBlockingQueue<Message>(10);
+        // The queue is not bounded, because sendBatch() reads the responses
+        // only after writing all commands. With a bounded queue, the input
+        // thread could block, which would block the program writing its
+        // responses and, as a consequence, sendBatch() writing commands.
+        m_queue = new LinkedBlockingQueue<Message>();
         m_inputThread = new InputThread(in, m_queue);
         if (err != null)
         {
@@ -636,15 +735,23 @@ public final class GtpClient
                 throwProgramDied();
             }
             m_anyCommandsResponded = true;
+            m_metrics.recordCharsIn(response.length());
             boolean error = (response.charAt(0) != '=');
             m_fullResponse = response;
             if (m_callback != null)
                 m_callback.receivedResponse(error, m_fullResponse);
             assert response.length() >= 3;
-            int index = response.indexOf(' ');
             int length = response.length();
+            int start = 1;
+            while (start < length && Character.isDigit(response.charAt(start)))
+                ++start;
+            if (start > 1 && start < 10)
+                m_responseId = Integer.parseInt(response.substring(1, start));
+            else
+                m_responseId = -1;
+            int index = response.indexOf(' ', start);
             if (index < 0)
-                m_response = response.substring(1, length - 2);
+                m_response = response.substring(start, length - 2);
             else
                 m_response = response.substring(index + 1, length - 2);
             if (error)
@@ -4,7 +4,15 @@ package net.sf.gogui.gtp;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -120,6 +128,14 @@ public abstract class GtpClientBase
         }
     }
 
+    /** Get a snapshot of the timing and traffic statistics.
+        The statistics are only recorded by subclasses that send commands
+        over streams, otherwise the snapshot is empty. */
+    public GtpMetrics getMetrics()
+    {
+        return m_metrics.getSnapshot();
+    }
+
     /** Get program name or "Unknown Program" if unknown.
         If queryName() was not called or the name command failed, the
         string "Unknown Program" is returned. */
@@ -298,6 +314,82 @@ public abstract class GtpClientBase
         @throws GtpError containing the response if the command fails. */
     public abstract String send(String command) throws GtpError;
 
+    /** Send a command without waiting for the response.
+        @see #sendAsync(String,long,Executor) */
+    public CompletableFuture<String> sendAsync(String command)
+    {
+        return sendAsync(command, -1, null);
+    }
+
+    /** Send a command without waiting for the response.
+        The command is sent after all commands previously sent with
+        sendAsync() have finished. The caller must not send other commands
+        with send() until the returned future is done.
+        Cancelling the future before the command was sent removes the
+        command, cancelling it while the command is running interrupts the
+        command, if interrupting is supported (see queryInterruptSupport()).
+        @param command The command to send
+        @param timeout Timeout in milliseconds or -1, if no timeout. If the
+        response does not arrive in time, the future completes with a
+        GtpError and the command is interrupted, if interrupting is
+        supported. Later commands still wait for the response of the
+        program.
+        @param executor The executor that runs the blocking send() or null
+        for a shared pool of daemon threads. Passing an executor allows to
+        drive many programs from a small thread pool or, on newer Java
+        versions, from virtual threads.
+        @return The future containing the response text of the successful
+        response. A failed command completes the future exceptionally with
+        the GtpError. */
+    public CompletableFuture<String> sendAsync(String command, long timeout,
+                                               Executor executor)
+    {
+        if (executor == null)
+            executor = getAsyncExecutor();
+        final AsyncCommand result = new AsyncCommand(command);
+        synchronized (m_asyncMutex)
+        {
+            m_lastAsync = m_lastAsync.thenRunAsync(result, executor);
+        }
+        if (timeout >= 0)
+            getAsyncTimer().schedule(new Runnable() {
+                    public void run() {
+                        result.timeout(); } },
+                timeout, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    /** Send a sequence of commands.
+        All commands are sent, even if a command fails, unless the program
+        died. This implementation sends the commands one after the other,
+        subclasses can send them without waiting for the responses.
+        @return The response texts of the commands.
+        @throws GtpError of the first failed command after all commands were
+        sent. */
+    public ArrayList<String> sendBatch(List<String> commands) throws GtpError
+    {
+        ArrayList<String> responses = new ArrayList<String>(commands.size());
+        GtpError error = null;
+        for (String command : commands)
+        {
+            try
+            {
+                responses.add(send(command));
+            }
+            catch (GtpError e)
+            {
+                if (error == null)
+                    error = e;
+                if (isProgramDead())
+                    throw error;
+                responses.add(null);
+            }
+        }
+        if (error != null)
+            throw error;
+        return responses;
+    }
+
     /** Send comment.
         @param comment comment line (must start with '#'). */
     public abstract void sendComment(String comment);
@@ -375,12 +467,116 @@ public abstract class GtpClientBase
         Should do nothing if the concrete class does not create a process. */
     public abstract void waitForExit();
 
+    /** Future of a command sent with sendAsync(). */
+    private class AsyncCommand
+        extends CompletableFuture<String>
+        implements Runnable
+    {
+        public AsyncCommand(String command)
+        {
+            m_command = command;
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled)
+                interrupt();
+            return cancelled;
+        }
+
+        /** Send the command.
+            Called in the thread of the executor. Does not throw, because
+            later commands are only run after a normal completion. */
+        public void run()
+        {
+            synchronized (this)
+            {
+                if (isDone())
+                    return;
+                m_isRunning = true;
+            }
+            try
+            {
+                complete(send(m_command));
+            }
+            catch (GtpError e)
+            {
+                completeExceptionally(e);
+            }
+            catch (RuntimeException e)
+            {
+                completeExceptionally(e);
+            }
+            finally
+            {
+                synchronized (this)
+                {
+                    m_isRunning = false;
+                }
+            }
+        }
+
+        public void timeout()
+        {
+            GtpError error = new GtpError("No response from "
+                                          + getLabel() + " in time");
+            error.setCommand(m_command);
+            if (completeExceptionally(error))
+                interrupt();
+        }
+
+        private boolean m_isRunning;
+
+        private final String m_command;
+
+        private void interrupt()
+        {
+            synchronized (this)
+            {
+                if (! m_isRunning || ! isInterruptSupported())
+                    return;
+            }
+            try
+            {
+                sendInterrupt();
+            }
+            catch (GtpError e)
+            {
+            }
+        }
+    }
+
+    private static class DaemonThreadFactory
+        implements ThreadFactory
+    {
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "GtpClientBase.sendAsync");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static ExecutorService s_asyncExecutor;
+
+    private static ScheduledExecutorService s_asyncTimer;
+
     private boolean m_isInterruptCommentSupported;
 
     protected String m_name;
 
+    /** Statistics of the commands sent by subclasses. */
+    protected final GtpMetrics m_metrics = new GtpMetrics();
+
     private String m_pid;
 
+    private final Object m_asyncMutex = new Object();
+
+    /** Last command in the queue of sendAsync(). */
+    private CompletableFuture<Void> m_lastAsync =
+        CompletableFuture.completedFuture(null);
+
     /** Local variable in some functions, reused for efficiency. */
     private final StringBuilder m_buffer = new StringBuilder(128);
 
@@ -390,6 +586,22 @@ public abstract class GtpClientBase
 
     private String[] m_supportedCommands;
 
+    private static synchronized ExecutorService getAsyncExecutor()
+    {
+        if (s_asyncExecutor == null)
+            s_asyncExecutor =
+                Executors.newCachedThreadPool(new DaemonThreadFactory());
+        return s_asyncExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService getAsyncTimer()
+    {
+        if (s_asyncTimer == null)
+            s_asyncTimer =
+                Executors.newScheduledThreadPool(1, new DaemonThreadFactory());
+        return s_asyncTimer;
+    }
+
     private void printInterrupted()
     {
         System.err.println("GtpClient: InterruptedException");
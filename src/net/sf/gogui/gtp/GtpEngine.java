@@ -238,6 +238,7 @@ public class GtpEngine
             || response.charAt(response.length() - 1) != '\n')
             fullResponse.append('\n');
         m_out.println(fullResponse);
+        m_out.flush();
         if (m_log != null)
             m_log.println(fullResponse);
     }
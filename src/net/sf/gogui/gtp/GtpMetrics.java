@@ -0,0 +1,280 @@
+// GtpMetrics.java
+
+package net.sf.gogui.gtp;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Timing and traffic statistics of a GTP connection.
+    Records the time from sending a command to receiving its response for
+    each command name in a histogram with logarithmic bins, the number of
+    failed commands and the number of characters sent and received.
+    The methods are thread-safe; use getSnapshot() to get a copy that is
+    not changed by later commands. */
+public final class GtpMetrics
+{
+    /** Statistics of one command name. */
+    public static final class CommandMetrics
+    {
+        public int getCount()
+        {
+            return m_count;
+        }
+
+        public int getErrors()
+        {
+            return m_errors;
+        }
+
+        /** Get the maximum time in seconds. */
+        public double getMax()
+        {
+            return m_maxNanos * 1e-9;
+        }
+
+        /** Get the mean time in seconds. */
+        public double getMean()
+        {
+            return m_count == 0 ? 0 : getTotal() / m_count;
+        }
+
+        /** Get an upper bound for a quantile of the times.
+            The bound is the upper limit of the histogram bin containing the
+            quantile, at most the maximum time.
+            @param quantile The quantile between 0 and 1.
+            @return The bound in seconds. */
+        public double getQuantile(double quantile)
+        {
+            assert quantile >= 0 && quantile <= 1;
+            long rank = (long)Math.ceil(quantile * m_count);
+            long count = 0;
+            for (int i = 0; i < NUMBER_BINS; ++i)
+            {
+                count += m_bins[i];
+                if (count >= rank && count > 0)
+                    return Math.min(getBinLimit(i), m_maxNanos) * 1e-9;
+            }
+            return getMax();
+        }
+
+        /** Get the total time in seconds. */
+        public double getTotal()
+        {
+            return m_totalNanos * 1e-9;
+        }
+
+        private int m_count;
+
+        private int m_errors;
+
+        private long m_maxNanos;
+
+        private long m_totalNanos;
+
+        private final int[] m_bins = new int[NUMBER_BINS];
+
+        private CommandMetrics()
+        {
+        }
+
+        private CommandMetrics(CommandMetrics metrics)
+        {
+            add(metrics);
+        }
+
+        private void add(CommandMetrics metrics)
+        {
+            m_count += metrics.m_count;
+            m_errors += metrics.m_errors;
+            m_maxNanos = Math.max(m_maxNanos, metrics.m_maxNanos);
+            m_totalNanos += metrics.m_totalNanos;
+            for (int i = 0; i < NUMBER_BINS; ++i)
+                m_bins[i] += metrics.m_bins[i];
+        }
+
+        private void add(long nanos, boolean error)
+        {
+            ++m_count;
+            if (error)
+                ++m_errors;
+            m_maxNanos = Math.max(m_maxNanos, nanos);
+            m_totalNanos += nanos;
+            ++m_bins[getBin(nanos)];
+        }
+    }
+
+    /** Add the statistics of another connection. */
+    public void add(GtpMetrics metrics)
+    {
+        metrics = metrics.getSnapshot();
+        synchronized (this)
+        {
+            m_charsIn += metrics.m_charsIn;
+            m_charsOut += metrics.m_charsOut;
+            for (Map.Entry<String,CommandMetrics> entry
+                     : metrics.m_commands.entrySet())
+                getCommandMetrics(entry.getKey()).add(entry.getValue());
+        }
+    }
+
+    /** Get the statistics of a command name.
+        @return A copy of the statistics or null, if the command was never
+        sent. */
+    public synchronized CommandMetrics get(String command)
+    {
+        CommandMetrics metrics = m_commands.get(command);
+        if (metrics == null)
+            return null;
+        return new CommandMetrics(metrics);
+    }
+
+    public synchronized long getCharsIn()
+    {
+        return m_charsIn;
+    }
+
+    public synchronized long getCharsOut()
+    {
+        return m_charsOut;
+    }
+
+    /** Get the command names in alphabetical order. */
+    public synchronized ArrayList<String> getCommands()
+    {
+        return new ArrayList<String>(m_commands.keySet());
+    }
+
+    /** Get the statistics of all commands. */
+    public synchronized CommandMetrics getTotal()
+    {
+        CommandMetrics total = new CommandMetrics();
+        for (CommandMetrics metrics : m_commands.values())
+            total.add(metrics);
+        return total;
+    }
+
+    public synchronized GtpMetrics getSnapshot()
+    {
+        GtpMetrics snapshot = new GtpMetrics();
+        snapshot.m_charsIn = m_charsIn;
+        snapshot.m_charsOut = m_charsOut;
+        for (Map.Entry<String,CommandMetrics> entry : m_commands.entrySet())
+            snapshot.m_commands.put(entry.getKey(),
+                                    new CommandMetrics(entry.getValue()));
+        return snapshot;
+    }
+
+    /** Print a table with the statistics.
+        Times are in milliseconds, p50, p90 and p99 are upper bounds of the
+        quantiles. */
+    public void print(PrintStream out)
+    {
+        out.print(toString());
+    }
+
+    /** Record a command.
+        @param command The full command line (without ID).
+        @param nanos The time from sending the command until receiving the
+        response in nanoseconds.
+        @param error true, if the command failed. */
+    public synchronized void record(String command, long nanos,
+                                    boolean error)
+    {
+        getCommandMetrics(getCommandName(command)).add(nanos, error);
+    }
+
+    public synchronized void recordCharsIn(int chars)
+    {
+        m_charsIn += chars;
+    }
+
+    public synchronized void recordCharsOut(int chars)
+    {
+        m_charsOut += chars;
+    }
+
+    /** Get a table with the statistics.
+        @see #print(PrintStream) */
+    public String toString()
+    {
+        GtpMetrics metrics = getSnapshot();
+        StringBuilder buffer = new StringBuilder(1024);
+        buffer.append(String.format("%-24s %7s %6s %10s %9s %9s %9s %9s"
+                                    + " %9s%n", "Command", "Count", "Errors",
+                                    "Total", "Mean", "p50", "p90", "p99",
+                                    "Max"));
+        for (String command : metrics.getCommands())
+            appendRow(buffer, command, metrics.get(command));
+        appendRow(buffer, "(all)", metrics.getTotal());
+        buffer.append(String.format("Characters sent: %d, received: %d%n",
+                                    metrics.m_charsOut, metrics.m_charsIn));
+        return buffer.toString();
+    }
+
+    /** Number of histogram bins per factor of two. */
+    private static final int BINS_PER_OCTAVE = 4;
+
+    /** Number of histogram bins.
+        The last bin contains all times longer than about 2^40 ns (18 min). */
+    private static final int NUMBER_BINS = 40 * BINS_PER_OCTAVE;
+
+    private long m_charsIn;
+
+    private long m_charsOut;
+
+    private final TreeMap<String,CommandMetrics> m_commands =
+        new TreeMap<String,CommandMetrics>();
+
+    private static void appendRow(StringBuilder buffer, String command,
+                                  CommandMetrics metrics)
+    {
+        buffer.append(String.format("%-24s %7d %6d %10.3f %9.3f %9.3f %9.3f"
+                                    + " %9.3f %9.3f%n", command,
+                                    metrics.getCount(), metrics.getErrors(),
+                                    1e3 * metrics.getTotal(),
+                                    1e3 * metrics.getMean(),
+                                    1e3 * metrics.getQuantile(0.5),
+                                    1e3 * metrics.getQuantile(0.9),
+                                    1e3 * metrics.getQuantile(0.99),
+                                    1e3 * metrics.getMax()));
+    }
+
+    private static int getBin(long nanos)
+    {
+        if (nanos <= 1)
+            return 0;
+        double log = Math.log(nanos) / Math.log(2);
+        return Math.min((int)(BINS_PER_OCTAVE * log), NUMBER_BINS - 1);
+    }
+
+    /** Get the upper limit of a bin in nanoseconds. */
+    private static long getBinLimit(int bin)
+    {
+        if (bin == NUMBER_BINS - 1)
+            return Long.MAX_VALUE;
+        return (long)Math.ceil(Math.pow(2, (bin + 1.) / BINS_PER_OCTAVE));
+    }
+
+    private CommandMetrics getCommandMetrics(String command)
+    {
+        CommandMetrics metrics = m_commands.get(command);
+        if (metrics == null)
+        {
+            metrics = new CommandMetrics();
+            m_commands.put(command, metrics);
+        }
+        return metrics;
+    }
+
+    /** Get the command name of a command line.
+        The command name is the first word after an optional numeric ID. */
+    private static String getCommandName(String command)
+    {
+        String[] args = command.trim().split("\\s+", 3);
+        if (args.length > 1 && args[0].matches("\\d+"))
+            return args[1];
+        return args[0];
+    }
+}
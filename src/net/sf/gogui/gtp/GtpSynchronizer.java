@@ -311,13 +311,30 @@ public class GtpSynchronizer
             for (int i = 0; i < moves.size(); ++i)
                 m_engineState.play(moves.get(i));
         }
-        else
+        else if (moves.size() > 1)
         {
+            ArrayList<String> commands = new ArrayList<String>(moves.size());
             for (int i = 0; i < moves.size(); ++i)
+                commands.add(m_gtp.getCommandPlay(moves.get(i)));
+            try
             {
-                play(moves.get(i));
-                updateListener();
+                m_gtp.sendBatch(commands);
             }
+            catch (GtpError e)
+            {
+                // The moves after a failed move were sent too, the state of
+                // the engine is unknown and needs a new initialization
+                m_engineState = null;
+                throw e;
+            }
+            for (int i = 0; i < moves.size(); ++i)
+                m_engineState.play(moves.get(i));
+            updateListener();
+        }
+        else
+        {
+            play(moves.get(0));
+            updateListener();
         }
     }
 
@@ -409,12 +426,12 @@ public class GtpSynchronizer
         else
         {
             assert m_isSupportedUndo;
+            ArrayList<String> commands = new ArrayList<String>(n);
             for (int i = 0; i < n; ++i)
-            {
-                m_gtp.send("undo");
-                m_engineState.undo();
-                updateListener();
-            }
+                commands.add("undo");
+            m_gtp.sendBatch(commands);
+            m_engineState.undo(n);
+            updateListener();
         }
     }
 
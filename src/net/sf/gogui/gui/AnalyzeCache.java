@@ -0,0 +1,173 @@
+// AnalyzeCache.java
+
+package net.sf.gogui.gui;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.gogui.go.ConstBoard;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.gtp.AnalyzeType;
+import net.sf.gogui.util.ObjectUtil;
+
+/** Cache for responses to analyze commands.
+    Allows to show the result of an analyze command that is run
+    automatically after each change of the board without sending it to the
+    program again, when a position is visited again. The responses are
+    stored with the command (including its arguments) and the position.
+    The number of responses is bounded; if the cache is full, the least
+    recently used response is removed. */
+public final class AnalyzeCache
+{
+    /** Key for a response.
+        Consists of the command, the board size, the hash code of the
+        position, the color to move and the komi, which is used by most
+        programs for score estimates. */
+    public static final class Key
+    {
+        /** Constructor.
+            @param command The command with the wildcards replaced.
+            @param board The board with the position.
+            @param komi The komi (may be null). */
+        public Key(String command, ConstBoard board, Komi komi)
+        {
+            m_command = command;
+            m_size = board.getSize();
+            m_hash = board.getHash();
+            m_toMove = board.getToMove();
+            m_komi = komi;
+        }
+
+        public boolean equals(Object object)
+        {
+            if (object == null || object.getClass() != getClass())
+                return false;
+            Key key = (Key)object;
+            return (m_hash == key.m_hash && m_size == key.m_size
+                    && m_toMove == key.m_toMove
+                    && ObjectUtil.equals(m_komi, key.m_komi)
+                    && m_command.equals(key.m_command));
+        }
+
+        public int hashCode()
+        {
+            return (int)(m_hash ^ (m_hash >>> 32)) ^ m_command.hashCode();
+        }
+
+        private final int m_size;
+
+        private final long m_hash;
+
+        private final GoColor m_toMove;
+
+        private final Komi m_komi;
+
+        private final String m_command;
+    }
+
+    /** Constructor.
+        @param maxSize The maximum number of responses; zero disables the
+        cache. */
+    public AnalyzeCache(int maxSize)
+    {
+        m_maxSize = Math.max(maxSize, 0);
+        m_map = new LinkedHashMap<Key,String>(16, 0.75f, true) {
+                protected boolean removeEldestEntry(
+                                            Map.Entry<Key,String> eldest) {
+                    return size() > m_maxSize;
+                } };
+    }
+
+    /** Remove all responses.
+        Should be called if the state of the program changed in a way that
+        can change the responses, or if a different program is attached.
+        Does not reset the hit statistics. */
+    public void clear()
+    {
+        m_map.clear();
+    }
+
+    /** Get a stored response.
+        Counts as a hit or a miss in the statistics.
+        @return The response or null, if no response is stored for the
+        key. */
+    public String get(Key key)
+    {
+        String response = m_map.get(key);
+        if (response == null)
+            ++m_numberMisses;
+        else
+            ++m_numberHits;
+        return response;
+    }
+
+    /** Get the percentage of hits in all calls of get().
+        @return The percentage or 0, if get() was never called. */
+    public int getHitRate()
+    {
+        int total = m_numberHits + m_numberMisses;
+        if (total == 0)
+            return 0;
+        return (int)Math.round(100. * m_numberHits / total);
+    }
+
+    public int getNumberHits()
+    {
+        return m_numberHits;
+    }
+
+    public int getNumberMisses()
+    {
+        return m_numberMisses;
+    }
+
+    /** Get the number of stored responses. */
+    public int getSize()
+    {
+        return m_map.size();
+    }
+
+    /** Check if responses of an analyze command type can be cached.
+        Only types that are displayed on the board and only depend on the
+        position are cached. Text types can contain information, which
+        changes without a change of the position, like search statistics;
+        other types change the state of the program or the point list
+        argument. */
+    public static boolean isCacheable(AnalyzeType type)
+    {
+        switch (type)
+        {
+        case BWBOARD:
+        case CBOARD:
+        case DBOARD:
+        case GFX:
+        case PLIST:
+        case PSPAIRS:
+        case SBOARD:
+        case VAR:
+        case VARB:
+        case VARC:
+        case VARP:
+        case VARPO:
+        case VARW:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Store a response. */
+    public void put(Key key, String response)
+    {
+        if (m_maxSize > 0)
+            m_map.put(key, response);
+    }
+
+    private final int m_maxSize;
+
+    private int m_numberHits;
+
+    private int m_numberMisses;
+
+    private final LinkedHashMap<Key,String> m_map;
+}
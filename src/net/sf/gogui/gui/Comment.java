@@ -137,12 +137,13 @@ public class Comment
     {
         if (comment == null)
             comment = "";
-        if (comment.equals(m_textPane.getText()))
+        if (comment.equals(m_text))
             return;
         // setText() generates a remove and insert event, and
         // we don't want to notify the listener about that yet
         m_duringSetText = true;
         m_textPane.setText(comment);
+        m_text = m_textPane.getText();
         m_textPane.setCaretPosition(0);
         m_duringSetText = false;
     }
@@ -157,6 +158,11 @@ public class Comment
 
     private boolean m_duringSetText;
 
+    /** Text of the text pane after the last change.
+        Avoids getting the text from the document in setComment(), which is
+        called after each move. */
+    private String m_text = "";
+
     private final JTextPane m_textPane;
 
     private final Listener m_listener;
@@ -168,6 +174,7 @@ public class Comment
         if (m_duringSetText)
             return;
         String comment = m_textPane.getText();
+        m_text = comment;
         m_listener.changed(comment);
     }
 
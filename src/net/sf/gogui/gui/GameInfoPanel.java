@@ -28,6 +28,7 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.BLACK_WHITE;
 import static net.sf.gogui.go.GoColor.WHITE_BLACK;
 import static net.sf.gogui.gui.I18n.i18n;
+import net.sf.gogui.util.ObjectUtil;
 import net.sf.gogui.util.StringUtil;
 
 /** Panel displaying information about the current position. */
@@ -109,10 +110,23 @@ public class GameInfoPanel
 
     private final UpdateTimeRunnable m_updateTime = new UpdateTimeRunnable();
 
+    /** Player names used for the current tool tips.
+        Used to avoid rebuilding the tool tips after each move. */
+    private final BlackWhiteSet<String> m_player = new BlackWhiteSet<String>();
+
+    /** Player ranks used for the current tool tips. */
+    private final BlackWhiteSet<String> m_rank = new BlackWhiteSet<String>();
+
     private void updatePlayerToolTip(JLabel label, String player, String rank,
                                      GoColor color)
     {
         assert color.isBlackWhite();
+        if (label.getToolTipText() != null
+            && ObjectUtil.equals(player, m_player.get(color))
+            && ObjectUtil.equals(rank, m_rank.get(color)))
+            return;
+        m_player.set(color, player);
+        m_rank.set(color, rank);
         StringBuilder buffer = new StringBuilder(128);
         if (color == BLACK)
             buffer.append(i18n("TT_INFOPANEL_PLAYER_BLACK"));
@@ -157,6 +171,9 @@ class GuiClock
 
     public final void setText(String text)
     {
+        if (text.equals(m_text))
+            return;
+        m_text = text;
         super.setText(text);
         String toolTip;
         if (m_color == BLACK)
@@ -171,6 +188,8 @@ class GuiClock
     private static final int COLUMNS = 8;
 
     private final GoColor m_color;
+
+    private String m_text;
 }
 
 class Prisoners
@@ -193,6 +212,9 @@ class Prisoners
 
     public final void setCount(int n)
     {
+        if (n == m_count)
+            return;
+        m_count = n;
         m_text.setText(Integer.toString(n));
         String tip;
         if (m_color == BLACK)
@@ -215,4 +237,6 @@ class Prisoners
     private final JLabel m_text;
 
     private final GoColor m_color;
+
+    private int m_count = -1;
 }
@@ -0,0 +1,375 @@
+// GameTreeLayout.java
+
+package net.sf.gogui.gui;
+
+import java.util.ArrayList;
+import java.util.Set;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.NodeUtil;
+
+/** Layout of the visible nodes of a game tree in GameTreePanel.
+    The nodes are placed on a grid; the column is the depth of the node and
+    each variation starts in a new row below the variations of its earlier
+    siblings. The layout is stored in primitive arrays indexed by the
+    number of the node in the layout. For each column, the nodes are kept
+    sorted by row, so that the nodes in a rectangle of the grid can be
+    found by a binary search. Since the subtrees of the nodes in a column do
+    not overlap, the only node outside the rectangle whose junction to its
+    children crosses the rectangle in this column is the last node above
+    it. */
+final class GameTreeLayout
+{
+    /** Compute the layout.
+        @param root The root node of the tree.
+        @param expanded The nodes whose children are shown.
+        @param showSubtreeSizes Compute the sizes of the subtrees of nodes
+        that have hidden children. */
+    public GameTreeLayout(ConstNode root, Set<ConstNode> expanded,
+                          boolean showSubtreeSizes)
+    {
+        ArrayList<Frame> stack = new ArrayList<Frame>();
+        Frame frame = startNode(root, -1, 0, 0, 0, expanded,
+                                showSubtreeSizes);
+        while (true)
+        {
+            if (frame.m_nextChild < frame.m_numberChildren)
+            {
+                int i = frame.m_nextChild++;
+                stack.add(frame);
+                frame = startNode(frame.m_node.getChildConst(i),
+                                  frame.m_index,
+                                  m_column[frame.m_index] + 1,
+                                  m_row[frame.m_index] + frame.m_dy,
+                                  m_moveNumber[frame.m_index], expanded,
+                                  showSubtreeSizes);
+                continue;
+            }
+            if (stack.isEmpty())
+                break;
+            Frame father = stack.remove(stack.size() - 1);
+            father.m_dy += frame.m_dy;
+            if (father.m_nextChild < father.m_numberChildren)
+                ++father.m_dy;
+            frame = father;
+        }
+    }
+
+    /** Add a node as the only child of a node in the layout.
+        The child is placed right of the father in the same row. This
+        requires that the father has no children in the layout; it does
+        not move any other nodes.
+        @return The index of the child. */
+    public int addSingleChild(int father, ConstNode node)
+    {
+        assert m_firstChild[father] < 0;
+        int moveNumber = m_moveNumber[father];
+        if (node.getMove() != null)
+            ++moveNumber;
+        return add(node, father, m_column[father] + 1, m_row[father],
+                   moveNumber);
+    }
+
+    /** Find the index of a node.
+        Checks the hint, its father and its children first, which are the
+        most frequent cases when navigating in the tree. Otherwise the path
+        from the root to the node is followed in the layout.
+        @param node The node.
+        @param hint Index of a node near the node or -1.
+        @return The index or -1, if the node is not in the layout. */
+    public int find(ConstNode node, int hint)
+    {
+        if (node == null)
+            return -1;
+        if (hint >= 0 && hint < m_numberNodes)
+        {
+            if (m_node[hint].equals(node))
+                return hint;
+            int father = m_father[hint];
+            if (father >= 0 && m_node[father].equals(node))
+                return father;
+            for (int child = m_firstChild[hint]; child >= 0;
+                 child = m_nextSibling[child])
+                if (m_node[child].equals(node))
+                    return child;
+        }
+        NodeUtil.getPathToRoot(node, m_path);
+        int n = m_path.size();
+        int index = 0;
+        if (! m_node[index].equals(m_path.get(n - 1)))
+            return -1;
+        for (int i = n - 2; i >= 0; --i)
+        {
+            int k = m_path.get(i + 1).getChildIndex(m_path.get(i));
+            int child = m_firstChild[index];
+            for ( ; k > 0 && child >= 0; --k)
+                child = m_nextSibling[child];
+            if (child < 0)
+                return -1;
+            index = child;
+        }
+        return index;
+    }
+
+    /** Find the node at a grid position.
+        @return The index of the node or -1, if there is no node. */
+    public int findAt(int column, int row)
+    {
+        if (column < 0 || column >= m_numberColumns)
+            return -1;
+        int position = findInColumn(column, row);
+        if (position < 0)
+            return -1;
+        int index = m_columns[column][position];
+        if (m_row[index] != row)
+            return -1;
+        return index;
+    }
+
+    /** Find the last node in a column with a row not below a given row.
+        @return The position of the node in the column (see getColumnNode)
+        or -1, if all nodes of the column are below the row. */
+    public int findInColumn(int column, int row)
+    {
+        int[] nodes = m_columns[column];
+        int low = 0;
+        int high = m_columnSize[column] - 1;
+        int result = -1;
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (m_row[nodes[middle]] <= row)
+            {
+                result = middle;
+                low = middle + 1;
+            }
+            else
+                high = middle - 1;
+        }
+        return result;
+    }
+
+    public int getColumn(int index)
+    {
+        return m_column[index];
+    }
+
+    /** Get a node of a column.
+        @param column The column.
+        @param position The position of the node in the column, ordered by
+        row.
+        @return The index of the node. */
+    public int getColumnNode(int column, int position)
+    {
+        return m_columns[column][position];
+    }
+
+    public int getColumnSize(int column)
+    {
+        return m_columnSize[column];
+    }
+
+    public int getFather(int index)
+    {
+        return m_father[index];
+    }
+
+    /** Get the first child of a node in the layout.
+        @return The index of the first child or -1, if the children of the
+        node are not in the layout. */
+    public int getFirstChild(int index)
+    {
+        return m_firstChild[index];
+    }
+
+    public int getMoveNumber(int index)
+    {
+        return m_moveNumber[index];
+    }
+
+    public int getNextSibling(int index)
+    {
+        return m_nextSibling[index];
+    }
+
+    public ConstNode getNode(int index)
+    {
+        return m_node[index];
+    }
+
+    public int getNumberColumns()
+    {
+        return m_numberColumns;
+    }
+
+    public int getNumberNodes()
+    {
+        return m_numberNodes;
+    }
+
+    public int getNumberRows()
+    {
+        return m_numberRows;
+    }
+
+    public int getRow(int index)
+    {
+        return m_row[index];
+    }
+
+    /** Get the number of hidden nodes in the subtree of a node.
+        @return The number or -1, if the node has no hidden children or
+        the subtree sizes were not computed. */
+    public int getSubtreeSize(int index)
+    {
+        return m_subtreeSize[index];
+    }
+
+    /** Layout state of a node in the constructor. */
+    private static final class Frame
+    {
+        public int m_dy;
+
+        public int m_index;
+
+        public int m_nextChild;
+
+        public int m_numberChildren;
+
+        public ConstNode m_node;
+    }
+
+    private int m_numberColumns;
+
+    private int m_numberNodes;
+
+    private int m_numberRows;
+
+    private int[] m_column = new int[INITIAL_CAPACITY];
+
+    /** Number of nodes in each column. */
+    private int[] m_columnSize = new int[16];
+
+    private int[] m_father = new int[INITIAL_CAPACITY];
+
+    private int[] m_firstChild = new int[INITIAL_CAPACITY];
+
+    private int[] m_moveNumber = new int[INITIAL_CAPACITY];
+
+    private int[] m_nextSibling = new int[INITIAL_CAPACITY];
+
+    private int[] m_row = new int[INITIAL_CAPACITY];
+
+    private int[] m_subtreeSize = new int[INITIAL_CAPACITY];
+
+    /** Indices of the nodes in each column, sorted by row. */
+    private int[][] m_columns = new int[16][];
+
+    private ConstNode[] m_node = new ConstNode[INITIAL_CAPACITY];
+
+    private final ArrayList<ConstNode> m_path = new ArrayList<ConstNode>();
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int add(ConstNode node, int father, int column, int row,
+                    int moveNumber)
+    {
+        if (m_numberNodes == m_node.length)
+            grow();
+        int index = m_numberNodes++;
+        m_node[index] = node;
+        m_father[index] = father;
+        m_firstChild[index] = -1;
+        m_nextSibling[index] = -1;
+        m_column[index] = column;
+        m_row[index] = row;
+        m_moveNumber[index] = moveNumber;
+        m_subtreeSize[index] = -1;
+        if (father >= 0)
+        {
+            int child = m_firstChild[father];
+            if (child < 0)
+                m_firstChild[father] = index;
+            else
+            {
+                while (m_nextSibling[child] >= 0)
+                    child = m_nextSibling[child];
+                m_nextSibling[child] = index;
+            }
+        }
+        addToColumn(index);
+        m_numberRows = Math.max(row + 1, m_numberRows);
+        return index;
+    }
+
+    private void addToColumn(int index)
+    {
+        int column = m_column[index];
+        if (column == m_columns.length)
+        {
+            int[][] columns = new int[2 * column][];
+            System.arraycopy(m_columns, 0, columns, 0, column);
+            m_columns = columns;
+            m_columnSize = grow(m_columnSize, 2 * column);
+        }
+        if (column == m_numberColumns)
+        {
+            m_columns[column] = new int[16];
+            ++m_numberColumns;
+        }
+        int size = m_columnSize[column];
+        int[] nodes = m_columns[column];
+        if (size == nodes.length)
+        {
+            nodes = grow(nodes, 2 * size);
+            m_columns[column] = nodes;
+        }
+        // Nodes are usually added in order of rows
+        int position = size;
+        if (size > 0 && m_row[nodes[size - 1]] > m_row[index])
+        {
+            position = findInColumn(column, m_row[index]) + 1;
+            System.arraycopy(nodes, position, nodes, position + 1,
+                             size - position);
+        }
+        nodes[position] = index;
+        m_columnSize[column] = size + 1;
+    }
+
+    private void grow()
+    {
+        int length = 2 * m_node.length;
+        ConstNode[] node = new ConstNode[length];
+        System.arraycopy(m_node, 0, node, 0, m_numberNodes);
+        m_node = node;
+        m_column = grow(m_column, length);
+        m_father = grow(m_father, length);
+        m_firstChild = grow(m_firstChild, length);
+        m_moveNumber = grow(m_moveNumber, length);
+        m_nextSibling = grow(m_nextSibling, length);
+        m_row = grow(m_row, length);
+        m_subtreeSize = grow(m_subtreeSize, length);
+    }
+
+    private static int[] grow(int[] array, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private Frame startNode(ConstNode node, int father, int column, int row,
+                            int moveNumber, Set<ConstNode> expanded,
+                            boolean showSubtreeSizes)
+    {
+        if (node.getMove() != null)
+            ++moveNumber;
+        Frame frame = new Frame();
+        frame.m_node = node;
+        frame.m_index = add(node, father, column, row, moveNumber);
+        if (expanded.contains(node))
+            frame.m_numberChildren = node.getNumberChildren();
+        else if (showSubtreeSizes && node.hasChildren())
+            m_subtreeSize[frame.m_index] = NodeUtil.subtreeSize(node) - 1;
+        return frame;
+    }
+}
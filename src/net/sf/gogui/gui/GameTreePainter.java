@@ -0,0 +1,242 @@
+// GameTreePainter.java
+
+package net.sf.gogui.gui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.font.LineMetrics;
+import javax.swing.UIManager;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.NodeUtil;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
+import net.sf.gogui.go.Move;
+import static net.sf.gogui.gui.I18n.i18n;
+
+/** Paints the nodes of a GameTreeLayout in GameTreePanel. */
+final class GameTreePainter
+{
+    public GameTreePainter(GameTreePanel gameTreePanel, Font font,
+                           Image imageBlack, Image imageWhite,
+                           Image imageSetup)
+    {
+        m_gameTreePanel = gameTreePanel;
+        m_font = font;
+        m_imageBlack = imageBlack;
+        m_imageWhite = imageWhite;
+        m_imageSetup = imageSetup;
+    }
+
+    /** Get the tool tip text for a node. */
+    public static String getToolTip(ConstNode node, int moveNumber)
+    {
+        StringBuilder toolTip = new StringBuilder(128);
+        Move move = node.getMove();
+        GoColor player = node.getPlayer();
+        if (move != null)
+        {
+            toolTip.append(moveNumber);
+            toolTip.append(' ');
+            toolTip.append(move);
+        }
+        else if (node.hasSetup() || player != null)
+        {
+            toolTip.append(i18n("TT_NODE_SETUP"));
+            toolTip.append(" (");
+            boolean anyStones = false;
+            for (GoColor c : BLACK_WHITE_EMPTY)
+            {
+                int n = node.getSetup(c).size();
+                if (n == 0)
+                    continue;
+                if (anyStones)
+                    toolTip.append(", ");
+                anyStones = true;
+                toolTip.append(c.getUppercaseLetter());
+                toolTip.append(' ');
+                toolTip.append(n);
+            }
+            if (player != null)
+            {
+                if (anyStones)
+                    toolTip.append(", ");
+                toolTip.append(i18n("TT_NODE_PLAYER"));
+                toolTip.append(' ');
+                toolTip.append(player.getUppercaseLetter());
+            }
+            toolTip.append(')');
+        }
+        String comment = NodeUtil.getCommentStart(node, false, 80);
+        if (comment != null)
+        {
+            comment = comment.replaceAll("\n *\n", "\n");
+            comment = comment.replaceAll("\n", "<br>");
+            if (comment.length() > 50)
+            {
+                toolTip.append("<p width=\"250\">");
+                toolTip.append(comment);
+                toolTip.append("</p>");
+            }
+            else
+            {
+                toolTip.append("<p>");
+                toolTip.append(comment);
+                toolTip.append("</p>");
+            }
+        }
+        if (toolTip.length() == 0)
+            return null;
+        return "<html>" + toolTip.toString() + "</html>";
+    }
+
+    /** Paint a node with the junction to its children and the size of its
+        hidden subtree.
+        @param graphics The graphics context.
+        @param layout The layout.
+        @param index The index of the node in the layout.
+        @param x The x coordinate of the node.
+        @param y The y coordinate of the node.
+        @param isCurrent Paint the node as the current node. */
+    public void paint(Graphics graphics, GameTreeLayout layout, int index,
+                      int x, int y, boolean isCurrent)
+    {
+        ConstNode node = layout.getNode(index);
+        int size = m_gameTreePanel.getNodeSize();
+        int fullSize = m_gameTreePanel.getNodeFullSize();
+        int halfSize = size / 2;
+        int firstChild = layout.getFirstChild(index);
+        boolean hasJunction =
+            (firstChild >= 0 && layout.getNextSibling(firstChild) >= 0);
+        if (isCurrent)
+        {
+            graphics.setColor(COLOR_CURSOR);
+            graphics.fillRect(x, y, size, size > 10 ? size : fullSize - 1);
+        }
+        graphics.setColor(COLOR_GRID);
+        // Don't use getNumberChildren() for collapsed nodes, it creates the
+        // children of nodes with a child loader
+        // Lines to the children end before the child, like in the former
+        // node components, which clipped them
+        if (node.hasChildren())
+            graphics.drawLine(x + size, y + halfSize, x + fullSize - 1,
+                              y + halfSize);
+        if (hasJunction)
+            paintJunction(graphics, layout, index, x, y);
+        Move move = node.getMove();
+        if (node.hasSetup())
+            graphics.drawImage(m_imageSetup, x, y, null);
+        else if (move == null)
+        {
+            graphics.setColor(COLOR_GRID);
+            int[] xPoints = { x + halfSize, x + size, x + halfSize, x };
+            int[] yPoints = { y, y + halfSize, y + size, y + halfSize };
+            graphics.fillPolygon(xPoints, yPoints, 4);
+        }
+        else
+        {
+            if (move.getColor() == BLACK)
+                graphics.drawImage(m_imageBlack, x, y, null);
+            else
+                graphics.drawImage(m_imageWhite, x, y, null);
+            drawText(graphics, move, layout.getMoveNumber(index), x, y);
+        }
+        if (node.hasComment())
+        {
+            graphics.setColor(COLOR_LIGHT_BLUE);
+            int yComment = y + size + (fullSize - size) / 4;
+            int d = size / 5;
+            graphics.drawLine(x + d, yComment, x + size - d, yComment);
+        }
+        int subtreeSize = layout.getSubtreeSize(index);
+        if (subtreeSize >= 0)
+            drawSubtreeSize(graphics, subtreeSize, x, y);
+    }
+
+    private static final Color COLOR_LIGHT_BLUE = new Color(103, 122, 164);
+
+    private static final Color COLOR_CURSOR = new Color(142, 168, 226);
+
+    private static final Color COLOR_GRID = new Color(148, 148, 148);
+
+    private final Font m_font;
+
+    private final GameTreePanel m_gameTreePanel;
+
+    private final Image m_imageBlack;
+
+    private final Image m_imageWhite;
+
+    private final Image m_imageSetup;
+
+    private void drawSubtreeSize(Graphics graphics, int subtreeSize, int x,
+                                 int y)
+    {
+        String text = Integer.toString(subtreeSize);
+        int size = m_gameTreePanel.getNodeSize();
+        graphics.setFont(m_font);
+        FontMetrics fontMetrics = graphics.getFontMetrics();
+        int textHeight = m_font.getSize();
+        int xText = x + m_gameTreePanel.getNodeFullSize() + GuiUtil.SMALL_PAD;
+        int yText = y + (size - textHeight) / 2 + fontMetrics.getAscent();
+        Color color = UIManager.getColor("Label.foreground");
+        graphics.setColor(color == null ? Color.black : color);
+        graphics.drawString(text, xText, yText);
+    }
+
+    private void drawText(Graphics graphics, Move move, int moveNumber,
+                          int x, int y)
+    {
+        GameTreePanel.Label labelMode = m_gameTreePanel.getLabelMode();
+        if (labelMode == GameTreePanel.Label.NONE)
+            return;
+        int size = m_gameTreePanel.getNodeSize();
+        String text;
+        if (labelMode == GameTreePanel.Label.MOVE)
+        {
+            if (move.getPoint() == null)
+                return;
+            text = move.getPoint().toString();
+        }
+        else
+            text = Integer.toString(moveNumber);
+        graphics.setFont(m_font);
+        FontMetrics fontMetrics = graphics.getFontMetrics();
+        LineMetrics lineMetrics = fontMetrics.getLineMetrics(text, graphics);
+        int textWidth = fontMetrics.stringWidth(text);
+        int ascent = (int)lineMetrics.getAscent();
+        int xText = x + (size - textWidth) / 2;
+        int yText = y + (ascent + size) / 2;
+        if (move.getColor() == BLACK)
+            graphics.setColor(Color.white);
+        else
+            graphics.setColor(Color.black);
+        graphics.drawString(text, xText, yText);
+    }
+
+    /** Paint the lines from a node to its children, if it has more than one
+        child in the layout. */
+    private void paintJunction(Graphics graphics, GameTreeLayout layout,
+                               int index, int x, int y)
+    {
+        int size = m_gameTreePanel.getNodeSize();
+        int fullSize = m_gameTreePanel.getNodeFullSize();
+        int halfSize = size / 2;
+        int row = layout.getRow(index);
+        int child = layout.getFirstChild(index);
+        int lastY = y;
+        while ((child = layout.getNextSibling(child)) >= 0)
+        {
+            int yChild = y + (layout.getRow(child) - row) * fullSize;
+            graphics.drawLine(x + halfSize, yChild, x + size,
+                              yChild + halfSize);
+            graphics.drawLine(x + size, yChild + halfSize,
+                              x + fullSize - 1, yChild + halfSize);
+            lastY = yChild;
+        }
+        graphics.drawLine(x + halfSize, y + size, x + halfSize, lastY);
+    }
+}
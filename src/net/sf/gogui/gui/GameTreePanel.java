@@ -3,7 +3,6 @@
 package net.sf.gogui.gui;
 
 import java.awt.Color;
-import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Font;
@@ -15,22 +14,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionAdapter;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.prefs.Preferences;
 
 import javax.swing.ImageIcon;
 import javax.swing.JDialog;
-import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
 import javax.swing.Scrollable;
-import javax.swing.SpringLayout;
 import javax.swing.SwingConstants;
+import javax.swing.ToolTipManager;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.Game;
 import net.sf.gogui.game.Node;
@@ -43,7 +39,11 @@ import net.sf.gogui.util.ErrorMessage;
 
 import static net.sf.gogui.gui.I18n.i18n;
 
-/** Panel displaying a game tree. */
+/** Panel displaying a game tree.
+    The panel has no child components. The positions of the visible nodes
+    are computed into a GameTreeLayout and only the nodes that intersect
+    the clip rectangle are painted. Mouse events and tool tips use the grid
+    position of the event to find the node. */
 public class GameTreePanel
     extends JPanel
     implements Scrollable
@@ -74,7 +74,7 @@ public class GameTreePanel
                          Label labelMode, Size sizeMode,
                          MessageDialogs messageDialogs, GoGuiActions m_actions)
     {
-        super(new SpringLayout());
+        super(null);
         m_messageDialogs = messageDialogs;
         m_owner = owner;
         setBackground(BACKGROUND);
@@ -85,43 +85,33 @@ public class GameTreePanel
         setFocusTraversalKeysEnabled(false);
         setAutoscrolls(true);
         addMouseMotionListener(new GameTreePanel.MouseMotionListener());
+        ToolTipManager.sharedInstance().registerComponent(this);
         m_listener = listener;
-        m_mouseListener = new MouseAdapter()
+        addMouseListener(new MouseAdapter()
             {
                 public void mouseClicked(MouseEvent event)
                 {
                     //Left click
                     if (event.getButton() != MouseEvent.BUTTON1)
                         return;
-                    GameTreeNode gameNode = (GameTreeNode)event.getSource();
-                    gotoNode(gameNode.getNode());
+                    int index = getNodeAt(event.getX(), event.getY());
+                    if (index >= 0)
+                        gotoNode(m_layout.getNode(index));
                 }
 
                 public void mousePressed(MouseEvent event)
                 {
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event.getX(), event.getY(), m_actions);
                 }
 
                 public void mouseReleased(MouseEvent event)
                 {
                 	//Right click
                     if (event.isPopupTrigger())
-                    {
-                        GameTreeNode gameNode
-                            = (GameTreeNode)event.getSource();
-                        int x = event.getX();
-                        int y = event.getY();
-                        showPopup(x, y, gameNode, m_actions);
-                    }
+                        showPopup(event.getX(), event.getY(), m_actions);
                 }
-            };
+            });
     }
 
     public ConstNode getCurrentNode()
@@ -144,6 +134,16 @@ public class GameTreePanel
         return m_nodeSize;
     }
 
+    /** Get the tool tip of the node at the mouse position. */
+    public String getToolTipText(MouseEvent event)
+    {
+        int index = getNodeAt(event.getX(), event.getY());
+        if (index < 0)
+            return null;
+        return GameTreePainter.getToolTip(m_layout.getNode(index),
+                                          m_layout.getMoveNumber(index));
+    }
+
     public Dimension getPreferredScrollableViewportSize()
     {
         return new Dimension(m_nodeFullSize * 10, m_nodeFullSize * 3);
@@ -203,16 +203,45 @@ public class GameTreePanel
         return m_isExpanded.contains(node);
     }
 
+    /** Paint the nodes that intersect the clip rectangle.
+        Nodes left of the clip rectangle are included, because the sizes of
+        their hidden subtrees are painted right of them. */
     public void paintComponent(Graphics graphics)
     {
         GuiUtil.setAntiAlias(graphics);
         super.paintComponent(graphics);
+        if (m_layout == null)
+            return;
+        Rectangle clip = graphics.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        int firstColumn =
+            Math.max(getGridPosition(clip.x) - SUBTREE_SIZE_COLUMNS, 0);
+        int lastColumn = Math.min(getGridPosition(clip.x + clip.width),
+                                  m_layout.getNumberColumns() - 1);
+        int firstRow = getGridPosition(clip.y);
+        int lastRow = getGridPosition(clip.y + clip.height);
+        for (int column = firstColumn; column <= lastColumn; ++column)
+        {
+            // Start with the last node above the clip rectangle, its
+            // junction can cross the rectangle
+            int position = Math.max(m_layout.findInColumn(column, firstRow),
+                                    0);
+            int size = m_layout.getColumnSize(column);
+            for ( ; position < size; ++position)
+            {
+                int index = m_layout.getColumnNode(column, position);
+                if (m_layout.getRow(index) > lastRow)
+                    break;
+                m_painter.paint(graphics, m_layout, index, getX(index),
+                                getY(index), index == m_currentIndex);
+            }
+        }
     }
 
     public void redrawCurrentNode()
     {
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        gameNode.repaint();
+        repaintNode(m_currentIndex);
     }
 
     public void scrollToCurrent()
@@ -272,42 +301,36 @@ public class GameTreePanel
         }
     }
 
-    /** Faster than update if a new node was added as the first child. */
+    /** Faster than update if a new node was added as the first child.
+        Adds the node to the layout without computing the layout again. */
     public void addNewSingleChild(ConstNode node)
     {
         assert ! node.hasChildren();
         ConstNode father = node.getFatherConst();
         assert father != null;
         assert father.getNumberChildren() == 1;
-        GameTreeNode fatherGameNode = getGameTreeNode(father);
-        if (fatherGameNode == null)
+        int fatherIndex = findNode(father);
+        if (fatherIndex < 0 || m_layout.getFirstChild(fatherIndex) >= 0)
         {
             assert false;
             return;
         }
-        int moveNumber = NodeUtil.getMoveNumber(node);
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(fatherGameNode, gameNode, m_nodeFullSize, 0);
-        gameNode.setLocation(fatherGameNode.getX() + m_nodeFullSize,
-                             fatherGameNode.getY());
-        gameNode.setSize(m_nodeFullSize, m_nodeFullSize);
-        m_maxX = Math.max(fatherGameNode.getX() + 2 * m_nodeFullSize, m_maxX);
+        int index = m_layout.addSingleChild(fatherIndex, node);
+        m_maxX = Math.max(getX(index) - MARGIN, m_maxX);
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
+        revalidate();
+        repaintNode(fatherIndex);
+        repaintNode(index);
     }
 
     public void showPopup(GoGuiActions m_actions)
     {
-        if (m_currentNode == null)
+        if (m_currentIndex < 0)
             return;
         scrollToCurrent();
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
-            return;
-        showPopup(gameNode.getWidth() / 2, gameNode.getHeight() / 2,
-                  gameNode, m_actions);
+        showPopup(getX(m_currentIndex) + m_nodeFullSize / 2,
+                  getY(m_currentIndex) + m_nodeFullSize / 2, m_actions);
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode,
@@ -323,14 +346,17 @@ public class GameTreePanel
         ensureVisible(currentNode);
         m_tree = tree;
         m_currentNode = currentNode;
-        removeAll();
-        m_map.clear();
+        m_layout = null;
+        m_currentIndex = -1;
         m_maxX = minWidth;
         m_maxY = minHeight;
         try
         {
             ConstNode root = m_tree.getRootConst();
-            createNodes(this, root, 0, 0, MARGIN, MARGIN, 0);
+            createLayout(root);
+            // Forget nodes that are no longer in the tree, e.g. deleted or
+            // unloaded subtrees
+            retainExpandedInLayout();
             if (gameTreeChanged
                 && ! NodeUtil.subtreeGreaterThan(root, 10000))
                 showSubtree(root);
@@ -338,7 +364,7 @@ public class GameTreePanel
         catch (OutOfMemoryError e)
         {
             m_isExpanded.clear();
-            removeAll();
+            m_layout = null;
             m_messageDialogs.showError(m_owner,
                                        i18n("MSG_TREE_OUTOFMEM"),
                                        i18n("MSG_TREE_OUTOFMEM_2"));
@@ -347,6 +373,7 @@ public class GameTreePanel
         setPreferredSize(new Dimension(m_maxX + m_nodeFullSize + MARGIN,
                                        m_maxY + m_nodeFullSize + MARGIN));
         revalidate();
+        repaint();
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -361,8 +388,7 @@ public class GameTreePanel
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        GameTreeNode gameNode = getGameTreeNode(m_currentNode);
-        if (gameNode == null)
+        if (m_layout == null || m_currentIndex < 0)
         {
             // The following warning was previously an assert false.
             // But it can can happen, because GoGui does sometimes defer a full
@@ -377,19 +403,15 @@ public class GameTreePanel
             System.err.println("GameTreePanel: current node not found");
             return;
         }
-        gameNode.repaint();
-        gameNode = getGameTreeNode(currentNode);
-        if (gameNode == null)
+        int index = findNode(currentNode);
+        if (index < 0)
         {
             update(m_tree, currentNode, minWidth, minHeight);
             return;
         }
-        Point location = gameNode.getLocation();
-        m_currentNodeX = location.x;
-        m_currentNodeY = location.y;
-        gameNode.repaint();
-        gameNode.updateToolTip();
-        m_currentNode = currentNode;
+        repaintNode(m_currentIndex);
+        setCurrent(currentNode, index);
+        repaintNode(index);
         scrollToCurrent();
         if (m_scrollPane != null)
             m_scrollPane.requestFocusInWindow();
@@ -410,6 +432,9 @@ public class GameTreePanel
 
     private boolean m_showSubtreeSizes;
 
+    /** Index of the current node in m_layout or -1. */
+    private int m_currentIndex = -1;
+
     private int m_currentNodeX;
 
     private int m_currentNodeY;
@@ -428,14 +453,20 @@ public class GameTreePanel
 
     private static final int MARGIN = 15;
 
+    /** Number of columns left of the clip rectangle that are painted.
+        Large enough for the size of a hidden subtree. */
+    private static final int SUBTREE_SIZE_COLUMNS = 3;
+
     private int m_maxX;
 
     private int m_maxY;
 
-    private Dimension m_preferredNodeSize;
-
     private Font m_font;
 
+    private GameTreeLayout m_layout;
+
+    private GameTreePainter m_painter;
+
     private ConstGameTree m_tree;
 
     private final GameTreeViewer.Listener m_listener;
@@ -449,14 +480,9 @@ public class GameTreePanel
 
     private ConstNode m_popupNode;
 
-    private final HashMap<ConstNode,GameTreeNode> m_map =
-        new HashMap<ConstNode,GameTreeNode>(500, 0.8f);
-
     private final HashSet<ConstNode> m_isExpanded
         = new HashSet<ConstNode>(200);
 
-    private final MouseListener m_mouseListener;
-
     private Point m_popupLocation;
 
     private ImageIcon m_iconBlack;
@@ -514,76 +540,36 @@ public class GameTreePanel
 
 
         m_font = new Font("Dialog", Font.PLAIN, (int)(0.4 * m_nodeSize));
-        m_preferredNodeSize = new Dimension(m_nodeFullSize, m_nodeFullSize);
-    }
-
-    private GameTreeNode createNode(ConstNode node, int moveNumber)
-    {
-        return new GameTreeNode(node, moveNumber, this, m_mouseListener,
-                                m_font, m_iconBlack.getImage(),
-                                m_iconWhite.getImage(),
-                                m_iconSetup.getImage(),
-                                m_preferredNodeSize);
-    }
-
-    private int createNodes(Component father, ConstNode node, int x, int y,
-                            int dx, int dy, int moveNumber)
-    {
-        m_maxX = Math.max(x, m_maxX);
-        m_maxY = Math.max(y, m_maxY);
-        if (node.getMove() != null)
-            ++moveNumber;
-        GameTreeNode gameNode = createNode(node, moveNumber);
-        m_map.put(node, gameNode);
-        add(gameNode);
-        putConstraint(father, gameNode, dx, dy);
-        int numberChildren = node.getNumberChildren();
-        dx = m_nodeFullSize;
-        dy = 0;
-        boolean isExpanded = isExpanded(node);
-        if (isExpanded)
-        {
-            int[] childrenDy = new int[numberChildren];
-            for (int i = 0; i < numberChildren; ++i)
-            {
-                childrenDy[i] = dy;
-                dy += createNodes(gameNode, node.getChildConst(i),
-                                  x + dx, y + dy, dx, dy, moveNumber);
-                if (i < numberChildren - 1)
-                    dy += m_nodeFullSize;
-            }
-            if (numberChildren > 1)
-            {
-                GameTreeJunction junction =
-                    new GameTreeJunction(childrenDy, this);
-                add(junction);
-                putConstraint(gameNode, junction, 0, m_nodeFullSize);
-            }
-        }
-        else
+        m_painter = new GameTreePainter(this, m_font, m_iconBlack.getImage(),
+                                        m_iconWhite.getImage(),
+                                        m_iconSetup.getImage());
+    }
+
+    /** Compute the layout of the visible nodes of the tree. */
+    private void createLayout(ConstNode root)
+    {
+        m_layout = new GameTreeLayout(root, m_isExpanded, m_showSubtreeSizes);
+        // m_maxX and m_maxY don't include the margin
+        m_maxX = Math.max((m_layout.getNumberColumns() - 1) * m_nodeFullSize,
+                          m_maxX);
+        m_maxY = Math.max((m_layout.getNumberRows() - 1) * m_nodeFullSize,
+                          m_maxY);
+        int pad = GuiUtil.SMALL_PAD;
+        for (int i = 0; i < m_layout.getNumberNodes(); ++i)
         {
-            if (m_showSubtreeSizes && node.hasChildren())
+            int subtreeSize = m_layout.getSubtreeSize(i);
+            if (subtreeSize >= 0)
             {
-                int subtreeSize = NodeUtil.subtreeSize(node) - 1;
-                String text = Integer.toString(subtreeSize);
                 // Use upper limit for textWidth
-                int textWidth = text.length() + m_font.getSize();
-                int textHeight = m_font.getSize();
-                int pad = GuiUtil.SMALL_PAD;
-                m_maxX = Math.max(x + textWidth + pad, m_maxX);
-                JLabel label = new JLabel(text);
-                label.setFont(m_font);
-                add(label);
-                putConstraint(gameNode, label, dx + pad,
-                              (m_nodeSize - textHeight) / 2);
+                int textWidth =
+                    Integer.toString(subtreeSize).length() + m_font.getSize();
+                m_maxX = Math.max(getX(i) - MARGIN + textWidth + pad,
+                                  m_maxX);
             }
         }
-        if (node == m_currentNode)
-        {
-            m_currentNodeX = x;
-            m_currentNodeY = y;
-        }
-        return dy;
+        int index = m_layout.find(m_currentNode, -1);
+        if (index >= 0)
+            setCurrent(m_currentNode, index);
     }
 
     private void createPopup(GoGuiActions m_actions)
@@ -671,11 +657,6 @@ public class GameTreePanel
         m_popup.add(item);
     }
 
-    private GameTreeNode getGameTreeNode(ConstNode node)
-    {
-        return m_map.get(node);
-    }
-
     private boolean ensureVisible(ConstNode node)
     {
         boolean changed = false;
@@ -690,6 +671,42 @@ public class GameTreePanel
         return changed;
     }
 
+    /** Find the index of a node in the layout.
+        @return The index or -1, if the node is not visible. */
+    private int findNode(ConstNode node)
+    {
+        if (m_layout == null)
+            return -1;
+        return m_layout.find(node, m_currentIndex);
+    }
+
+    /** Get the grid column or row of a coordinate. */
+    private int getGridPosition(int x)
+    {
+        if (x < MARGIN)
+            return -1;
+        return (x - MARGIN) / m_nodeFullSize;
+    }
+
+    /** Find the node at a location.
+        @return The index of the node in the layout or -1. */
+    private int getNodeAt(int x, int y)
+    {
+        if (m_layout == null)
+            return -1;
+        return m_layout.findAt(getGridPosition(x), getGridPosition(y));
+    }
+
+    private int getX(int index)
+    {
+        return MARGIN + m_layout.getColumn(index) * m_nodeFullSize;
+    }
+
+    private int getY(int index)
+    {
+        return MARGIN + m_layout.getRow(index) * m_nodeFullSize;
+    }
+
     private void hideOthers(ConstNode node)
     {
         m_isExpanded.clear();
@@ -737,33 +754,59 @@ public class GameTreePanel
         textViewer.setVisible(true);
     }
 
-    private void putConstraint(Component father, Component son,
-                               int west, int north)
+    private void repaintNode(int index)
+    {
+        if (m_layout == null || index < 0)
+            return;
+        // Include the junction to the children and the subtree size
+        repaint(getX(index), getY(index),
+                (SUBTREE_SIZE_COLUMNS + 1) * m_nodeFullSize, m_nodeFullSize);
+    }
+
+    /** Remove the nodes that are not in the layout from m_isExpanded. */
+    private void retainExpandedInLayout()
     {
-        SpringLayout layout = (SpringLayout)getLayout();
-        layout.putConstraint(SpringLayout.WEST, son, west,
-                             SpringLayout.WEST, father);
-        layout.putConstraint(SpringLayout.NORTH, son, north,
-                             SpringLayout.NORTH, father);
+        HashSet<ConstNode> nodes =
+            new HashSet<ConstNode>(2 * m_isExpanded.size());
+        for (int i = 0; i < m_layout.getNumberNodes(); ++i)
+        {
+            ConstNode node = m_layout.getNode(i);
+            if (m_isExpanded.contains(node))
+                nodes.add(node);
+        }
+        m_isExpanded.retainAll(nodes);
     }
 
     private void scrollTo(ConstNode node)
     {
         if (node == null)
             return;
-        GameTreeNode gameNode = getGameTreeNode(node);
+        int index = findNode(node);
+        if (index < 0)
+            return;
         Rectangle rectangle = new Rectangle();
-        rectangle.x = gameNode.getLocation().x;
-        rectangle.y = gameNode.getLocation().y;
+        rectangle.x = getX(index);
+        rectangle.y = getY(index);
         // Make rectangle large so that children are visible
         rectangle.width = 3 * m_nodeFullSize;
         rectangle.height = 3 * m_nodeFullSize;
         scrollRectToVisible(rectangle);
     }
 
-    private void showPopup(int x, int y, GameTreeNode gameNode, GoGuiActions m_actions)
+    private void setCurrent(ConstNode node, int index)
     {
-        ConstNode node = gameNode.getNode();
+        m_currentNode = node;
+        m_currentIndex = index;
+        m_currentNodeX = getX(index);
+        m_currentNodeY = getY(index);
+    }
+
+    private void showPopup(int x, int y, GoGuiActions m_actions)
+    {
+        int index = getNodeAt(x, y);
+        if (index < 0)
+            return;
+        ConstNode node = m_layout.getNode(index);
         m_popupNode = node;
         if (m_popup == null)
             createPopup(m_actions);
@@ -773,7 +816,7 @@ public class GameTreePanel
         m_itemHideSubtree.setEnabled(hasChildren);
         m_itemShowSubtree.setEnabled(hasChildren);
         m_itemShowChildren.setEnabled(hasChildren);
-        m_popup.show(gameNode, x, y);
+        m_popup.show(this, x, y);
         m_popupLocation = m_popup.getLocationOnScreen();
     }
 
@@ -803,7 +846,7 @@ public class GameTreePanel
             update(m_tree, m_currentNode, m_minWidth, m_minHeight);
             // Game node could have disappeared, because after out of memory
             // error all nodes are hidden but main variation
-            if (getGameTreeNode(root) == null)
+            if (findNode(root) < 0)
             {
                 ensureVisible(root);
                 update(m_tree, m_currentNode, m_minWidth, m_minHeight);
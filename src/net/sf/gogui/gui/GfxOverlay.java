@@ -0,0 +1,399 @@
+// GfxOverlay.java
+
+package net.sf.gogui.gui;
+
+import java.awt.Color;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Locale;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+import net.sf.gogui.util.StringUtil;
+
+/** Parsed response to a gfx analyze command.
+    Parsing does not need the board, so it can be done in a different
+    thread than the Swing event dispatch thread (e.g. for live graphics
+    received on standard error of the engine). Points are parsed for the
+    maximum board size; points that are not on the board are ignored when
+    the overlay is shown. See the description of the gfx analyze command
+    type in the GoGui documentation. */
+public final class GfxOverlay
+{
+    /** Parse a gfx response.
+        Unknown commands and invalid arguments are ignored. */
+    public static GfxOverlay parse(String response)
+    {
+        GfxOverlay overlay = new GfxOverlay();
+        BufferedReader reader
+            = new BufferedReader(new StringReader(response));
+        while (true)
+        {
+            String line;
+            try
+            {
+                line = reader.readLine();
+            }
+            catch (IOException e)
+            {
+                assert false;
+                break;
+            }
+            if (line == null)
+                break;
+            overlay.parseLine(line);
+        }
+        return overlay;
+    }
+
+    /** Get the number of commands in the overlay.
+        Lines with unknown commands are not counted. */
+    public int getNumberCommands()
+    {
+        return m_commands.size();
+    }
+
+    /** Display the overlay on the board.
+        Must be called from the Swing event dispatch thread.
+        @param guiBoard The board.
+        @param statusBar The status bar for the TEXT command, used if
+        showTextBuffer is null.
+        @param showTextBuffer See AnalyzeShow.show() */
+    public void show(GuiBoard guiBoard, StatusBar statusBar,
+                     StringBuilder showTextBuffer)
+    {
+        int size = guiBoard.getBoardSize();
+        for (Command command : m_commands)
+        {
+            switch (command.m_type)
+            {
+            case CIRCLE:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setMarkCircle(point, true);
+                break;
+            case CLEAR:
+                guiBoard.clearAll();
+                break;
+            case COLOR:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setFieldBackground(point, command.m_color);
+                break;
+            case INFLUENCE:
+                for (int i = 0; i < command.m_points.size(); ++i)
+                {
+                    GoPoint point = command.m_points.get(i);
+                    if (isOnBoard(point, size))
+                        guiBoard.setInfluence(point,
+                                              command.m_values.get(i));
+                }
+                break;
+            case LABEL:
+                for (int i = 0; i < command.m_points.size(); ++i)
+                {
+                    GoPoint point = command.m_points.get(i);
+                    if (isOnBoard(point, size))
+                        guiBoard.setLabel(point, command.m_labels.get(i));
+                }
+                break;
+            case MARK:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setMark(point, true);
+                break;
+            case SQUARE:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setMarkSquare(point, true);
+                break;
+            case TERRITORY:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setTerritory(point, command.m_goColor);
+                break;
+            case TEXT:
+                if (showTextBuffer == null)
+                    statusBar.setText(command.m_text);
+                else
+                {
+                    if (showTextBuffer.length() > 0)
+                        showTextBuffer.append('\n');
+                    showTextBuffer.append(command.m_text);
+                }
+                break;
+            case TRIANGLE:
+                for (GoPoint point : command.m_points)
+                    if (isOnBoard(point, size))
+                        guiBoard.setMarkTriangle(point, true);
+                break;
+            case VARIATION:
+                showVariation(command, guiBoard);
+                break;
+            default:
+                assert false;
+                break;
+            }
+        }
+    }
+
+    private enum Type
+    {
+        CIRCLE,
+
+        CLEAR,
+
+        COLOR,
+
+        INFLUENCE,
+
+        LABEL,
+
+        MARK,
+
+        SQUARE,
+
+        TERRITORY,
+
+        TEXT,
+
+        TRIANGLE,
+
+        VARIATION
+    }
+
+    /** A command of the gfx response with its parsed arguments. */
+    private static final class Command
+    {
+        public Command(Type type)
+        {
+            m_type = type;
+        }
+
+        public final Type m_type;
+
+        /** Color of a COLOR command. */
+        public Color m_color;
+
+        /** Color of a BLACK or WHITE command. */
+        public GoColor m_goColor;
+
+        /** Text of a TEXT command. */
+        public String m_text;
+
+        /** Points of the command.
+            Contains null for passes in a VAR command; other commands
+            contain no passes. */
+        public final ArrayList<GoPoint> m_points = new ArrayList<GoPoint>();
+
+        /** Move colors of a VAR command, one per point. */
+        public final ArrayList<GoColor> m_colors = new ArrayList<GoColor>();
+
+        /** Labels of a LABEL command, one per point. */
+        public final ArrayList<String> m_labels = new ArrayList<String>();
+
+        /** Values of an INFLUENCE command, one per point. */
+        public final ArrayList<Double> m_values = new ArrayList<Double>();
+    }
+
+    private final ArrayList<Command> m_commands = new ArrayList<Command>();
+
+    private GfxOverlay()
+    {
+    }
+
+    private static boolean isOnBoard(GoPoint point, int size)
+    {
+        return point.getX() < size && point.getY() < size;
+    }
+
+    private void parseLine(String line)
+    {
+        String[] args = StringUtil.splitArguments(line);
+        if (args.length == 0)
+            return;
+        String cmd = args[0].toUpperCase(Locale.ENGLISH);
+        Command command;
+        if (cmd.equals("BLACK"))
+        {
+            command = new Command(Type.TERRITORY);
+            command.m_goColor = BLACK;
+            parsePoints(args, 1, command);
+        }
+        else if (cmd.equals("CIRCLE"))
+        {
+            command = new Command(Type.CIRCLE);
+            parsePoints(args, 1, command);
+        }
+        else if (cmd.equals("CLEAR"))
+            command = new Command(Type.CLEAR);
+        else if (cmd.equals("COLOR"))
+        {
+            if (args.length < 2)
+                return;
+            command = new Command(Type.COLOR);
+            command.m_color = GuiBoardUtil.getColor(args[1]);
+            parsePoints(args, 2, command);
+        }
+        else if (cmd.equals("INFLUENCE"))
+        {
+            command = new Command(Type.INFLUENCE);
+            parseInfluence(args, command);
+        }
+        else if (cmd.equals("LABEL"))
+        {
+            command = new Command(Type.LABEL);
+            parseLabels(args, command);
+        }
+        else if (cmd.equals("MARK"))
+        {
+            command = new Command(Type.MARK);
+            parsePoints(args, 1, command);
+        }
+        else if (cmd.equals("SQUARE"))
+        {
+            command = new Command(Type.SQUARE);
+            parsePoints(args, 1, command);
+        }
+        else if (cmd.equals("TEXT"))
+        {
+            command = new Command(Type.TEXT);
+            line = line.trim();
+            int pos = line.indexOf(' ');
+            command.m_text = "";
+            if (pos > 0)
+                command.m_text = line.substring(pos + 1);
+        }
+        else if (cmd.equals("TRIANGLE"))
+        {
+            command = new Command(Type.TRIANGLE);
+            parsePoints(args, 1, command);
+        }
+        else if (cmd.equals("VAR"))
+        {
+            command = new Command(Type.VARIATION);
+            parseVariation(args, command);
+        }
+        else if (cmd.equals("WHITE"))
+        {
+            command = new Command(Type.TERRITORY);
+            command.m_goColor = WHITE;
+            parsePoints(args, 1, command);
+        }
+        else
+            return;
+        m_commands.add(command);
+    }
+
+    private static void parseInfluence(String[] args, Command command)
+    {
+        for (int i = 1; i < args.length; i += 2)
+        {
+            try
+            {
+                GoPoint point = GoPoint.parsePoint(args[i], GoPoint.MAX_SIZE);
+                if (i + 1 >= args.length)
+                    break;
+                if (point == null)
+                    continue;
+                double value = Double.parseDouble(args[i + 1]);
+                command.m_points.add(point);
+                command.m_values.add(value);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+            catch (NumberFormatException e)
+            {
+            }
+        }
+    }
+
+    private static void parseLabels(String[] args, Command command)
+    {
+        for (int i = 1; i < args.length; i += 2)
+        {
+            try
+            {
+                GoPoint point = GoPoint.parsePoint(args[i], GoPoint.MAX_SIZE);
+                if (i + 1 >= args.length)
+                    break;
+                if (point == null)
+                    continue;
+                command.m_points.add(point);
+                command.m_labels.add(args[i + 1]);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private static void parsePoints(String[] args, int start,
+                                    Command command)
+    {
+        for (int i = start; i < args.length; ++i)
+        {
+            try
+            {
+                GoPoint point = GoPoint.parsePoint(args[i], GoPoint.MAX_SIZE);
+                if (point != null)
+                    command.m_points.add(point);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    private static void parseVariation(String[] args, Command command)
+    {
+        for (int i = 1; i < args.length; i += 2)
+        {
+            GoColor color;
+            if (args[i].equalsIgnoreCase("b"))
+                color = BLACK;
+            else if (args[i].equalsIgnoreCase("w"))
+                color = WHITE;
+            else
+                break;
+            if (i + 1 >= args.length)
+                break;
+            try
+            {
+                GoPoint point =
+                    GoPoint.parsePoint(args[i + 1], GoPoint.MAX_SIZE);
+                command.m_points.add(point);
+                command.m_colors.add(color);
+            }
+            catch (InvalidPointException e)
+            {
+            }
+        }
+    }
+
+    /** Show the moves of a VAR command as numbered ghost stones.
+        Moves that are not on the board are not counted, like invalid
+        moves. */
+    private static void showVariation(Command command, GuiBoard guiBoard)
+    {
+        int size = guiBoard.getBoardSize();
+        int n = 0;
+        for (int i = 0; i < command.m_points.size(); ++i)
+        {
+            GoPoint point = command.m_points.get(i);
+            if (point != null && ! isOnBoard(point, size))
+                continue;
+            ++n;
+            if (point != null)
+            {
+                guiBoard.setGhostStone(point, command.m_colors.get(i));
+                guiBoard.setLabel(point, Integer.toString(n));
+            }
+        }
+    }
+}
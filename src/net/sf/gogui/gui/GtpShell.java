@@ -32,6 +32,7 @@ import javax.swing.JViewport;
 import javax.swing.SwingUtilities;
 import javax.swing.event.CaretEvent;
 import javax.swing.event.CaretListener;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpUtil;
 import static net.sf.gogui.gui.I18n.i18n;
 import net.sf.gogui.util.ObjectUtil;
@@ -168,6 +169,16 @@ public class GtpShell
         }
     }
 
+    /** Append the command timings of the program to the shell text.
+        The table is appended as a comment and not included in the saved
+        commands. */
+    public void showMetrics(GtpMetrics metrics)
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        m_gtpShellText.appendComment(metrics.toString());
+        m_gtpShellText.setPositionToEnd();
+    }
+
     public void saveLog(JFrame parent)
     {
         save(parent, m_gtpShellText.getLog(),
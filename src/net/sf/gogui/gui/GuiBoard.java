@@ -22,13 +22,16 @@ import java.awt.print.PageFormat;
 import java.awt.print.Printable;
 import java.awt.print.PrinterException;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import net.sf.gogui.boardpainter.BoardPainter;
 import net.sf.gogui.boardpainter.ConstField;
 import net.sf.gogui.boardpainter.Field;
 import net.sf.gogui.go.BoardConstants;
+import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.PointList;
 import net.sf.gogui.gogui.GoGui.Orientation;
 import net.sf.gogui.util.ObjectUtil;
 
@@ -152,8 +155,12 @@ public final class GuiBoard
     /** Clear influence. */
     public void clearInfluence(GoPoint point)
     {
-        getField(point).clearInfluence();
-        repaint(point);
+        Field field = getField(point);
+        if (field.isInfluenceSet())
+        {
+            field.clearInfluence();
+            repaint(point);
+        }
     }
 
     /** Trigger the context menu callback at the listener. */
@@ -274,6 +281,11 @@ public final class GuiBoard
         m_size = size;
         m_constants = BoardConstants.get(size);
         m_field = new Field[size][size];
+        m_paintedField = new Field[size][size];
+        m_stonesBoard = null;
+        for (GoPoint p : m_changedFields)
+            m_isFieldChanged[p.getIndex()] = false;
+        m_changedFields.clear();
         removeAll();
         m_cursor = null;
         setLayout(new SquareLayout());
@@ -353,7 +365,10 @@ public final class GuiBoard
             });
         for (int y = size - 1; y >= 0; --y)
             for (int x = 0; x < size; ++x)
+            {
                 m_field[x][y] = new Field();
+                m_paintedField[x][y] = new Field();
+            }
         m_lastMove = null;
         setCursor(GoPoint.get(m_size / 2, m_size / 2));
         revalidate();
@@ -365,6 +380,8 @@ public final class GuiBoard
         The last move marker will be removed, if the parameter is null. */
     public void markLastMove(GoPoint point)
     {
+        if (point != null && point.equals(m_lastMove))
+            return;
         clearLastMove();
         m_lastMove = point;
         if (m_lastMove != null)
@@ -378,6 +395,7 @@ public final class GuiBoard
 
     public void paintImmediately(GoPoint point)
     {
+        m_paintedField[point.getX()][point.getY()].copyState(getField(point));
         m_panel.paintImmediately(point);
     }
 
@@ -411,12 +429,30 @@ public final class GuiBoard
         if existing. */
     public void setColor(GoPoint point, GoColor color)
     {
-        Field field = getField(point);
-        if (field.getColor() != color)
+        m_stonesBoard = null;
+        updateColor(point, color);
+    }
+
+    /** Set the stones from a board.
+        If the stones were set from the same board in the last call and were
+        not changed with setColor() or initSize() since, only the points
+        that changed on the board since the last call are updated.
+        @param board The board. */
+    public void setStones(ConstBoard board)
+    {
+        if (board == m_stonesBoard && board.getSize() == m_size
+            && board.getChangedPoints(m_stonesChangeCounter, m_changedPoints))
         {
-            field.setColor(color);
-            m_panel.repaintWithShadow(point);
+            for (GoPoint p : m_changedPoints)
+                updateColor(p, board.getColor(p));
+        }
+        else
+        {
+            for (GoPoint p : board)
+                updateColor(p, board.getColor(p));
         }
+        m_stonesBoard = board;
+        m_stonesChangeCounter = board.getChangeCounter();
     }
 
     /** Set the cursor.
@@ -468,7 +504,7 @@ public final class GuiBoard
         if (! ObjectUtil.equals(field.getGhostStone(), color))
         {
             field.setGhostStone(color);
-            m_panel.repaintWithShadow(point);
+            repaint(point);
         }
     }
 
@@ -721,6 +757,13 @@ public final class GuiBoard
 
     private static final boolean DEBUG_REPAINT = false;
 
+    /** A call of repaintChangedFields() is pending. */
+    private boolean m_isRepaintScheduled;
+
+    /** Flags for the points in m_changedFields, indexed by point index. */
+    private final boolean[] m_isFieldChanged =
+        new boolean[GoPoint.NUMBER_INDEXES];
+
     private boolean m_flipHorizontal = false;
 
     private boolean m_flipVertical = false;
@@ -735,8 +778,16 @@ public final class GuiBoard
 
     private int m_size;
 
+    /** Value of ConstBoard.getChangeCounter() at the last call of
+        setStones(). */
+    private long m_stonesChangeCounter;
+
     private BoardConstants m_constants;
 
+    /** Board used in the last call of setStones().
+        null, if the stones were changed otherwise since then. */
+    private ConstBoard m_stonesBoard;
+
     private BoardPanel m_panel;
 
     private Dimension m_minimumFieldSize;
@@ -751,12 +802,27 @@ public final class GuiBoard
 
     private Field m_field[][];
 
+    /** State of the fields at their last repaint. */
+    private Field m_paintedField[][];
+
     private Image m_image;
 
     private Listener m_listener;
 
     private Rectangle m_dirty = new Rectangle();
 
+    /** Temporary variable reused for efficiency. */
+    private final PointList m_changedPoints = new PointList();
+
+    /** Points whose field state changed since the last call of
+        repaintChangedFields(). */
+    private final PointList m_changedFields = new PointList();
+
+    private final Runnable m_repaintChangedFields = new Runnable() {
+            public void run() {
+                repaintChangedFields();
+            } };
+
     private void addDirty(Rectangle rectangle)
     {
         if (m_dirty == null)
@@ -882,9 +948,43 @@ public final class GuiBoard
         setCursor(point);
     }
 
+    /** Request a repaint of a field after its state was changed.
+        The repaint is done later in the event dispatch thread and only if
+        the state differs from the state at the last repaint. This avoids
+        repainting fields that were cleared and set to the same state again
+        while handling an event, e.g. by clearAll() and updating the board. */
     private void repaint(GoPoint point)
     {
-        m_panel.repaint(point);
+        int index = point.getIndex();
+        if (m_isFieldChanged[index])
+            return;
+        m_isFieldChanged[index] = true;
+        m_changedFields.add(point);
+        if (! m_isRepaintScheduled)
+        {
+            m_isRepaintScheduled = true;
+            SwingUtilities.invokeLater(m_repaintChangedFields);
+        }
+    }
+
+    private void repaintChangedFields()
+    {
+        m_isRepaintScheduled = false;
+        for (GoPoint point : m_changedFields)
+        {
+            m_isFieldChanged[point.getIndex()] = false;
+            Field field = getField(point);
+            Field painted = m_paintedField[point.getX()][point.getY()];
+            if (field.hasSameState(painted))
+                continue;
+            boolean isColorChanged = (field.getColor() != painted.getColor());
+            painted.copyState(field);
+            if (isColorChanged)
+                m_panel.repaintWithShadow(point);
+            else
+                m_panel.repaint(point);
+        }
+        m_changedFields.clear();
     }
 
     private void setCursor(GoPoint point, boolean cursor)
@@ -934,4 +1034,14 @@ public final class GuiBoard
             ++size;
         m_minimumFieldSize = new Dimension(size, size);
     }
+
+    private void updateColor(GoPoint point, GoColor color)
+    {
+        Field field = getField(point);
+        if (field.getColor() != color)
+        {
+            field.setColor(color);
+            repaint(point);
+        }
+    }
 }
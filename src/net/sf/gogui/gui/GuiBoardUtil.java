@@ -341,12 +341,16 @@ public final class GuiBoardUtil
             }
     }
 
+    /** Update the stones, the last move marker, the move numbers and the
+        cursor from a board.
+        Only the stones that changed since the last update from the same
+        board are updated (see GuiBoard.setStones()). Points are repainted
+        only if their state changes. */
     public static void updateFromGoBoard(GuiBoard guiBoard, ConstBoard board,
                                          boolean markLastMove,
                                          boolean showMoveNumbers)
     {
-        for (GoPoint p : board)
-            guiBoard.setColor(p, board.getColor(p));
+        guiBoard.setStones(board);
         GoPoint lastMove = null;
         if (board.getLastMove() != null)
             lastMove = board.getLastMove().getPoint();
@@ -359,7 +363,7 @@ public final class GuiBoardUtil
             {
                 GoPoint point = board.getMove(i).getPoint();
                 if (point != null)
-                    guiBoard.setLabel(point, Integer.toString(i + 1));
+                    guiBoard.setLabel(point, getMoveNumberLabel(i + 1));
             }
         if (lastMove == null)
         {
@@ -370,6 +374,9 @@ public final class GuiBoardUtil
             guiBoard.setCursor(lastMove);
     }
 
+    /** Labels for move numbers, index is the move number. */
+    private static String[] s_moveNumberLabels = new String[0];
+
     /** Make constructor unavailable; class is for namespace only. */
     private GuiBoardUtil()
     {
@@ -386,4 +393,22 @@ public final class GuiBoardUtil
             guiBoard.setTerritory(p, c);
         }
     }
+
+    /** Get the label for a move number.
+        Reuses the strings, so that GuiBoard.setLabel() can detect an
+        unchanged label without comparing characters. Must be called from
+        the event dispatch thread. */
+    private static String getMoveNumberLabel(int moveNumber)
+    {
+        if (moveNumber >= s_moveNumberLabels.length)
+        {
+            String[] labels = new String[2 * moveNumber];
+            System.arraycopy(s_moveNumberLabels, 0, labels, 0,
+                             s_moveNumberLabels.length);
+            for (int i = s_moveNumberLabels.length; i < labels.length; ++i)
+                labels[i] = Integer.toString(i);
+            s_moveNumberLabels = labels;
+        }
+        return s_moveNumberLabels[moveNumber];
+    }
 }
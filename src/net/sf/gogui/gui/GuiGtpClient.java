@@ -4,6 +4,11 @@ package net.sf.gogui.gui;
 
 import java.awt.Component;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 import javax.swing.SwingUtilities;
 import net.sf.gogui.game.TimeSettings;
 import net.sf.gogui.go.ConstBoard;
@@ -12,6 +17,7 @@ import net.sf.gogui.go.Move;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import static net.sf.gogui.gui.I18n.i18n;
 
@@ -37,39 +43,6 @@ public class GuiGtpClient
         m_owner = owner;
         m_messageDialogs = messageDialogs;
         m_gtpSynchronizer = new GtpSynchronizer(this, listener, false);
-        Thread thread = new Thread() {
-                public void run() {
-                    synchronized (m_mutex)
-                    {
-                        boolean firstWait = true;
-                        while (true)
-                        {
-                            try
-                            {
-                                if (m_command == null || ! firstWait)
-                                    m_mutex.wait();
-                            }
-                            catch (InterruptedException e)
-                            {
-                                System.err.println("Interrupted");
-                            }
-                            firstWait = false;
-                            m_response = null;
-                            m_exception = null;
-                            try
-                            {
-                                m_response = m_gtp.send(m_command);
-                            }
-                            catch (GtpError e)
-                            {
-                                m_exception = e;
-                            }
-                            SwingUtilities.invokeLater(m_callback);
-                        }
-                    }
-                }
-            };
-        thread.start();
     }
 
     public void close()
@@ -105,6 +78,11 @@ public class GuiGtpClient
         }
     }
 
+    public GtpMetrics getMetrics()
+    {
+        return m_gtp.getMetrics();
+    }
+
     public String getProgramCommand()
     {
         return m_gtp.getProgramCommand();
@@ -146,18 +124,39 @@ public class GuiGtpClient
         return m_gtp.isProgramDead();
     }
 
-    /** Send asynchronous command. */
-    public void send(String command, Runnable callback)
+    /** Send asynchronous command.
+        The callback is invoked in the event dispatch thread after the
+        command finished. */
+    public void send(String command, final Runnable callback)
     {
         assert SwingUtilities.isEventDispatchThread();
         assert ! m_commandInProgress;
-        synchronized (m_mutex)
-        {
-            m_command = command;
-            m_callback = callback;
-            m_commandInProgress = true;
-            m_mutex.notifyAll();
-        }
+        m_commandInProgress = true;
+        m_gtp.sendAsync(command).whenComplete(
+            new BiConsumer<String,Throwable>()
+            {
+                public void accept(String response, Throwable t)
+                {
+                    synchronized (m_mutex)
+                    {
+                        m_response = response;
+                        if (t == null || t instanceof GtpError)
+                            m_exception = (GtpError)t;
+                        else
+                            m_exception = new GtpError(t.toString());
+                    }
+                    SwingUtilities.invokeLater(callback);
+                }
+            });
+    }
+
+    /** Send command without waiting for the response.
+        Can be called from any thread, but not while an asynchronous
+        command sent with send(String,Runnable) is in progress. */
+    public CompletableFuture<String> sendAsync(String command, long timeout,
+                                               Executor executor)
+    {
+        return m_gtp.sendAsync(command, timeout, executor);
     }
 
     public void sendComment(String comment)
@@ -174,6 +173,18 @@ public class GuiGtpClient
         return m_gtp.send(command, TIMEOUT, timeoutCallback);
     }
 
+    /** Send commands in event dispatch thread.
+        Uses the timeout for each response. */
+    public ArrayList<String> sendBatch(List<String> commands) throws GtpError
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        assert ! m_commandInProgress;
+        if (commands.isEmpty())
+            return new ArrayList<String>();
+        TimeoutCallback timeoutCallback = new TimeoutCallback(commands.get(0));
+        return m_gtp.sendBatch(commands, TIMEOUT, timeoutCallback);
+    }
+
     public void setAutoNumber(boolean enable)
     {
         m_gtp.setAutoNumber(enable);
@@ -264,11 +275,9 @@ public class GuiGtpClient
 
     private final MessageDialogs m_messageDialogs;
 
+    /** Protects the result of an asynchronous command, which is set in the
+        thread that sent the command. */
     private final Object m_mutex = new Object();
 
-    private Runnable m_callback;
-
-    private String m_command;
-
     private String m_response;
 }
@@ -2,21 +2,57 @@
 
 package net.sf.gogui.gui;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /** Parse standard error of a GTP engine for GoGui live graphics commands.
-    See chapter "Live Graphics" in the GoGui documentation. */
+    See chapter "Live Graphics" in the GoGui documentation.
+    The commands are parsed in the thread that calls handleLine(). Frames
+    are passed to the listener in the Swing event dispatch thread at no
+    more than a maximum frame rate. If the engine sends frames faster
+    than they can be shown, only the latest frame is shown and the older
+    ones are dropped. */
 public class LiveGfx
 {
     public interface Listener
     {
-        void showLiveGfx(String text);
+        /** Show a live graphics frame.
+            Called from the Swing event dispatch thread. */
+        void showLiveGfx(GfxOverlay overlay);
     }
 
+    /** Default for the maximum number of frames shown per second. */
+    public static final int DEFAULT_MAX_FRAME_RATE = 20;
+
     public LiveGfx(Listener listener)
+    {
+        this(listener, DEFAULT_MAX_FRAME_RATE);
+    }
+
+    /** Constructor.
+        @param listener The listener.
+        @param maxFrameRate The maximum number of frames shown per second;
+        zero or less for no limit. */
+    public LiveGfx(Listener listener, int maxFrameRate)
     {
         m_listener = listener;
         m_duringMultiLineResponse = false;
+        setMaxFrameRate(maxFrameRate);
+    }
+
+    /** Number of frames that were replaced by a newer frame before they
+        were shown. */
+    public synchronized int getNumberDroppedFrames()
+    {
+        return m_numberDroppedFrames;
+    }
+
+    /** Number of frames that were passed to the listener. */
+    public synchronized int getNumberShownFrames()
+    {
+        return m_numberShownFrames;
     }
 
     /** Parse line.
@@ -59,19 +95,99 @@ public class LiveGfx
         return false;
     }
 
+    /** Set the maximum frame rate.
+        @param maxFrameRate The maximum number of frames shown per second;
+        zero or less for no limit. */
+    public synchronized void setMaxFrameRate(int maxFrameRate)
+    {
+        if (maxFrameRate <= 0)
+            m_minInterval = 0;
+        else
+            m_minInterval = 1000000000L / maxFrameRate;
+    }
+
     private boolean m_duringMultiLineResponse;
 
+    /** A call of showPendingFrame() is scheduled in the event dispatch
+        thread, either with invokeLater() or with the timer. */
+    private boolean m_isScheduled;
+
+    private int m_numberDroppedFrames;
+
+    private int m_numberShownFrames;
+
+    /** Minimum time between two frames in nanoseconds. */
+    private long m_minInterval;
+
+    /** Time when the last frame was shown in nanoseconds. */
+    private long m_lastShown;
+
+    /** The latest frame that was not yet shown or null. */
+    private GfxOverlay m_pending;
+
     private Listener m_listener;
 
     private final StringBuilder m_response = new StringBuilder(1024);
 
-    private void showGfx(final String text)
+    /** Timer for delaying the next frame; used only in the event dispatch
+        thread. */
+    private Timer m_timer;
+
+    private void showGfx(String text)
     {
+        GfxOverlay overlay = GfxOverlay.parse(text);
+        synchronized (this)
+        {
+            if (m_pending != null)
+                ++m_numberDroppedFrames;
+            m_pending = overlay;
+            if (m_isScheduled)
+                return;
+            m_isScheduled = true;
+        }
         SwingUtilities.invokeLater(new Runnable() {
                 public void run()
                 {
-                    m_listener.showLiveGfx(text);
+                    showPendingFrame();
                 }
             });
     }
+
+    private void showPendingFrame()
+    {
+        assert SwingUtilities.isEventDispatchThread();
+        GfxOverlay overlay;
+        synchronized (this)
+        {
+            long now = System.nanoTime();
+            long delay = m_lastShown + m_minInterval - now;
+            if (m_numberShownFrames > 0 && delay > 0)
+            {
+                startTimer((int)Math.max(1, delay / 1000000));
+                return;
+            }
+            overlay = m_pending;
+            m_pending = null;
+            m_isScheduled = false;
+            if (overlay == null)
+                return;
+            m_lastShown = now;
+            ++m_numberShownFrames;
+        }
+        m_listener.showLiveGfx(overlay);
+    }
+
+    private void startTimer(int delay)
+    {
+        if (m_timer == null)
+        {
+            m_timer = new Timer(delay, new ActionListener() {
+                    public void actionPerformed(ActionEvent event) {
+                        showPendingFrame();
+                    } });
+            m_timer.setRepeats(false);
+        }
+        m_timer.setInitialDelay(delay);
+        m_timer.restart();
+    }
 }
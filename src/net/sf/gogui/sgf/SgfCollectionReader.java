@@ -0,0 +1,351 @@
+// SgfCollectionReader.java
+
+package net.sf.gogui.sgf;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/** Read the games of an SGF collection.
+    An SGF collection is a file that contains several game trees. The
+    stream is split on the byte level at the boundaries of the top-level
+    game trees and the games are parsed with SgfReader in parallel on a
+    fork-join pool. The games are returned in the order of the stream.
+    Only a limited number of games is split and parsed ahead of the game
+    returned by next(), so the memory requirement does not depend on the
+    number of games in the collection.
+    Text between the game trees is ignored. If the charset property at the
+    start of the stream is a charset that cannot be parsed on the byte level
+    (e.g. Shift_JIS), the whole stream is decoded with this charset and the
+    charset properties of the other games are ignored. */
+public final class SgfCollectionReader
+{
+    /** Construct reader using a thread for each available processor.
+        @param in Stream to read from. Is closed at the end of the stream or
+        by close().
+        @param file File name for error messages, can be null
+        @throws SgfError If reading the start of the stream fails. */
+    public SgfCollectionReader(InputStream in, File file) throws SgfError
+    {
+        this(in, file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Construct reader.
+        @param in Stream to read from. Is closed at the end of the stream or
+        by close().
+        @param file File name for error messages, can be null
+        @param numberThreads Number of threads for parsing the games.
+        @throws SgfError If reading the start of the stream fails. */
+    public SgfCollectionReader(InputStream in, File file, int numberThreads)
+        throws SgfError
+    {
+        assert numberThreads > 0;
+        m_file = file;
+        m_maxPending = 2 * numberThreads;
+        m_pool = new ForkJoinPool(numberThreads);
+        BufferedInputStream bufferedIn =
+            new BufferedInputStream(in, BUFFER_SIZE);
+        m_in = bufferedIn;
+        try
+        {
+            String name = SgfReader.detectCharset(bufferedIn);
+            Charset charset = null;
+            if (name != null)
+                charset = getCharset(name);
+            if (charset != null && ! SgfReader.isByteLevelCharset(charset))
+            {
+                InputStreamReader reader =
+                    new InputStreamReader(bufferedIn, charset);
+                m_in = new SgfReader.Utf8InputStream(reader);
+                m_charset = Charset.forName("UTF-8");
+            }
+        }
+        catch (IOException e)
+        {
+            close();
+            throw getError("IO error");
+        }
+    }
+
+    /** Stop reading.
+        Closes the stream and stops the parsing of the games that were read
+        ahead. Should be called, if not all games are read. */
+    public void close()
+    {
+        m_pool.shutdownNow();
+        m_pending.clear();
+        closeStream();
+    }
+
+    /** Get the number of games returned by next().
+        Includes games that could not be parsed. Can be used as the number
+        of the last game returned by next(), starting with one. */
+    public int getNumberGames()
+    {
+        return m_numberGames;
+    }
+
+    /** Check if there are more games.
+        @return true, if next() will return a game or throw an error. */
+    public boolean hasNext()
+    {
+        fill();
+        return ! m_pending.isEmpty() || m_ioError;
+    }
+
+    /** Get the next game.
+        If a game cannot be parsed, an error is thrown, but the following
+        games can still be read.
+        @return The reader that parsed the game (contains the game tree and
+        the warnings) or null, if there are no more games.
+        @throws SgfError If the game cannot be parsed or reading the stream
+        fails. The message contains the number of the game. */
+    public SgfReader next() throws SgfError
+    {
+        fill();
+        ForkJoinTask<Result> task = m_pending.poll();
+        if (task == null)
+        {
+            if (m_ioError)
+            {
+                m_ioError = false;
+                throw getError("IO error");
+            }
+            return null;
+        }
+        ++m_numberGames;
+        Result result = task.join();
+        if (result.m_error != null)
+            throw getError(result.m_error.getMessage());
+        return result.m_reader;
+    }
+
+    /** Result of parsing a game. */
+    private static final class Result
+    {
+        public SgfReader m_reader;
+
+        public SgfError m_error;
+    }
+
+    /** State of the splitting: outside of a game tree. */
+    private static final int OUTSIDE = 0;
+
+    /** State of the splitting: after the opening parenthesis of a game
+        tree, waiting for the start of the first node. */
+    private static final int START = 1;
+
+    /** State of the splitting: inside a game tree. */
+    private static final int TREE = 2;
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private boolean m_endOfStream;
+
+    /** An IO error occurred after the games in m_pending were read. */
+    private boolean m_ioError;
+
+    private final int m_maxPending;
+
+    private int m_numberGames;
+
+    /** Number of valid bytes in m_buffer. */
+    private int m_length;
+
+    /** Current position in m_buffer. */
+    private int m_position;
+
+    private final byte[] m_buffer = new byte[BUFFER_SIZE];
+
+    private final ByteArrayOutputStream m_game = new ByteArrayOutputStream();
+
+    /** Charset of the converted stream; null, if the stream is not
+        converted. */
+    private Charset m_charset;
+
+    private final File m_file;
+
+    private final ForkJoinPool m_pool;
+
+    private InputStream m_in;
+
+    /** Games that are being parsed, in the order of the stream. */
+    private final ArrayDeque<ForkJoinTask<Result>> m_pending =
+        new ArrayDeque<ForkJoinTask<Result>>();
+
+    private void closeStream()
+    {
+        m_endOfStream = true;
+        try
+        {
+            m_in.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not close SGF stream");
+        }
+    }
+
+    /** Split games from the stream and start parsing them until the
+        maximum number of pending games is reached. */
+    private void fill()
+    {
+        while (! m_endOfStream && m_pending.size() < m_maxPending)
+        {
+            final byte[] game;
+            try
+            {
+                game = readGame();
+            }
+            catch (IOException e)
+            {
+                m_ioError = true;
+                closeStream();
+                break;
+            }
+            if (game == null)
+            {
+                closeStream();
+                break;
+            }
+            final Charset charset = m_charset;
+            m_pending.add(m_pool.submit(new Callable<Result>() {
+                    public Result call() {
+                        Result result = new Result();
+                        InputStream in = new ByteArrayInputStream(game);
+                        try
+                        {
+                            result.m_reader = new SgfReader(in, charset);
+                        }
+                        catch (SgfError e)
+                        {
+                            result.m_error = e;
+                        }
+                        return result;
+                    } }));
+        }
+    }
+
+    private static Charset getCharset(String name)
+    {
+        try
+        {
+            if (Charset.isSupported(name))
+                return Charset.forName(name);
+        }
+        catch (IllegalCharsetNameException e)
+        {
+        }
+        return null;
+    }
+
+    private SgfError getError(String message)
+    {
+        StringBuilder buffer = new StringBuilder();
+        if (m_file != null)
+        {
+            buffer.append(m_file.getName());
+            buffer.append(": ");
+        }
+        if (m_numberGames > 0)
+        {
+            buffer.append("game ");
+            buffer.append(m_numberGames);
+            buffer.append(": ");
+        }
+        buffer.append(message);
+        return new SgfError(buffer.toString());
+    }
+
+    /** Read the bytes of the next top-level game tree.
+        Only the SGF characters that are needed to find the end of the tree
+        are interpreted: parentheses outside of property values, and the
+        ends of property values with escaped brackets.
+        @return The bytes from the opening to the closing parenthesis of the
+        tree (or to the end of the stream, if the tree is not closed), null
+        if there are no more trees. */
+    private byte[] readGame() throws IOException
+    {
+        m_game.reset();
+        int state = OUTSIDE;
+        int start = m_position;
+        int depth = 0;
+        boolean isInValue = false;
+        boolean isEscaped = false;
+        while (true)
+        {
+            if (m_position == m_length)
+            {
+                if (state != OUTSIDE)
+                    m_game.write(m_buffer, start, m_position - start);
+                m_length = m_in.read(m_buffer);
+                m_position = 0;
+                start = 0;
+                if (m_length < 0)
+                {
+                    m_length = 0;
+                    if (state == TREE)
+                        return m_game.toByteArray();
+                    return null;
+                }
+                continue;
+            }
+            byte c = m_buffer[m_position++];
+            if (state == OUTSIDE)
+            {
+                if (c == '(')
+                {
+                    state = START;
+                    start = m_position - 1;
+                }
+            }
+            else if (state == START)
+            {
+                if (c == ';')
+                {
+                    state = TREE;
+                    depth = 1;
+                }
+                else if (c == '(')
+                {
+                    m_game.reset();
+                    start = m_position - 1;
+                }
+                else if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+                {
+                    // Not a game tree, like SgfReader.findRoot()
+                    m_game.reset();
+                    state = OUTSIDE;
+                }
+            }
+            else if (isInValue)
+            {
+                if (isEscaped)
+                    isEscaped = false;
+                else if (c == '\\')
+                    isEscaped = true;
+                else if (c == ']')
+                    isInValue = false;
+            }
+            else if (c == '[')
+                isInValue = true;
+            else if (c == '(')
+                ++depth;
+            else if (c == ')' && --depth == 0)
+            {
+                m_game.write(m_buffer, start, m_position - start);
+                return m_game.toByteArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+// SgfIndex.java
+
+package net.sf.gogui.sgf;
+
+/** Index of the node sequences in an SGF file.
+    Used by the lazy mode of SgfReader. A sequence is a list of nodes, in
+    which each node but the last has exactly one child, the next node in
+    the sequence. The children of the last node are the first nodes of the
+    child sequences.
+    The sequences are stored in the order of the file, which is a preorder
+    of the game tree. The sequences in the subtree of a sequence have the
+    indices from the index of the sequence to getEnd() (exclusive), the
+    first child sequence has the next index. The index uses primitive
+    arrays with 16 bytes per sequence to keep the memory requirement of very
+    large files small. */
+final class SgfIndex
+{
+    /** Add a sequence.
+        The end of the sequence must be set with setEnd() after all
+        sequences in its subtree were added.
+        @param start The offset of the start of the first node in the file.
+        @return The index of the sequence. */
+    public int add(long start)
+    {
+        if (m_numberSequences == m_start.length)
+        {
+            int length = 2 * m_start.length;
+            long[] newStart = new long[length];
+            System.arraycopy(m_start, 0, newStart, 0, m_numberSequences);
+            m_start = newStart;
+            m_firstNode = grow(m_firstNode, length);
+            m_end = grow(m_end, length);
+        }
+        m_start[m_numberSequences] = start;
+        m_firstNode[m_numberSequences] = m_numberNodes;
+        return m_numberSequences++;
+    }
+
+    /** Add a node to the sequence that was added last. */
+    public void addNode()
+    {
+        assert m_numberSequences > 0;
+        ++m_numberNodes;
+    }
+
+    /** Get the end of the subtree of a sequence.
+        @return The index after the last sequence in the subtree. */
+    public int getEnd(int sequence)
+    {
+        return m_end[sequence];
+    }
+
+    /** Get the number of nodes in a sequence. */
+    public int getNumberNodes(int sequence)
+    {
+        return getFirstNode(sequence + 1) - m_firstNode[sequence];
+    }
+
+    public int getNumberSequences()
+    {
+        return m_numberSequences;
+    }
+
+    /** Get the number of nodes in the subtree of a sequence.
+        Includes the nodes of the sequence. */
+    public int getNumberSubtreeNodes(int sequence)
+    {
+        return getFirstNode(m_end[sequence]) - m_firstNode[sequence];
+    }
+
+    /** Get the offset of the start of the first node of a sequence. */
+    public long getStart(int sequence)
+    {
+        return m_start[sequence];
+    }
+
+    /** Check if the last node of a sequence has children. */
+    public boolean hasChildren(int sequence)
+    {
+        return m_end[sequence] > sequence + 1;
+    }
+
+    public void setEnd(int sequence, int end)
+    {
+        assert end > sequence && end <= m_numberSequences;
+        m_end[sequence] = end;
+    }
+
+    private int m_numberNodes;
+
+    private int m_numberSequences;
+
+    private int[] m_end = new int[1024];
+
+    /** Number of nodes in all sequences before a sequence. */
+    private int[] m_firstNode = new int[1024];
+
+    private long[] m_start = new long[1024];
+
+    private int getFirstNode(int sequence)
+    {
+        if (sequence == m_numberSequences)
+            return m_numberNodes;
+        return m_firstNode[sequence];
+    }
+
+    private static int[] grow(int[] array, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
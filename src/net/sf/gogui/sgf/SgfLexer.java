@@ -0,0 +1,401 @@
+// SgfLexer.java
+
+package net.sf.gogui.sgf;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+
+/** Byte-level lexer for SGF files.
+    Scans the raw bytes of the input through a large buffer instead of
+    decoding all characters first. The values of the properties of a node
+    are stored undecoded in a buffer that is reused for the next node, so
+    that only values that are needed as strings have to be decoded with
+    the character set of the file. This works for all character sets, in
+    which the bytes of the ASCII characters
+    <code>( ) ; [ ] \</code> cannot occur as part of a multi-byte
+    character (see SgfReader for how other character sets are handled).
+    Property identifiers are converted to upper case and returned as
+    interned strings; identifiers with up to two letters are looked up in
+    a table without allocating memory. Identifiers are accepted with the
+    same characters as by the java.io.StreamTokenizer used by earlier
+    versions of SgfReader, even if they are not valid SGF: they start with
+    a letter or a byte from 0xA0 to 0xFF and can contain letters, digits,
+    '.', '-' and bytes from 0xA0 to 0xFF. Non-ASCII bytes in identifiers
+    are mapped to characters as in ISO-8859-1. */
+final class SgfLexer
+{
+    /** Token type for end of input. */
+    public static final int EOF = -1;
+
+    /** Token type for a property identifier.
+        @see #getPropertyId() */
+    public static final int PROPERTY_ID = -2;
+
+    /** Constructor.
+        @param in The stream to read from. Does not need to be buffered. */
+    public SgfLexer(InputStream in)
+    {
+        this(in, BUFFER_SIZE);
+    }
+
+    /** Constructor with buffer size.
+        A small buffer avoids reading more than needed, if only a small part
+        of the stream is parsed.
+        @param in The stream to read from. Does not need to be buffered.
+        @param bufferSize The size of the read buffer. */
+    public SgfLexer(InputStream in, int bufferSize)
+    {
+        m_in = in;
+        m_buffer = new byte[bufferSize];
+    }
+
+    /** Remove all stored values.
+        Should be called at the start of each node. */
+    public void clearValues()
+    {
+        m_numberValues = 0;
+        m_valuesLength = 0;
+    }
+
+    /** Get the value buffer.
+        @see #getValueStart(int) */
+    public byte[] getBuffer()
+    {
+        return m_values;
+    }
+
+    /** Get the number of stored values. */
+    public int getNumberValues()
+    {
+        return m_numberValues;
+    }
+
+    /** Get the number of bytes read from the input so far.
+        A token that was returned by pushBack() does not count as read. */
+    public long getOffset()
+    {
+        if (m_pushBack && m_token >= 0)
+            return m_offset + m_position - 1;
+        return m_offset + m_position;
+    }
+
+    /** Get the identifier of the last PROPERTY_ID token.
+        @return The identifier in upper case, interned. */
+    public String getPropertyId()
+    {
+        return m_propertyId;
+    }
+
+    /** Get a stored value as a string.
+        @param index The index of the value.
+        @param charset The character set for decoding the value. */
+    public String getValue(int index, Charset charset)
+    {
+        int start = m_valueStart[index];
+        return new String(m_values, start, m_valueEnd[index] - start,
+                          charset);
+    }
+
+    /** Get the end of a value in the value buffer (exclusive). */
+    public int getValueEnd(int index)
+    {
+        return m_valueEnd[index];
+    }
+
+    /** Get the start of a value in the value buffer. */
+    public int getValueStart(int index)
+    {
+        return m_valueStart[index];
+    }
+
+    /** Get the next token.
+        Whitespace and control characters are skipped.
+        @return '(', ')', ';', PROPERTY_ID, EOF or any other character as
+        a byte value between 0 and 255. */
+    public int next() throws IOException
+    {
+        if (m_pushBack)
+        {
+            m_pushBack = false;
+            return m_token;
+        }
+        int c = skipSpace();
+        if (isIdStart(c))
+        {
+            readPropertyId(c);
+            m_token = PROPERTY_ID;
+        }
+        else
+            m_token = c;
+        return m_token;
+    }
+
+    /** Return the last token again on the next call of next(). */
+    public void pushBack()
+    {
+        m_pushBack = true;
+    }
+
+    /** Read a property value, if the next token is '['.
+        The value is stored with escape characters and soft line breaks
+        removed and all line breaks (LF, CR, LFCR, CRLF) converted to a
+        single LF.
+        @return true, if a value was read. The value is the last stored
+        value. */
+    public boolean readValue() throws IOException, SgfError
+    {
+        assert ! m_pushBack;
+        int c = skipSpace();
+        if (c != '[')
+        {
+            if (c != EOF)
+                --m_position;
+            return false;
+        }
+        if (m_numberValues == m_valueStart.length)
+        {
+            m_valueStart = grow(m_valueStart);
+            m_valueEnd = grow(m_valueEnd);
+        }
+        m_valueStart[m_numberValues] = m_valuesLength;
+        boolean quoted = false;
+        int last = -1;
+        while (true)
+        {
+            if (m_position == m_limit && ! fill())
+                throw new SgfError("Property value incomplete");
+            c = m_buffer[m_position++] & 0xff;
+            if (quoted)
+            {
+                if (c != '\n' && c != '\r')
+                    append(c);
+                last = c;
+                quoted = false;
+            }
+            else if (c == ']')
+                break;
+            else if (c == '\\')
+                quoted = true;
+            else if (c == '\n' || c == '\r')
+            {
+                // Filter the second character of LFCR and CRLF
+                if ((last == '\n' || last == '\r') && c != last)
+                    last = -1;
+                else
+                {
+                    append('\n');
+                    last = c;
+                }
+            }
+            else
+            {
+                append(c);
+                last = c;
+            }
+        }
+        m_valueEnd[m_numberValues] = m_valuesLength;
+        ++m_numberValues;
+        return true;
+    }
+
+    /** Skip a property value, if the next token is '['.
+        Faster than readValue(), if only the structure of the file is
+        needed. The value is not stored.
+        @return true, if a value was skipped. */
+    public boolean skipValue() throws IOException, SgfError
+    {
+        assert ! m_pushBack;
+        int c = skipSpace();
+        if (c != '[')
+        {
+            if (c != EOF)
+                --m_position;
+            return false;
+        }
+        while (true)
+        {
+            if (m_position == m_limit && ! fill())
+                throw new SgfError("Property value incomplete");
+            c = m_buffer[m_position++];
+            if (c == ']')
+                return true;
+            if (c == '\\')
+            {
+                if (m_position == m_limit && ! fill())
+                    throw new SgfError("Property value incomplete");
+                ++m_position;
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /** Number of letters in the table of short property identifiers.
+        Index 0 is used for a missing second letter. */
+    private static final int TABLE_LETTERS = 27;
+
+    /** Interned identifiers with one or two letters.
+        Indexed by TABLE_LETTERS * first + second with letters numbered
+        starting at 1. */
+    private static final String[] SHORT_IDS = createShortIds();
+
+    private boolean m_pushBack;
+
+    private int m_limit;
+
+    private int m_numberValues;
+
+    private int m_position;
+
+    private int m_token;
+
+    private int m_valuesLength;
+
+    /** Number of bytes read before the current buffer content. */
+    private long m_offset;
+
+    private final byte[] m_buffer;
+
+    private byte[] m_values = new byte[4096];
+
+    private int[] m_valueEnd = new int[16];
+
+    private int[] m_valueStart = new int[16];
+
+    private char[] m_id = new char[16];
+
+    private final InputStream m_in;
+
+    private String m_propertyId;
+
+    private void append(int c)
+    {
+        if (m_valuesLength == m_values.length)
+        {
+            byte[] values = new byte[2 * m_values.length];
+            System.arraycopy(m_values, 0, values, 0, m_valuesLength);
+            m_values = values;
+        }
+        m_values[m_valuesLength++] = (byte)c;
+    }
+
+    private static String[] createShortIds()
+    {
+        String[] ids = new String[TABLE_LETTERS * TABLE_LETTERS];
+        for (char c1 = 'A'; c1 <= 'Z'; ++c1)
+        {
+            int i = TABLE_LETTERS * (c1 - 'A' + 1);
+            ids[i] = String.valueOf(c1).intern();
+            for (char c2 = 'A'; c2 <= 'Z'; ++c2)
+                ids[i + c2 - 'A' + 1] =
+                    new String(new char[] { c1, c2 }).intern();
+        }
+        return ids;
+    }
+
+    /** Fill the buffer.
+        @return false, if the end of the input was reached. */
+    private boolean fill() throws IOException
+    {
+        m_offset += m_limit;
+        m_position = 0;
+        m_limit = 0;
+        int n;
+        do
+            n = m_in.read(m_buffer, 0, m_buffer.length);
+        while (n == 0);
+        if (n < 0)
+            return false;
+        m_limit = n;
+        return true;
+    }
+
+    private static int[] grow(int[] array)
+    {
+        int[] result = new int[2 * array.length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    /** Check if a byte can be part of a property identifier.
+        @see #isIdStart(int) */
+    private static boolean isIdPart(int c)
+    {
+        return isIdStart(c) || (c >= '0' && c <= '9') || c == '.'
+            || c == '-';
+    }
+
+    /** Check if a byte can start a property identifier.
+        Letters and the bytes that java.io.StreamTokenizer treats as
+        letters in ISO-8859-1. */
+    private static boolean isIdStart(int c)
+    {
+        return isLetter(c) || c >= 0xa0;
+    }
+
+    private static boolean isLetter(int c)
+    {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private void readPropertyId(int c) throws IOException
+    {
+        int length = 0;
+        boolean isLetters = true;
+        while (true)
+        {
+            if (length == m_id.length)
+            {
+                char[] id = new char[2 * m_id.length];
+                System.arraycopy(m_id, 0, id, 0, length);
+                m_id = id;
+            }
+            if (isLetter(c))
+                m_id[length++] = toUpperCase(c);
+            else
+            {
+                m_id[length++] = (char)c;
+                isLetters = false;
+            }
+            if (m_position == m_limit && ! fill())
+                break;
+            c = m_buffer[m_position] & 0xff;
+            if (! isIdPart(c))
+                break;
+            ++m_position;
+        }
+        if (isLetters && length == 1)
+            m_propertyId = SHORT_IDS[TABLE_LETTERS * (m_id[0] - 'A' + 1)];
+        else if (isLetters && length == 2)
+            m_propertyId = SHORT_IDS[TABLE_LETTERS * (m_id[0] - 'A' + 1)
+                                     + m_id[1] - 'A' + 1];
+        else if (isLetters)
+            m_propertyId = new String(m_id, 0, length).intern();
+        else
+            m_propertyId = new String(m_id, 0, length)
+                .toUpperCase(Locale.ENGLISH).intern();
+    }
+
+    /** Skip whitespace and control characters.
+        @return The next character or EOF. */
+    private int skipSpace() throws IOException
+    {
+        while (true)
+        {
+            if (m_position == m_limit && ! fill())
+                return EOF;
+            int c = m_buffer[m_position++] & 0xff;
+            if (c > ' ')
+                return c;
+        }
+    }
+
+    private static char toUpperCase(int c)
+    {
+        if (c >= 'a')
+            return (char)(c - 'a' + 'A');
+        return (char)c;
+    }
+}
@@ -2,26 +2,36 @@
 
 package net.sf.gogui.sgf;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.StreamTokenizer;
-import java.io.UnsupportedEncodingException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Map;
-import java.util.TreeMap;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
 import java.util.TreeSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
+import net.sf.gogui.game.ChildLoader;
+import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.MarkType;
 import net.sf.gogui.game.Node;
+import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.game.StringInfo;
 import net.sf.gogui.game.StringInfoColor;
 import net.sf.gogui.game.TimeSettings;
@@ -39,19 +49,20 @@ import net.sf.gogui.util.ByteCountInputStream;
 import net.sf.gogui.util.ProgressShow;
 
 /** SGF reader.
-    @bug The error messages currently don't contain line numbers, see
-    implementation of getError(). */
+    @bug The error messages currently don't contain line numbers. */
 public final class SgfReader
 {
     /** Read SGF file from stream.
         Default charset is ISO-8859-1 according to the SGF version 4 standard.
-        The charset property is only respected if the stream is a
-        FileInputStream, because it has to be reopened with a different
-        encoding.
+        The charset property is searched for at the start of the stream
+        before parsing. The stream is parsed on the byte level and only the
+        property values are decoded with the charset. Streams in charsets,
+        in which bytes of the ASCII characters that are special in SGF can
+        occur in multi-byte characters (e.g. Shift_JIS), are decoded and
+        converted to UTF-8 before parsing.
         The stream is closed after reading.
         @param in Stream to read from.
-        @param file File name if input stream is a FileInputStream to allow
-        reopening the stream after a charset change
+        @param file File name for error messages, can be null
         @param progressShow Callback to show progress, can be null
         @param size Size of stream if progressShow != null
         @throws SgfError If reading fails. */
@@ -59,37 +70,64 @@ public final class SgfReader
                      long size)
         throws SgfError
     {
+        this(in, file, progressShow, size, false);
+    }
+
+    /** Read SGF file from stream, optionally in lazy mode.
+        In lazy mode, the stream is only scanned for the structure of the
+        game tree and the offsets of the node sequences in the file. Only
+        the first nodes of the root sequence are created. The other nodes
+        are read again from the file, when the children of a node are
+        accessed for the first time (see game.ChildLoader), in chunks of at
+        most 1000 nodes of a sequence. The file must not be modified while
+        the game tree is used. Errors in nodes that are created after the
+        constructor returned are added to the warnings. Files in charsets
+        that cannot be parsed on the byte level are always read completely.
+        @param in Stream to read from.
+        @param file File name for error messages; the file to read the
+        nodes from in lazy mode.
+        @param progressShow Callback to show progress, can be null
+        @param size Size of stream if progressShow != null
+        @param lazy Use lazy mode; file must not be null.
+        @throws SgfError If reading fails.
+        @see #unloadSubtrees(ConstNode, int) */
+    public SgfReader(InputStream in, File file, ProgressShow progressShow,
+                     long size, boolean lazy)
+        throws SgfError
+    {
+        this(in, file, progressShow, size, lazy, null);
+    }
+
+    /** Read a game tree of an SGF collection.
+        Used by SgfCollectionReader.
+        @param in Stream to read from.
+        @param charset The charset, if the collection was already converted
+        to a charset that can be parsed on the byte level. The charset
+        property of the game is ignored in this case. Null, if the charset
+        should be detected from the stream. */
+    SgfReader(InputStream in, Charset charset) throws SgfError
+    {
+        this(in, null, null, 0, false, charset);
+    }
+
+    private SgfReader(InputStream in, File file, ProgressShow progressShow,
+                      long size, boolean lazy, Charset charset)
+        throws SgfError
+    {
+        assert ! lazy || file != null;
         m_file = file;
         m_progressShow = progressShow;
         m_size = size;
-        m_isFile = (in instanceof FileInputStream && file != null);
         if (progressShow != null)
             progressShow.showProgress(0);
         try
         {
-            // SGF FF 4 standard defines ISO-8859-1 as default
-            readSgf(in, "ISO-8859-1");
-        }
-        catch (SgfCharsetChanged e1)
-        {
-            try
-            {
-                in.close();
-                in = new FileInputStream(file);
-            }
-            catch (IOException e2)
-            {
-                throw new SgfError("Could not reset SGF stream after"
-                                   + " charset change.");
-            }
-            try
-            {
-                readSgf(in, m_newCharset);
-            }
-            catch (SgfCharsetChanged e3)
+            if (lazy)
             {
-                assert false;
+                m_fileLength = file.length();
+                m_lastModified = file.lastModified();
             }
+            readSgf(in, lazy, charset);
         }
         finally
         {
@@ -104,6 +142,13 @@ public final class SgfReader
         }
     }
 
+    /** Get the number of nodes that are currently created in lazy mode.
+        @return The number of nodes or 0, if not in lazy mode. */
+    public int getNumberLoadedNodes()
+    {
+        return m_numberLoadedNodes;
+    }
+
     /** Get game tree of loaded SGF file.
         @return The game tree. */
     public GameTree getTree()
@@ -126,12 +171,252 @@ public final class SgfReader
         return result.toString();
     }
 
-    private static class SgfCharsetChanged
-        extends Exception
+    /** Get the first error that occurred while creating nodes in lazy
+        mode.
+        Nodes, whose children could not be created, have no children, but
+        keep their child loader, and the creation is tried again on the next
+        access. loadAll() fails as long as such nodes exist.
+        @return The error message or null. */
+    public String getLoadError()
+    {
+        return m_loadError;
+    }
+
+    /** Create all nodes that are not created yet in lazy mode.
+        Needs to be called before the file, from which the game tree was
+        read, is overwritten.
+        @throws SgfError If not all nodes could be created, e.g. because the
+        file was modified. The game tree is incomplete then and must not be
+        written to the file. */
+    public void loadAll() throws SgfError
+    {
+        boolean isComplete = true;
+        ConstNode node = m_tree.getRootConst();
+        while (node != null)
+        {
+            ConstNode next = NodeUtil.nextNode(node);
+            // Nodes keep the loader, if creating the children failed
+            if (node.getChildLoader() != null)
+                isComplete = false;
+            node = next;
+        }
+        if (! isComplete)
+            throw new SgfError("Could not read SGF nodes: " + m_loadError);
+    }
+
+    /** Unload subtrees in lazy mode to limit the memory.
+        If more than maxNodes nodes are created, the subtrees, whose nodes
+        were created first, are unloaded until at most maxNodes / 2 nodes
+        are left. Unloaded subtrees are created again from the file, when
+        accessed. The path from the root to the current node is kept.
+        Must only be called, if the game tree was not modified since it was
+        read, and invalidates all references to nodes in the unloaded
+        subtrees.
+        @param current The current node.
+        @param maxNodes The maximum number of nodes.
+        @return true, if subtrees were unloaded. */
+    public boolean unloadSubtrees(ConstNode current, int maxNodes)
+    {
+        if (m_numberLoadedNodes <= maxNodes || m_loaded.isEmpty())
+            return false;
+        Set<ConstNode> path = new HashSet<ConstNode>();
+        while (current != null)
+        {
+            path.add(current);
+            current = current.getFatherConst();
+        }
+        // The nodes created by the loaders in a subtree are the loaders
+        // following the loader of the root of the subtree in file order
+        Loader[] sorted = m_loaded.toArray(new Loader[m_loaded.size()]);
+        Arrays.sort(sorted, new Comparator<Loader>() {
+                public int compare(Loader loader1, Loader loader2) {
+                    if (loader1.m_sequence != loader2.m_sequence)
+                        return loader1.m_sequence < loader2.m_sequence ?
+                            -1 : 1;
+                    return loader1.m_position - loader2.m_position;
+                }
+            });
+        for (int i = 0; i < sorted.length; ++i)
+            sorted[i].m_sortIndex = i;
+        boolean[] isUnloaded = new boolean[sorted.length];
+        int numberNodes = m_numberLoadedNodes;
+        boolean changed = false;
+        for (Loader loader : m_loaded)
+        {
+            if (numberNodes <= maxNodes / 2)
+                break;
+            int i = loader.m_sortIndex;
+            if (isUnloaded[i] || path.contains(loader.m_node))
+                continue;
+            int end = m_index.getEnd(loader.m_sequence);
+            for (int j = i; j < sorted.length; ++j)
+            {
+                if (sorted[j].m_sequence >= end)
+                    break;
+                if (! isUnloaded[j])
+                {
+                    isUnloaded[j] = true;
+                    numberNodes -= sorted[j].m_numberNodes;
+                }
+            }
+            loader.m_node.unloadChildren(loader);
+            changed = true;
+        }
+        ArrayList<Loader> loaded = new ArrayList<Loader>();
+        for (Loader loader : m_loaded)
+        {
+            if (isUnloaded[loader.m_sortIndex])
+                loader.m_node = null;
+            else
+                loaded.add(loader);
+        }
+        m_loaded = loaded;
+        m_numberLoadedNodes = numberNodes;
+        return changed;
+    }
+
+    /** Child loader for the lazy mode.
+        Creates the children of a node at a position in a sequence. */
+    private final class Loader
+        implements ChildLoader
+    {
+        public Loader(int sequence, int position, long offset)
+        {
+            m_sequence = sequence;
+            m_position = position;
+            m_offset = offset;
+        }
+
+        public int getNumberDescendants()
+        {
+            return m_index.getNumberSubtreeNodes(m_sequence) - m_position
+                - 1;
+        }
+
+        public void loadChildren(Node node)
+        {
+            load(this, node);
+        }
+
+        /** Index of the sequence of the node. */
+        public final int m_sequence;
+
+        /** Position of the node in the sequence. */
+        public final int m_position;
+
+        /** Number of nodes created by the last call of loadChildren(). */
+        public int m_numberNodes;
+
+        /** Index used by unloadSubtrees(). */
+        public int m_sortIndex;
+
+        /** Offset in the file after the properties of the node. */
+        public final long m_offset;
+
+        /** The node, if the children are created, null otherwise. */
+        public Node m_node;
+    }
+
+    /** Property of the current node.
+        The objects are reused for all nodes. */
+    private static final class Property
+    {
+        public String m_id;
+
+        /** Index of the first value in the lexer. */
+        public int m_firstValue;
+
+        public int m_numberValues;
+    }
+
+    /** Stream that decodes a reader and encodes it in UTF-8.
+        Used for parsing files in charsets that cannot be parsed on the
+        byte level. */
+    static final class Utf8InputStream
+        extends InputStream
     {
+        public Utf8InputStream(Reader reader)
+        {
+            m_reader = reader;
+            m_chars.flip();
+            m_bytes.flip();
+        }
+
+        public void close() throws IOException
+        {
+            m_reader.close();
+        }
+
+        public int read() throws IOException
+        {
+            if (! m_bytes.hasRemaining() && ! fill())
+                return -1;
+            return m_bytes.get() & 0xff;
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            if (len == 0)
+                return 0;
+            if (! m_bytes.hasRemaining() && ! fill())
+                return -1;
+            len = Math.min(len, m_bytes.remaining());
+            m_bytes.get(b, off, len);
+            return len;
+        }
+
+        private boolean m_endOfInput;
+
+        private final ByteBuffer m_bytes = ByteBuffer.allocate(16384);
+
+        private final CharBuffer m_chars = CharBuffer.allocate(4096);
+
+        private final CharsetEncoder m_encoder =
+            Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        private final Reader m_reader;
+
+        private boolean fill() throws IOException
+        {
+            m_bytes.clear();
+            while (m_bytes.position() == 0)
+            {
+                if (m_endOfInput && ! m_chars.hasRemaining())
+                    break;
+                m_chars.compact();
+                if (! m_endOfInput && m_reader.read(m_chars) < 0)
+                    m_endOfInput = true;
+                m_chars.flip();
+                m_encoder.encode(m_chars, m_bytes, m_endOfInput);
+                if (m_endOfInput && ! m_chars.hasRemaining())
+                    m_encoder.flush(m_bytes);
+            }
+            m_bytes.flip();
+            return m_bytes.hasRemaining();
+        }
     }
 
-    private final boolean m_isFile;
+    /** Number of bytes at the start of a stream searched by
+        detectCharset(). */
+    private static final int CHARSET_SEARCH_LENGTH = 65536;
+
+    /** Maximum number of nodes of a sequence created at once in lazy
+        mode. */
+    private static final int CHUNK_SIZE = 1000;
+
+    /** Buffer size of the lexer for creating nodes in lazy mode.
+        Most chunks of nodes in search traces are short variations. */
+    private static final int LAZY_BUFFER_SIZE = 4096;
+
+    /** Charsets that can be parsed on the byte level.
+        Prefixes of canonical charset names. In these charsets, bytes below
+        128 always encode the ASCII character. */
+    private static final String[] BYTE_LEVEL_CHARSETS = {
+        "UTF-8", "US-ASCII", "ISO-8859-", "windows-125", "EUC-", "x-EUC-",
+        "GB2312", "KOI8-"
+    };
 
     /** Has current node inconsistent FF3 overtime settings properties. */
     private boolean m_ignoreOvertime;
@@ -142,16 +427,21 @@ public final class SgfReader
 
     private int m_byoyomiMoves;
 
+    /** Number of nodes created in lazy mode. */
+    private int m_numberLoadedNodes;
+
     private final long m_size;
 
+    private long m_fileLength;
+
+    private long m_lastModified;
+
     private long m_byoyomi;
 
     private long m_preByoyomi;
 
     private ByteCountInputStream m_byteCountInputStream;
 
-    private java.io.Reader m_reader;
-
     private GameTree m_tree;
 
     private final ProgressShow m_progressShow;
@@ -159,20 +449,50 @@ public final class SgfReader
     /** Contains strings with warnings. */
     private final Set<String> m_warnings = new TreeSet<String>();
 
-    private StreamTokenizer m_tokenizer;
+    /** First error in load(). */
+    private String m_loadError;
 
-    private final File m_file;
+    private int m_numberProps;
+
+    /** Charset for decoding property values. */
+    private Charset m_charset;
+
+    private SgfLexer m_lexer;
 
-    private String m_newCharset;
+    private final File m_file;
 
-    /** Pre-allocated temporary buffer for use within functions. */
-    private final StringBuilder m_buffer = new StringBuilder(512);
+    /** Charset found at the start of the stream, null if none. */
+    private String m_detectedCharset;
 
     private final PointList m_pointList = new PointList();
 
-    /** Map containing the properties of the current node. */
-    private final Map<String,ArrayList<String>> m_props =
-        new TreeMap<String,ArrayList<String>>();
+    /** Index of the node sequences in lazy mode, null otherwise. */
+    private SgfIndex m_index;
+
+    /** Loaders of nodes, whose children are created, in the order in which
+        the children were created. */
+    private ArrayList<Loader> m_loaded = new ArrayList<Loader>();
+
+    /** Properties of the current node.
+        The first m_numberProps elements are used. */
+    private Property[] m_props = new Property[0];
+
+    /** Add a property to the current node.
+        @return The property object, the values are not initialized. */
+    private Property addProp(String id)
+    {
+        if (m_numberProps == m_props.length)
+        {
+            Property[] props = new Property[2 * m_props.length + 8];
+            System.arraycopy(m_props, 0, props, 0, m_numberProps);
+            for (int i = m_numberProps; i < props.length; ++i)
+                props[i] = new Property();
+            m_props = props;
+        }
+        Property prop = m_props[m_numberProps++];
+        prop.m_id = id;
+        return prop;
+    }
 
     /** Apply some fixes for broken SGF files. */
     private void applyFixes()
@@ -209,20 +529,11 @@ public final class SgfReader
 
     private void checkEndOfFile() throws SgfError, IOException
     {
-        while (true)
-        {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-                throw getError("Multiple SGF trees not supported");
-            else if (t == StreamTokenizer.TT_EOF)
-                return;
-            else if (t != ' ' && t != '\t' && t != '\n' && t != '\r')
-            {
-                setWarning("Extra text after SGF tree");
-                return;
-            }
-        }
+        int t = m_lexer.next();
+        if (t == '(')
+            throw getError("Multiple SGF trees not supported");
+        else if (t != SgfLexer.EOF)
+            setWarning("Extra text after SGF tree");
     }
 
     /** Check for obsolete long names for standard properties.
@@ -289,26 +600,62 @@ public final class SgfReader
         return node.createGameInfo();
     }
 
+    /** Search the start of the stream for the charset property.
+        The charset property is only allowed in the root node, which is
+        usually at the start of the file. Searches the bytes of the
+        property identifier CA followed by a value. Does not parse the SGF
+        structure, because it is not known yet, if bytes of SGF special
+        characters can occur in multi-byte characters.
+        @param in The stream; is reset to the start after searching.
+        @return The charset name or null, if not found. */
+    static String detectCharset(BufferedInputStream in)
+        throws IOException
+    {
+        byte[] buffer = new byte[CHARSET_SEARCH_LENGTH];
+        in.mark(buffer.length);
+        int length = 0;
+        while (length < buffer.length)
+        {
+            int n = in.read(buffer, length, buffer.length - length);
+            if (n < 0)
+                break;
+            length += n;
+        }
+        in.reset();
+        for (int i = 0; i + 2 < length; ++i)
+        {
+            if (buffer[i] != 'C' || buffer[i + 1] != 'A'
+                || buffer[i + 2] != '['
+                || (i > 0 && isLetter(buffer[i - 1])))
+                continue;
+            int start = i + 3;
+            for (int j = start; j < length; ++j)
+                if (buffer[j] == ']')
+                    return new String(buffer, start, j - start,
+                                      "ISO-8859-1").trim();
+            return null;
+        }
+        return null;
+    }
+
     private void findRoot() throws SgfError, IOException
     {
         while (true)
         {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
+            int t = m_lexer.next();
             if (t == '(')
             {
                 // Better make sure that ( is followed by a node
-                m_tokenizer.nextToken();
-                t = m_tokenizer.ttype;
+                t = m_lexer.next();
                 if (t == ';')
                 {
-                    m_tokenizer.pushBack();
+                    m_lexer.pushBack();
                     return;
                 }
                 else
                     setWarning("Extra text before SGF tree");
             }
-            else if (t == StreamTokenizer.TT_EOF)
+            else if (t == SgfLexer.EOF)
                 throw getError("No root tree found");
             else
                 setWarning("Extra text before SGF tree");
@@ -324,41 +671,87 @@ public final class SgfReader
 
     private SgfError getError(String message)
     {
-        // Line numbers in error messages is currently disabled because
-        // StreamTokenizer.lineno() does not work as expected with Windows-style
-        // line endings (it seems to count CRLF as two line endings; last with
-        // Java 1.7).
-        /*
-        int lineNumber = m_tokenizer.lineno();
-        if (m_file == null)
-            return new SgfError(lineNumber + ": " + message);
-        else
-        {
-            String s = m_file.getName() + ":" + lineNumber + ": " + message;
-            return new SgfError(s);
-        }
-        */
         if (m_file == null)
             return new SgfError(message);
         else
             return new SgfError(m_file.getName() + ": " + message);
     }
 
+    /** Get a supported charset.
+        @return The charset or null, if the name is not valid or the charset
+        not supported. */
+    private Charset getCharset(String name)
+    {
+        try
+        {
+            if (Charset.isSupported(name))
+                return Charset.forName(name);
+        }
+        catch (IllegalCharsetNameException e)
+        {
+        }
+        setWarning("Unknown character set \"" + name + "\"");
+        return null;
+    }
+
+    /** Get a property of the current node.
+        @param id The interned property identifier.
+        @return The property or null, if the node has no such property. */
+    private Property getProp(String id)
+    {
+        for (int i = 0; i < m_numberProps; ++i)
+            if (m_props[i].m_id == id)
+                return m_props[i];
+        return null;
+    }
+
+    private String getValue(int index)
+    {
+        return m_lexer.getValue(index, m_charset);
+    }
+
+    private ArrayList<String> getValues(Property prop)
+    {
+        ArrayList<String> values =
+            new ArrayList<String>(prop.m_numberValues);
+        for (int i = 0; i < prop.m_numberValues; ++i)
+            values.add(getValue(prop.m_firstValue + i));
+        return values;
+    }
+
+    private static int[] grow(int[] array)
+    {
+        int[] result = new int[2 * array.length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
     private void handleProps(Node node, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+        throws IOException, SgfError
     {
+        // Handle charset first to decode the other values of the root node
+        Property charsetProp = getProp("CA");
+        if (charsetProp != null && isRoot && m_detectedCharset == null)
+        {
+            // Charset was not found by detectCharset(). Decoding the values
+            // is better than ignoring the charset, even if the parsing on
+            // the byte level could be wrong for this charset.
+            Charset charset =
+                getCharset(getValue(charsetProp.m_firstValue).trim());
+            if (charset != null)
+                m_charset = charset;
+        }
         // Handle SZ property first to be able to parse points
-        if (m_props.containsKey("SZ"))
+        Property sizeProp = getProp("SZ");
+        if (sizeProp != null)
         {
-            ArrayList<String> values = m_props.get("SZ");
-            m_props.remove("SZ");
             if (! isRoot)
                 setWarning("Size property not in root node ignored");
             else
             {
                 try
                 {
-                    int size = parseInt(values.get(0));
+                    int size = parseInt(getValue(sizeProp.m_firstValue));
                     if (size <= 0 || size > GoPoint.MAX_SIZE)
                         setWarning("Invalid board size value");
                     assert m_boardSize == -1;
@@ -370,72 +763,52 @@ public final class SgfReader
                 }
             }
         }
-        for (Map.Entry<String,ArrayList<String>> entry : m_props.entrySet())
+        sortProps();
+        for (int i = 0; i < m_numberProps; ++i)
         {
-            String p = entry.getKey();
-            ArrayList<String> values = entry.getValue();
-            String v = values.get(0);
+            Property prop = m_props[i];
+            String p = prop.m_id;
+            // Values of moves and point lists are parsed without decoding
+            // them to strings
             if (p == "AB")
             {
-                parsePointList(values);
+                parsePointList(prop);
                 node.addStones(BLACK, m_pointList);
             }
             else if (p == "AE")
             {
-                parsePointList(values);
+                parsePointList(prop);
                 node.addStones(EMPTY, m_pointList);
             }
-            else if (p == "AN")
-                set(node, StringInfo.ANNOTATION, v);
             else if (p == "AW")
             {
-                parsePointList(values);
+                parsePointList(prop);
                 node.addStones(WHITE, m_pointList);
             }
             else if (p == "B")
-            {
-                node.setMove(Move.get(BLACK, parsePoint(v)));
-            }
-            else if (p == "BL")
-            {
-                try
-                {
-                    node.setTimeLeft(BLACK, Double.parseDouble(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
-            }
-            else if (p == "BR")
-                set(node, StringInfoColor.RANK, BLACK, v);
-            else if (p == "BT")
-                set(node, StringInfoColor.TEAM, BLACK, v);
-            else if (p == "C")
-                node.setComment(v);
-            else if (p == "CA")
-            {
-                if (isRoot && m_isFile && m_newCharset == null)
-                {
-                    m_newCharset = v.trim();
-                    if (Charset.isSupported(m_newCharset))
-                        throw new SgfCharsetChanged();
-                    else
-                        setWarning("Unknown character set \"" + m_newCharset
-                                   + "\"");
-                }
-            }
-            else if (p == "CP")
-                set(node, StringInfo.COPYRIGHT, v);
+                node.setMove(Move.get(BLACK, parsePoint(prop.m_firstValue)));
             else if (p == "CR")
-                parseMarked(node, MarkType.CIRCLE, values);
-            else if (p == "DT")
-                set(node, StringInfo.DATE, v);
+                parseMarked(node, MarkType.CIRCLE, prop);
+            else if (p == "MA" || p == "M")
+                parseMarked(node, MarkType.MARK, prop);
+            else if (p == "SQ")
+                parseMarked(node, MarkType.SQUARE, prop);
+            else if (p == "SL")
+                parseMarked(node, MarkType.SELECT, prop);
+            else if (p == "TB")
+                parseMarked(node, MarkType.TERRITORY_BLACK, prop);
+            else if (p == "TR")
+                parseMarked(node, MarkType.TRIANGLE, prop);
+            else if (p == "TW")
+                parseMarked(node, MarkType.TERRITORY_WHITE, prop);
+            else if (p == "W")
+                node.setMove(Move.get(WHITE, parsePoint(prop.m_firstValue)));
             else if (p == "FF")
             {
                 int format = -1;
                 try
                 {
-                    format = Integer.parseInt(v);
+                    format = Integer.parseInt(getValue(prop.m_firstValue));
                 }
                 catch (NumberFormatException e)
                 {
@@ -443,134 +816,222 @@ public final class SgfReader
                 if (format < 1 || format > 4)
                     setWarning("Unknown SGF file format version");
             }
-            else if (p == "GM")
-            {
-                // Some SGF files contain GM[], interpret as GM[1]
-                v = v.trim();
-                if (! v.equals("") && ! v.equals("1"))
-                    throw getError("Not a Go game");
-            }
-            else if (p == "HA")
+            else if (p != "CA" && p != "SZ" && p != "GN" && p != "AP")
+                handleTextProp(node, prop);
+        }
+    }
+
+    /** Handle a property that is not a move or point list. */
+    private void handleTextProp(Node node, Property prop) throws SgfError
+    {
+        String p = prop.m_id;
+        String v = getValue(prop.m_firstValue);
+        if (p == "AN")
+            set(node, StringInfo.ANNOTATION, v);
+        else if (p == "BL")
+        {
+            try
             {
-                // Some SGF files contain HA[], interpret as unknown handicap
-                v = v.trim();
-                if (! v.equals(""))
-                {
-                    try
-                    {
-                        int handicap = Integer.parseInt(v);
-                        if (handicap == 1 || handicap < 0)
-                            setWarning("Invalid handicap value");
-                        else
-                            createGameInfo(node).setHandicap(handicap);
-                    }
-                    catch (NumberFormatException e)
-                    {
-                        setWarning("Invalid handicap value");
-                    }
-                }
+                node.setTimeLeft(BLACK, Double.parseDouble(v));
             }
-            else if (p == "KM")
-                parseKomi(node, v);
-            else if (p == "LB")
+            catch (NumberFormatException e)
             {
-                for (int i = 0; i < values.size(); ++i)
-                {
-                    String value = values.get(i);
-                    int pos = value.indexOf(':');
-                    if (pos > 0)
-                    {
-                        GoPoint point = parsePoint(value.substring(0, pos));
-                        String text = value.substring(pos + 1);
-                        node.setLabel(point, text);
-                    }
-                }
             }
-            else if (p == "MA" || p == "M")
-                parseMarked(node, MarkType.MARK, values);
-            else if (p == "OB")
+        }
+        else if (p == "BR")
+            set(node, StringInfoColor.RANK, BLACK, v);
+        else if (p == "BT")
+            set(node, StringInfoColor.TEAM, BLACK, v);
+        else if (p == "C")
+            node.setComment(v);
+        else if (p == "CP")
+            set(node, StringInfo.COPYRIGHT, v);
+        else if (p == "DT")
+            set(node, StringInfo.DATE, v);
+        else if (p == "GM")
+        {
+            // Some SGF files contain GM[], interpret as GM[1]
+            v = v.trim();
+            if (! v.equals("") && ! v.equals("1"))
+                throw getError("Not a Go game");
+        }
+        else if (p == "HA")
+        {
+            // Some SGF files contain HA[], interpret as unknown handicap
+            v = v.trim();
+            if (! v.equals(""))
             {
                 try
                 {
-                    node.setMovesLeft(BLACK, Integer.parseInt(v));
+                    int handicap = Integer.parseInt(v);
+                    if (handicap == 1 || handicap < 0)
+                        setWarning("Invalid handicap value");
+                    else
+                        createGameInfo(node).setHandicap(handicap);
                 }
                 catch (NumberFormatException e)
                 {
+                    setWarning("Invalid handicap value");
                 }
             }
-            else if (p == "OM")
-                parseOvertimeMoves(v);
-            else if (p == "OP")
-                parseOvertimePeriod(v);
-            else if (p == "OT")
-                parseOvertime(node, v);
-            else if (p == "OW")
+        }
+        else if (p == "KM")
+            parseKomi(node, v);
+        else if (p == "LB")
+        {
+            for (int i = 0; i < prop.m_numberValues; ++i)
             {
-                try
-                {
-                    node.setMovesLeft(WHITE, Integer.parseInt(v));
-                }
-                catch (NumberFormatException e)
+                String value = getValue(prop.m_firstValue + i);
+                int pos = value.indexOf(':');
+                if (pos > 0)
                 {
+                    GoPoint point = parsePoint(value.substring(0, pos));
+                    String text = value.substring(pos + 1);
+                    node.setLabel(point, text);
                 }
             }
-            else if (p == "PB")
-                set(node, StringInfoColor.NAME, BLACK, v);
-            else if (p == "PW")
-                set(node, StringInfoColor.NAME, WHITE, v);
-            else if (p == "PL")
-                node.setPlayer(parseColor(v));
-            else if (p == "RE")
-                set(node, StringInfo.RESULT, v);
-            else if (p == "RO")
-                set(node, StringInfo.ROUND, v);
-            else if (p == "RU")
-                set(node, StringInfo.RULES, v);
-            else if (p == "SO")
-                set(node, StringInfo.SOURCE, v);
-            else if (p == "SQ")
-                parseMarked(node, MarkType.SQUARE, values);
-            else if (p == "SL")
-                parseMarked(node, MarkType.SELECT, values);
-            else if (p == "TB")
-                parseMarked(node, MarkType.TERRITORY_BLACK, values);
-            else if (p == "TM")
-                parseTime(node, v);
-            else if (p == "TR")
-                parseMarked(node, MarkType.TRIANGLE, values);
-            else if (p == "US")
-                set(node, StringInfo.USER, v);
-            else if (p == "W")
-                node.setMove(Move.get(WHITE, parsePoint(v)));
-            else if (p == "TW")
-                parseMarked(node, MarkType.TERRITORY_WHITE, values);
-            else if (p == "V")
+        }
+        else if (p == "OB")
+        {
+            try
             {
-                try
-                {
-                    node.setValue(Float.parseFloat(v));
-                }
-                catch (NumberFormatException e)
-                {
-                }
+                node.setMovesLeft(BLACK, Integer.parseInt(v));
             }
-            else if (p == "WL")
+            catch (NumberFormatException e)
             {
-                try
-                {
-                    node.setTimeLeft(WHITE, Double.parseDouble(v));
-                }
-                catch (NumberFormatException e)
+            }
+        }
+        else if (p == "OM")
+            parseOvertimeMoves(v);
+        else if (p == "OP")
+            parseOvertimePeriod(v);
+        else if (p == "OT")
+            parseOvertime(node, v);
+        else if (p == "OW")
+        {
+            try
+            {
+                node.setMovesLeft(WHITE, Integer.parseInt(v));
+            }
+            catch (NumberFormatException e)
+            {
+            }
+        }
+        else if (p == "PB")
+            set(node, StringInfoColor.NAME, BLACK, v);
+        else if (p == "PW")
+            set(node, StringInfoColor.NAME, WHITE, v);
+        else if (p == "PL")
+            node.setPlayer(parseColor(v));
+        else if (p == "RE")
+            set(node, StringInfo.RESULT, v);
+        else if (p == "RO")
+            set(node, StringInfo.ROUND, v);
+        else if (p == "RU")
+            set(node, StringInfo.RULES, v);
+        else if (p == "SO")
+            set(node, StringInfo.SOURCE, v);
+        else if (p == "TM")
+            parseTime(node, v);
+        else if (p == "US")
+            set(node, StringInfo.USER, v);
+        else if (p == "V")
+        {
+            try
+            {
+                node.setValue(Float.parseFloat(v));
+            }
+            catch (NumberFormatException e)
+            {
+            }
+        }
+        else if (p == "WL")
+        {
+            try
+            {
+                node.setTimeLeft(WHITE, Double.parseDouble(v));
+            }
+            catch (NumberFormatException e)
+            {
+            }
+        }
+        else if (p == "WR")
+            set(node, StringInfoColor.RANK, WHITE, v);
+        else if (p == "WT")
+            set(node, StringInfoColor.TEAM, WHITE, v);
+        else
+            node.addSgfProperty(p, getValues(prop));
+    }
+
+    /** Check if a charset can be parsed on the byte level.
+        @see #BYTE_LEVEL_CHARSETS */
+    static boolean isByteLevelCharset(Charset charset)
+    {
+        String name = charset.name();
+        for (String prefix : BYTE_LEVEL_CHARSETS)
+            if (name.startsWith(prefix))
+                return true;
+        return false;
+    }
+
+    private static boolean isLetter(byte c)
+    {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /** Create the children of a node in lazy mode. */
+    private void load(Loader loader, Node node)
+    {
+        int numberLoadedNodes = m_numberLoadedNodes;
+        RandomAccessFile file = null;
+        try
+        {
+            if (m_file.length() != m_fileLength
+                || m_file.lastModified() != m_lastModified)
+                throw getError("File was modified");
+            file = new RandomAccessFile(m_file, "r");
+            FileChannel channel = file.getChannel();
+            int sequence = loader.m_sequence;
+            if (loader.m_position < m_index.getNumberNodes(sequence) - 1)
+                readNodes(channel, node, sequence, loader.m_position + 1,
+                          loader.m_offset);
+            else
+            {
+                int end = m_index.getEnd(sequence);
+                int child = sequence + 1;
+                while (child < end)
                 {
+                    readNodes(channel, node, child, 0,
+                              m_index.getStart(child));
+                    child = m_index.getEnd(child);
                 }
             }
-            else if (p == "WR")
-                set(node, StringInfoColor.RANK, WHITE, v);
-            else if (p == "WT")
-                set(node, StringInfoColor.TEAM, WHITE, v);
-            else if (p != "FF" && p != "GN" && p != "AP")
-                node.addSgfProperty(p, values);
         }
+        catch (IOException e)
+        {
+            setLoadError(node, loader, numberLoadedNodes, "IO error");
+            return;
+        }
+        catch (SgfError e)
+        {
+            setLoadError(node, loader, numberLoadedNodes, e.getMessage());
+            return;
+        }
+        finally
+        {
+            try
+            {
+                if (file != null)
+                    file.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Could not close SGF file");
+            }
+        }
+        loader.m_node = node;
+        loader.m_numberNodes = m_numberLoadedNodes - numberLoadedNodes;
+        m_loaded.add(loader);
     }
 
     private GoColor parseColor(String s) throws SgfError
@@ -615,11 +1076,10 @@ public final class SgfReader
         }
     }
 
-    private void parseMarked(Node node, MarkType type,
-                             ArrayList<String> values)
+    private void parseMarked(Node node, MarkType type, Property prop)
         throws SgfError
     {
-        parsePointList(values);
+        parsePointList(prop);
         for (GoPoint p : m_pointList)
             node.addMarked(p, type);
     }
@@ -665,6 +1125,26 @@ public final class SgfReader
         }
     }
 
+    /** Parse point value of the current node.
+        Parses points in the standard encoding without decoding the value.
+        @param index The index of the value in the lexer.
+        @return Point or null, if pass move
+        @throw SgfError On invalid value */
+    private GoPoint parsePoint(int index) throws SgfError
+    {
+        int start = m_lexer.getValueStart(index);
+        if (m_lexer.getValueEnd(index) - start == 2)
+        {
+            byte[] buffer = m_lexer.getBuffer();
+            int boardSize = getBoardSize();
+            int x = buffer[start] - 'a';
+            int y = buffer[start + 1] - 'a';
+            if (x >= 0 && x < boardSize && y >= 0 && y < boardSize)
+                return GoPoint.get(x, boardSize - y - 1);
+        }
+        return parsePoint(getValue(index));
+    }
+
     /** Parse point value.
         @return Point or null, if pass move
         @throw SgfError On invalid value */
@@ -707,16 +1187,23 @@ public final class SgfReader
         return GoPoint.get(x, y);
     }
 
-    private void parsePointList(ArrayList<String> values) throws SgfError
+    private void parsePointList(Property prop) throws SgfError
     {
         m_pointList.clear();
-        for (int i = 0; i < values.size(); ++i)
+        for (int i = 0; i < prop.m_numberValues; ++i)
         {
-            String value = values.get(i);
-            int pos = value.indexOf(':');
+            int index = prop.m_firstValue + i;
+            // Only decode values that can be compressed point lists
+            String value = null;
+            int pos = -1;
+            if (m_lexer.getValueEnd(index) - m_lexer.getValueStart(index) > 2)
+            {
+                value = getValue(index);
+                pos = value.indexOf(':');
+            }
             if (pos < 0)
             {
-                GoPoint point = parsePoint(value);
+                GoPoint point = parsePoint(index);
                 if (point == null)
                     setWarning("Point list argument contains PASS");
                 else
@@ -761,90 +1248,203 @@ public final class SgfReader
             m_preByoyomi = preByoyomi;
     }
 
-    private Node readNext(Node father, boolean isRoot)
-        throws IOException, SgfError, SgfCharsetChanged
+    /** Scan the structure of the game tree for the lazy mode.
+        Creates the index of the node sequences. Unusual structures like
+        empty game trees or nodes after variations are interpreted in the
+        same way as by readTree(). */
+    private void readIndex() throws IOException, SgfError
     {
-        if (m_progressShow != null)
+        m_index = new SgfIndex();
+        // For each open game tree the sequence of the node, the next node
+        // is appended to, if it can continue that sequence and the number
+        // of created sequences before the game tree was opened
+        int[] stack = new int[3 * 64];
+        // Sequences that are not ended yet
+        int[] created = new int[64];
+        int numberCreated = 0;
+        int sequence = -1;
+        boolean canContinue = false;
+        // The game tree of the root was opened by findRoot()
+        int depth = 1;
+        while (depth > 0)
         {
-            int percent;
-            if (m_size > 0)
+            showProgress();
+            int t = m_lexer.next();
+            if (t == ';')
+            {
+                if (! canContinue)
+                {
+                    sequence = m_index.add(m_lexer.getOffset() - 1);
+                    if (numberCreated == created.length)
+                        created = grow(created);
+                    created[numberCreated++] = sequence;
+                    canContinue = true;
+                }
+                m_index.addNode();
+                while (m_lexer.next() == SgfLexer.PROPERTY_ID)
+                    while (skipValue());
+                m_lexer.pushBack();
+            }
+            else if (t == '(')
             {
-                long count = m_byteCountInputStream.getCount();
-                percent = (int)(count * 100 / m_size);
+                if (3 * depth == stack.length)
+                    stack = grow(stack);
+                stack[3 * depth] = sequence;
+                stack[3 * depth + 1] = (canContinue ? 1 : 0);
+                stack[3 * depth + 2] = numberCreated;
+                ++depth;
+                canContinue = false;
+            }
+            else if (t == ')' || t == SgfLexer.EOF)
+            {
+                if (t == SgfLexer.EOF)
+                    setWarning("Game tree not closed");
+                do
+                {
+                    --depth;
+                    int numberSequences = m_index.getNumberSequences();
+                    while (numberCreated > stack[3 * depth + 2])
+                        m_index.setEnd(created[--numberCreated],
+                                       numberSequences);
+                    sequence = stack[3 * depth];
+                    // A sequence can only be continued, if no variations
+                    // were appended to its last node
+                    canContinue = (stack[3 * depth + 1] != 0
+                                   && sequence == numberSequences - 1);
+                }
+                while (t == SgfLexer.EOF && depth > 0);
             }
             else
-                percent = 100;
-            if (percent != m_lastPercent)
-                m_progressShow.showProgress(percent);
-            m_lastPercent = percent;
-        }
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == '(')
-        {
-            Node node = father;
-            while (node != null)
-                node = readNext(node, false);
-            return father;
-        }
-        if (ttype == ')')
-            return null;
-        if (ttype == StreamTokenizer.TT_EOF)
-        {
-            setWarning("Game tree not closed");
-            return null;
+                throw getError("Next node expected");
         }
-        if (ttype != ';')
-            throw getError("Next node expected");
-        Node son = new Node();
-        if (father != null)
-            father.append(son);
+    }
+
+    /** Read the properties of a node after the ';' token. */
+    private void readNode(Node node, boolean isRoot)
+        throws IOException, SgfError
+    {
         m_ignoreOvertime = false;
         m_byoyomiMoves = -1;
         m_byoyomi = -1;
         m_preByoyomi = -1;
-        m_props.clear();
+        m_numberProps = 0;
+        m_lexer.clearValues();
         while (readProp());
-        handleProps(son, isRoot);
-        setTimeSettings(son);
-        return son;
+        handleProps(node, isRoot);
+        setTimeSettings(node);
+    }
+
+    /** Create the nodes of a chunk of a sequence in lazy mode.
+        Creates at most CHUNK_SIZE nodes and sets a child loader for the
+        last created node, if it has children.
+        @param channel The file.
+        @param father The father of the first node, null for the root.
+        @param sequence The index of the sequence.
+        @param position The position of the first node in the sequence.
+        @param offset The offset in the file before the first node.
+        @return The first node. */
+    private Node readNodes(FileChannel channel, Node father, int sequence,
+                           int position, long offset)
+        throws IOException, SgfError
+    {
+        channel.position(offset);
+        m_lexer = new SgfLexer(Channels.newInputStream(channel),
+                               LAZY_BUFFER_SIZE);
+        int numberNodes = m_index.getNumberNodes(sequence);
+        int last = Math.min(position + CHUNK_SIZE, numberNodes) - 1;
+        Node first = null;
+        Node node = father;
+        for (int i = position; i <= last; ++i)
+        {
+            // Skip empty game trees and starts of game trees, which
+            // contain only the rest of the sequence
+            int t = m_lexer.next();
+            while (t == '(' || t == ')')
+                t = m_lexer.next();
+            if (t != ';')
+                throw getError("Next node expected");
+            Node son = new Node();
+            if (node != null)
+                node.append(son);
+            // Errors in nodes created after the constructor returned are
+            // handled by load(), which records them for getLoadError() and
+            // loadAll(), so that the incomplete tree is not saved
+            readNode(son, node == null);
+            if (first == null)
+                first = son;
+            node = son;
+        }
+        if (last < numberNodes - 1 || m_index.hasChildren(sequence))
+            node.setChildLoader(new Loader(sequence, last,
+                                           offset + m_lexer.getOffset()));
+        m_numberLoadedNodes += last - position + 1;
+        return first;
     }
 
     private boolean readProp() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == StreamTokenizer.TT_WORD)
+        if (m_lexer.next() != SgfLexer.PROPERTY_ID)
         {
-            // Use intern() to allow fast comparsion with ==
-            String p = m_tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
-            ArrayList<String> values = new ArrayList<String>();
-            String s;
-            while ((s = readValue()) != null)
-                values.add(s);
-            if (values.isEmpty())
-            {
-                setWarning("Property \"" + p + "\" has no value");
-                return true;
-            }
-            p = checkForObsoleteLongProps(p);
-            if (m_props.containsKey(p))
-                // Silently accept duplicate properties, as long as they have
-                // the same value (only check for single value properties)
-                if (m_props.get(p).size() > 1 || values.size() > 1
-                    || ! values.get(0).equals(m_props.get(p).get(0)))
-                    setWarning("Duplicate property " + p + " in node");
-            m_props.put(p, values);
+            m_lexer.pushBack();
+            return false;
+        }
+        String p = m_lexer.getPropertyId();
+        int firstValue = m_lexer.getNumberValues();
+        while (readValue());
+        int numberValues = m_lexer.getNumberValues() - firstValue;
+        if (numberValues == 0)
+        {
+            setWarning("Property \"" + p + "\" has no value");
             return true;
         }
-        if (ttype != '\n')
-            // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-            m_tokenizer.pushBack();
-        return false;
+        p = checkForObsoleteLongProps(p);
+        Property prop = getProp(p);
+        if (prop == null)
+            prop = addProp(p);
+        else
+        {
+            // Silently accept duplicate properties, as long as they have
+            // the same value (only check for single value properties)
+            if (prop.m_numberValues > 1 || numberValues > 1
+                || ! getValue(firstValue).equals(getValue(prop.m_firstValue)))
+                setWarning("Duplicate property " + p + " in node");
+        }
+        prop.m_firstValue = firstValue;
+        prop.m_numberValues = numberValues;
+        return true;
+    }
+
+    /** Create the first nodes of the root sequence in lazy mode. */
+    /** Read a value with SgfLexer#readValue().
+        Adds the file name to errors of the lexer. */
+    private boolean readValue() throws IOException, SgfError
+    {
+        try
+        {
+            return m_lexer.readValue();
+        }
+        catch (SgfError e)
+        {
+            throw getError(e.getMessage());
+        }
+    }
+
+    private Node readRoot() throws IOException, SgfError
+    {
+        RandomAccessFile file = new RandomAccessFile(m_file, "r");
+        try
+        {
+            return readNodes(file.getChannel(), null, 0, 0,
+                             m_index.getStart(0));
+        }
+        finally
+        {
+            file.close();
+        }
     }
 
-    private void readSgf(InputStream in, String charset)
-        throws SgfError, SgfCharsetChanged
+    private void readSgf(InputStream in, boolean lazy, Charset knownCharset)
+        throws SgfError
     {
         try
         {
@@ -854,29 +1454,51 @@ public final class SgfReader
                 m_byteCountInputStream = new ByteCountInputStream(in);
                 in = m_byteCountInputStream;
             }
-            InputStreamReader reader;
-            try
+            Charset charset = null;
+            if (knownCharset != null)
+            {
+                m_charset = knownCharset;
+                m_detectedCharset = knownCharset.name();
+            }
+            else
             {
-                reader = new InputStreamReader(in, charset);
+                BufferedInputStream bufferedIn =
+                    new BufferedInputStream(in, CHARSET_SEARCH_LENGTH);
+                in = bufferedIn;
+                // SGF FF 4 standard defines ISO-8859-1 as default
+                m_charset = Charset.forName("ISO-8859-1");
+                m_detectedCharset = detectCharset(bufferedIn);
+                if (m_detectedCharset != null)
+                    charset = getCharset(m_detectedCharset);
             }
-            catch (UnsupportedEncodingException e)
+            if (charset != null)
             {
-                // Should actually not happen, because this function is only
-                // called with charset ISO-8859-1 (should be supported on every
-                // Java platform according to Charset documentation) or with a
-                // CA property value, which was already checked with
-                // Charset.isSupported()
-                setWarning("Character set \"" + charset + "\" not supported");
-                reader = new InputStreamReader(in);
+                if (isByteLevelCharset(charset))
+                    m_charset = charset;
+                else
+                {
+                    in = new Utf8InputStream(new InputStreamReader(in,
+                                                                   charset));
+                    m_charset = Charset.forName("UTF-8");
+                    // Offsets in the converted stream cannot be used for
+                    // reading nodes from the file
+                    lazy = false;
+                }
             }
-            m_reader = new BufferedReader(reader);
-            m_tokenizer = new StreamTokenizer(m_reader);
+            m_lexer = new SgfLexer(in);
             findRoot();
-            Node root = readNext(null, true);
-            Node node = root;
-            while (node != null)
-                node = readNext(node, false);
-            checkEndOfFile();
+            Node root;
+            if (lazy)
+            {
+                readIndex();
+                checkEndOfFile();
+                root = readRoot();
+            }
+            else
+            {
+                root = readTree();
+                checkEndOfFile();
+            }
             getBoardSize(); // Set to default value if still unknown
             m_tree = new GameTree(m_boardSize, root);
             applyFixes();
@@ -895,61 +1517,64 @@ public final class SgfReader
         }
     }
 
-    private String readValue() throws IOException, SgfError
+    /** Read the game tree after the start of the root game tree.
+        Uses an explicit stack of the nodes, at which the open game trees of
+        variations start, instead of recursion, to be able to read deeply
+        nested variations. */
+    private Node readTree() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype != '[')
-        {
-            if (ttype != '\n')
-                // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-                m_tokenizer.pushBack();
-            return null;
-        }
-        m_buffer.setLength(0);
-        boolean quoted = false;
-        Character last = null;
+        ArrayList<Node> stack = new ArrayList<Node>();
+        Node root = null;
+        Node node = null;
         while (true)
         {
-            int c = m_reader.read();
-            if (c < 0)
-                throw getError("Property value incomplete");
-            if (quoted)
+            showProgress();
+            int ttype = m_lexer.next();
+            if (ttype == '(')
             {
-                if (c != '\n' && c != '\r')
-                    m_buffer.append((char)c);
-                last = Character.valueOf((char)c);
-                quoted = false;
+                stack.add(node);
+                continue;
             }
-            else
+            if (ttype == ')')
             {
-                if (c == ']')
+                if (stack.isEmpty())
                     break;
-                quoted = (c == '\\');
-                if (! quoted)
-                {
-                    // Transform all linebreaks allowed in SGF (LF, CR, LFCR,
-                    // CRLF) to a single '\n'
-                    boolean isLinebreak = (c == '\n' || c == '\r');
-                    boolean lastLinebreak =
-                        (last != null && (last.charValue() == '\n'
-                                          || last.charValue() == '\r'));
-                    boolean filterSecondLinebreak =
-                        (isLinebreak && lastLinebreak && c != last.charValue());
-                    if (filterSecondLinebreak)
-                        last = null;
-                    else
-                    {
-                        if (isLinebreak)
-                            m_buffer.append('\n');
-                        else
-                            m_buffer.append((char)c);
-                        last = Character.valueOf((char)c);
-                    }
-                }
+                node = stack.remove(stack.size() - 1);
+                continue;
+            }
+            if (ttype == SgfLexer.EOF)
+            {
+                setWarning("Game tree not closed");
+                break;
             }
+            if (ttype != ';')
+                throw getError("Next node expected");
+            Node son = new Node();
+            if (node == null)
+                root = son;
+            else
+                node.append(son);
+            readNode(son, node == null);
+            node = son;
+        }
+        return root;
+    }
+
+    private void showProgress()
+    {
+        if (m_progressShow == null)
+            return;
+        int percent;
+        if (m_size > 0)
+        {
+            long count = m_byteCountInputStream.getCount();
+            percent = (int)(count * 100 / m_size);
         }
-        return m_buffer.toString();
+        else
+            percent = 100;
+        if (percent != m_lastPercent)
+            m_progressShow.showProgress(percent);
+        m_lastPercent = percent;
     }
 
     private void set(Node node, StringInfo type, String value)
@@ -965,6 +1590,21 @@ public final class SgfReader
         info.set(type, c, value);
     }
 
+    /** Handle an error in load().
+        Removes the children created before the error and sets the loader
+        again, so that no partial subtree is used. */
+    private void setLoadError(Node node, Loader loader,
+                              int numberLoadedNodes, String message)
+    {
+        node.unloadChildren(loader);
+        m_numberLoadedNodes = numberLoadedNodes;
+        if (m_loadError != null)
+            return;
+        m_loadError = message;
+        setWarning(message);
+        System.err.println("Could not read SGF nodes: " + message);
+    }
+
     private void setTimeSettings(Node node)
     {
         TimeSettings s = null;
@@ -986,6 +1626,38 @@ public final class SgfReader
         m_warnings.add(message);
     }
 
+    /** Sort the properties of the current node by identifier.
+        Properties are handled in a defined order independent of the order
+        in the file. */
+    /** Skip a value with SgfLexer#skipValue().
+        Adds the file name to errors of the lexer. */
+    private boolean skipValue() throws IOException, SgfError
+    {
+        try
+        {
+            return m_lexer.skipValue();
+        }
+        catch (SgfError e)
+        {
+            throw getError(e.getMessage());
+        }
+    }
+
+    private void sortProps()
+    {
+        for (int i = 1; i < m_numberProps; ++i)
+        {
+            Property prop = m_props[i];
+            int j = i;
+            while (j > 0 && m_props[j - 1].m_id.compareTo(prop.m_id) > 0)
+            {
+                m_props[j] = m_props[j - 1];
+                --j;
+            }
+            m_props[j] = prop;
+        }
+    }
+
     private void throwInvalidCoordinates(String s) throws SgfError
     {
         throw getError("Invalid coordinates \"" + s + "\"");
@@ -2,9 +2,14 @@
 
 package net.sf.gogui.sgf;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
@@ -25,9 +30,13 @@ import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.PointList;
+import net.sf.gogui.util.ProgressShow;
 import net.sf.gogui.util.StringUtil;
 
-/** Write in SGF format. */
+/** Write in SGF format.
+    The output is written in UTF-8 through a buffer and the stream is
+    closed after writing. Errors are not thrown by the constructors, but
+    can be queried with getError() afterwards. */
 public class SgfWriter
 {
     public static final String ENCODING = "UTF-8";
@@ -41,23 +50,65 @@ public class SgfWriter
     public SgfWriter(OutputStream out, ConstGameTree tree, String application,
                      String version)
     {
-        try
-        {
-            m_out = new PrintStream(out, false, ENCODING);
-        }
-        catch (UnsupportedEncodingException e)
+        this(out, tree, application, version, null);
+    }
+
+    /** Write game tree in SGF format and show progress.
+        The game tree is only read, so it can be written in a different
+        thread than the one modifying the tree, if it is a copy that is not
+        modified anymore, like a game.CompactGameTree.
+        @param out Output stream.
+        @param tree Game tree to write.
+        @param application Application name for AP property.
+        @param version If not null, version appended to application name in
+        AP property.
+        @param progressShow Callback to show progress, can be null */
+    public SgfWriter(OutputStream out, ConstGameTree tree, String application,
+                     String version, ProgressShow progressShow)
+    {
+        m_out = createWriter(out);
+        m_size = tree.getBoardSize();
+        if (progressShow != null)
         {
-            // UTF-8 should be supported by every Java implementation
-            assert false;
+            m_progressShow = progressShow;
+            m_numberNodes = NodeUtil.subtreeSize(tree.getRootConst());
         }
         print("(");
-        m_size = tree.getBoardSize();
         printHeader(application, version);
         printNewLine();
-        printNode(tree.getRootConst(), true);
+        printTree(tree.getRootConst());
         print(")");
-        m_out.println(m_buffer.toString());
-        m_out.close();
+        close();
+    }
+
+    /** Write a sequence of nodes as a game tree in SGF format.
+        The root node of the written tree contains only the header
+        properties and the nodes follow as a single variation, each node
+        being the child of the previous one. Only the properties of the
+        nodes are written; the nodes do not need to be children of each
+        other in their own tree. Can be used for appending nodes to an
+        existing tree, which are read again as the children of the root
+        node.
+        @param out Output stream.
+        @param size The board size.
+        @param nodes The nodes. */
+    public SgfWriter(OutputStream out, int size,
+                     List<? extends ConstNode> nodes)
+    {
+        m_out = createWriter(out);
+        m_size = size;
+        print("(");
+        printHeader(null, null);
+        printNewLine();
+        int moveNumber = 0;
+        for (ConstNode node : nodes)
+        {
+            if (node.getMove() != null)
+                ++moveNumber;
+            printNode(node, false, moveNumber);
+        }
+        print(")");
+        close();
     }
 
     /** Write position in SGF format.
@@ -69,27 +120,68 @@ public class SgfWriter
     public SgfWriter(OutputStream out, ConstBoard board, String application,
                      String version)
     {
+        m_out = createWriter(out);
         m_size = board.getSize();
-        m_out = new PrintStream(out);
         print("(");
         printHeader(application, version);
         printNewLine();
         printPosition(board);
         print(")");
-        m_out.println(m_buffer.toString());
-        m_out.close();
+        close();
+    }
+
+    /** Get the first error that occurred while writing.
+        @return The error or null, if the game was written successfully. */
+    public IOException getError()
+    {
+        return m_error;
     }
 
     private static final int STRINGBUF_CAPACITY = 128;
 
     private static final int MAX_CHARS_PER_LINE = 78;
 
+    private static final int OUTPUT_BUFFER_SIZE = 65536;
+
+    /** Interval for calling m_progressShow in number of nodes. */
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    private static final String NEWLINE = System.getProperty("line.separator");
+
+    private int m_numberNodes;
+
+    private int m_numberNodesWritten;
+
+    private final int m_size;
+
+    private IOException m_error;
+
     private final StringBuilder m_buffer
         = new StringBuilder(STRINGBUF_CAPACITY);
 
-    private final int m_size;
+    private ProgressShow m_progressShow;
 
-    private PrintStream m_out;
+    private final Writer m_out;
+
+    private void close()
+    {
+        printNewLine();
+        try
+        {
+            m_out.close();
+        }
+        catch (IOException e)
+        {
+            if (m_error == null)
+                m_error = e;
+        }
+    }
+
+    private static Writer createWriter(OutputStream out)
+    {
+        return new BufferedWriter(new OutputStreamWriter(out, UTF_8),
+                                  OUTPUT_BUFFER_SIZE);
+    }
 
     private String getEscaped(String text)
     {
@@ -120,20 +212,6 @@ public class SgfWriter
         return result.toString();
     }
 
-    private static int getMoveNumberInVariation(ConstNode node)
-    {
-        int moveNumber = 0;
-        while (node != null)
-        {
-            if (node.getMove() != null)
-                ++moveNumber;
-            node = node.getFatherConst();
-            if (node != null && node.getNumberChildren() > 1)
-                break;
-        }
-        return moveNumber;
-    }
-
     private String getPoint(GoPoint p)
     {
         if (p == null)
@@ -181,11 +259,21 @@ public class SgfWriter
 
     private void printNewLine()
     {
-        if (m_buffer.length() > 0)
+        if (m_buffer.length() == 0)
+            return;
+        m_buffer.append(NEWLINE);
+        if (m_error == null)
         {
-            m_out.println(m_buffer.toString());
-            m_buffer.replace(0, m_buffer.length(), "");
+            try
+            {
+                m_out.append(m_buffer);
+            }
+            catch (IOException e)
+            {
+                m_error = e;
+            }
         }
+        m_buffer.setLength(0);
     }
 
     private void printHeader(String application, String version)
@@ -279,17 +367,16 @@ public class SgfWriter
             print(property + getPointList(marked));
     }
 
-    private void printNode(ConstNode node, boolean isRoot)
+    /** Print the properties of a node.
+        @param moveNumber The number of moves in the variation up to and
+        including this node. */
+    private void printNode(ConstNode node, boolean isRoot, int moveNumber)
     {
         Move move = node.getMove();
         if (! isRoot)
         {
-            if (move != null)
-            {
-                int moveNumber = getMoveNumberInVariation(node);
-                if (moveNumber != 1 && moveNumber % 10 == 1)
-                    printNewLine();
-            }
+            if (move != null && moveNumber != 1 && moveNumber % 10 == 1)
+                printNewLine();
             print(";");
         }
         ConstGameInfo info = node.getGameInfoConst();
@@ -352,21 +439,6 @@ public class SgfWriter
                 for (int i = 0; i < sgfProps.getNumberValues(key); ++i)
                     print("[" + sgfProps.getValue(key, i) + "]");
             }
-        int numberChildren = node.getNumberChildren();
-        if (numberChildren == 0)
-            return;
-        if (numberChildren == 1)
-        {
-            printNode(node.getChildConst(), false);
-            return;
-        }
-        for (int i = 0; i < numberChildren; ++i)
-        {
-            printNewLine();
-            print("(");
-            printNode(node.getChildConst(i), false);
-            print(")");
-        }
     }
 
     private void printPosition(ConstBoard board)
@@ -405,4 +477,71 @@ public class SgfWriter
         else
             print("PL[W]");
     }
+
+    /** Print the nodes of the game tree.
+        Uses an explicit stack of the nodes with more than one child, at
+        which variations are open, instead of recursion, to be able to write
+        deeply nested variations. */
+    private void printTree(ConstNode root)
+    {
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        // Index of the next child to print for the nodes on the stack
+        int[] nextChild = new int[64];
+        ConstNode node = root;
+        int moveNumber = 0;
+        while (true)
+        {
+            if (node.getMove() != null)
+                ++moveNumber;
+            printNode(node, node == root, moveNumber);
+            if (m_progressShow != null
+                && ++m_numberNodesWritten % PROGRESS_INTERVAL == 0)
+                m_progressShow.showProgress((int)(100L * m_numberNodesWritten
+                                                  / m_numberNodes));
+            int numberChildren = node.getNumberChildren();
+            if (numberChildren == 1)
+            {
+                node = node.getChildConst();
+                continue;
+            }
+            if (numberChildren > 1)
+            {
+                if (stack.size() == nextChild.length)
+                {
+                    int[] newNextChild = new int[2 * nextChild.length];
+                    System.arraycopy(nextChild, 0, newNextChild, 0,
+                                     nextChild.length);
+                    nextChild = newNextChild;
+                }
+                nextChild[stack.size()] = 1;
+                stack.add(node);
+                printNewLine();
+                print("(");
+                node = node.getChildConst(0);
+                moveNumber = 0;
+                continue;
+            }
+            // End of variation, continue with the next open variation
+            node = null;
+            while (node == null && ! stack.isEmpty())
+            {
+                print(")");
+                int top = stack.size() - 1;
+                ConstNode father = stack.get(top);
+                int i = nextChild[top];
+                if (i < father.getNumberChildren())
+                {
+                    nextChild[top] = i + 1;
+                    printNewLine();
+                    print("(");
+                    node = father.getChildConst(i);
+                    moveNumber = 0;
+                }
+                else
+                    stack.remove(top);
+            }
+            if (node == null)
+                return;
+        }
+    }
 }
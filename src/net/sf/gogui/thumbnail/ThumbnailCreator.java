@@ -2,9 +2,8 @@
 
 package net.sf.gogui.thumbnail;
 
-import java.awt.Graphics2D;
-import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -50,30 +49,16 @@ public final class ThumbnailCreator
 
     /** Create thumbnail at standard location.
         Does not create the thumnbail if an up-to-date thumbnail already
-        exists. */
-    public void create(File input) throws ErrorMessage
+        exists.
+        @return true, if the thumbnail was created, false, if an up-to-date
+        thumbnail already existed. */
+    public boolean create(File input) throws ErrorMessage
     {
         File file = getThumbnailFileNormalSize(input);
-        if (file.exists())
-        {
-            URI uri = getURI(input);
-            long lastModified = getLastModified(input);
-            try
-            {
-                ThumbnailReader.MetaData data = ThumbnailReader.read(file);
-                if (uri.equals(data.m_uri)
-                    && data.m_lastModified == lastModified)
-                {
-                    m_lastThumbnail = file;
-                    m_description = data.m_description;
-                    return;
-                }
-            }
-            catch (IOException e)
-            {
-            }
-        }
+        if (isUpToDate(input, file))
+            return false;
         create(input, null, 128, false);
+        return true;
     }
 
     /** Create thumbnail.
@@ -110,21 +95,11 @@ public final class ThumbnailCreator
                                      thumbnailSize);
             BufferedImage image;
             if (imageSize < 256)
-            {
                 // Create large image and scale down, looks better than
                 // creating small image
-                image = BoardPainterUtil.getImage(m_painter, fields,
-                                                  2 * imageSize,
-                                                  2 * imageSize);
-                BufferedImage newImage
-                    = BoardPainterUtil.createImage(imageSize, imageSize);
-                Graphics2D graphics = newImage.createGraphics();
-                Image scaledInstance
-                    = image.getScaledInstance(imageSize, imageSize,
-                                              Image.SCALE_SMOOTH);
-                graphics.drawImage(scaledInstance, 0, 0, null);
-                image = newImage;
-            }
+                image = downscale(BoardPainterUtil.getImage(m_painter, fields,
+                                                            2 * imageSize,
+                                                            2 * imageSize));
             else
                 image = BoardPainterUtil.getImage(m_painter, fields,
                                                   imageSize, imageSize);
@@ -137,10 +112,10 @@ public final class ThumbnailCreator
             switch (m_gameFile.m_format)
             {
             case XML:
-                metaData.put("Thumb::Mimetype", "application/x-go-sgf");
+                metaData.put("Thumb::Mimetype", "application/x-go+xml");
                 break;
             case SGF:
-                metaData.put("Thumb::Mimetype", "application/x-go+xml");
+                metaData.put("Thumb::Mimetype", "application/x-go-sgf");
             }
             if (! m_description.equals(""))
                 metaData.put("Description", m_description);
@@ -181,6 +156,41 @@ public final class ThumbnailCreator
         return m_lastThumbnail;
     }
 
+    /** Scale an image down to half of its size.
+        Each pixel is the average of a 2x2 block of the source image. Up to
+        rounding, this is what the area averaging of
+        Image.getScaledInstance() with Image.SCALE_SMOOTH computes for this
+        factor, but much faster.
+        @param image Image created with BoardPainterUtil.createImage() with
+        even width and height. */
+    static BufferedImage downscale(BufferedImage image)
+    {
+        assert image.getType() == BufferedImage.TYPE_INT_RGB;
+        int width = image.getWidth() / 2;
+        int height = image.getHeight() / 2;
+        BufferedImage result = BoardPainterUtil.createImage(width, height);
+        int[] source = getPixels(image);
+        int[] target = getPixels(result);
+        int sourceWidth = image.getWidth();
+        for (int y = 0; y < height; ++y)
+            for (int x = 0; x < width; ++x)
+            {
+                int i = 2 * y * sourceWidth + 2 * x;
+                int p1 = source[i];
+                int p2 = source[i + 1];
+                int p3 = source[i + sourceWidth];
+                int p4 = source[i + sourceWidth + 1];
+                // Add two components at once; the sums fit in 10 bits
+                int rb = (p1 & 0xff00ff) + (p2 & 0xff00ff) + (p3 & 0xff00ff)
+                    + (p4 & 0xff00ff) + 0x020002;
+                int g = (p1 & 0xff00) + (p2 & 0xff00) + (p3 & 0xff00)
+                    + (p4 & 0xff00) + 0x0200;
+                target[y * width + x] =
+                    ((rb >> 2) & 0xff00ff) | ((g >> 2) & 0xff00);
+            }
+        return result;
+    }
+
     private final boolean m_verbose;
 
     private String m_description;
@@ -191,13 +201,19 @@ public final class ThumbnailCreator
 
     private GameFile m_gameFile;
 
+    /** Files larger than this size in bytes are read in lazy mode.
+        Only the nodes of the main variation up to the thumbnail position
+        are created then. Small files are faster to read completely. */
+    private static final long LAZY_FILE_SIZE = 100000;
+
     /** Read a file and return a position to use for the thumbnail.
         The position is the first position in the main variation that contains
         setup stones (unless they are handicap stones) or, if no such position
         exists, the last position. */
     private ConstBoard readFile(File file) throws ErrorMessage
     {
-        GameReader reader = new GameReader(file);
+        GameReader reader =
+            new GameReader(file, null, file.length() > LAZY_FILE_SIZE);
         m_gameFile = reader.getFile();
         ConstGameTree tree = reader.getTree();
         ConstGameInfo info = tree.getGameInfoConst(tree.getRootConst());
@@ -215,6 +231,11 @@ public final class ThumbnailCreator
         return lastModified;
     }
 
+    private static int[] getPixels(BufferedImage image)
+    {
+        return ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+    }
+
     private String getMD5(String string) throws Error
     {
         try
@@ -250,6 +271,30 @@ public final class ThumbnailCreator
         return uri;
     }
 
+    /** Check if a thumbnail exists and was created for the current version
+        of a file. */
+    boolean isUpToDate(File input, File thumbnail) throws Error
+    {
+        if (! thumbnail.exists())
+            return false;
+        URI uri = getURI(input);
+        long lastModified = getLastModified(input);
+        try
+        {
+            ThumbnailReader.MetaData data = ThumbnailReader.read(thumbnail);
+            if (uri.equals(data.m_uri) && data.m_lastModified == lastModified)
+            {
+                m_lastThumbnail = thumbnail;
+                m_description = data.m_description;
+                return true;
+            }
+        }
+        catch (IOException e)
+        {
+        }
+        return false;
+    }
+
     private void log(String line)
     {
         if (! m_verbose)
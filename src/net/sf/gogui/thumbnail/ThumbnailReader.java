@@ -53,22 +53,37 @@ public final class ThumbnailReader
         ImageInputStream stream = ImageIO.createImageInputStream(file);
         if (stream == null)
             return metaData;
-        Iterator iter = ImageIO.getImageReaders(stream);
-        ImageReader reader = (ImageReader)iter.next();
-        reader.setInput(stream, true);
         IIOMetadata metadata;
         try
         {
-            metadata = reader.getImageMetadata(0);
+            Iterator iter = ImageIO.getImageReaders(stream);
+            if (! iter.hasNext())
+                throw new IOException("Unknown image format: " + file);
+            ImageReader reader = (ImageReader)iter.next();
+            reader.setInput(stream, true);
+            try
+            {
+                metadata = reader.getImageMetadata(0);
+            }
+            catch (Throwable t)
+            {
+                // Some PNGs generate a NegativeArraySizeException in
+                // com.sun.imageio.plugins.png.PNGImageReader.readMetadata
+                // with Java 1.5. Ignore these PNGs until the problem is
+                // understood.
+                StringUtil.printException(t);
+                throw new IOException("Internal error reading PNG meta data");
+            }
+            finally
+            {
+                reader.dispose();
+            }
         }
-        catch (Throwable t)
+        finally
         {
-            // Some PNGs generate a NegativeArraySizeException in
-            // com.sun.imageio.plugins.png.PNGImageReader.readMetadata
-            // with Java 1.5. Ignore these PNGs until the problem is
-            // understood.
-            StringUtil.printException(t);
-            throw new IOException("Internal error reading PNG meta data");
+            // Close the stream, the thumbnailer can read many files in
+            // batch mode
+            stream.close();
         }
         String formatName = "javax_imageio_1.0";
         Node root = metadata.getAsTree(formatName);
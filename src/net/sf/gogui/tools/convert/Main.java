@@ -2,13 +2,21 @@
 
 package net.sf.gogui.tools.convert;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Locale;
 import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.gamefile.GameFile;
 import net.sf.gogui.gamefile.GameReader;
+import net.sf.gogui.sgf.SgfCollectionReader;
+import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.tex.TexWriter;
 import net.sf.gogui.util.ErrorMessage;
@@ -18,7 +26,8 @@ import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
 import net.sf.gogui.xml.XmlWriter;
 
-/** Convert SGF and Jago XML Go game files to other formats. */
+/** Convert SGF and Jago XML Go game files to other formats.
+    SGF files can contain a collection of several games. */
 public final class Main
 {
     /** Main function. */
@@ -79,29 +88,15 @@ public final class Main
             }
             if (! in.exists())
                 throw new ErrorMessage("File \"" + in + "\" not found");
-            GameReader reader = new GameReader(in);
-            ConstGameTree tree = reader.getTree();
-            String warnings = reader.getWarnings();
-            if (warnings != null)
+            if (GameReader.detectFormat(in) == GameFile.Format.XML)
             {
-                System.err.print(warnings);
-                if (werror)
-                    System.exit(1);
-            }
-            if (! checkOnly)
-            {
-                String version = Version.get();
-                if (format.equals("xml"))
-                    new XmlWriter(new FileOutputStream(out), tree,
-                                  "gogui-convert:" + version);
-                else if (format.equals("sgf"))
-                    new SgfWriter(new FileOutputStream(out), tree,
-                                  "gogui-convert", version);
-                else if (format.equals("tex"))
-                    new TexWriter(title, new FileOutputStream(out), tree);
-                else
-                    assert false; // checked above
+                GameReader reader = new GameReader(in);
+                printWarnings(reader.getWarnings(), "", werror);
+                if (! checkOnly)
+                    write(reader.getTree(), out, format, title);
             }
+            else
+                convertCollection(in, out, format, title, force, werror);
         }
         catch (Throwable t)
         {
@@ -115,6 +110,78 @@ public final class Main
     {
     }
 
+    /** Convert all games of an SGF file.
+        If the file contains more than one game, the games are written to a
+        single file in SGF format and to numbered files in the other
+        formats.
+        @param out The output file or null, if the games should only be
+        checked. */
+    private static void convertCollection(File in, File out, String format,
+                                          String title, boolean force,
+                                          boolean werror)
+        throws ErrorMessage, IOException
+    {
+        SgfCollectionReader reader =
+            new SgfCollectionReader(new FileInputStream(in), in);
+        OutputStream sgfOut = null;
+        try
+        {
+            if (out != null && format.equals("sgf"))
+                sgfOut = new BufferedOutputStream(new FileOutputStream(out));
+            SgfReader game;
+            while ((game = reader.next()) != null)
+            {
+                int number = reader.getNumberGames();
+                boolean isCollection = (number > 1 || reader.hasNext());
+                String prefix = "";
+                if (isCollection)
+                    prefix = "Game " + number + ": ";
+                printWarnings(game.getWarnings(), prefix, werror);
+                if (out == null)
+                    continue;
+                if (sgfOut != null)
+                {
+                    // SgfWriter closes its stream
+                    ByteArrayOutputStream buffer =
+                        new ByteArrayOutputStream();
+                    new SgfWriter(buffer, game.getTree(), "gogui-convert",
+                                  Version.get());
+                    buffer.writeTo(sgfOut);
+                }
+                else
+                {
+                    File file = out;
+                    if (isCollection)
+                        file = getNumberedFile(out, number);
+                    if (file.exists() && ! force)
+                        throw new ErrorMessage("File \"" + file
+                                               + "\" already exists");
+                    write(game.getTree(), file, format, title);
+                }
+            }
+            if (reader.getNumberGames() == 0)
+                throw new ErrorMessage("No SGF tree found in \"" + in
+                                       + "\"");
+        }
+        finally
+        {
+            reader.close();
+            if (sgfOut != null)
+                sgfOut.close();
+        }
+    }
+
+    /** Get the name of the output file for a game of a collection.
+        Inserts the number of the game before the file extension. */
+    private static File getNumberedFile(File file, int number)
+    {
+        String extension = FileUtil.getExtension(file);
+        if (extension == null)
+            return new File(file + "-" + number);
+        return new File(FileUtil.removeExtension(file, extension) + "-"
+                        + number + "." + extension);
+    }
+
     private static void printUsage(PrintStream out)
     {
         out.print("Usage: gogui-convert infile outfile\n" +
@@ -128,4 +195,32 @@ public final class Main
                   "-version print version and exit\n" +
                   "-werror  handle read warnings as errors\n");
     }
+
+    private static void printWarnings(String warnings, String prefix,
+                                      boolean werror)
+    {
+        if (warnings == null)
+            return;
+        for (String line : warnings.split("\n"))
+            System.err.println(prefix + line);
+        if (werror)
+            System.exit(1);
+    }
+
+    private static void write(ConstGameTree tree, File out, String format,
+                              String title)
+        throws IOException
+    {
+        String version = Version.get();
+        if (format.equals("xml"))
+            new XmlWriter(new FileOutputStream(out), tree,
+                          "gogui-convert:" + version);
+        else if (format.equals("sgf"))
+            new SgfWriter(new FileOutputStream(out), tree, "gogui-convert",
+                          version);
+        else if (format.equals("tex"))
+            new TexWriter(title, new FileOutputStream(out), tree);
+        else
+            assert false; // checked in main()
+    }
 }
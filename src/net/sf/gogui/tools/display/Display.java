@@ -25,7 +25,7 @@ import net.sf.gogui.gtp.GtpEngine;
 import net.sf.gogui.gtp.GtpError;
 import net.sf.gogui.gtp.GtpResponseFormatError;
 import net.sf.gogui.gtp.GtpUtil;
-import net.sf.gogui.gui.AnalyzeShow;
+import net.sf.gogui.gui.GfxOverlay;
 import net.sf.gogui.gui.GuiBoard;
 import net.sf.gogui.gui.GuiBoardUtil;
 import net.sf.gogui.gui.GuiUtil;
@@ -180,12 +180,12 @@ public class Display
         }
     }
 
-    public void showLiveGfx(final String text)
+    public void showLiveGfx(GfxOverlay overlay)
     {
         assert SwingUtilities.isEventDispatchThread();
         m_guiBoard.clearAll();
         GuiBoardUtil.updateFromGoBoard(m_guiBoard, m_board, false, false);
-        AnalyzeShow.showGfx(text, m_guiBoard, m_statusBar, null);
+        overlay.show(m_guiBoard, m_statusBar, null);
     }
 
     /** Only accept this board size.
@@ -21,6 +21,7 @@ public final class Main
                 "gtpfile:",
                 "help",
                 "long",
+                "metrics",
                 "output:",
                 "verbose",
                 "version"
@@ -38,6 +39,7 @@ public final class Main
             }
             boolean verbose = opt.contains("verbose");
             boolean longOutput = opt.contains("long");
+            boolean metrics = opt.contains("metrics");
             String output = opt.get("output", "");
             File gtpFile = null;
             if (opt.contains("gtpfile"))
@@ -54,6 +56,8 @@ public final class Main
             tests.remove(0);
             Regress regress = new Regress(program, tests, output, longOutput,
                                           verbose, gtpFile);
+            if (metrics)
+                regress.getMetrics().print(System.err);
             System.exit(regress.getResult() ? 0 : 1);
         }
         catch (Throwable t)
@@ -77,6 +81,7 @@ public final class Main
                   "-gtpfile      GTP file to execute before each test\n" +
                   "-help         Display this help and exit\n" +
                   "-long         Longer output to standard out\n" +
+                  "-metrics      Print GTP command timings to stderr\n" +
                   "-output       Output directory\n" +
                   "-verbose      Log GTP stream to stderr\n" +
                   "-version      Display this help and exit\n");
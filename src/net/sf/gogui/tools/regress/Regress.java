@@ -16,6 +16,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpUtil;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
@@ -66,6 +67,12 @@ public class Regress
         writeData();
     }
 
+    /** Get the GTP command statistics of all tests. */
+    public GtpMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
     /** Return true if tests completed with no unexpected failures. */
     public boolean getResult()
     {
@@ -244,6 +251,8 @@ public class Regress
 
     private GtpClient m_gtp;
 
+    private final GtpMetrics m_metrics = new GtpMetrics();
+
     private void checkLastSgf(String line)
     {
         String regex =
@@ -790,6 +799,7 @@ public class Regress
                 m_gtp.close();
             }
             m_gtp.waitForExit();
+            m_metrics.add(m_gtp.getMetrics());
             finishOutFile();
             TestSummary testSummary = getTestSummary(timeMillis, cpuTime);
             m_testSummaries.add(testSummary);
@@ -17,6 +17,7 @@ import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.StringInfo;
 import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
@@ -220,6 +221,11 @@ public class Analyze
 
     private ArrayList<GameData> m_gameData;
 
+    /** SGF collection of the last game read by readGame(). */
+    private SgfCollectionReader m_collection;
+
+    private String m_collectionFile;
+
     private void endInfo(PrintStream out)
     {
         out.print("</table></td></tr>\n" +
@@ -487,6 +493,43 @@ public class Analyze
         return false;
     }
 
+    /** Read the game tree of a game in the File column.
+        The games of an SGF collection have the number of the game in the
+        collection appended to the file name (see
+        Statistics.getGameName()). The games of a collection are read
+        sequentially, because the game pages are written in the order of
+        the games in the table. */
+    private GameTree readGame(String game) throws ErrorMessage, IOException
+    {
+        File file = new File(game);
+        int index = game.lastIndexOf('#');
+        if (file.exists() || index < 0)
+        {
+            InputStream in = new FileInputStream(file);
+            return new SgfReader(in, file, null, 0).getTree();
+        }
+        String name = game.substring(0, index);
+        int number = Integer.parseInt(game.substring(index + 1));
+        if (m_collection == null || ! name.equals(m_collectionFile)
+            || m_collection.getNumberGames() >= number)
+        {
+            if (m_collection != null)
+                m_collection.close();
+            file = new File(name);
+            m_collection =
+                new SgfCollectionReader(new FileInputStream(file), file);
+            m_collectionFile = name;
+        }
+        while (true)
+        {
+            SgfReader reader = m_collection.next();
+            if (reader == null)
+                throw new ErrorMessage(game + " not found");
+            if (m_collection.getNumberGames() == number)
+                return reader.getTree();
+        }
+    }
+
     private void startHtml(PrintStream out, String title)
     {
         String charset = StringUtil.getDefaultEncoding();
@@ -660,9 +703,7 @@ public class Analyze
         writeHtmlRow(out, "File", getGameLink(file, gameNumber, false));
         try
         {
-            InputStream in = new FileInputStream(new File(game));
-            SgfReader reader = new SgfReader(in, new File(game), null, 0);
-            GameTree tree = reader.getTree();
+            GameTree tree = readGame(game);
             GameInfo info = tree.getGameInfo(tree.getRoot());
             String playerBlack = info.get(StringInfoColor.NAME, BLACK);
             if (playerBlack == null)
@@ -676,7 +717,6 @@ public class Analyze
             writeHtmlRow(out, "Black", playerBlack);
             writeHtmlRow(out, "White", playerWhite);
             writeHtmlRow(out, "Result", result);
-            in.close();
         }
         catch (Exception e)
         {
@@ -771,6 +811,11 @@ public class Analyze
             out.print("</tr>\n");
             writeGamePage(data.m_file, data.m_name, i);
         }
+        if (m_collection != null)
+        {
+            m_collection.close();
+            m_collection = null;
+        }
         out.print("</table>\n");
     }
 
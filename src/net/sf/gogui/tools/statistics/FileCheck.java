@@ -13,10 +13,12 @@ import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.Move;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 
-/** Check that SGF files meet the requirements for a Statistics run. */
+/** Check that SGF files meet the requirements for a Statistics run.
+    Checks all games of files that contain SGF collections. */
 public class FileCheck
 {
     public FileCheck(ArrayList<String> sgfFiles, int size, boolean allowSetup)
@@ -27,6 +29,7 @@ public class FileCheck
         for (int i = 0; i < sgfFiles.size(); ++i)
         {
             m_file = new File(sgfFiles.get(i));
+            m_name = m_file.toString();
             checkFile();
         }
     }
@@ -37,6 +40,9 @@ public class FileCheck
 
     private File m_file;
 
+    /** Name of the current game for error messages. */
+    private String m_name;
+
     private void checkFile() throws ErrorMessage
     {
         InputStream in = null;
@@ -48,8 +54,29 @@ public class FileCheck
         {
             throwError("file not found");
         }
-        SgfReader reader = new SgfReader(in, m_file, null, 0);
-        GameTree tree = reader.getTree();
+        SgfCollectionReader reader = new SgfCollectionReader(in, m_file);
+        try
+        {
+            SgfReader game;
+            while ((game = reader.next()) != null)
+            {
+                m_name = m_file.toString();
+                int number = reader.getNumberGames();
+                if (number > 1 || reader.hasNext())
+                    m_name = Statistics.getGameName(m_name, number);
+                checkGame(game.getTree());
+            }
+            if (reader.getNumberGames() == 0)
+                throwError("no SGF tree found");
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    private void checkGame(GameTree tree) throws ErrorMessage
+    {
         if (tree.getBoardSize() != m_size)
             throwError("size is not " + m_size);
         ConstNode root = tree.getRoot();
@@ -83,6 +110,6 @@ public class FileCheck
 
     private void throwError(String reason) throws ErrorMessage
     {
-        throw new ErrorMessage(m_file + ": " + reason);
+        throw new ErrorMessage(m_name + ": " + reason);
     }
 }
@@ -28,6 +28,7 @@ public final class Main
                 "force",
                 "help",
                 "max:",
+                "metrics",
                 "min:",
                 "output:",
                 "precision:",
@@ -36,6 +37,7 @@ public final class Main
                 "random",
                 "setup",
                 "size:",
+                "threads:",
                 "verbose",
                 "version"
             };
@@ -66,10 +68,12 @@ public final class Main
             }
             boolean verbose = opt.contains("verbose");
             boolean quiet = opt.contains("quiet");
+            boolean metrics = opt.contains("metrics");
             boolean force = opt.contains("force");
             int min = opt.getInteger("min", 0, 0);
             int max = opt.getInteger("max", Integer.MAX_VALUE, 0);
             int precision = opt.getInteger("precision", 3, 0);
+            int threads = opt.getInteger("threads", 1, 1);
             int boardSize = opt.getInteger("size", GoPoint.DEFAULT_SIZE, 1,
                                            GoPoint.MAX_SIZE);
             ArrayList<String> commands = parseCommands(opt, "commands");
@@ -107,10 +111,13 @@ public final class Main
                 statistics.setMin(min);
                 statistics.setMax(max);
                 statistics.setQuiet(quiet);
+                statistics.setNumberThreads(threads);
                 statistics.run(program, arguments, boardSize, commands,
                                beginCommands, finalCommands, verbose,
                                allowSetup, backward, random);
                 statistics.saveTable(output);
+                if (metrics)
+                    statistics.getMetrics().print(System.err);
             }
         }
         catch (Throwable t)
@@ -154,12 +161,14 @@ public final class Main
                   "-force        Overwrite existing file\n" +
                   "-help         Display this help and exit\n" +
                   "-max          Only positions with maximum move number\n" +
+                  "-metrics      Print GTP command timings to stderr\n" +
                   "-min          Only positions with minimum move number\n" +
                   "-output       Filename prefix for output files\n" +
                   "-precision    Floating point precision for -analyze\n" +
                   "-quiet        Don't write logging messages\n" +
                   "-setup        Allow setup stones in root position\n" +
                   "-size         Board size of games\n" +
+                  "-threads      Number of program instances\n" +
                   "-verbose      Log GTP stream to stderr\n" +
                   "-version      Display this help and exit\n");
     }
@@ -2,7 +2,6 @@
 
 package net.sf.gogui.tools.statistics;
 
-import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -15,6 +14,7 @@ import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.Game;
+import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
@@ -25,15 +25,17 @@ import net.sf.gogui.go.Move;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpSynchronizer;
-import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
 
-/** Run commands of a GTP engine on all positions in a game collection. */
+/** Run commands of a GTP engine on all positions in a game collection.
+    The SGF files can contain SGF collections with several games. */
 public class Statistics
 {
     public void run(String program, ArrayList<String> sgfFiles, int size,
@@ -43,9 +45,23 @@ public class Statistics
                     boolean allowSetup, boolean backward, boolean random)
         throws ErrorMessage, GtpError, IOException
     {
-        run(new GtpClient(program, null, verbose, null), program, sgfFiles,
-            size, commands, beginCommands, finalCommands, allowSetup,
-            backward, random);
+        ArrayList<GtpClientBase> gtp = new ArrayList<GtpClientBase>();
+        try
+        {
+            // The GTP streams of several engines would be mixed up in the
+            // log, so only the first engine logs
+            for (int i = 0; i < m_numberThreads; ++i)
+                gtp.add(new GtpClient(program, null, verbose && i == 0,
+                                      null));
+        }
+        catch (GtpError e)
+        {
+            for (GtpClientBase g : gtp)
+                g.close();
+            throw e;
+        }
+        run(gtp, program, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
     }
 
     /** Construct with existing GTP engine.
@@ -74,40 +90,108 @@ public class Statistics
                     boolean backward, boolean random)
         throws ErrorMessage, IOException
     {
+        ArrayList<GtpClientBase> list = new ArrayList<GtpClientBase>();
+        list.add(gtp);
+        run(list, program, sgfFiles, size, commands, beginCommands,
+            finalCommands, allowSetup, backward, random);
+    }
+
+    /** Construct with several existing GTP engines.
+        Each engine runs in its own thread and takes the next game, when it
+        has finished a game. The games of SGF collections are parsed in
+        parallel ahead of the engines. The rows of the result table are in
+        the same order as with a single engine. The cputime command returns
+        the time used since the last position handled by the same engine.
+        The parameters are the same as in the constructor with a single
+        engine.
+        @param gtp The GTP engines (should be instances of the same program
+        with the same settings) */
+    public void run(ArrayList<GtpClientBase> gtp, String program,
+                    ArrayList<String> sgfFiles, int size,
+                    ArrayList<String> commands,
+                    ArrayList<String> beginCommands,
+                    ArrayList<String> finalCommands, boolean allowSetup,
+                    boolean backward, boolean random)
+        throws ErrorMessage, IOException
+    {
+        assert ! gtp.isEmpty();
         new FileCheck(sgfFiles, size, allowSetup);
         m_size = size;
         m_allowSetup = allowSetup;
         m_backward = backward;
         m_random = random;
         initCommands(commands, beginCommands, finalCommands);
-        ArrayList<String> columnHeaders = new ArrayList<String>();
-        columnHeaders.add("File");
-        columnHeaders.add("Move");
+        m_columnTitles = new ArrayList<String>();
+        m_columnTitles.add("File");
+        m_columnTitles.add("Move");
         for (int i = 0; i < m_commands.size(); ++i)
-            columnHeaders.add(getCommand(i).m_columnTitle);
-        m_table = new Table(columnHeaders);
+            m_columnTitles.add(getCommand(i).m_columnTitle);
+        m_table = new Table(m_columnTitles);
         m_table.setProperty("Size", Integer.toString(size));
-        m_gtp = gtp;
-        m_synchronizer = new GtpSynchronizer(m_gtp);
-        m_gtp.queryProtocolVersion();
-        m_gtp.queryName();
+        for (GtpClientBase g : gtp)
+        {
+            g.queryProtocolVersion();
+            g.queryName();
+        }
         if (program != null)
             m_table.setProperty("Program", program);
-        m_table.setProperty("Name", m_gtp.getLabel());
-        m_table.setProperty("Version", m_gtp.queryVersion());
+        m_table.setProperty("Name", gtp.get(0).getLabel());
+        m_table.setProperty("Version", gtp.get(0).queryVersion());
         String host = Platform.getHostInfo();
         m_table.setProperty("Host", host);
         m_table.setProperty("Date", StringUtil.getDate());
-        for (int i = 0; i < sgfFiles.size(); ++i)
-            handleFile(sgfFiles.get(i));
-        m_gtp.send("quit");
-        m_gtp.close();
-        m_gtp.waitForExit();
-        m_table.setProperty("Games", Integer.toString(m_numberGames));
+        m_sgfFiles = sgfFiles;
+        m_results = new ArrayList<Table>();
+        m_nextFile = 0;
+        m_error = null;
+        try
+        {
+            runEngines(gtp);
+        }
+        finally
+        {
+            if (m_reader != null)
+            {
+                m_reader.close();
+                m_reader = null;
+            }
+        }
+        m_metrics = new GtpMetrics();
+        for (GtpClientBase g : gtp)
+            m_metrics.add(g.getMetrics());
+        if (m_error instanceof ErrorMessage)
+            throw (ErrorMessage)m_error;
+        if (m_error instanceof IOException)
+            throw (IOException)m_error;
+        if (m_error instanceof RuntimeException)
+            throw (RuntimeException)m_error;
+        for (int i = 0; i < m_results.size(); ++i)
+        {
+            addRows(m_results.get(i));
+            m_results.set(i, null);
+        }
+        m_table.setProperty("Games", Integer.toString(m_results.size()));
         m_table.setProperty("Backward", backward ? "yes" : "no");
         m_table.setProperty("Random", random ? "yes" : "no");
     }
 
+    /** Get the name of a game of an SGF collection.
+        Used for the File column of the result table.
+        @param file The file name
+        @param number The number of the game in the collection, starting
+        with one. */
+    public static String getGameName(String file, int number)
+    {
+        return file + "#" + number;
+    }
+
+    /** Get the GTP command statistics of the last run.
+        Contains the statistics of all engines. */
+    public GtpMetrics getMetrics()
+    {
+        return m_metrics;
+    }
+
     /** Set maximum move number for positions to run the commands on.
         Default is Integer.MAX_VALUE. */
     public void setMax(int max)
@@ -122,6 +206,14 @@ public class Statistics
         m_min = min;
     }
 
+    /** Set the number of engines started by run(String,...).
+        Default is 1. */
+    public void setNumberThreads(int numberThreads)
+    {
+        assert numberThreads > 0;
+        m_numberThreads = numberThreads;
+    }
+
     /** Don't write information about progress.
         Default is false. */
     public void setQuiet(boolean enable)
@@ -154,6 +246,307 @@ public class Statistics
         public String m_columnTitle;
     }
 
+    /** A game read from the SGF files. */
+    private static class SgfGame
+    {
+        /** Index of the game in the result table. */
+        public int m_index;
+
+        public String m_name;
+
+        public GameTree m_tree;
+    }
+
+    /** Runs the commands with one GTP engine.
+        Takes the next game from the files until all games are handled or
+        another engine had an error. */
+    private class Engine
+        implements Runnable
+    {
+        public Engine(GtpClientBase gtp)
+        {
+            m_gtp = gtp;
+            m_synchronizer = new GtpSynchronizer(gtp);
+        }
+
+        public void run()
+        {
+            try
+            {
+                SgfGame game;
+                while ((game = getNextGame()) != null)
+                    setResult(game.m_index, handleGame(game));
+                m_gtp.send("quit");
+                m_gtp.close();
+                m_gtp.waitForExit();
+            }
+            catch (ErrorMessage e)
+            {
+                setError(e);
+                m_gtp.close();
+            }
+            catch (RuntimeException e)
+            {
+                setError(e);
+                m_gtp.close();
+            }
+        }
+
+        private double m_lastCpuTime = 0;
+
+        /** Number formats are not thread-safe. */
+        private final NumberFormat m_format1 = StringUtil.getNumberFormat(1);
+
+        private final NumberFormat m_format2 = StringUtil.getNumberFormat(2);
+
+        private final GtpClientBase m_gtp;
+
+        private final GtpSynchronizer m_synchronizer;
+
+        /** Result table of the current game. */
+        private Table m_table;
+
+        private String convertResponse(String command, String response,
+                                       GoColor toMove, Move move)
+            throws GtpError
+        {
+            if (command.equals("cputime"))
+            {
+                try
+                {
+                    double cpuTime = Double.parseDouble(response);
+                    double diff = cpuTime - m_lastCpuTime;
+                    m_lastCpuTime = cpuTime;
+                    return m_format2.format(diff);
+                }
+                catch (NumberFormatException e)
+                {
+                    return response;
+                }
+            }
+            else if (command.equals("estimate_score"))
+            {
+                String arg[] = StringUtil.splitArguments(response);
+                if (arg.length == 0)
+                    return response;
+                return convertScore(arg[0]);
+            }
+            else if (command.equals("final_score"))
+            {
+                return convertScore(response);
+            }
+            else if (command.equals("reg_genmove"))
+            {
+                if (move == null)
+                    return "";
+                try
+                {
+                    GoPoint point = GoPoint.parsePoint(response, m_size);
+                    return Move.get(toMove, point) == move ? "1" : "0";
+                }
+                catch (InvalidPointException e)
+                {
+                    throw new GtpError("Program sent invalid move: "
+                                       + response);
+                }
+            }
+            return response;
+        }
+
+        /** Tries to convert score into number.
+            @return Score string or original string, if conversion fails. */
+
+        private String convertScore(String string)
+        {
+            String score = string.trim();
+            double sign = 1;
+            if (score.startsWith("W+"))
+            {
+                score = score.substring(2);
+                sign = -1;
+            }
+            else if (score.startsWith("B+"))
+                score = score.substring(2);
+            try
+            {
+                return m_format1.format(sign * Double.parseDouble(score));
+            }
+            catch (NumberFormatException e)
+            {
+                return string;
+            }
+        }
+
+        /** Run the commands on the positions of a game.
+            @return The result table of the game. */
+        private Table handleGame(SgfGame sgfGame)
+            throws ErrorMessage, GtpError
+        {
+            String name = sgfGame.m_name;
+            m_table = new Table(m_columnTitles);
+            Game game = new Game(sgfGame.m_tree);
+            checkGame(game.getTree(), name);
+            if (m_random)
+                iteratePositionsRandom(game, name);
+            else if (m_backward)
+                iteratePositionsBackward(game, name);
+            else
+                iteratePositions(game, name);
+            return m_table;
+        }
+
+        private void handlePosition(String name, GoColor toMove, Move move,
+                                    int number, boolean beginCommands,
+                                    boolean regularCommands,
+                                    boolean finalCommands)
+            throws GtpError
+        {
+            if (! m_quiet)
+                System.err.println(name + ":" + number);
+            m_table.startRow();
+            try
+            {
+                m_table.set("File", name);
+                m_table.set("Move", number);
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (command.m_begin && beginCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_table.set(command.m_columnTitle, response);
+                    }
+                }
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (! command.m_begin && ! command.m_final
+                        && regularCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_table.set(command.m_columnTitle, response);
+                    }
+                }
+                for (int i = 0; i < m_commands.size(); ++i)
+                {
+                    Command command = getCommand(i);
+                    if (command.m_final && finalCommands)
+                    {
+                        String response =
+                            send(command.m_command, toMove, move);
+                        m_table.set(command.m_columnTitle, response);
+                    }
+                }
+            }
+            catch (Table.InvalidLocation e)
+            {
+                System.err.println(e.getMessage());
+                // Table was created by this class in correct format
+                assert false;
+            }
+        }
+
+        private void iteratePositions(Game game, String name) throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = game.getRoot(); node != null;
+                 node = node.getChildConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasFather();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasChildren();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(name, node.getToMove(), move, number,
+                                   beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsBackward(Game game, String name)
+            throws GtpError
+        {
+            int number = 0;
+            for (ConstNode node = NodeUtil.getLast(game.getRoot());
+                 node != null;
+                 node = node.getFatherConst())
+            {
+                game.gotoNode(node, null);
+                synchronize(game);
+                Move move = node.getMove();
+                boolean beginCommands = ! node.hasChildren();
+                boolean regularCommands =
+                    ((move != null || node.hasSetup() || ! node.hasFather())
+                     && number >= m_min && number <= m_max);
+                boolean finalCommands = ! node.hasFather();
+                if (beginCommands || regularCommands || finalCommands)
+                    handlePosition(name, node.getToMove(), move, number,
+                                   beginCommands, regularCommands,
+                                   finalCommands);
+                ++number;
+            }
+        }
+
+        private void iteratePositionsRandom(Game game, String name)
+            throws GtpError
+        {
+            int minDepth;
+            int maxDepth;
+            if (m_backward)
+            {
+                int depth =
+                    NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
+                minDepth = depth - m_max;
+                maxDepth = depth - m_min;
+            }
+            else
+            {
+                minDepth = m_min;
+                maxDepth = m_max;
+            }
+            ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
+                                                   maxDepth);
+            if (node == null)
+                return;
+            int number = NodeUtil.getDepth(node);
+            game.gotoNode(node, null);
+            synchronize(game);
+            Move move = node.getMove();
+            boolean beginCommands = ! node.hasChildren();
+            boolean regularCommands =
+                (move != null || node.hasSetup() || ! node.hasFather());
+            boolean finalCommands = ! node.hasFather();
+            if (beginCommands || regularCommands || finalCommands)
+                handlePosition(name, node.getToMove(), move, number,
+                               beginCommands, regularCommands, finalCommands);
+        }
+
+        private String send(String command, GoColor toMove, Move move)
+            throws GtpError
+        {
+            String cmd = convertCommand(command, toMove);
+            String response = m_gtp.send(cmd).trim();
+            response = response.replaceAll("\t", " ");
+            response = response.replaceAll("\n", " ");
+            return convertResponse(command, response, toMove, move);
+        }
+
+        private void synchronize(ConstGame game) throws GtpError
+        {
+            ConstNode node = game.getGameInfoNode();
+            ConstGameInfo info = game.getGameInfo(node);
+            m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
+                                       info.getTimeSettings());
+        }
+    }
+
     private boolean m_allowSetup;
 
     private boolean m_backward;
@@ -166,23 +559,32 @@ public class Statistics
 
     private int m_min = 0;
 
-    private int m_numberGames;
+    private int m_nextFile;
+
+    private int m_numberThreads = 1;
 
     private int m_size;
 
-    private double m_lastCpuTime = 0;
+    /** First error of an engine. */
+    private Exception m_error;
 
-    private GtpClientBase m_gtp;
+    private GtpMetrics m_metrics;
 
-    private static final NumberFormat FORMAT1 = StringUtil.getNumberFormat(1);
+    private Table m_table;
 
-    private static final NumberFormat FORMAT2 = StringUtil.getNumberFormat(2);
+    /** Result tables of the games in the current run. */
+    private ArrayList<Table> m_results;
 
-    private Table m_table;
+    private ArrayList<String> m_columnTitles;
 
-    private ArrayList<Command> m_commands;
+    private ArrayList<String> m_sgfFiles;
+
+    /** Reader for the current SGF file. */
+    private SgfCollectionReader m_reader;
+
+    private String m_readerFile;
 
-    private GtpSynchronizer m_synchronizer;
+    private ArrayList<Command> m_commands;
 
     private void addCommand(String commandLine, boolean isBegin,
                             boolean isFinal) throws ErrorMessage
@@ -221,6 +623,16 @@ public class Statistics
             addCommand(c, isBegin, isFinal);
     }
 
+    private void addRows(Table table)
+    {
+        for (int row = 0; row < table.getNumberRows(); ++row)
+        {
+            m_table.startRow();
+            for (int column = 0; column < table.getNumberColumns(); ++column)
+                m_table.set(column, table.get(column, row));
+        }
+    }
+
     private void checkGame(ConstGameTree tree, String name) throws ErrorMessage
     {
         int size = tree.getBoardSize();
@@ -263,74 +675,6 @@ public class Statistics
         return command;
     }
 
-    private String convertResponse(String command, String response,
-                                   GoColor toMove, Move move) throws GtpError
-    {
-        if (command.equals("cputime"))
-        {
-            try
-            {
-                double cpuTime = Double.parseDouble(response);
-                double diff = cpuTime - m_lastCpuTime;
-                m_lastCpuTime = cpuTime;
-                return FORMAT2.format(diff);
-            }
-            catch (NumberFormatException e)
-            {
-                return response;
-            }
-        }
-        else if (command.equals("estimate_score"))
-        {
-            String arg[] = StringUtil.splitArguments(response);
-            if (arg.length == 0)
-                return response;
-            return convertScore(arg[0]);
-        }
-        else if (command.equals("final_score"))
-        {
-            return convertScore(response);
-        }
-        else if (command.equals("reg_genmove"))
-        {
-            if (move == null)
-                return "";
-            try
-            {
-                GoPoint point = GoPoint.parsePoint(response, m_size);
-                return Move.get(toMove, point) == move ? "1" : "0";
-            }
-            catch (InvalidPointException e)
-            {
-                throw new GtpError("Program sent invalid move: " + response);
-            }
-        }
-        return response;
-    }
-
-    /** Tries to convert score into number.
-        @return Score string or original string, if conversion fails. */
-    private String convertScore(String string)
-    {
-        String score = string.trim();
-        double sign = 1;
-        if (score.startsWith("W+"))
-        {
-            score = score.substring(2);
-            sign = -1;
-        }
-        else if (score.startsWith("B+"))
-            score = score.substring(2);
-        try
-        {
-            return FORMAT1.format(sign * Double.parseDouble(score));
-        }
-        catch (NumberFormatException e)
-        {
-            return string;
-        }
-    }
-
     private void initCommands(ArrayList<String> commands,
                               ArrayList<String> beginCommands,
                               ArrayList<String> finalCommands)
@@ -352,164 +696,84 @@ public class Statistics
         return m_commands.get(index);
     }
 
-    private void handleFile(String name)
-        throws ErrorMessage, FileNotFoundException, GtpError,
-               SgfError
-    {
-        File file = new File(name);
-        InputStream in = new FileInputStream(file);
-        SgfReader reader = new SgfReader(in, file, null, 0);
-        ++m_numberGames;
-        Game game = new Game(reader.getTree());
-        checkGame(game.getTree(), name);
-        if (m_random)
-            iteratePositionsRandom(game, name);
-        else if (m_backward)
-            iteratePositionsBackward(game, name);
-        else
-            iteratePositions(game, name);
-    }
-
-    private void handlePosition(String name, GoColor toMove, Move move,
-                                int number, boolean beginCommands,
-                                boolean regularCommands,
-                                boolean finalCommands)
-        throws GtpError
+    /** Get the next game from the SGF files.
+        @return The game or null, if all games are handled or another engine
+        had an error. */
+    private synchronized SgfGame getNextGame() throws ErrorMessage
     {
-        if (! m_quiet)
-            System.err.println(name + ":" + number);
-        m_table.startRow();
-        try
+        while (m_error == null)
         {
-            m_table.set("File", name);
-            m_table.set("Move", number);
-            for (int i = 0; i < m_commands.size(); ++i)
+            if (m_reader == null)
             {
-                Command command = getCommand(i);
-                if (command.m_begin && beginCommands)
+                if (m_nextFile >= m_sgfFiles.size())
+                    return null;
+                m_readerFile = m_sgfFiles.get(m_nextFile++);
+                File file = new File(m_readerFile);
+                try
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    m_reader = new SgfCollectionReader(
+                                                 new FileInputStream(file),
+                                                 file);
                 }
-            }
-            for (int i = 0; i < m_commands.size(); ++i)
-            {
-                Command command = getCommand(i);
-                if (! command.m_begin && ! command.m_final && regularCommands)
+                catch (FileNotFoundException e)
                 {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
+                    throw new ErrorMessage(m_readerFile
+                                           + ": file not found");
                 }
             }
-            for (int i = 0; i < m_commands.size(); ++i)
+            SgfReader reader = m_reader.next();
+            if (reader == null)
             {
-                Command command = getCommand(i);
-                if (command.m_final && finalCommands)
-                {
-                    String response = send(command.m_command, toMove, move);
-                    m_table.set(command.m_columnTitle, response);
-                }
+                m_reader.close();
+                m_reader = null;
+                continue;
             }
+            SgfGame game = new SgfGame();
+            game.m_index = m_results.size();
+            m_results.add(null);
+            game.m_name = m_readerFile;
+            int number = m_reader.getNumberGames();
+            if (number > 1 || m_reader.hasNext())
+                game.m_name = getGameName(m_readerFile, number);
+            game.m_tree = reader.getTree();
+            return game;
         }
-        catch (Table.InvalidLocation e)
-        {
-            System.err.println(e.getMessage());
-            // Table was created by this class in correct format
-            assert false;
-        }
+        return null;
     }
 
-    private void iteratePositions(Game game, String name) throws GtpError
+    private void runEngines(ArrayList<GtpClientBase> gtp)
+        throws ErrorMessage
     {
-        int number = 0;
-        for (ConstNode node = game.getRoot(); node != null;
-             node = node.getChildConst())
+        if (gtp.size() == 1)
         {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasFather();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasChildren();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
+            new Engine(gtp.get(0)).run();
+            return;
         }
-    }
-
-    private void iteratePositionsBackward(Game game, String name)
-        throws GtpError
-    {
-        int number = 0;
-        for (ConstNode node = NodeUtil.getLast(game.getRoot()); node != null;
-             node = node.getFatherConst())
+        Thread thread[] = new Thread[gtp.size()];
+        for (int i = 0; i < thread.length; ++i)
         {
-            game.gotoNode(node, null);
-            synchronize(game);
-            Move move = node.getMove();
-            boolean beginCommands = ! node.hasChildren();
-            boolean regularCommands =
-                ((move != null || node.hasSetup() || ! node.hasFather())
-                 && number >= m_min && number <= m_max);
-            boolean finalCommands = ! node.hasFather();
-            if (beginCommands || regularCommands || finalCommands)
-                handlePosition(name, node.getToMove(), move, number,
-                               beginCommands, regularCommands, finalCommands);
-            ++number;
+            thread[i] = new Thread(new Engine(gtp.get(i)));
+            thread[i].start();
         }
-    }
-
-    private void iteratePositionsRandom(Game game, String name)
-        throws GtpError
-    {
-        int minDepth;
-        int maxDepth;
-        if (m_backward)
+        try
         {
-            int depth = NodeUtil.getDepth(NodeUtil.getLast(game.getRoot()));
-            minDepth = depth - m_max;
-            maxDepth = depth - m_min;
+            for (int i = 0; i < thread.length; ++i)
+                thread[i].join();
         }
-        else
+        catch (InterruptedException e)
         {
-            minDepth = m_min;
-            maxDepth = m_max;
+            throw new ErrorMessage("Interrupted");
         }
-        ConstNode node = NodeUtil.selectRandom(game.getRoot(), minDepth,
-                                               maxDepth);
-        if (node == null)
-            return;
-        int number = NodeUtil.getDepth(node);
-        game.gotoNode(node, null);
-        synchronize(game);
-        Move move = node.getMove();
-        boolean beginCommands = ! node.hasChildren();
-        boolean regularCommands =
-            (move != null || node.hasSetup() || ! node.hasFather());
-        boolean finalCommands = ! node.hasFather();
-        if (beginCommands || regularCommands || finalCommands)
-            handlePosition(name, node.getToMove(), move, number,
-                           beginCommands, regularCommands, finalCommands);
     }
 
-    private String send(String command, GoColor toMove, Move move)
-        throws GtpError
+    private synchronized void setError(Exception e)
     {
-        String cmd = convertCommand(command, toMove);
-        String response = m_gtp.send(cmd).trim();
-        response = response.replaceAll("\t", " ");
-        response = response.replaceAll("\n", " ");
-        return convertResponse(command, response, toMove, move);
+        if (m_error == null)
+            m_error = e;
     }
 
-    private void synchronize(ConstGame game) throws GtpError
+    private synchronized void setResult(int index, Table table)
     {
-        ConstNode node = game.getGameInfoNode();
-        ConstGameInfo info = game.getGameInfo(node);
-        m_synchronizer.synchronize(game.getBoard(), info.getKomi(),
-                                   info.getTimeSettings());
+        m_results.set(index, table);
     }
 }
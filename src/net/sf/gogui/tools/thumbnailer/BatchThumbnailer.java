@@ -0,0 +1,152 @@
+// BatchThumbnailer.java
+
+package net.sf.gogui.tools.thumbnailer;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.sf.gogui.thumbnail.ThumbnailCreator;
+import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.FileUtil;
+import net.sf.gogui.util.StringUtil;
+
+/** Create thumbnails for many game files in one process.
+    The thumbnails are created at the standard location by a pool of
+    threads. Each thread uses its own ThumbnailCreator, because the board
+    painter of a ThumbnailCreator must not be used by several threads.
+    Files with an up-to-date thumbnail are skipped. */
+final class BatchThumbnailer
+{
+    public BatchThumbnailer(int numberThreads, boolean verbose)
+    {
+        assert numberThreads > 0;
+        m_numberThreads = numberThreads;
+        m_verbose = verbose;
+    }
+
+    /** Add a game file or a directory.
+        Directories are searched recursively for files with extension sgf or
+        xml. */
+    public void add(File file)
+    {
+        if (! file.isDirectory())
+        {
+            m_files.add(file);
+            return;
+        }
+        File[] files = file.listFiles();
+        if (files == null)
+            return;
+        Arrays.sort(files);
+        for (File child : files)
+            if (child.isDirectory())
+                add(child);
+            else if (FileUtil.hasExtension(child, "sgf")
+                     || FileUtil.hasExtension(child, "xml"))
+                m_files.add(child);
+    }
+
+    public int getNumberCreated()
+    {
+        return m_numberCreated.get();
+    }
+
+    public int getNumberFailed()
+    {
+        return m_numberFailed.get();
+    }
+
+    public int getNumberFiles()
+    {
+        return m_files.size();
+    }
+
+    public int getNumberUpToDate()
+    {
+        return m_numberUpToDate.get();
+    }
+
+    /** Print the number of files and the throughput of the last run. */
+    public void printStatistics(PrintStream out)
+    {
+        double seconds = m_time / 1000.0;
+        double filesPerSecond =
+            (seconds > 0 ? getNumberFiles() / seconds : 0);
+        NumberFormat format = StringUtil.getNumberFormat(1);
+        out.println("Files: " + getNumberFiles() + ", created: "
+                    + getNumberCreated() + ", up-to-date: "
+                    + getNumberUpToDate() + ", failed: "
+                    + getNumberFailed());
+        out.println("Time: " + format.format(seconds) + " s, "
+                    + format.format(filesPerSecond) + " files/s");
+    }
+
+    /** Create the thumbnails for all added files.
+        Errors are printed to standard error. */
+    public void run() throws InterruptedException
+    {
+        long startTime = System.currentTimeMillis();
+        ExecutorService executor =
+            Executors.newFixedThreadPool(m_numberThreads);
+        for (final File file : m_files)
+            executor.execute(new Runnable() {
+                    public void run() {
+                        create(file);
+                    } });
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        m_time = System.currentTimeMillis() - startTime;
+    }
+
+    private final boolean m_verbose;
+
+    private final int m_numberThreads;
+
+    private long m_time;
+
+    private final AtomicInteger m_numberCreated = new AtomicInteger();
+
+    private final AtomicInteger m_numberFailed = new AtomicInteger();
+
+    private final AtomicInteger m_numberUpToDate = new AtomicInteger();
+
+    private final ArrayList<File> m_files = new ArrayList<File>();
+
+    private final ThreadLocal<ThumbnailCreator> m_creator =
+        new ThreadLocal<ThumbnailCreator>()
+        {
+            protected ThumbnailCreator initialValue()
+            {
+                return new ThumbnailCreator(m_verbose);
+            }
+        };
+
+    private void create(File file)
+    {
+        try
+        {
+            if (m_creator.get().create(file))
+                m_numberCreated.incrementAndGet();
+            else
+                m_numberUpToDate.incrementAndGet();
+        }
+        catch (ErrorMessage e)
+        {
+            m_numberFailed.incrementAndGet();
+            System.err.println(file + ": " + e.getMessage());
+        }
+        catch (RuntimeException e)
+        {
+            // Do not stop the other files because of a bug triggered by
+            // one file
+            m_numberFailed.incrementAndGet();
+            System.err.println(file + ": " + e);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import java.io.File;
 import java.io.PrintStream;
 import java.util.ArrayList;
 import net.sf.gogui.thumbnail.ThumbnailCreator;
+import net.sf.gogui.thumbnail.ThumbnailPlatform;
 import net.sf.gogui.util.Options;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.version.Version;
@@ -19,12 +20,14 @@ public final class Main
         try
         {
             String options[] = {
+                "batch",
                 //"check-expire:", // experimental; needs more testing
                 "config:",
                 //"expire:", // experimental; needs more testing
                 "help",
                 "scale",
                 "size:",
+                "threads:",
                 "verbose",
                 "version"
             };
@@ -55,6 +58,21 @@ public final class Main
             boolean verbose = opt.contains("verbose");
             boolean scale = opt.contains("scale");
             ArrayList<String> arguments = opt.getArguments();
+            if (opt.contains("batch"))
+            {
+                if (arguments.isEmpty())
+                {
+                    printUsage(System.err);
+                    System.exit(1);
+                }
+                int threads =
+                    opt.getInteger("threads",
+                                   Runtime.getRuntime().availableProcessors(),
+                                   1);
+                if (! runBatch(arguments, threads, verbose))
+                    System.exit(1);
+                return;
+            }
             if (arguments.isEmpty() || arguments.size() > 2)
             {
                 printUsage(System.err);
@@ -92,13 +110,37 @@ public final class Main
     {
         String helpText =
             "Usage: gogui-thumbnailer [options] input [output]\n" +
+            "       gogui-thumbnailer -batch [options] file|directory...\n" +
             "Options:\n" +
+            "-batch     Create thumbnails for files and directories\n" +
             "-config    config file\n" +
             "-help      Print help and exit\n" +
             "-scale     Scale size for board sizes other than 19x19\n" +
             "-size      Thumbnail size in pixels\n" +
+            "-threads   Number of threads in batch mode\n" +
             "-verbose   Print logging messages to stderr\n" +
             "-version   Print version and exit\n";
         out.print(helpText);
     }
+
+    /** Create thumbnails in batch mode.
+        @return false if the thumbnail directory does not exist or creating
+        a thumbnail failed. */
+    private static boolean runBatch(ArrayList<String> arguments, int threads,
+                                    boolean verbose)
+        throws InterruptedException
+    {
+        File dir = ThumbnailPlatform.getNormalDir();
+        if (! dir.exists())
+        {
+            System.err.println("Directory " + dir + " does not exist");
+            return false;
+        }
+        BatchThumbnailer thumbnailer = new BatchThumbnailer(threads, verbose);
+        for (String argument : arguments)
+            thumbnailer.add(new File(argument));
+        thumbnailer.run();
+        thumbnailer.printStatistics(System.out);
+        return (thumbnailer.getNumberFailed() == 0);
+    }
 }
@@ -188,6 +188,9 @@ public class Analyze
     {
         m_table = new Table();
         m_table.read(file);
+        // Include the results of a running or crashed twogtp
+        ResultFile.readJournal(ResultFile.getJournalFile(file), m_table);
+        m_table.sortByIntColumn("GAME", 0, m_table.getNumberRows());
         try
         {
             for (int i = 0; i < m_table.getNumberRows(); ++i)
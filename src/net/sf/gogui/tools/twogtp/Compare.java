@@ -7,10 +7,8 @@ import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Map;
-import java.util.TreeMap;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameTree;
-import net.sf.gogui.go.Board;
 import net.sf.gogui.go.BoardUtil;
 import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
@@ -74,28 +72,11 @@ public final class Compare
             if (useAlternate && ((numberGame % 2 != 0) != isAlternated))
                 continue;
             ArrayList<Placement> gameMoves = entry.getValue();
+            int maxDifferent = moves.size() / 5;
             for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
             {
-                int numberDifferent = 0;
-                int moveNumber = moves.size();
-                int maxDifferent = moveNumber / 5;
-                if (gameMoves.size() != moveNumber)
-                {
-                    numberDifferent = Math.abs(gameMoves.size() - moveNumber);
-                    moveNumber = Math.min(gameMoves.size(), moveNumber);
-                }
-                for (int i = 0;
-                     numberDifferent <= maxDifferent && i < moveNumber; ++i)
-                {
-                    Placement move = moves.get(i);
-                    Placement gameMove = gameMoves.get(i);
-                    GoPoint gameRotatedPoint =
-                        BoardUtil.rotate(rot, gameMove.m_point, size);
-                    if (move.m_isSetup != gameMove.m_isSetup
-                        || ! move.m_color.equals(gameMove.m_color)
-                        || ! GoPoint.equals(move.m_point, gameRotatedPoint))
-                        ++numberDifferent;
-                }
+                int numberDifferent =
+                    getNumberDifferent(moves, gameMoves, rot, size);
                 if (numberDifferent == 0)
                     return Integer.toString(numberGame);
                 else if (numberDifferent < maxDifferent)
@@ -105,6 +86,42 @@ public final class Compare
         return result;
     }
 
+    /** Count the different placements of two games.
+        Counting stops, if the number is larger than a fifth of the number
+        of placements in the first game.
+        @param moves Placements of the first game.
+        @param gameMoves Placements of the second game.
+        @param rot Rotation mode applied to the second game.
+        @param size Board size.
+        @return The number of different placements at the same move number
+        plus the difference in length. */
+    public static int getNumberDifferent(ArrayList<Placement> moves,
+                                         ArrayList<Placement> gameMoves,
+                                         int rot, int size)
+    {
+        int numberDifferent = 0;
+        int moveNumber = moves.size();
+        int maxDifferent = moveNumber / 5;
+        if (gameMoves.size() != moveNumber)
+        {
+            numberDifferent = Math.abs(gameMoves.size() - moveNumber);
+            moveNumber = Math.min(gameMoves.size(), moveNumber);
+        }
+        for (int i = 0; numberDifferent <= maxDifferent && i < moveNumber;
+             ++i)
+        {
+            Placement move = moves.get(i);
+            Placement gameMove = gameMoves.get(i);
+            GoPoint gameRotatedPoint =
+                BoardUtil.rotate(rot, gameMove.m_point, size);
+            if (move.m_isSetup != gameMove.m_isSetup
+                || ! move.m_color.equals(gameMove.m_color)
+                || ! GoPoint.equals(move.m_point, gameRotatedPoint))
+                ++numberDifferent;
+        }
+        return numberDifferent;
+    }
+
     /** Compare a set of SGF files.
         Prints the results to standard output, one line per game
         with the filename and the duplicate information as returned by
@@ -113,9 +130,8 @@ public final class Compare
         @throws Exception If reading one of the files fails. */
     public static void compare(ArrayList<String> filenames) throws Exception
     {
-        Board board = null;
-        Map<Integer, ArrayList<Placement>> games =
-            new TreeMap<Integer, ArrayList<Placement>>();
+        DuplicateIndex index = null;
+        int size = 0;
         for (int gameNumber = 0; gameNumber < filenames.size(); ++gameNumber)
         {
             String filename = filenames.get(gameNumber);
@@ -123,18 +139,19 @@ public final class Compare
             FileInputStream fileStream = new FileInputStream(file);
             SgfReader reader = new SgfReader(fileStream, file, null, 0);
             GameTree tree = reader.getTree();
-            int size = tree.getBoardSize();
-            if (board == null)
-                board = new Board(size);
-            else if (size != board.getSize())
+            if (index == null)
+            {
+                size = tree.getBoardSize();
+                index = new DuplicateIndex(size);
+            }
+            else if (tree.getBoardSize() != size)
                 throw new Exception("Board size in " + filename +
                                     " does not match other games");
             ArrayList<Placement> moves = getPlacements(tree.getRoot());
-            String duplicate =
-                checkDuplicate(board, moves, games, false, false);
+            String duplicate = index.check(moves, false, false).toString();
             System.out.println(Integer.toString(gameNumber) + " " +
                                filename + " " + duplicate);
-            games.put(gameNumber, moves);
+            index.add(gameNumber, moves);
         }
     }
 
@@ -0,0 +1,404 @@
+// DuplicateIndex.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import net.sf.gogui.go.BoardUtil;
+import net.sf.gogui.go.GoPoint;
+
+/** Index of games for finding duplicates.
+    Finds the same duplicates as Compare.checkDuplicate, but compares a
+    game only with the games that share a hash with it. The games are
+    indexed by a hash of all placements and by hashes of segments of
+    SEGMENT_LENGTH placements at fixed positions. All hashes are normalized
+    for rotation by taking the minimum over all rotations.
+    A game counts as nearly identical, if less than a fifth of its
+    placements differ from the other game (including the difference in
+    length). Each segment contained in both games, which is not identical,
+    contains at least one differing placement. Because there are more
+    segments than a fifth of the placements, at least one segment is
+    identical in nearly identical games, even if some segments are not
+    used for finding candidates (see getNumberSkip()). The check skips the
+    segments that occur in many games, like the openings of games between
+    deterministic programs, which would make most games candidates.
+    Games can be checked concurrently; adding a game needs exclusive
+    access to the index. */
+public final class DuplicateIndex
+{
+    /** Result of a duplicate check. */
+    public static final class Duplicate
+    {
+        /** Get the duplicate information as returned by
+            Compare.checkDuplicate. */
+        public String toString()
+        {
+            if (m_identical >= 0)
+                return Integer.toString(m_identical);
+            if (m_nearlyIdentical >= 0)
+                return Integer.toString(m_nearlyIdentical) + "?";
+            return "-";
+        }
+
+        private final ArrayList<Compare.Placement> m_moves;
+
+        private final boolean m_useAlternate;
+
+        private final boolean m_isAlternated;
+
+        /** Smallest number of an identical game, -1 if none. */
+        private int m_identical = -1;
+
+        /** Largest number of a nearly identical game, -1 if none. */
+        private int m_nearlyIdentical = -1;
+
+        /** Number of games in the index when the check was done. */
+        private int m_numberChecked;
+
+        private Duplicate(ArrayList<Compare.Placement> moves,
+                          boolean useAlternate, boolean isAlternated)
+        {
+            m_moves = moves;
+            m_useAlternate = useAlternate;
+            m_isAlternated = isAlternated;
+        }
+    }
+
+    /** Constructor.
+        @param size Board size of all games in the index. */
+    public DuplicateIndex(int size)
+    {
+        m_size = size;
+    }
+
+    /** Add a game to the index.
+        @param gameNumber The game number.
+        @param moves The placements of the game as returned by
+        Compare.getPlacements. */
+    public void add(int gameNumber, ArrayList<Compare.Placement> moves)
+    {
+        long[][] codes = getCodes(moves);
+        m_lock.writeLock().lock();
+        try
+        {
+            int game = m_games.size();
+            m_games.add(moves);
+            m_gameNumbers.add(gameNumber);
+            m_identical.add(getHash(codes, 0, moves.size(), -1), game);
+            int numberSegments = moves.size() / SEGMENT_LENGTH;
+            for (int i = 0; i < numberSegments; ++i)
+                m_segments.add(getHash(codes, i * SEGMENT_LENGTH,
+                                       SEGMENT_LENGTH, i), game);
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
+    }
+
+    /** Check if a game has identical or nearly identical games in the
+        index.
+        Games added after the check are not checked, use
+        checkAdded(Duplicate) to include them.
+        @param moves Placements of the game to check.
+        @param useAlternate If true, assume that players are exchanged every
+        second game. Only check games where player played the same color.
+        @param isAlternated If useAlternate, indicate if game to check
+        had players exchanged.
+        @return The result of the check. */
+    public Duplicate check(ArrayList<Compare.Placement> moves,
+                           boolean useAlternate, boolean isAlternated)
+    {
+        Duplicate duplicate =
+            new Duplicate(moves, useAlternate, isAlternated);
+        long[][] codes = getCodes(moves);
+        m_lock.readLock().lock();
+        try
+        {
+            int numberGames = m_games.size();
+            BitSet candidates = new BitSet(numberGames);
+            addCandidates(m_identical, getHash(codes, 0, moves.size(), -1),
+                          candidates);
+            int numberSegments = moves.size() / SEGMENT_LENGTH;
+            int numberSkip = getNumberSkip(moves.size());
+            for (int i = 0; i < numberSegments; ++i)
+            {
+                long hash = getHash(codes, i * SEGMENT_LENGTH,
+                                    SEGMENT_LENGTH, i);
+                if (numberSkip > 0
+                    && m_segments.count(hash, MAX_SEGMENT_GAMES)
+                       == MAX_SEGMENT_GAMES)
+                {
+                    --numberSkip;
+                    continue;
+                }
+                addCandidates(m_segments, hash, candidates);
+            }
+            for (int game = candidates.nextSetBit(0); game >= 0;
+                 game = candidates.nextSetBit(game + 1))
+                compare(duplicate, game);
+            duplicate.m_numberChecked = numberGames;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
+        return duplicate;
+    }
+
+    /** Update the result of a check with the games added after it.
+        Compares the game with all games added since the check without
+        using the index. Used to finish a check done without holding the
+        lock that is used for adding games.
+        @param duplicate The result of check(). */
+    public void checkAdded(Duplicate duplicate)
+    {
+        m_lock.readLock().lock();
+        try
+        {
+            int numberGames = m_games.size();
+            for (int game = duplicate.m_numberChecked; game < numberGames;
+                 ++game)
+                compare(duplicate, game);
+            duplicate.m_numberChecked = numberGames;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /** Get the number of games in the index. */
+    public int getNumberGames()
+    {
+        m_lock.readLock().lock();
+        try
+        {
+            return m_games.size();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
+    }
+
+    /** Multimap from a hash to game indices.
+        Uses arrays instead of collections, because a large collection
+        contains several million segments. */
+    private static final class HashIndex
+    {
+        public void add(long hash, int game)
+        {
+            if (m_size == m_hash.length)
+                grow();
+            m_hash[m_size] = hash;
+            m_game[m_size] = game;
+            int bucket = getBucket(hash);
+            m_next[m_size] = m_first[bucket];
+            m_first[bucket] = m_size;
+            ++m_size;
+        }
+
+        /** Count the entries with a hash.
+            @param limit Stop counting at this number.
+            @return The number of entries, at most limit. */
+        public int count(long hash, int limit)
+        {
+            int n = 0;
+            for (int entry = getFirst(hash); entry >= 0 && n < limit;
+                 entry = getNext(entry))
+                ++n;
+            return n;
+        }
+
+        /** Get the first entry with a hash.
+            @return The entry or -1, if none exists. */
+        public int getFirst(long hash)
+        {
+            return find(m_first[getBucket(hash)], hash);
+        }
+
+        /** Get the next entry with the same hash.
+            @return The entry or -1, if none exists. */
+        public int getNext(int entry)
+        {
+            return find(m_next[entry], m_hash[entry]);
+        }
+
+        public int getGame(int entry)
+        {
+            return m_game[entry];
+        }
+
+        private int m_size;
+
+        private int[] m_first = createFirst(1024);
+
+        private long[] m_hash = new long[1024];
+
+        private int[] m_game = new int[1024];
+
+        private int[] m_next = new int[1024];
+
+        private static int[] createFirst(int length)
+        {
+            int[] first = new int[length];
+            for (int i = 0; i < length; ++i)
+                first[i] = -1;
+            return first;
+        }
+
+        private int find(int entry, long hash)
+        {
+            while (entry >= 0 && m_hash[entry] != hash)
+                entry = m_next[entry];
+            return entry;
+        }
+
+        private int getBucket(long hash)
+        {
+            return (int)(hash ^ (hash >>> 32)) & (m_first.length - 1);
+        }
+
+        private void grow()
+        {
+            int length = 2 * m_hash.length;
+            long[] hash = new long[length];
+            System.arraycopy(m_hash, 0, hash, 0, m_size);
+            m_hash = hash;
+            int[] game = new int[length];
+            System.arraycopy(m_game, 0, game, 0, m_size);
+            m_game = game;
+            m_next = new int[length];
+            m_first = createFirst(length);
+            for (int i = 0; i < m_size; ++i)
+            {
+                int bucket = getBucket(m_hash[i]);
+                m_next[i] = m_first[bucket];
+                m_first[bucket] = i;
+            }
+        }
+    }
+
+    /** Number of placements in a segment.
+        Must be smaller than 5, so that there are more segments than a fifth
+        of the placements and some segments can be skipped. */
+    private static final int SEGMENT_LENGTH = 3;
+
+    /** Segments contained in at least this number of games are skipped by
+        check(), if possible. */
+    private static final int MAX_SEGMENT_GAMES = 32;
+
+    private final int m_size;
+
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+    /** Placements of the games in the order they were added. */
+    private final ArrayList<ArrayList<Compare.Placement>> m_games
+        = new ArrayList<ArrayList<Compare.Placement>>();
+
+    private final ArrayList<Integer> m_gameNumbers = new ArrayList<Integer>();
+
+    private final HashIndex m_identical = new HashIndex();
+
+    private final HashIndex m_segments = new HashIndex();
+
+    private static void addCandidates(HashIndex index, long hash,
+                                      BitSet candidates)
+    {
+        for (int entry = index.getFirst(hash); entry >= 0;
+             entry = index.getNext(entry))
+            candidates.set(index.getGame(entry));
+    }
+
+    private void compare(Duplicate duplicate, int game)
+    {
+        int gameNumber = m_gameNumbers.get(game);
+        if (duplicate.m_useAlternate
+            && ((gameNumber % 2 != 0) != duplicate.m_isAlternated))
+            return;
+        ArrayList<Compare.Placement> moves = duplicate.m_moves;
+        ArrayList<Compare.Placement> gameMoves = m_games.get(game);
+        int maxDifferent = moves.size() / 5;
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+        {
+            int numberDifferent =
+                Compare.getNumberDifferent(moves, gameMoves, rot, m_size);
+            if (numberDifferent == 0)
+            {
+                if (duplicate.m_identical < 0
+                    || gameNumber < duplicate.m_identical)
+                    duplicate.m_identical = gameNumber;
+            }
+            else if (numberDifferent < maxDifferent)
+            {
+                if (gameNumber > duplicate.m_nearlyIdentical)
+                    duplicate.m_nearlyIdentical = gameNumber;
+            }
+        }
+    }
+
+    /** Get the codes of the placements in all rotations.
+        @return The codes indexed by rotation and placement. */
+    private long[][] getCodes(ArrayList<Compare.Placement> moves)
+    {
+        long[][] codes = new long[BoardUtil.NUMBER_ROTATIONS][moves.size()];
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+            for (int i = 0; i < moves.size(); ++i)
+            {
+                Compare.Placement placement = moves.get(i);
+                GoPoint p = BoardUtil.rotate(rot, placement.m_point, m_size);
+                long code = (p == null ? 0 : p.getIndex() + 1);
+                code = 4 * code + placement.m_color.ordinal();
+                code = 2 * code + (placement.m_isSetup ? 1 : 0);
+                codes[rot][i] = code;
+            }
+        return codes;
+    }
+
+    /** Get the hash of a sequence of placements normalized for rotation.
+        @param codes The codes as returned by getCodes.
+        @param start The index of the first placement.
+        @param length The number of placements.
+        @param segment The segment index included in the hash, -1 for the
+        hash of all placements. */
+    private static long getHash(long[][] codes, int start, int length,
+                                int segment)
+    {
+        long result = Long.MAX_VALUE;
+        for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
+        {
+            long hash = segment * 0x9E3779B97F4A7C15L + length;
+            for (int i = start; i < start + length; ++i)
+                hash = mix(hash * 31 + codes[rot][i]);
+            result = Math.min(result, hash);
+        }
+        return result;
+    }
+
+    /** Get the number of segments of a game that can be skipped by
+        check().
+        If a game has n placements and another game does not share any of
+        the other segments, then each of the floor(n / SEGMENT_LENGTH) -
+        numberSkip segments of the game that the other game contains
+        completely has a differing placement. Together with the difference
+        in length, there are at least floor(n / 5) differing placements,
+        so the other game is not nearly identical. This is also true if the
+        other game is shorter, because each missing placement adds one to
+        the difference in length, but removes at most one segment.
+        Identical games are found by the hash of all placements. */
+    private static int getNumberSkip(int numberPlacements)
+    {
+        return numberPlacements / SEGMENT_LENGTH - numberPlacements / 5;
+    }
+
+    /** Finalizer of the SplitMix64 random generator. */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,246 @@
+// GameIndex.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+/** Binary index of the saved games of a twogtp run.
+    Contains one record per game with the placements used for the duplicate
+    check, so that continuing a run does not need to parse all game files.
+    Each record also stores the length and modification time of the game
+    file to detect game files that were changed after the record was
+    written. Records are appended after each game; a later record for the
+    same game replaces an earlier one. An incomplete record at the end of
+    the file, as written by a crashed program, is ignored. */
+final class GameIndex
+{
+    /** Record of a game. */
+    public static final class Record
+    {
+        public final long m_fileLength;
+
+        public final long m_lastModified;
+
+        public final ArrayList<Compare.Placement> m_placements;
+
+        public Record(long fileLength, long lastModified,
+                      ArrayList<Compare.Placement> placements)
+        {
+            m_fileLength = fileLength;
+            m_lastModified = lastModified;
+            m_placements = placements;
+        }
+
+        /** Check if the record was written for the current game file. */
+        public boolean isValid(File gameFile)
+        {
+            return (gameFile.length() == m_fileLength
+                    && gameFile.lastModified() == m_lastModified);
+        }
+    }
+
+    /** Constructor.
+        Does not read or open the file.
+        @param file The index file.
+        @param size The board size of the games. */
+    public GameIndex(File file, int size)
+    {
+        m_file = file;
+        m_size = size;
+    }
+
+    /** Append a record.
+        Opens the file for appending, if it is not open yet.
+        @param gameIndex The game number.
+        @param gameFile The saved game file.
+        @param placements The placements of the game. */
+    public void append(int gameIndex, File gameFile,
+                       ArrayList<Compare.Placement> placements)
+        throws IOException
+    {
+        if (m_out == null)
+        {
+            boolean isNew = (m_file.length() == 0);
+            m_out = new DataOutputStream(new BufferedOutputStream(
+                                       new FileOutputStream(m_file, true)));
+            if (isNew)
+                writeHeader();
+        }
+        writeRecord(gameIndex, gameFile.length(), gameFile.lastModified(),
+                    placements);
+        m_out.flush();
+    }
+
+    public void close() throws IOException
+    {
+        if (m_out != null)
+        {
+            m_out.close();
+            m_out = null;
+        }
+    }
+
+    /** Read the records.
+        @return The records by game number. Empty, if the file does not
+        exist or was written for a different board size or file format
+        version. */
+    public TreeMap<Integer,Record> read() throws IOException
+    {
+        TreeMap<Integer,Record> result = new TreeMap<Integer,Record>();
+        if (! m_file.exists())
+            return result;
+        // Read into a heap buffer instead of mapping the file, because
+        // write() replaces the file and a mapped file cannot be deleted or
+        // replaced on Windows until the mapping is garbage collected
+        ByteBuffer buffer =
+            ByteBuffer.wrap(Files.readAllBytes(m_file.toPath()));
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC
+            || buffer.getInt() != VERSION || buffer.getInt() != m_size)
+            return result;
+        try
+        {
+            while (buffer.hasRemaining())
+            {
+                int gameIndex = buffer.getInt();
+                long fileLength = buffer.getLong();
+                long lastModified = buffer.getLong();
+                int numberPlacements = buffer.getInt();
+                if (numberPlacements < 0
+                    || numberPlacements > buffer.remaining() / 2)
+                    break;
+                ArrayList<Compare.Placement> placements =
+                    new ArrayList<Compare.Placement>(numberPlacements);
+                for (int i = 0; i < numberPlacements; ++i)
+                    placements.add(decode(buffer.getShort()));
+                result.put(gameIndex, new Record(fileLength, lastModified,
+                                                 placements));
+            }
+        }
+        catch (BufferUnderflowException e)
+        {
+            // Incomplete last record
+        }
+        return result;
+    }
+
+    /** Replace the file by a file with the given records.
+        Used to remove stale and replaced records. */
+    public void write(Map<Integer,Record> records) throws IOException
+    {
+        close();
+        File tmpFile = new File(m_file.getAbsolutePath() + ".new");
+        m_out = new DataOutputStream(new BufferedOutputStream(
+                                          new FileOutputStream(tmpFile)));
+        try
+        {
+            writeHeader();
+            for (Map.Entry<Integer,Record> entry : records.entrySet())
+            {
+                Record record = entry.getValue();
+                writeRecord(entry.getKey(), record.m_fileLength,
+                            record.m_lastModified, record.m_placements);
+            }
+        }
+        finally
+        {
+            close();
+        }
+        try
+        {
+            Files.move(tmpFile.toPath(), m_file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e)
+        {
+            Files.move(tmpFile.toPath(), m_file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Magic number at the start of the file ("GIDX"). */
+    private static final int MAGIC = 0x47494458;
+
+    private static final int VERSION = 1;
+
+    private final int m_size;
+
+    private final File m_file;
+
+    private DataOutputStream m_out;
+
+    private static Compare.Placement decode(short code)
+    {
+        boolean isSetup = ((code & 1) != 0);
+        GoColor c;
+        switch ((code >> 1) & 3)
+        {
+        case 0:
+            c = BLACK;
+            break;
+        case 1:
+            c = WHITE;
+            break;
+        default:
+            c = EMPTY;
+            break;
+        }
+        int index = (code >> 3) - 1;
+        GoPoint p = null;
+        if (index >= 0)
+            p = GoPoint.get(index % GoPoint.MAX_SIZE,
+                            index / GoPoint.MAX_SIZE);
+        return new Compare.Placement(isSetup, c, p);
+    }
+
+    private static short encode(Compare.Placement placement)
+    {
+        int code = (placement.m_point == null ? 0
+                    : placement.m_point.getIndex() + 1);
+        if (placement.m_color == BLACK)
+            code = 4 * code;
+        else if (placement.m_color == WHITE)
+            code = 4 * code + 1;
+        else
+            code = 4 * code + 2;
+        code = 2 * code + (placement.m_isSetup ? 1 : 0);
+        return (short)code;
+    }
+
+    private void writeHeader() throws IOException
+    {
+        m_out.writeInt(MAGIC);
+        m_out.writeInt(VERSION);
+        m_out.writeInt(m_size);
+    }
+
+    private void writeRecord(int gameIndex, long fileLength,
+                             long lastModified,
+                             ArrayList<Compare.Placement> placements)
+        throws IOException
+    {
+        m_out.writeInt(gameIndex);
+        m_out.writeLong(fileLength);
+        m_out.writeLong(lastModified);
+        m_out.writeInt(placements.size());
+        for (Compare.Placement placement : placements)
+            m_out.writeShort(encode(placement));
+    }
+}
@@ -35,6 +35,7 @@ public final class Main
                 "handicap:",
                 "komi:",
                 "maxmoves:",
+                "metrics",
                 "observer:",
                 "openings:",
                 "referee:",
@@ -67,8 +68,9 @@ public final class Main
                    "-komi           komi\n" +
                    "-handicap       handicap\n" +
                    "-maxmoves       move limit\n" +
+                   "-metrics        print GTP command timings at end\n" +
                    "-observer       command for observer program\n" +
-                   "-openings       directory with opening sgf files\n" +
+                   "-openings       opening directory or sgf collection\n" +
                    "-referee        command for referee program\n" +
                    "-sgffile        filename prefix\n" +
                    "-size           board size for autoplay (default 19)\n" +
@@ -102,6 +104,7 @@ public final class Main
             boolean alternate = opt.contains("alternate");
             boolean auto = opt.contains("auto");
             boolean debugToComment = opt.contains("debugtocomment");
+            boolean metrics = opt.contains("metrics");
             boolean verbose = opt.contains("verbose");
             String black = opt.get("black", "");
             if (black.equals(""))
@@ -137,65 +140,86 @@ public final class Main
                 System.in.close();
 
             TwoGtp twoGtp[] = new TwoGtp[numberThreads];
-            TwoGtpThread thread[] = new TwoGtpThread[numberThreads];
             ResultFile resultFile = null;
+            ArrayList<ProgramPool> pools = new ArrayList<ProgramPool>();
+            ProgramPool blackPool =
+                new ProgramPool(black, "Black", "B", verbose, numberThreads);
+            pools.add(blackPool);
+            ProgramPool whitePool =
+                new ProgramPool(white, "White", "W", verbose, numberThreads);
+            pools.add(whitePool);
+            // The referee is only needed at the end of a game in autoplay
+            // mode, a single referee is shared by all threads
+            ProgramPool refereePool = null;
+            if (! referee.equals(""))
+            {
+                refereePool =
+                    new ProgramPool(referee, "Referee", "R", verbose, 1);
+                pools.add(refereePool);
+            }
+            ArrayList<Program> allPrograms = new ArrayList<Program>();
+            for (ProgramPool pool : pools)
+                allPrograms.add(pool.acquire());
+            for (Program program : allPrograms)
+                program.setLabel(allPrograms);
+            for (int i = 0; i < pools.size(); ++i)
+                pools.get(i).setLabel(allPrograms.get(i).getLabel());
+            Program blackProgram = allPrograms.get(0);
+            Program whiteProgram = allPrograms.get(1);
+            Program refereeProgram = null;
+            if (refereePool != null)
+                refereeProgram = allPrograms.get(2);
+            if (! sgfFile.equals(""))
+                resultFile =
+                    new ResultFile(force, blackProgram, whiteProgram,
+                                   refereeProgram, numberGames, size, komi,
+                                   sgfFile, openings, alternate, useXml);
+            if (auto && refereeProgram != null)
+            {
+                refereePool.release(refereeProgram);
+                refereeProgram = null;
+            }
             for (int i = 0; i < numberThreads; ++i)
             {
-                ArrayList<Program> allPrograms = new ArrayList<Program>();
-                Program blackProgram =
-                    new Program(black, "Black", "B", verbose);
-                allPrograms.add(blackProgram);
-                Program whiteProgram =
-                    new Program(white, "White", "W", verbose);
-                allPrograms.add(whiteProgram);
-                Program refereeProgram;
-                if (referee.equals(""))
-                    refereeProgram = null;
-                else
-                {
-                    refereeProgram =
-                        new Program(referee, "Referee", "R", verbose);
-                    allPrograms.add(refereeProgram);
-                }
-                for (Program program : allPrograms)
-                    program.setLabel(allPrograms);
-                if (! sgfFile.equals("") && resultFile == null)
-                    resultFile =
-                        new ResultFile(force, blackProgram, whiteProgram,
-                                       refereeProgram, numberGames, size,
-                                       komi, sgfFile, openings, alternate,
-                                       useXml, numberThreads);
                 if (i > 0)
+                {
+                    blackProgram = blackPool.acquire();
+                    whiteProgram = whitePool.acquire();
                     verbose = false;
+                }
                 twoGtp[i] = new TwoGtp(blackProgram, whiteProgram,
-                                       refereeProgram, observer, size, komi, handicap,
-                                       numberGames, alternate, sgfFile,
-                                       verbose, openings, timeSettings,
-                                       resultFile);
+                                       refereeProgram, observer, size, komi,
+                                       handicap, numberGames, alternate,
+                                       sgfFile, verbose, openings,
+                                       timeSettings, resultFile);
+                if (auto)
+                    twoGtp[i].setProgramPools(blackPool, whitePool,
+                                              refereePool);
                 twoGtp[i].setMaxMoves(maxMoves);
                 if (debugToComment)
                     twoGtp[i].setDebugToComment(true);
-                if (auto)
-                {
-                    thread[i] = new TwoGtpThread(twoGtp[i]);
-                    thread[i].start();
-                }
             }
             if (auto)
             {
-                for (int i = 0; i < numberThreads; ++i)
-                    thread[i].join();
-                for (int i = 0; i < numberThreads; ++i)
-                    if (thread[i].getException() != null)
-                    {
-                        StringUtil.printException(thread[i].getException());
-                        exitError = true;
-                    }
+                Scheduler scheduler = new Scheduler(twoGtp, pools);
+                for (Exception e : scheduler.run())
+                {
+                    StringUtil.printException(e);
+                    exitError = true;
+                }
             }
             else
                 twoGtp[0].mainLoop(System.in, System.out);
+            for (ProgramPool pool : pools)
+                pool.close();
             if (resultFile != null)
                 resultFile.close();
+            if (metrics)
+                for (ProgramPool pool : pools)
+                {
+                    System.err.println(pool.getName() + ":");
+                    pool.getMetrics().print(System.err);
+                }
         }
         catch (Throwable t)
         {
@@ -211,37 +235,3 @@ public final class Main
     {
     }
 }
-
-class TwoGtpThread
-    extends Thread
-{
-    public TwoGtpThread(TwoGtp twoGtp)
-    {
-        m_twoGtp = twoGtp;
-    }
-
-    public Exception getException()
-    {
-        return m_exception;
-    }
-
-    public void run()
-    {
-        try
-        {
-            m_twoGtp.autoPlay();
-        }
-        catch (Exception e)
-        {
-            m_exception = e;
-        }
-        finally
-        {
-            m_twoGtp.close();
-        }
-    }
-
-    private Exception m_exception;
-
-    private TwoGtp m_twoGtp;
-}
@@ -2,14 +2,21 @@
 
 package net.sf.gogui.tools.twogtp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileFilter;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.sgf.SgfCollectionReader;
 import net.sf.gogui.sgf.SgfError;
 import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
 
@@ -22,18 +29,31 @@ class Filter
     }
 }
 
-/** Access opening SGF files from directory. */
+/** Access opening SGF files from directory or games from an SGF collection.
+    The games of a collection are read once and kept in memory in SGF
+    format, because each game played from an opening needs its own game
+    tree. The instance is shared by the threads of TwoGtp, the functions
+    that access the currently loaded opening need to be called in a block
+    synchronized on the instance. */
 public class Openings
 {
+    /** Constructor.
+        @param directory Directory with SGF files or a file with an SGF
+        collection. */
     public Openings(File directory) throws ErrorMessage
     {
-        if (! directory.isDirectory())
-            throw new ErrorMessage(directory + " is not a directory");
         m_directory = directory;
-        m_files = directory.listFiles(new Filter());
-        if (m_files.length == 0)
-            throw new ErrorMessage("No SGF files found in " + directory);
-        sortFiles();
+        if (directory.isDirectory())
+        {
+            m_files = directory.listFiles(new Filter());
+            if (m_files.length == 0)
+                throw new ErrorMessage("No SGF files found in " + directory);
+            sortFiles();
+        }
+        else if (directory.isFile())
+            readCollection();
+        else
+            throw new ErrorMessage(directory + " is not a directory or file");
         m_currentFile = -1;
     }
 
@@ -42,15 +62,19 @@ public class Openings
         return getTree().getBoardSize();
     }
 
-    /** Get name of directory. */
+    /** Get name of directory or collection file. */
     public String getDirectory()
     {
         return m_directory.toString();
     }
 
-    /** Get name of currently loaded file. */
+    /** Get name of currently loaded file.
+        For collections, the number of the game in the collection is
+        appended to the file name. */
     public String getFilename()
     {
+        if (m_games != null)
+            return m_directory + " (game " + (m_currentFile + 1) + ")";
         return m_files[m_currentFile].toString();
     }
 
@@ -66,18 +90,35 @@ public class Openings
         return m_tree;
     }
 
-    /** Get number of opening files in directory. */
+    /** Get number of opening files in directory or games in
+        collection. */
     public int getNumber()
     {
+        if (m_games != null)
+            return m_games.size();
         return m_files.length;
     }
 
-    /** Load opening file number i. */
+    /** Check if the openings are the games of an SGF collection. */
+    public boolean isCollection()
+    {
+        return m_games != null;
+    }
+
+    /** Load opening file number i.
+        Creates a new game tree for the opening. */
     public void loadFile(int i) throws IOException, SgfError
     {
-        File file = m_files[i];
-        FileInputStream fileStream = new FileInputStream(file);
-        SgfReader reader = new SgfReader(fileStream, file, null, 0);
+        SgfReader reader;
+        if (m_games != null)
+            reader = new SgfReader(new ByteArrayInputStream(m_games.get(i)),
+                                   m_directory, null, 0);
+        else
+        {
+            File file = m_files[i];
+            FileInputStream fileStream = new FileInputStream(file);
+            reader = new SgfReader(fileStream, file, null, 0);
+        }
         m_tree = reader.getTree();
         m_currentFile = i;
     }
@@ -88,8 +129,43 @@ public class Openings
 
     private File[] m_files;
 
+    /** Games of a collection in SGF format; null, if the openings are
+        files in a directory. */
+    private ArrayList<byte[]> m_games;
+
     private GameTree m_tree;
 
+    private void readCollection() throws ErrorMessage
+    {
+        InputStream in;
+        try
+        {
+            in = new FileInputStream(m_directory);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new ErrorMessage("File \"" + m_directory + "\" not found");
+        }
+        m_games = new ArrayList<byte[]>();
+        SgfCollectionReader reader = new SgfCollectionReader(in, m_directory);
+        try
+        {
+            SgfReader game;
+            while ((game = reader.next()) != null)
+            {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                new SgfWriter(out, game.getTree(), "gogui-twogtp", null);
+                m_games.add(out.toByteArray());
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        if (m_games.isEmpty())
+            throw new ErrorMessage("No SGF games found in " + m_directory);
+    }
+
     private void sortFiles()
     {
         for (int i = 0; i < m_files.length - 1; ++i)
@@ -10,6 +10,7 @@ import net.sf.gogui.go.ConstBoard;
 import net.sf.gogui.go.GoColor;
 import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
 import net.sf.gogui.gtp.GtpSynchronizer;
 import net.sf.gogui.util.Table;
 
@@ -88,6 +89,11 @@ public class Program
         return m_label;
     }
 
+    public GtpMetrics getMetrics()
+    {
+        return m_gtp.getMetrics();
+    }
+
     public String getProgramCommand()
     {
         return m_gtp.getProgramCommand();
@@ -191,6 +197,14 @@ public class Program
             m_label = m_name + "[" + (programs.indexOf(this) + 1) + "]";
     }
 
+    /** Set the label.
+        Used for programs that replace a program with a label computed by
+        setLabel(ArrayList). */
+    public void setLabel(String label)
+    {
+        m_label = label;
+    }
+
     public void setTableProperties(Table table)
     {
         table.setProperty(m_defaultName, m_name);
@@ -0,0 +1,197 @@
+// ProgramPool.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpMetrics;
+
+/** Pool of program processes for one role (Black, White or Referee).
+    Programs are started on demand up to a maximum number and handed out to
+    the games that need them. A program that died is closed when it is
+    returned to the pool and replaced by a new program on the next request,
+    so a crashed program does not stop the games of a thread. */
+public class ProgramPool
+{
+    /** Constructor.
+        Does not start any program.
+        @param command The command for starting a program.
+        @param defaultName The default name (see Program).
+        @param logPrefix The log prefix (see Program).
+        @param verbose Log the GTP streams of the first program to stderr.
+        @param maxSize The maximum number of programs. */
+    public ProgramPool(String command, String defaultName, String logPrefix,
+                       boolean verbose, int maxSize)
+    {
+        assert maxSize > 0;
+        m_command = command;
+        m_defaultName = defaultName;
+        m_logPrefix = logPrefix;
+        m_verbose = verbose;
+        m_maxSize = maxSize;
+    }
+
+    /** Get a program from the pool.
+        Starts a new program, if no program is idle and the maximum number
+        is not reached, otherwise waits until a program is returned.
+        @return The program. Must be returned with release(). */
+    public Program acquire() throws GtpError
+    {
+        boolean verbose;
+        synchronized (this)
+        {
+            while (true)
+            {
+                while (! m_idle.isEmpty())
+                {
+                    Program program = m_idle.remove(m_idle.size() - 1);
+                    if (! program.isProgramDead())
+                        return program;
+                    closeDead(program);
+                }
+                if (m_numberPrograms < m_maxSize)
+                    break;
+                try
+                {
+                    wait();
+                }
+                catch (InterruptedException e)
+                {
+                    throw new GtpError("interrupted");
+                }
+            }
+            ++m_numberPrograms;
+            verbose = (m_verbose && m_numberStarted == 0);
+            ++m_numberStarted;
+        }
+        // Start the program without holding the lock, other threads can
+        // return programs in the meantime
+        try
+        {
+            Program program =
+                new Program(m_command, m_defaultName, m_logPrefix, verbose);
+            synchronized (this)
+            {
+                m_started.add(program);
+                if (m_label != null)
+                    program.setLabel(m_label);
+            }
+            return program;
+        }
+        catch (GtpError e)
+        {
+            synchronized (this)
+            {
+                --m_numberPrograms;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /** Close all idle programs.
+        Programs that are not returned yet are not closed. */
+    public void close()
+    {
+        ArrayList<Program> idle;
+        synchronized (this)
+        {
+            idle = new ArrayList<Program>(m_idle);
+            m_idle.clear();
+            m_numberPrograms -= idle.size();
+        }
+        for (Program program : idle)
+            program.close();
+    }
+
+    public String getCommand()
+    {
+        return m_command;
+    }
+
+    /** Get the statistics of all programs started by the pool.
+        Includes programs that are closed already. */
+    public GtpMetrics getMetrics()
+    {
+        ArrayList<Program> started;
+        synchronized (this)
+        {
+            started = new ArrayList<Program>(m_started);
+        }
+        GtpMetrics metrics = new GtpMetrics();
+        for (Program program : started)
+            metrics.add(program.getMetrics());
+        return metrics;
+    }
+
+    public String getName()
+    {
+        return m_defaultName;
+    }
+
+    /** Get the number of programs that died and were closed. */
+    public synchronized int getNumberDead()
+    {
+        return m_numberDead;
+    }
+
+    /** Return a program to the pool.
+        @param program The program as returned by acquire(). */
+    public void release(Program program)
+    {
+        synchronized (this)
+        {
+            if (! program.isProgramDead())
+            {
+                m_idle.add(program);
+                notifyAll();
+                return;
+            }
+        }
+        closeDead(program);
+    }
+
+    /** Set the label for new programs.
+        Labels depend on the programs of all roles (see
+        Program.setLabel(ArrayList)), so they are computed once for the
+        first programs and reused for programs started later. */
+    public synchronized void setLabel(String label)
+    {
+        m_label = label;
+    }
+
+    private final boolean m_verbose;
+
+    private final int m_maxSize;
+
+    /** Number of programs started and not closed. */
+    private int m_numberPrograms;
+
+    private int m_numberStarted;
+
+    private int m_numberDead;
+
+    private String m_label;
+
+    private final String m_command;
+
+    private final String m_defaultName;
+
+    private final String m_logPrefix;
+
+    private final ArrayList<Program> m_idle = new ArrayList<Program>();
+
+    private final ArrayList<Program> m_started = new ArrayList<Program>();
+
+    private void closeDead(Program program)
+    {
+        System.err.println(program.getLabel() + " died");
+        program.close();
+        synchronized (this)
+        {
+            --m_numberPrograms;
+            ++m_numberDead;
+            notifyAll();
+        }
+    }
+}
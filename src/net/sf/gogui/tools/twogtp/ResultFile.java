@@ -2,15 +2,19 @@
 
 package net.sf.gogui.tools.twogtp;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.TreeMap;
@@ -22,36 +26,50 @@ import net.sf.gogui.sgf.SgfError;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.util.ErrorMessage;
+import net.sf.gogui.util.FileUtil;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
 import net.sf.gogui.util.Table;
 import net.sf.gogui.xml.XmlWriter;
 import net.sf.gogui.version.Version;
 
+/** Game results and files of a twogtp run.
+    The results are stored in a table file, which is sorted by game number.
+    To avoid rewriting the table file after each game, the results are
+    first appended to a journal file and moved to the table file only
+    occasionally and in close(). The journal is read together with the table
+    file, if a run is continued after a crash, and by Analyze. */
 public class ResultFile
 {
     public ResultFile(boolean force, Program black, Program white,
                       Program referee, int numberGames, int size, Komi komi,
                       String filePrefix, Openings openings, boolean alternate,
-                      boolean useXml, int numberThreads) throws ErrorMessage
+                      boolean useXml) throws ErrorMessage
     {
         m_filePrefix = filePrefix;
         m_alternate = alternate;
         m_numberGames = numberGames;
         m_useXml = useXml;
-        m_numberThreads = numberThreads;
+        m_duplicates = new DuplicateIndex(size);
         m_lockFile = new File(filePrefix + ".lock");
         acquireLock();
         m_tableFile = new File(filePrefix + ".dat");
+        m_journalFile = getJournalFile(m_tableFile);
+        File indexFile = new File(filePrefix + ".index");
+        m_index = new GameIndex(indexFile, size);
         if (force)
         {
             if (m_tableFile.exists() && ! m_tableFile.delete())
                 throw new ErrorMessage("Could not delete file '"
                                        + m_tableFile + "'");
+            if (m_journalFile.exists() && ! m_journalFile.delete())
+                throw new ErrorMessage("Could not delete file '"
+                                       + m_journalFile + "'");
         }
         if (m_tableFile.exists())
         {
-            m_table = readTable(m_tableFile, numberGames, m_gameExists);
+            m_table = readTable(m_tableFile, m_journalFile, numberGames,
+                                m_gameExists);
             m_nextGameIndex = 0;
             while (m_gameExists.contains(m_nextGameIndex))
             {
@@ -68,87 +86,67 @@ public class ResultFile
         {
             m_table = createTable(black, white, referee, size, komi, openings);
             m_nextGameIndex = 0;
+            // Index of an older run with the same prefix
+            if (indexFile.exists() && ! indexFile.delete())
+                throw new ErrorMessage("Could not delete file '"
+                                       + indexFile + "'");
         }
+        // Writes the header of a new table and moves the rows of a
+        // recovered journal to the table file
+        compact();
     }
 
-    public synchronized void addResult(int gameIndex, ConstGame game,
-                                       String resultBlack, String resultWhite,
-                                       String resultReferee,
-                                       boolean alternated, int numberMoves,
-                                       boolean error, String errorMessage,
-                                       double timeBlack, double timeWhite,
-                                       double cpuTimeBlack,
-                                       double cpuTimeWhite)
+    public void addResult(int gameIndex, ConstGame game, String resultBlack,
+                          String resultWhite, String resultReferee,
+                          boolean alternated, int numberMoves, boolean error,
+                          String errorMessage, double timeBlack,
+                          double timeWhite, double cpuTimeBlack,
+                          double cpuTimeWhite)
         throws ErrorMessage
     {
         ArrayList<Compare.Placement> moves
             = Compare.getPlacements(game.getTree().getRootConst());
-        String duplicate =
-            Compare.checkDuplicate(game.getBoard(), moves, m_games,
-                                   m_alternate, alternated);
-        NumberFormat format = StringUtil.getNumberFormat(1);
-        m_table.startRow();
-        m_table.set("GAME", Integer.toString(gameIndex));
-        m_table.set("RES_B", resultBlack);
-        m_table.set("RES_W", resultWhite);
-        m_table.set("RES_R", resultReferee);
-        m_table.set("ALT", alternated ? "1" : "0");
-        m_table.set("DUP", duplicate);
-        m_table.set("LEN", numberMoves);
-        m_table.set("TIME_B", format.format(timeBlack));
-        m_table.set("TIME_W", format.format(timeWhite));
-        m_table.set("CPU_B", format.format(cpuTimeBlack));
-        m_table.set("CPU_W", format.format(cpuTimeWhite));
-        m_table.set("ERR", error ? "1" : "0");
-        m_table.set("ERR_MSG", errorMessage);
-
-        // The code does not rely on the table being sorted by game number,
-        // but it looks nicer for the user.
-        int rowEnd = m_table.getNumberRows();
-        int rowBegin = rowEnd - m_numberThreads;
-        if (rowBegin < 0)
-            rowBegin = 0;
-        // If the run was terminated and continued with a different number
-        // of threads, there could be a gap between gameIndex and
-        // getNumberRows() larger than m_numberThreads
-        if (gameIndex < rowBegin)
-            rowBegin = gameIndex;
-        m_table.sortByIntColumn("GAME", rowBegin, rowEnd);
+        // Check against the index without holding the lock, only games
+        // finished in the meantime are checked with the lock
+        DuplicateIndex.Duplicate duplicate =
+            m_duplicates.check(moves, m_alternate, alternated);
+        synchronized (this)
+        {
+            m_duplicates.checkAdded(duplicate);
+            saveResult(gameIndex, game, moves, duplicate.toString(),
+                       resultBlack, resultWhite, resultReferee, alternated,
+                       numberMoves, error, errorMessage, timeBlack,
+                       timeWhite, cpuTimeBlack, cpuTimeWhite);
+        }
+    }
 
-        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
+    public synchronized void close()
+    {
         try
         {
-            m_table.save(tmpFile);
-            if (Platform.isWindows())
-                // File.renameTo() fails on Windows if target exists
-                m_tableFile.delete();
-            tmpFile.renameTo(m_tableFile);
+            compact();
+            m_journal.close();
+            if (! m_journalFile.delete())
+                System.err.println("Could not delete '" + m_journalFile
+                                   + "'");
+        }
+        catch (ErrorMessage e)
+        {
+            System.err.println(e.getMessage());
         }
         catch (IOException e)
         {
-            throw new ErrorMessage("Could not write to: " + m_tableFile);
+            System.err.println("Could not close '" + m_journalFile + "'");
         }
-        File file = getFile(gameIndex);
         try
         {
-            OutputStream out = new FileOutputStream(file);
-            if (m_useXml)
-                new XmlWriter(out, game.getTree(),
-                              "gogui-twogtp:" + Version.get());
-            else
-                new SgfWriter(out, game.getTree(),
-                              "gogui-twogtp", Version.get());
-            m_games.put(gameIndex, moves);
+            m_index.close();
         }
-        catch (FileNotFoundException e)
+        catch (IOException e)
         {
-            throw new ErrorMessage("Could not save " + file + ": "
-                                   + e.getMessage());
+            System.err.println("Could not close game index: "
+                               + e.getMessage());
         }
-    }
-
-    public void close()
-    {
         try
         {
             m_lockFileChannel.close();
@@ -188,20 +186,86 @@ public class ResultFile
 
     private final int m_numberGames;
 
-    private final int m_numberThreads;
-
     private final String m_filePrefix;
 
+    /** Minimum number of rows in the journal before it is moved to the
+        table file. */
+    private static final int MIN_COMPACT_ROWS = 1000;
+
+    /** Minimum time between two syncs of the journal file in milliseconds.
+        */
+    private static final long SYNC_INTERVAL = 1000;
+
+    private int m_journalRows;
+
+    private long m_lastSyncTime;
+
     private final File m_tableFile;
 
+    private final File m_journalFile;
+
+    private FileOutputStream m_journalStream;
+
+    private Writer m_journal;
+
     private final File m_lockFile;
 
     private FileChannel m_lockFileChannel;
 
     private final Table m_table;
 
-    private final TreeMap<Integer, ArrayList<Compare.Placement>> m_games
-        = new TreeMap<Integer, ArrayList<Compare.Placement>>();
+    private final DuplicateIndex m_duplicates;
+
+    private final GameIndex m_index;
+
+    /** Get the journal file belonging to a table file. */
+    static File getJournalFile(File tableFile)
+    {
+        return new File(FileUtil.replaceExtension(tableFile, "dat",
+                                                  "journal"));
+    }
+
+    /** Append the rows of a journal file to a table.
+        Rows of games that already exist in the table are ignored. An
+        incomplete last line, as written by a crashed program, is ignored.
+        Does nothing, if the journal file does not exist.
+        @param file The journal file.
+        @param table The table read from the table file. */
+    static void readJournal(File file, Table table) throws ErrorMessage
+    {
+        if (! file.exists())
+            return;
+        String text;
+        try
+        {
+            text = new String(Files.readAllBytes(file.toPath()));
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Read error: " + file);
+        }
+        text = text.substring(0, text.lastIndexOf('\n') + 1);
+        int gameColumn = table.getColumnIndex("GAME");
+        TreeSet<String> games = new TreeSet<String>();
+        for (int i = 0; i < table.getNumberRows(); ++i)
+            games.add(table.get(gameColumn, i));
+        for (String line : text.split("\n"))
+        {
+            line = line.trim();
+            if (line.equals(""))
+                continue;
+            String[] array = line.split("\\t");
+            if (array.length > table.getNumberColumns()
+                || array.length <= gameColumn)
+                throw new ErrorMessage("Invalid line in " + file + ": "
+                                       + line);
+            if (! games.add(array[gameColumn]))
+                continue;
+            table.startRow();
+            for (int i = 0; i < array.length; ++i)
+                table.set(i, array[i]);
+        }
+    }
 
     private void acquireLock() throws ErrorMessage
     {
@@ -223,6 +287,54 @@ public class ResultFile
         }
     }
 
+    /** Write the table file and truncate the journal.
+        The table file is replaced atomically, if the platform supports
+        it. If the program terminates before the journal is truncated, the
+        rows of the journal are already in the table file and are ignored
+        by readJournal(). */
+    private void compact() throws ErrorMessage
+    {
+        m_table.sortByIntColumn("GAME", 0, m_table.getNumberRows());
+        File tmpFile = new File(m_tableFile.getAbsolutePath() + ".new");
+        try
+        {
+            FileOutputStream out = new FileOutputStream(tmpFile);
+            try
+            {
+                Writer writer =
+                    new BufferedWriter(new OutputStreamWriter(out));
+                m_table.save(writer);
+                writer.flush();
+                out.getFD().sync();
+            }
+            finally
+            {
+                out.close();
+            }
+            if (Platform.isWindows())
+                // File.renameTo() fails on Windows if target exists
+                m_tableFile.delete();
+            tmpFile.renameTo(m_tableFile);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_tableFile);
+        }
+        try
+        {
+            if (m_journal != null)
+                m_journal.close();
+            m_journalStream = new FileOutputStream(m_journalFile);
+            m_journal =
+                new BufferedWriter(new OutputStreamWriter(m_journalStream));
+            m_journalRows = 0;
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_journalFile);
+        }
+    }
+
     private Table createTable(Program black, Program white, Program referee,
                               int size, Komi komi, Openings openings)
     {
@@ -252,7 +364,9 @@ public class ResultFile
         if (openings != null)
             table.setProperty("Openings",
                                 openings.getDirectory() + " ("
-                                + openings.getNumber() + " files)");
+                                + openings.getNumber()
+                                + (openings.isCollection() ? " games)"
+                                   : " files)"));
         table.setProperty("Date", StringUtil.getDate());
         table.setProperty("Host", Platform.getHostInfo());
         table.setProperty("Xml", m_useXml ? "1" : "0");
@@ -267,41 +381,92 @@ public class ResultFile
             return new File(m_filePrefix + "-" + gameIndex + ".sgf");
     }
 
-    private void readGames()
+    /** Add the saved games to the duplicate index.
+        Uses the records in the game index for game files that did not
+        change since the record was written and parses the other game
+        files. The game index is then replaced by an index containing all
+        games. */
+    private void readGames() throws ErrorMessage
     {
-        for (int n = 0; n < m_numberGames; ++n)
+        TreeMap<Integer,GameIndex.Record> records;
+        try
+        {
+            records = m_index.read();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not read game index: "
+                               + e.getMessage());
+            records = new TreeMap<Integer,GameIndex.Record>();
+        }
+        TreeMap<Integer,GameIndex.Record> validRecords =
+            new TreeMap<Integer,GameIndex.Record>();
+        for (int n : m_gameExists)
         {
-            if (! m_gameExists.contains(n))
-                continue;
             File file = getFile(n);
             if (! file.exists())
             {
                 System.err.println("Game " + file + " not found");
                 continue;
             }
-            if (! file.exists())
-                return;
+            GameIndex.Record record = records.get(n);
+            if (record == null || ! record.isValid(file))
+            {
+                ArrayList<Compare.Placement> placements = readGame(file);
+                if (placements == null)
+                    continue;
+                record = new GameIndex.Record(file.length(),
+                                              file.lastModified(),
+                                              placements);
+            }
+            m_duplicates.add(n, record.m_placements);
+            validRecords.put(n, record);
+        }
+        try
+        {
+            m_index.write(validRecords);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write game index: "
+                                   + e.getMessage());
+        }
+    }
+
+    /** Parse a game file.
+        @return The placements of the game or null, if the file could not
+        be read. */
+    private static ArrayList<Compare.Placement> readGame(File file)
+    {
+        try
+        {
+            FileInputStream fileStream = new FileInputStream(file);
             try
             {
-                FileInputStream fileStream = new FileInputStream(file);
                 SgfReader reader = new SgfReader(fileStream, file, null, 0);
                 ConstNode root = reader.getTree().getRoot();
-                m_games.put(n, Compare.getPlacements(root));
-            }
-            catch (SgfError e)
-            {
-                System.err.println("Error reading " + file + ": " +
-                                   e.getMessage());
+                return Compare.getPlacements(root);
             }
-            catch (Exception e)
+            finally
             {
-                System.err.println("Error reading " + file + ": " +
-                                   e.getMessage());
+                fileStream.close();
             }
         }
+        catch (SgfError e)
+        {
+            System.err.println("Error reading " + file + ": " +
+                               e.getMessage());
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error reading " + file + ": " +
+                               e.getMessage());
+        }
+        return null;
     }
 
-    private static Table readTable(File file, int numberGames,
+    private static Table readTable(File file, File journalFile,
+                                   int numberGames,
                                    TreeSet<Integer> gameExists)
         throws ErrorMessage
     {
@@ -309,6 +474,7 @@ public class ResultFile
         try
         {
             table.read(file);
+            readJournal(journalFile, table);
             int numberRows = table.getNumberRows();
             if (numberGames > 0 && numberRows >= numberGames)
                 throw new ErrorMessage("File " + file + " already contains "
@@ -335,4 +501,81 @@ public class ResultFile
         }
         return table;
     }
+
+    private void saveResult(int gameIndex, ConstGame game,
+                            ArrayList<Compare.Placement> moves,
+                            String duplicate, String resultBlack,
+                            String resultWhite, String resultReferee,
+                            boolean alternated, int numberMoves,
+                            boolean error, String errorMessage,
+                            double timeBlack, double timeWhite,
+                            double cpuTimeBlack, double cpuTimeWhite)
+        throws ErrorMessage
+    {
+        NumberFormat format = StringUtil.getNumberFormat(1);
+        m_table.startRow();
+        m_table.set("GAME", Integer.toString(gameIndex));
+        m_table.set("RES_B", resultBlack);
+        m_table.set("RES_W", resultWhite);
+        m_table.set("RES_R", resultReferee);
+        m_table.set("ALT", alternated ? "1" : "0");
+        m_table.set("DUP", duplicate);
+        m_table.set("LEN", numberMoves);
+        m_table.set("TIME_B", format.format(timeBlack));
+        m_table.set("TIME_W", format.format(timeWhite));
+        m_table.set("CPU_B", format.format(cpuTimeBlack));
+        m_table.set("CPU_W", format.format(cpuTimeWhite));
+        m_table.set("ERR", error ? "1" : "0");
+        m_table.set("ERR_MSG", errorMessage);
+        try
+        {
+            m_table.saveRow(m_journal, m_table.getNumberRows() - 1);
+            m_journal.flush();
+            // Syncing after each game would limit the number of games per
+            // second with fast programs
+            long time = System.currentTimeMillis();
+            if (time - m_lastSyncTime >= SYNC_INTERVAL)
+            {
+                m_journalStream.getFD().sync();
+                m_lastSyncTime = time;
+            }
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write to: " + m_journalFile);
+        }
+        ++m_journalRows;
+        // Let the journal grow with the table, such that the total number
+        // of bytes written for the table file stays linear in the number of
+        // games
+        if (m_journalRows >= Math.max(MIN_COMPACT_ROWS,
+                                      m_table.getNumberRows() / 4))
+            compact();
+        File file = getFile(gameIndex);
+        try
+        {
+            OutputStream out = new FileOutputStream(file);
+            if (m_useXml)
+                new XmlWriter(out, game.getTree(),
+                              "gogui-twogtp:" + Version.get());
+            else
+                new SgfWriter(out, game.getTree(),
+                              "gogui-twogtp", Version.get());
+            m_duplicates.add(gameIndex, moves);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new ErrorMessage("Could not save " + file + ": "
+                                   + e.getMessage());
+        }
+        try
+        {
+            m_index.append(gameIndex, file, moves);
+        }
+        catch (IOException e)
+        {
+            throw new ErrorMessage("Could not write game index: "
+                                   + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,93 @@
+// Scheduler.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import net.sf.gogui.util.StringUtil;
+
+/** Runs the autoplay games of several TwoGtp instances in parallel.
+    Each TwoGtp runs in its own thread and takes the next game number from
+    the result file after finishing a game, so threads with faster games
+    play more games and no thread waits while games are left. The number of
+    finished games per hour is printed to stderr periodically. */
+public class Scheduler
+{
+    /** Constructor.
+        @param twoGtp The TwoGtp instances.
+        @param pools The program pools used by the instances (for
+        reporting the number of restarted programs). */
+    public Scheduler(TwoGtp[] twoGtp, ArrayList<ProgramPool> pools)
+    {
+        m_twoGtp = twoGtp;
+        m_pools = pools;
+    }
+
+    /** Play all games.
+        @return The exceptions thrown by the threads. */
+    public ArrayList<Exception> run() throws InterruptedException
+    {
+        TwoGtpThread thread[] = new TwoGtpThread[m_twoGtp.length];
+        for (int i = 0; i < m_twoGtp.length; ++i)
+        {
+            thread[i] = new TwoGtpThread(m_twoGtp[i]);
+            thread[i].start();
+        }
+        m_startTime = System.currentTimeMillis();
+        long nextReport = m_startTime + REPORT_INTERVAL;
+        for (int i = 0; i < thread.length; ++i)
+            while (thread[i].isAlive())
+            {
+                long time = System.currentTimeMillis();
+                if (time >= nextReport)
+                {
+                    printProgress();
+                    nextReport += REPORT_INTERVAL;
+                }
+                else
+                    thread[i].join(nextReport - time);
+            }
+        printProgress();
+        ArrayList<Exception> exceptions = new ArrayList<Exception>();
+        for (int i = 0; i < thread.length; ++i)
+            if (thread[i].getException() != null)
+                exceptions.add(thread[i].getException());
+        return exceptions;
+    }
+
+    /** Interval between progress reports in milliseconds. */
+    private static final long REPORT_INTERVAL = 60000;
+
+    private long m_startTime;
+
+    private final TwoGtp[] m_twoGtp;
+
+    private final ArrayList<ProgramPool> m_pools;
+
+    private void printProgress()
+    {
+        int numberGames = 0;
+        for (TwoGtp twoGtp : m_twoGtp)
+            numberGames += twoGtp.getNumberGamesPlayed();
+        int numberDead = 0;
+        for (ProgramPool pool : m_pools)
+            numberDead += pool.getNumberDead();
+        double hours =
+            (System.currentTimeMillis() - m_startTime) / 3600000.;
+        NumberFormat format = StringUtil.getNumberFormat(1);
+        StringBuilder buffer = new StringBuilder();
+        buffer.append("Games: ");
+        buffer.append(numberGames);
+        if (hours > 0)
+        {
+            buffer.append(", games/hour: ");
+            buffer.append(format.format(numberGames / hours));
+        }
+        if (numberDead > 0)
+        {
+            buffer.append(", restarted programs: ");
+            buffer.append(numberDead);
+        }
+        System.err.println(buffer);
+    }
+}
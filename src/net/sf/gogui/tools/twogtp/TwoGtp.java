@@ -5,6 +5,7 @@ package net.sf.gogui.tools.twogtp;
 import java.util.ArrayList;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.Game;
 import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.game.TimeSettings;
@@ -96,7 +97,20 @@ public class TwoGtp
             {
                 if (m_gameIndex == -1)
                     break;
-                handleEndOfGame(true, e.getMessage());
+                if (isProgramDead() && m_blackPool != null
+                    && m_numberRetries < MAX_RETRIES)
+                {
+                    System.err.println("Game " + m_gameIndex + ": "
+                                       + e.getMessage() + ", retrying");
+                    ++m_numberRetries;
+                    m_retryGameIndex = m_gameIndex;
+                }
+                else
+                {
+                    handleEndOfGame(true, e.getMessage());
+                    ++m_numberGamesPlayed;
+                }
+                replaceDeadPrograms();
             }
         }
         if (m_black.isProgramDead())
@@ -105,10 +119,23 @@ public class TwoGtp
             throw new ErrorMessage("White program died");
     }
 
+    /** Close the programs.
+        Programs from pools are returned to the pools instead. */
     public void close()
     {
         for (Program program : m_allPrograms)
-            program.close();
+            if (m_blackPool != null && program == m_black)
+                m_blackPool.release(program);
+            else if (m_whitePool != null && program == m_white)
+                m_whitePool.release(program);
+            else
+                program.close();
+    }
+
+    /** Get the number of games played by autoPlay(). */
+    public int getNumberGamesPlayed()
+    {
+        return m_numberGamesPlayed;
     }
 
     public void handleCommand(GtpCommand cmd) throws GtpError
@@ -261,6 +288,25 @@ public class TwoGtp
         }
     }
 
+    /** Use program pools in autoPlay().
+        Dead black or white programs are replaced by new programs from the
+        pools and the game is played again (up to MAX_RETRIES times). The
+        referee is taken from its pool only for getting the result at the
+        end of a game, so that it can be shared by several TwoGtp
+        instances. Must be called before autoPlay().
+        @param black The pool that the black program was acquired from.
+        @param white The pool that the white program was acquired from.
+        @param referee The referee pool or null, if no referee is used. Must
+        be null, if the constructor was called with a referee. */
+    public void setProgramPools(ProgramPool black, ProgramPool white,
+                                ProgramPool referee)
+    {
+        assert referee == null || m_referee == null;
+        m_blackPool = black;
+        m_whitePool = white;
+        m_refereePool = referee;
+    }
+
     /** Limit number of moves.
         @param maxMoves Maximum number of moves after which genmove will fail,
         -1 for no limit. */
@@ -269,6 +315,10 @@ public class TwoGtp
         m_maxMoves = maxMoves;
     }
 
+    /** Maximum number of times a game is played again after a program
+        died. */
+    private static final int MAX_RETRIES = 3;
+
     private final boolean m_alternate;
 
     private boolean m_gameSaved;
@@ -279,6 +329,15 @@ public class TwoGtp
 
     private int m_gameIndex;
 
+    /** Game index to play again in the next game, -1 if none. */
+    private int m_retryGameIndex = -1;
+
+    private int m_numberRetries;
+
+    /** Number of games finished by autoPlay().
+        Read by other threads for progress reports. */
+    private volatile int m_numberGamesPlayed;
+
     private boolean m_resigned;
 
     private final boolean m_verbose;
@@ -298,16 +357,24 @@ public class TwoGtp
 
     private final Openings m_openings;
 
-    private final Program m_black;
+    private Program m_black;
 
-    private final Program m_white;
+    private Program m_white;
 
     private final Program m_referee;
 
     private final Program m_observer;
 
+    /** All programs except a pooled referee.
+        Contains the black and white program at index 0 and 1. */
     private final ArrayList<Program> m_allPrograms;
 
+    private ProgramPool m_blackPool;
+
+    private ProgramPool m_whitePool;
+
+    private ProgramPool m_refereePool;
+
     private final BlackWhiteSet<Double> m_realTime =
         new BlackWhiteSet<Double>(0., 0.);
 
@@ -435,6 +502,30 @@ public class TwoGtp
         return m_debugToCommentBuffer.get(color).toString();
     }
 
+    /** Get the result from a referee of the referee pool.
+        The referee is initialized with the final position of the game,
+        because it is shared with other games. */
+    private String getPooledRefereeResult()
+    {
+        Program referee = null;
+        try
+        {
+            referee = m_refereePool.acquire();
+            referee.synchronizeInit(m_game);
+            return referee.getResult();
+        }
+        catch (GtpError e)
+        {
+            System.err.println(e.getMessage());
+            return "?";
+        }
+        finally
+        {
+            if (referee != null)
+                m_refereePool.release(referee);
+        }
+    }
+
     private GoColor getToMove()
     {
         return m_game.getToMove();
@@ -490,6 +581,8 @@ public class TwoGtp
             resultReferee = "?";
             if (m_referee != null)
                 resultReferee = m_referee.getResult();
+            else if (m_refereePool != null)
+                resultReferee = getPooledRefereeResult();
         }
         double cpuTimeBlack = m_black.getAndClearCpuTime();
         double cpuTimeWhite = m_white.getAndClearCpuTime();
@@ -510,7 +603,7 @@ public class TwoGtp
             }
         }
 
-        if (m_referee != null)
+        if (hasReferee())
             m_game.setResult(resultReferee);
         else if (resultBlack.equals(resultWhite) && ! resultBlack.equals("?"))
             m_game.setResult(resultBlack);
@@ -554,10 +647,13 @@ public class TwoGtp
         comment.append(isAlternated() ? resultWhite : resultBlack);
         comment.append("\nResult[White]: ");
         comment.append(isAlternated() ? resultBlack : resultWhite);
-        if (m_referee != null)
+        if (hasReferee())
         {
             comment.append("\nReferee: ");
-            comment.append(m_referee.getProgramCommand());
+            if (m_referee != null)
+                comment.append(m_referee.getProgramCommand());
+            else
+                comment.append(m_refereePool.getCommand());
             comment.append("\nResult[Referee]: ");
             comment.append(resultReferee);
         }
@@ -598,20 +694,26 @@ public class TwoGtp
                 openingFileIndex = (m_gameIndex / 2) % m_openings.getNumber();
             else
                 openingFileIndex = m_gameIndex % m_openings.getNumber();
-            try
-            {
-                m_openings.loadFile(openingFileIndex);
-            }
-            catch (Exception e)
+            GameTree tree;
+            // The openings are shared by all threads
+            synchronized (m_openings)
             {
-                throw new GtpError(e.getMessage());
+                try
+                {
+                    m_openings.loadFile(openingFileIndex);
+                }
+                catch (Exception e)
+                {
+                    throw new GtpError(e.getMessage());
+                }
+                m_openingFile = m_openings.getFilename();
+                tree = m_openings.getTree();
             }
-            m_openingFile = m_openings.getFilename();
             if (m_verbose)
                 System.err.println("Loaded opening " + m_openingFile);
-            if (m_openings.getBoardSize() != size)
+            if (tree.getBoardSize() != size)
                 throw new GtpError("Wrong board size: " + m_openingFile);
-            m_game.init(m_openings.getTree());
+            m_game.init(tree);
             m_game.setKomi(m_komi);
             m_lastOpeningNode = NodeUtil.getLast(getTree().getRootConst());
             // TODO: Check that root node contains no setup stones, if
@@ -622,6 +724,11 @@ public class TwoGtp
         synchronizeInit();
     }
 
+    private boolean hasReferee()
+    {
+        return (m_referee != null || m_refereePool != null);
+    }
+
     private String inverseResult(String result)
     {
         if (result.indexOf('B') >= 0)
@@ -637,6 +744,11 @@ public class TwoGtp
         return (m_alternate && m_gameIndex % 2 != 0);
     }
 
+    private boolean isProgramDead()
+    {
+        return (m_black.isProgramDead() || m_white.isProgramDead());
+    }
+
     private boolean isInOpening()
     {
         if (m_lastOpeningNode == null)
@@ -673,13 +785,22 @@ public class TwoGtp
 
     private void newGame(int size) throws GtpError
     {
-        if (m_resultFile != null)
-            m_gameIndex = m_resultFile.getNextGameIndex();
+        if (m_retryGameIndex >= 0)
+        {
+            m_gameIndex = m_retryGameIndex;
+            m_retryGameIndex = -1;
+        }
         else
         {
-            ++m_gameIndex;
-            if (m_numberGames > 0 && m_gameIndex > m_numberGames)
-                m_gameIndex = -1;
+            m_numberRetries = 0;
+            if (m_resultFile != null)
+                m_gameIndex = m_resultFile.getNextGameIndex();
+            else
+            {
+                ++m_gameIndex;
+                if (m_numberGames > 0 && m_gameIndex > m_numberGames)
+                    m_gameIndex = -1;
+            }
         }
         if (m_gameIndex == -1)
             throw new GtpError("maximum number of games reached");
@@ -698,6 +819,29 @@ public class TwoGtp
                             GtpUtil.getTimeSettingsCommand(m_timeSettings));
     }
 
+    /** Replace dead black or white programs by programs from the pools.
+        Does nothing, if no pools are used. */
+    private void replaceDeadPrograms() throws GtpError
+    {
+        if (m_blackPool == null || ! isProgramDead())
+            return;
+        if (m_black.isProgramDead())
+        {
+            m_blackPool.release(m_black);
+            m_black = m_blackPool.acquire();
+            m_allPrograms.set(0, m_black);
+        }
+        if (m_white.isProgramDead())
+        {
+            m_whitePool.release(m_white);
+            m_white = m_whitePool.acquire();
+            m_allPrograms.set(1, m_white);
+        }
+        for (Program program : m_allPrograms)
+            program.setLabel(m_allPrograms);
+        setDebugToComment(m_debugToComment);
+    }
+
     private void sendGenmove(GoColor color, StringBuilder response)
         throws GtpError, ErrorMessage
     {
@@ -780,6 +924,7 @@ public class TwoGtp
         {
             handleEndOfGame(false, "");
             m_gameSaved = true;
+            ++m_numberGamesPlayed;
         }
     }
 
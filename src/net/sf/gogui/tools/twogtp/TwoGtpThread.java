@@ -0,0 +1,39 @@
+// TwoGtpThread.java
+
+package net.sf.gogui.tools.twogtp;
+
+/** Thread running TwoGtp.autoPlay().
+    Used by Scheduler for playing games in several threads. */
+class TwoGtpThread
+    extends Thread
+{
+    public TwoGtpThread(TwoGtp twoGtp)
+    {
+        m_twoGtp = twoGtp;
+    }
+
+    public Exception getException()
+    {
+        return m_exception;
+    }
+
+    public void run()
+    {
+        try
+        {
+            m_twoGtp.autoPlay();
+        }
+        catch (Exception e)
+        {
+            m_exception = e;
+        }
+        finally
+        {
+            m_twoGtp.close();
+        }
+    }
+
+    private Exception m_exception;
+
+    private TwoGtp m_twoGtp;
+}
@@ -11,6 +11,8 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -229,18 +231,24 @@ public class Table
             }
         }
         for (int i = 0; i < m_rows.size(); ++i)
+            saveRow(out, i);
+    }
+
+    /** Write a single row in the format used by save().
+        @param out The writer.
+        @param row The row index. */
+    public void saveRow(Writer out, int row) throws IOException
+    {
+        ArrayList<String> values = m_rows.get(row);
+        for (int j = 0; j < m_numberColumns; ++j)
         {
-            ArrayList<String> row = m_rows.get(i);
-            for (int j = 0; j < m_numberColumns; ++j)
-            {
-                String value = row.get(j);
-                if (value != null)
-                    out.write(value);
-                if (j < m_numberColumns - 1)
-                    out.write('\t');
-                else
-                    out.write('\n');
-            }
+            String value = values.get(j);
+            if (value != null)
+                out.write(value);
+            if (j < m_numberColumns - 1)
+                out.write('\t');
+            else
+                out.write('\n');
         }
     }
 
@@ -289,17 +297,35 @@ public class Table
         m_lastRow = row;
     }
 
+    /** Sort rows by the integer values in a column.
+        The sort is stable.
+        @param column The column.
+        @param rowBegin The first row to sort.
+        @param rowEnd The row after the last row to sort. */
     public void sortByIntColumn(int column, int rowBegin,
                                 int rowEnd) throws InvalidElement
     {
-        for (int row1 = rowBegin; row1 < rowEnd - 1; ++row1)
-            for (int row2 = row1 + 1; row2 < rowEnd; ++row2)
-                if (getInt(column, row2) < getInt(column, row1))
+        int numberRows = rowEnd - rowBegin;
+        final int[] keys = new int[numberRows];
+        Integer[] order = new Integer[numberRows];
+        for (int i = 0; i < numberRows; ++i)
+        {
+            keys[i] = getInt(column, rowBegin + i);
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>()
+            {
+                public int compare(Integer i1, Integer i2)
                 {
-                    ArrayList<String> tmp = m_rows.get(row1);
-                    m_rows.set(row1, m_rows.get(row2));
-                    m_rows.set(row2, tmp);
+                    return Integer.compare(keys[i1], keys[i2]);
                 }
+            });
+        ArrayList<ArrayList<String>> sorted =
+            new ArrayList<ArrayList<String>>(numberRows);
+        for (int i = 0; i < numberRows; ++i)
+            sorted.add(m_rows.get(rowBegin + order[i]));
+        for (int i = 0; i < numberRows; ++i)
+            m_rows.set(rowBegin + i, sorted.get(i));
     }
 
     public void sortByIntColumn(String columnTitle, int rowBegin,
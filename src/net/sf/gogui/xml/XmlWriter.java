@@ -306,7 +306,9 @@ public class XmlWriter
         }
 
         ConstNode father = node.getFatherConst();
-        if (father != null && father.getChildConst() == node)
+        // Compare with equals(), because the nodes of a ConstGameTree can
+        // be views that are not identical, like in game.CompactGameTree
+        if (father != null && father.getChildConst().equals(node))
         {
             int numberSiblings = father.getNumberChildren();
             for (int i = 1; i < numberSiblings; ++i)
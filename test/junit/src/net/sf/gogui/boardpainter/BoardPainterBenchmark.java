@@ -0,0 +1,120 @@
+// BoardPainterBenchmark.java
+
+package net.sf.gogui.boardpainter;
+
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+/** Benchmark for the rendering speed of BoardPainter.
+    Draws a board with a random position (stones on 60% of the points, a
+    few labels, marks and ghost stones) into an image and prints the
+    frames per second for drawing the full board and for drawing a single
+    field after changing its stone, as GuiBoard does with its dirty
+    rectangle.
+    Usage: java net.sf.gogui.boardpainter.BoardPainterBenchmark
+    [width [board size]]
+    The default width is 1000 pixels, the default board size 19. */
+public final class BoardPainterBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        int width = 1000;
+        int size = 19;
+        if (args.length > 0)
+            width = Integer.parseInt(args[0]);
+        if (args.length > 1)
+            size = Integer.parseInt(args[1]);
+        Field[][] field = createFields(size, new Random(0));
+        BufferedImage image = BoardPainterUtil.createImage(width, width);
+        BoardPainter painter = new BoardPainter();
+        System.out.printf("Full board:   %8.1f frames/s%n",
+                          runFullBoard(painter, field, image));
+        System.out.printf("Single field: %8.1f frames/s%n",
+                          runSingleField(painter, field, image));
+    }
+
+    /** Time for each measurement in milliseconds. */
+    private static final long TIME = 3000;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardPainterBenchmark()
+    {
+    }
+
+    private static Field[][] createFields(int size, Random random)
+    {
+        Field[][] field = new Field[size][size];
+        for (int x = 0; x < size; ++x)
+            for (int y = 0; y < size; ++y)
+            {
+                field[x][y] = new Field();
+                int r = random.nextInt(100);
+                if (r < 30)
+                    field[x][y].setColor(BLACK);
+                else if (r < 60)
+                    field[x][y].setColor(WHITE);
+                else if (r < 65)
+                    field[x][y].setGhostStone(BLACK);
+                else if (r < 70)
+                    field[x][y].setLabel("A");
+                if (random.nextInt(100) < 5)
+                    field[x][y].setMark(true);
+            }
+        return field;
+    }
+
+    private static double runFullBoard(BoardPainter painter,
+                                       Field[][] field, BufferedImage image)
+    {
+        int width = image.getWidth();
+        int n = 0;
+        long start = System.currentTimeMillis();
+        long time;
+        do
+        {
+            Graphics graphics = image.getGraphics();
+            painter.draw(graphics, field, width, true);
+            graphics.dispose();
+            ++n;
+            time = System.currentTimeMillis() - start;
+        }
+        while (time < TIME);
+        return 1000. * n / time;
+    }
+
+    private static double runSingleField(BoardPainter painter,
+                                         Field[][] field,
+                                         BufferedImage image)
+    {
+        int width = image.getWidth();
+        int size = field.length;
+        int n = 0;
+        long start = System.currentTimeMillis();
+        long time;
+        do
+        {
+            int x = n % size;
+            int y = (n / size) % size;
+            Field f = field[x][y];
+            f.setColor(f.getColor() == EMPTY ? BLACK : EMPTY);
+            Point location = painter.getLocation(x, y);
+            int fieldSize = painter.getFieldSize();
+            int offset = painter.getShadowOffset()
+                - Field.getStoneMargin(fieldSize);
+            Graphics graphics = image.getGraphics();
+            graphics.setClip(location.x, location.y, fieldSize + offset,
+                             fieldSize + offset);
+            painter.draw(graphics, field, width, true);
+            graphics.dispose();
+            ++n;
+            time = System.currentTimeMillis() - start;
+        }
+        while (time < TIME);
+        return 1000. * n / time;
+    }
+}
@@ -0,0 +1,150 @@
+// BoardUpdaterBenchmark.java
+
+package net.sf.gogui.game;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Random;
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.sgf.SgfReader;
+
+/** Benchmark for BoardUpdater.
+    Walks the main variation of long games forward, backward and to random
+    nodes and prints the time per step for a BoardUpdater that is reused (as
+    in Game) and for a new BoardUpdater per step, which replays the game from
+    the root. The time per step of the reused updater should not depend on
+    the game length.
+    Usage: java net.sf.gogui.game.BoardUpdaterBenchmark [file.sgf...]
+    Without arguments, random games of increasing length are used. */
+public final class BoardUpdaterBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        ArrayList<GameTree> trees = new ArrayList<GameTree>();
+        if (args.length == 0)
+        {
+            Random random = new Random(0);
+            for (int length : new int[] { 100, 300, 1000, 3000 })
+                trees.add(createRandomGame(19, length, random));
+        }
+        else
+            for (String arg : args)
+            {
+                File file = new File(arg);
+                FileInputStream in = new FileInputStream(file);
+                try
+                {
+                    trees.add(new SgfReader(in, file, null, 0).getTree());
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        System.out.println("Moves   Walk      Reused[us]  New[us]");
+        for (GameTree tree : trees)
+        {
+            ArrayList<ConstNode> nodes = getMainVariation(tree);
+            for (Walk walk : Walk.values())
+            {
+                // Warm up
+                run(tree, nodes, walk, true);
+                run(tree, nodes, walk, false);
+                double reused = run(tree, nodes, walk, true);
+                double replayed = run(tree, nodes, walk, false);
+                System.out.printf("%-7d %-9s %11.3f %8.3f%n",
+                                  nodes.size() - 1, walk, reused, replayed);
+            }
+        }
+    }
+
+    private enum Walk
+    {
+        FORWARD,
+
+        BACKWARD,
+
+        RANDOM
+    }
+
+    private static final int MIN_STEPS = 20000;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardUpdaterBenchmark()
+    {
+    }
+
+    private static GameTree createRandomGame(int size, int length,
+                                             Random random)
+    {
+        GameTree tree = new GameTree(size, null, null, null, null);
+        Board board = new Board(size);
+        Node node = tree.getRoot();
+        for (int i = 0; i < length; ++i)
+        {
+            GoColor c = board.getToMove();
+            GoPoint p = null;
+            for (int j = 0; j < 20 && p == null; ++j)
+            {
+                GoPoint q = GoPoint.get(random.nextInt(size),
+                                        random.nextInt(size));
+                if (board.getColor(q) == EMPTY && ! board.isKo(q)
+                    && ! board.isSuicide(c, q))
+                    p = q;
+            }
+            Move move = Move.get(c, p);
+            board.play(move);
+            Node child = new Node(move);
+            node.append(child);
+            node = child;
+        }
+        return tree;
+    }
+
+    private static ArrayList<ConstNode> getMainVariation(ConstGameTree tree)
+    {
+        ArrayList<ConstNode> nodes = new ArrayList<ConstNode>();
+        ConstNode node = tree.getRootConst();
+        while (node != null)
+        {
+            nodes.add(node);
+            node = node.getChildConst();
+        }
+        return nodes;
+    }
+
+    /** Run a walk.
+        @return Time per step in microseconds. */
+    private static double run(ConstGameTree tree, ArrayList<ConstNode> nodes,
+                              Walk walk, boolean reuse)
+    {
+        Random random = new Random(0);
+        Board board = new Board(tree.getBoardSize());
+        BoardUpdater updater = new BoardUpdater();
+        int n = nodes.size();
+        // Replaying from the root is slow for long games, don't run as many
+        // steps
+        int steps = (reuse ? Math.max(MIN_STEPS, n) : Math.max(n, 200));
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; ++i)
+        {
+            ConstNode node;
+            if (walk == Walk.FORWARD)
+                node = nodes.get(i % n);
+            else if (walk == Walk.BACKWARD)
+                node = nodes.get(n - 1 - i % n);
+            else
+                node = nodes.get(random.nextInt(n));
+            if (! reuse)
+                updater = new BoardUpdater();
+            updater.update(tree, node, board);
+        }
+        long time = System.nanoTime() - start;
+        return time / 1000.0 / steps;
+    }
+}
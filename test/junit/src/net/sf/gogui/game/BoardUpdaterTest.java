@@ -2,9 +2,12 @@
 
 package net.sf.gogui.game;
 
+import java.util.ArrayList;
+import java.util.Random;
 import net.sf.gogui.go.Board;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoColor;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
@@ -59,6 +62,82 @@ public final class BoardUpdaterTest
         assertEquals(BLACK, board.getColor(GoPoint.get(3, 1)));
     }
 
+    /** Test that incremental updates give the same board as updating
+        from the root.
+        Walks randomly in a tree with variations, setup nodes and player
+        changes and compares the board with a board updated by a new
+        BoardUpdater after each step. */
+    public void testIncremental()
+    {
+        Random random = new Random(1);
+        GameTree tree = new GameTree(9, null, null, null, null);
+        ArrayList<Node> nodes = new ArrayList<Node>();
+        nodes.add(tree.getRoot());
+        for (int i = 0; i < 600; ++i)
+        {
+            Node father;
+            if (random.nextInt(10) == 0)
+                father = nodes.get(random.nextInt(nodes.size()));
+            else
+                father = nodes.get(nodes.size() - 1);
+            Node node = new Node();
+            GoPoint p = GoPoint.get(random.nextInt(9), random.nextInt(9));
+            int r = random.nextInt(40);
+            if (r == 0)
+                node.addStone(WHITE, p);
+            else if (r == 1)
+                node.setPlayer(WHITE);
+            else
+            {
+                GoColor c = (NodeUtil.getMoveNumber(father) % 2 == 0 ?
+                             BLACK : WHITE);
+                node.setMove(Move.get(c, random.nextInt(20) == 0 ? null : p));
+            }
+            father.append(node);
+            nodes.add(node);
+        }
+        Board board = new Board(9);
+        for (int i = 0; i < 2000; ++i)
+        {
+            Node node = nodes.get(random.nextInt(nodes.size()));
+            // Walk forward and backward in most steps
+            if (i % 3 == 1 && node.getFather() != null)
+                node = node.getFather();
+            else if (i % 3 == 2 && node.getChild() != null)
+                node = node.getChild();
+            m_updater.update(tree, node, board);
+            Board expected = new Board(9);
+            new BoardUpdater().update(tree, node, expected);
+            checkEquals(expected, board);
+        }
+    }
+
+    /** Test that incremental updates handle handicap stones stored as moves.
+        See the special case for files from the KGS Go server in
+        BoardUpdater.update */
+    public void testIncrementalHandicapMoves()
+    {
+        GameTree tree = new GameTree(19, null, null, null, null);
+        tree.getGameInfo(tree.getRoot()).setHandicap(2);
+        Node node1 = new Node(Move.get(BLACK, GoPoint.get(3, 3)));
+        tree.getRoot().append(node1);
+        Node node2 = new Node(Move.get(BLACK, GoPoint.get(15, 15)));
+        node1.append(node2);
+        Node node3 = new Node(Move.get(WHITE, GoPoint.get(3, 15)));
+        node2.append(node3);
+        Board board = new Board(19);
+        m_updater.update(tree, node3, board);
+        assertTrue(board.isSetupHandicap());
+        assertEquals(1, board.getNumberMoves());
+        m_updater.update(tree, node1, board);
+        assertFalse(board.isSetupHandicap());
+        assertEquals(1, board.getNumberMoves());
+        assertEquals(WHITE, board.getToMove());
+        m_updater.update(tree, node3, board);
+        assertTrue(board.isSetupHandicap());
+        assertEquals(WHITE, board.getColor(GoPoint.get(3, 15)));
+    }
+
     /** Test that setting a stone on an point occupied by the second move
         in a game works.
         Checks for a bug that was only triggered, if the changed stone color
@@ -82,4 +161,17 @@ public final class BoardUpdaterTest
     }
 
     private BoardUpdater m_updater;
+
+    private static void checkEquals(Board expected, Board board)
+    {
+        for (GoPoint p : expected)
+            assertEquals(expected.getColor(p), board.getColor(p));
+        assertEquals(expected.getToMove(), board.getToMove());
+        assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+        assertEquals(expected.getCaptured(BLACK), board.getCaptured(BLACK));
+        assertEquals(expected.getCaptured(WHITE), board.getCaptured(WHITE));
+        assertEquals(expected.isSetupHandicap(), board.isSetupHandicap());
+        for (GoPoint p : expected)
+            assertEquals(expected.isKo(p), board.isKo(p));
+    }
 }
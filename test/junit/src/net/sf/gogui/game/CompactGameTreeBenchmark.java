@@ -0,0 +1,89 @@
+// CompactGameTreeBenchmark.java
+
+package net.sf.gogui.game;
+
+import java.util.ArrayList;
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.Move;
+
+/** Benchmark for the memory requirement of CompactGameTree.
+    Generates a random tree resembling a large analysis tree (moves in all
+    nodes, short comments in some nodes, many variations) and prints the
+    heap size per node of the tree of Node objects and of the compact copy.
+    Usage: java -Xmx4g net.sf.gogui.game.CompactGameTreeBenchmark
+    [number nodes]
+    The default number of nodes is 5000000. */
+public final class CompactGameTreeBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        int numberNodes = 5000000;
+        if (args.length > 0)
+            numberNodes = Integer.parseInt(args[0]);
+        long base = getUsedMemory();
+        long start = System.currentTimeMillis();
+        GameTree tree = createTree(numberNodes, new Random(0));
+        long timeTree = System.currentTimeMillis() - start;
+        long memoryTree = getUsedMemory() - base;
+        start = System.currentTimeMillis();
+        CompactGameTree compact = new CompactGameTree(tree);
+        long timeCompact = System.currentTimeMillis() - start;
+        tree = null;
+        long memoryCompact = getUsedMemory() - base;
+        System.out.println("Nodes:   " + compact.getNumberNodes());
+        System.out.printf("Node:    %6.1f bytes/node %6d ms%n",
+                          (double)memoryTree / numberNodes, timeTree);
+        System.out.printf("Compact: %6.1f bytes/node %6d ms%n",
+                          (double)memoryCompact / numberNodes, timeCompact);
+        System.out.printf("Ratio:   %6.1f%n",
+                          (double)memoryTree / memoryCompact);
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private CompactGameTreeBenchmark()
+    {
+    }
+
+    /** Create a random tree.
+        Each node has a move; every 10th node has a comment. With a
+        probability of 5%, a node gets a second child, which starts a new
+        variation. The variations are continued in random order. */
+    private static GameTree createTree(int numberNodes, Random random)
+    {
+        GameTree tree = new GameTree();
+        ArrayList<Node> leaves = new ArrayList<Node>();
+        leaves.add(tree.getRoot());
+        for (int i = 1; i < numberNodes; ++i)
+        {
+            int index = random.nextInt(leaves.size());
+            Node father = leaves.get(index);
+            Move fatherMove = father.getMove();
+            GoColor c = (fatherMove == null || fatherMove.getColor() == WHITE
+                         ? BLACK : WHITE);
+            Node node = new Node(Move.get(c, random.nextInt(19),
+                                          random.nextInt(19)));
+            if (i % 10 == 0)
+                node.setComment("Value " + random.nextInt(1000));
+            father.append(node);
+            if (random.nextInt(100) < 5)
+                leaves.add(node);
+            else
+                leaves.set(index, node);
+        }
+        return tree;
+    }
+
+    private static long getUsedMemory() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; ++i)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
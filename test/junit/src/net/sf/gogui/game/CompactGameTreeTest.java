@@ -0,0 +1,158 @@
+// CompactGameTreeTest.java
+
+package net.sf.gogui.game;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfWriter;
+import net.sf.gogui.xml.XmlWriter;
+
+public final class CompactGameTreeTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CompactGameTreeTest.class);
+    }
+
+    public void testComment()
+    {
+        GameTree tree = new GameTree();
+        Node node = new Node();
+        StringBuilder comment = new StringBuilder();
+        for (int i = 0; i < 1000; ++i)
+            comment.append("\u00e4");
+        node.setComment(comment.toString());
+        tree.getRoot().append(node);
+        tree.getRoot().append(new Node());
+        CompactGameTree compact = new CompactGameTree(tree);
+        ConstNode root = compact.getRootConst();
+        assertFalse(root.hasComment());
+        assertNull(root.getComment());
+        assertEquals(comment.toString(), root.getChildConst(0).getComment());
+        assertFalse(root.getChildConst(1).hasComment());
+    }
+
+    /** Test that the SGF file of the FF4 example is written in the same
+        way from the compact tree as from the original tree. */
+    public void testFF4Example() throws Exception
+    {
+        InputStream in =
+            getClass().getResourceAsStream("/net/sf/gogui/sgf/ff4_ex.1.sgf");
+        GameTree tree = new SgfReader(in, null, null, 0).getTree();
+        CompactGameTree compact = new CompactGameTree(tree);
+        assertEquals(NodeUtil.subtreeSize(tree.getRoot()),
+                     compact.getNumberNodes());
+        assertEquals(tree.getBoardSize(), compact.getBoardSize());
+        assertTrue(compact.hasVariations());
+        assertEquals(write(tree), write(compact));
+    }
+
+    /** Test that the XML file of the FF4 example is written in the same
+        way from the compact tree as from the original tree. */
+    public void testFF4ExampleXml() throws Exception
+    {
+        InputStream in =
+            getClass().getResourceAsStream("/net/sf/gogui/sgf/ff4_ex.1.sgf");
+        GameTree tree = new SgfReader(in, null, null, 0).getTree();
+        String xml = writeXml(tree);
+        assertTrue(xml.contains("<Variation>"));
+        assertEquals(xml, writeXml(new CompactGameTree(tree)));
+    }
+
+    public void testMoves()
+    {
+        GameTree tree = new GameTree();
+        Move[] moves = { Move.get(BLACK, 0, 0), Move.get(WHITE, 24, 24),
+                         Move.getPass(BLACK), Move.getPass(WHITE),
+                         Move.get(WHITE, 3, 15) };
+        Node node = tree.getRoot();
+        for (Move move : moves)
+        {
+            Node child = new Node(move);
+            node.append(child);
+            node = child;
+        }
+        CompactGameTree compact = new CompactGameTree(tree);
+        assertFalse(compact.hasVariations());
+        ConstNode compactNode = compact.getRootConst();
+        assertNull(compactNode.getMove());
+        for (Move move : moves)
+        {
+            compactNode = compactNode.getChildConst();
+            assertSame(move, compactNode.getMove());
+            assertEquals(move.getColor().otherColor(),
+                         compactNode.getToMove());
+        }
+        assertFalse(compactNode.hasChildren());
+        assertNull(compactNode.getChildConst());
+    }
+
+    public void testStructure()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        Node child0 = new Node(Move.get(BLACK, 1, 1));
+        Node child1 = new Node(Move.get(BLACK, 2, 2));
+        Node child2 = new Node(Move.get(BLACK, 3, 3));
+        root.append(child0);
+        root.append(child1);
+        root.append(child2);
+        child1.append(new Node(Move.get(WHITE, 4, 4)));
+        child2.setLabel(GoPoint.get(5, 5), "A");
+        child2.setValue(0.5f);
+        CompactGameTree compact = new CompactGameTree(tree);
+        assertEquals(5, compact.getNumberNodes());
+        ConstNode compactRoot = compact.getRootConst();
+        assertSame(compactRoot, compact.getRootConst());
+        assertFalse(compactRoot.hasFather());
+        assertEquals(3, compactRoot.getNumberChildren());
+        ConstNode node1 = compactRoot.getChildConst(1);
+        assertEquals(node1, compactRoot.getChildConst(1));
+        assertEquals(node1.hashCode(),
+                     compactRoot.getChildConst(1).hashCode());
+        assertSame(compactRoot, node1.getFatherConst());
+        assertEquals(1, compactRoot.getChildIndex(node1));
+        assertEquals(-1, compactRoot.getChildIndex(child1));
+        assertEquals(compactRoot.getChildConst(2),
+                     compactRoot.variationAfter(node1));
+        assertEquals(compactRoot.getChildConst(0),
+                     compactRoot.variationBefore(node1));
+        assertNull(compactRoot.variationBefore(compactRoot.getChildConst()));
+        ConstNode node2 = compactRoot.getChildConst(2);
+        assertNull(compactRoot.variationAfter(node2));
+        assertEquals(Move.get(WHITE, 4, 4),
+                     node1.getChildConst().getMove());
+        assertEquals(node1, node1.getChildConst().getFatherConst());
+        assertEquals("A", node2.getLabel(GoPoint.get(5, 5)));
+        assertEquals(0.5f, node2.getValue());
+        assertTrue(Float.isNaN(node1.getValue()));
+        assertNotNull(compact.getGameInfoConst(node2));
+        assertFalse(NodeUtil.isInMainVariation(node1));
+        assertTrue(NodeUtil.isInMainVariation(compactRoot.getChildConst()));
+    }
+
+    private static String write(ConstGameTree tree) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, "GoGui", "1");
+        return out.toString("UTF-8");
+    }
+
+    private static String writeXml(ConstGameTree tree) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new XmlWriter(out, tree, "GoGui:1");
+        return out.toString("UTF-8");
+    }
+}
@@ -47,6 +47,35 @@ public final class NodeTest
         assertTrue(child2.getFather() == node);
     }
 
+    public void testChildLoader()
+    {
+        final Node node = new Node();
+        ChildLoader loader = new ChildLoader() {
+                public int getNumberDescendants() {
+                    return 2;
+                }
+
+                public void loadChildren(Node father) {
+                    assertSame(node, father);
+                    father.append(new Node());
+                    father.append(new Node());
+                }
+            };
+        node.setChildLoader(loader);
+        assertTrue(node.hasChildren());
+        assertSame(loader, node.getChildLoader());
+        assertEquals(3, NodeUtil.subtreeSize(node));
+        assertSame(loader, node.getChildLoader());
+        assertEquals(2, node.getNumberChildren());
+        assertNull(node.getChildLoader());
+        Node child = node.getChild(1);
+        node.unloadChildren(loader);
+        assertNull(child.getFather());
+        assertSame(loader, node.getChildLoader());
+        node.append(new Node());
+        assertEquals(3, node.getNumberChildren());
+    }
+
     public void testIsChildOf()
     {
         Node father = new Node();
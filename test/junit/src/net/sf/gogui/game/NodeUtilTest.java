@@ -134,6 +134,24 @@ public final class NodeUtilTest
         assertEquals(12, NodeUtil.subtreeSize(m_node0));
     }
 
+    /** Test subtree size of a tree that is too deep for a recursive
+        traversal. */
+    public void testSubtreeSizeDeep()
+    {
+        Node root = new Node();
+        Node node = root;
+        for (int i = 0; i < 100000; ++i)
+        {
+            Node child = new Node();
+            node.append(child);
+            node.append(new Node());
+            node = child;
+        }
+        assertEquals(200001, NodeUtil.subtreeSize(root));
+        assertTrue(NodeUtil.subtreeGreaterThan(root, 200000));
+        assertFalse(NodeUtil.subtreeGreaterThan(root, 200001));
+    }
+
     public void testTruncateChildren()
     {
         Node node = new Node();
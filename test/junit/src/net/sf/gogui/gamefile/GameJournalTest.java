@@ -0,0 +1,251 @@
+// GameJournalTest.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import net.sf.gogui.game.CompactGameTree;
+import net.sf.gogui.game.ConstGameInfo;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.Game;
+import net.sf.gogui.game.MarkType;
+import net.sf.gogui.game.StringInfo;
+import net.sf.gogui.game.StringInfoColor;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.sgf.SgfWriter;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class GameJournalTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GameJournalTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_dir = File.createTempFile("gogui", "");
+        m_dir.delete();
+        m_dir.mkdir();
+        m_file = new File(m_dir, "journal");
+    }
+
+    public void tearDown()
+    {
+        for (File file : m_dir.listFiles())
+            file.delete();
+        m_dir.delete();
+    }
+
+    /** Test that property changes of older nodes are written as records
+        without a new base. */
+    public void testChangedProperties() throws Exception
+    {
+        Game game = new Game(9);
+        play(game, BLACK, 2, 2);
+        play(game, WHITE, 6, 6);
+        ConstNode node = game.getCurrentNode();
+        game.setComment("Comment", node);
+        File gameFile = save(game);
+        GameJournal journal = new GameJournal(m_file);
+        journal.setBase(gameFile);
+        game.clearAppended();
+        game.setComment("Comment", game.getRoot());
+        game.gotoNode(node.getFatherConst(), null);
+        play(game, BLACK, 3, 3);
+        game.gotoNode(node, null);
+        game.addMarked(GoPoint.get(4, 4), MarkType.CIRCLE);
+        game.setLabel(GoPoint.get(5, 5), "A");
+        append(journal, game);
+        // Change an older node and a node appended in an earlier record
+        game.setComment(null, node);
+        game.setComment("Variation", node.getFatherConst().getChildConst(1));
+        append(journal, game);
+        journal.close(false);
+        GameJournalReader reader = new GameJournalReader(m_file);
+        assertNull(reader.getWarnings());
+        assertEquals(1, reader.getNumberNodes());
+        assertEquals(toSgf(game.getTree()), toSgf(reader.getTree()));
+    }
+
+    /** Test that changes of the game info by the setters of Game, e.g.
+        the result at the end of a game, are written. */
+    public void testChangedGameInfo() throws Exception
+    {
+        Game game = new Game(9);
+        GameJournal journal = createJournal(game);
+        play(game, BLACK, 2, 2);
+        append(journal, game);
+        game.setResult("B+R");
+        game.setPlayer(WHITE, "Program");
+        game.setKomi(new Komi(0.5));
+        assertTrue(game.getChangedNodes().contains(game.getRoot()));
+        play(game, WHITE, 6, 6);
+        append(journal, game);
+        journal.close(false);
+        GameJournalReader reader = new GameJournalReader(m_file);
+        ConstGameInfo info = reader.getTree().getGameInfoConst(
+                                           reader.getTree().getRootConst());
+        assertEquals("B+R", info.get(StringInfo.RESULT));
+        assertEquals("Program", info.get(StringInfoColor.NAME, WHITE));
+        assertEquals(new Komi(0.5), info.getKomi());
+        assertEquals(toSgf(game.getTree()), toSgf(reader.getTree()));
+    }
+
+    public void testIncompleteRecord() throws Exception
+    {
+        Game game = new Game(9);
+        GameJournal journal = createJournal(game);
+        play(game, BLACK, 2, 2);
+        append(journal, game);
+        String expected = toSgf(game.getTree());
+        play(game, WHITE, 6, 6);
+        append(journal, game);
+        journal.close(false);
+        RandomAccessFile file = new RandomAccessFile(m_file, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+        GameJournalReader reader = new GameJournalReader(m_file);
+        assertNotNull(reader.getWarnings());
+        assertEquals(expected, toSgf(reader.getTree()));
+    }
+
+    public void testLocked() throws Exception
+    {
+        GameJournal journal = new GameJournal(m_file);
+        try
+        {
+            new GameJournal(m_file);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+        journal.close(true);
+        new GameJournal(m_file).close(true);
+    }
+
+    public void testModifiedBase() throws Exception
+    {
+        Game game = new Game(9);
+        File gameFile = save(game);
+        GameJournal journal = new GameJournal(m_file);
+        journal.setBase(gameFile);
+        journal.close(false);
+        assertTrue(gameFile.setLastModified(gameFile.lastModified() - 2000));
+        try
+        {
+            new GameJournalReader(m_file);
+            fail();
+        }
+        catch (ErrorMessage e)
+        {
+        }
+    }
+
+    /** Test restoring a game that was saved to a file with variations added
+        after saving. */
+    public void testRestoreFile() throws Exception
+    {
+        Game game = new Game(9);
+        play(game, BLACK, 2, 2);
+        play(game, WHITE, 6, 6);
+        File gameFile = save(game);
+        GameJournal journal = new GameJournal(m_file);
+        journal.setBase(gameFile);
+        game.clearAppended();
+        ConstNode node = game.getCurrentNode().getFatherConst();
+        play(game, BLACK, 3, 3);
+        play(game, WHITE, 5, 5);
+        game.gotoNode(node, null);
+        play(game, WHITE, 2, 6);
+        // Changes of appended nodes are written with the nodes
+        game.setComment("Comment");
+        append(journal, game);
+        play(game, BLACK, 6, 2);
+        append(journal, game);
+        journal.close(false);
+        GameJournalReader reader = new GameJournalReader(m_file);
+        assertNull(reader.getWarnings());
+        assertEquals(gameFile, reader.getFile().m_file);
+        assertEquals(4, reader.getNumberNodes());
+        assertEquals(toSgf(game.getTree()), toSgf(reader.getTree()));
+    }
+
+    /** Test restoring a game with a base copy written by the journal. */
+    public void testRestoreCopy() throws Exception
+    {
+        Game game = new Game(9);
+        GameJournal journal = createJournal(game);
+        play(game, BLACK, 2, 2);
+        play(game, WHITE, 6, 6);
+        append(journal, game);
+        // Deleting nodes requires a new base
+        game.truncate();
+        assertNull(game.getAppendedNodes());
+        journal.setBase(new CompactGameTree(game.getTree()));
+        game.clearAppended();
+        play(game, BLACK, 4, 4);
+        append(journal, game);
+        journal.close(false);
+        GameJournalReader reader = new GameJournalReader(m_file);
+        assertNull(reader.getFile());
+        assertEquals(1, reader.getNumberNodes());
+        assertEquals(toSgf(game.getTree()), toSgf(reader.getTree()));
+    }
+
+    private File m_dir;
+
+    private File m_file;
+
+    private static void append(GameJournal journal, Game game)
+    {
+        List<ConstNode> nodes = game.getAppendedNodes();
+        assertNotNull(nodes);
+        journal.append(game.getTree(), nodes, game.getChangedNodes());
+        game.clearAppended();
+    }
+
+    private GameJournal createJournal(Game game) throws Exception
+    {
+        GameJournal journal = new GameJournal(m_file);
+        journal.setBase(new CompactGameTree(game.getTree()));
+        game.clearAppended();
+        return journal;
+    }
+
+    private static void play(Game game, GoColor c, int x, int y)
+    {
+        game.play(Move.get(c, GoPoint.get(x, y)));
+    }
+
+    private File save(Game game) throws Exception
+    {
+        GameFile gameFile = new GameFile();
+        gameFile.m_file = new File(m_dir, "game.sgf");
+        gameFile.m_format = GameFile.Format.SGF;
+        new GameWriter(gameFile, game.getTree(), null, null);
+        return gameFile.m_file;
+    }
+
+    private static String toSgf(ConstGameTree tree) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, null, null);
+        return out.toString(SgfWriter.ENCODING);
+    }
+}
@@ -0,0 +1,82 @@
+// BoardBenchmark.java
+
+package net.sf.gogui.go;
+
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Benchmark for Board.
+    Plays random games without suicides and prints the number of moves per
+    second. Each move is chosen with isSuicide() and each game is taken back
+    with undo(), so the benchmark measures the operations used by the game
+    tree navigation and the legality checks of the GUI.
+    Usage: java net.sf.gogui.go.BoardBenchmark [seconds] */
+public final class BoardBenchmark
+{
+    public static void main(String args[])
+    {
+        double seconds = 2;
+        if (args.length > 0)
+            seconds = Double.parseDouble(args[0]);
+        System.out.println("Size  Moves/s");
+        for (int size : new int[] { 9, 19 })
+        {
+            // Warm up
+            run(size, seconds / 2);
+            System.out.printf("%-5d %8.0f%n", size, run(size, seconds));
+        }
+    }
+
+    /** Maximum number of moves per game. */
+    private static final int MAX_MOVES = 1000;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardBenchmark()
+    {
+    }
+
+    /** Run random games for a given time.
+        @return Number of played and undone moves per second. */
+    private static double run(int size, double seconds)
+    {
+        Random random = new Random(0);
+        Board board = new Board(size);
+        GoPoint[] empty = new GoPoint[size * size];
+        long nuMoves = 0;
+        long start = System.nanoTime();
+        long end = start + (long)(seconds * 1e9);
+        long time;
+        do
+        {
+            int nuPass = 0;
+            while (nuPass < 2 && board.getNumberMoves() < MAX_MOVES)
+            {
+                GoColor c = board.getToMove();
+                int nuEmpty = 0;
+                for (GoPoint p : board)
+                    if (board.getColor(p) == EMPTY)
+                        empty[nuEmpty++] = p;
+                GoPoint move = null;
+                while (nuEmpty > 0)
+                {
+                    int i = random.nextInt(nuEmpty);
+                    GoPoint p = empty[i];
+                    if (! board.isKo(p) && ! board.isSuicide(c, p))
+                    {
+                        move = p;
+                        break;
+                    }
+                    empty[i] = empty[--nuEmpty];
+                }
+                board.play(c, move);
+                nuPass = (move == null ? nuPass + 1 : 0);
+            }
+            nuMoves += 2 * board.getNumberMoves();
+            while (board.getNumberMoves() > 0)
+                board.undo();
+            time = System.nanoTime();
+        }
+        while (time < end);
+        return nuMoves / ((time - start) / 1e9);
+    }
+}
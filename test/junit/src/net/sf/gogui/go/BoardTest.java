@@ -2,6 +2,8 @@
 
 package net.sf.gogui.go;
 
+import java.util.ArrayList;
+import java.util.Random;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
@@ -63,6 +65,42 @@ public final class BoardTest
         assertFalse(board.contains(GoPoint.get(20, 20)));
     }
 
+    public void testGetChangedPoints()
+    {
+        Board board = new Board(19);
+        PointList points = new PointList();
+        long counter = board.getChangeCounter();
+        assertTrue(board.getChangedPoints(counter, points));
+        assertTrue(points.isEmpty());
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(1, 0));
+        board.play(BLACK, null);
+        board.play(WHITE, GoPoint.get(0, 1));
+        assertTrue(board.getChangedPoints(counter, points));
+        assertEquals(4, points.size());
+        assertTrue(points.contains(GoPoint.get(0, 0)));
+        assertTrue(points.contains(GoPoint.get(0, 1)));
+        counter = board.getChangeCounter();
+        board.undo();
+        assertTrue(board.getChangedPoints(counter, points));
+        assertEquals(2, points.size());
+        assertTrue(points.contains(GoPoint.get(0, 0)));
+        assertTrue(points.contains(GoPoint.get(0, 1)));
+        counter = board.getChangeCounter();
+        board.init(19);
+        assertFalse(board.getChangedPoints(counter, points));
+        counter = board.getChangeCounter();
+        for (int i = 0; i < 1000; ++i)
+        {
+            board.play(BLACK, GoPoint.get(3, 3));
+            board.undo();
+        }
+        assertFalse(board.getChangedPoints(counter, points));
+        counter = board.getChangeCounter();
+        assertTrue(board.getChangedPoints(counter, points));
+        assertTrue(points.isEmpty());
+    }
+
     /** Test Board.getKilled(). */
     public void testGetKilled()
     {
@@ -118,6 +156,74 @@ public final class BoardTest
         assertTrue(suicide.contains(GoPoint.get(1, 0)));
     }
 
+    /** Test Board.getHash().
+        Checks that the hash code is the same for the same position reached
+        in different ways and that it covers stones, the color to move and
+        the ko point. */
+    public void testGetHash()
+    {
+        Board board = new Board(19);
+        long empty = board.getHash();
+        board.play(BLACK, GoPoint.get(3, 3));
+        board.play(WHITE, GoPoint.get(15, 15));
+        long position = board.getHash();
+        assertTrue(position != empty);
+        board.undo(2);
+        assertEquals(empty, board.getHash());
+        Board other = new Board(19);
+        other.play(BLACK, GoPoint.get(15, 15));
+        other.play(WHITE, GoPoint.get(3, 3));
+        assertTrue(position != other.getHash());
+        other.init(19);
+        other.setup(new PointList(GoPoint.get(3, 3)),
+                    new PointList(GoPoint.get(15, 15)), BLACK);
+        assertEquals(position, other.getHash());
+        other.setToMove(WHITE);
+        assertTrue(position != other.getHash());
+        // Ko point
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 0));
+        board.setup(black, white, WHITE);
+        board.play(WHITE, GoPoint.get(0, 0));
+        assertTrue(board.isKo(GoPoint.get(1, 0)));
+        other.init(19);
+        white.add(GoPoint.get(0, 0));
+        other.setup(new PointList(GoPoint.get(0, 1)), white, BLACK);
+        assertTrue(board.getHash() != other.getHash());
+        board.play(BLACK, GoPoint.get(5, 5));
+        board.play(WHITE, GoPoint.get(6, 6));
+        other.play(BLACK, GoPoint.get(5, 5));
+        other.play(WHITE, GoPoint.get(6, 6));
+        assertEquals(board.getHash(), other.getHash());
+    }
+
+    /** Test Board.getHash(int) with rotated positions. */
+    public void testGetHashRotated()
+    {
+        int size = 9;
+        PointList black = new PointList();
+        black.add(GoPoint.get(2, 3));
+        black.add(GoPoint.get(6, 1));
+        PointList white = new PointList(GoPoint.get(4, 7));
+        Board board = new Board(size);
+        board.setup(black, white, WHITE);
+        board.play(WHITE, GoPoint.get(0, 8));
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+        {
+            Board rotated = new Board(size);
+            rotated.setup(rotate(i, black, size), rotate(i, white, size),
+                          WHITE);
+            rotated.play(WHITE, BoardUtil.rotate(i, GoPoint.get(0, 8), size));
+            assertEquals(board.getHash(i), rotated.getHash());
+            if (i > 0)
+                assertTrue(board.getHash(i) != board.getHash());
+        }
+    }
+
     /** Test Board.isKo(). */
     public void testIsKo()
     {
@@ -226,6 +332,86 @@ public final class BoardTest
         assertEquals(BLACK, board.getToMove());
     }
 
+    /** Test the blocks and captures in random games against a flood fill.
+        Also checks that undo restores all positions of the game. */
+    public void testRandomGame()
+    {
+        Random random = new Random(0);
+        for (int size : new int[] { 5, 9 })
+        {
+            Board board = new Board(size);
+            ArrayList<Long> hashes = new ArrayList<Long>();
+            ArrayList<Integer> captured = new ArrayList<Integer>();
+            for (int i = 0; i < 400; ++i)
+            {
+                hashes.add(board.getHash());
+                captured.add(board.getCaptured(BLACK)
+                             + 1000 * board.getCaptured(WHITE));
+                GoColor c = board.getToMove();
+                GoPoint p = GoPoint.get(random.nextInt(size),
+                                        random.nextInt(size));
+                if (board.getColor(p) != EMPTY || board.isKo(p))
+                    p = null;
+                else
+                {
+                    boolean isSuicide = board.isSuicide(c, p);
+                    assertEquals(isSuicide, isSuicide(board, c, p));
+                    // Allow some suicides
+                    if (isSuicide && random.nextInt(4) > 0)
+                        p = null;
+                }
+                board.play(c, p);
+                checkBlocks(board);
+                if (random.nextInt(10) == 0)
+                {
+                    board.undo();
+                    hashes.remove(hashes.size() - 1);
+                    captured.remove(captured.size() - 1);
+                    checkBlocks(board);
+                }
+            }
+            for (int i = hashes.size() - 1; i >= 0; --i)
+            {
+                board.undo();
+                assertEquals(hashes.get(i).longValue(), board.getHash());
+                assertEquals(captured.get(i).intValue(),
+                             board.getCaptured(BLACK)
+                             + 1000 * board.getCaptured(WHITE));
+                checkBlocks(board);
+            }
+        }
+    }
+
+    /** Test that moves after playing on an occupied point use a consistent
+        block state. */
+    public void testPlayOnOccupiedCapture()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(0, 1));
+        assertEquals(1, board.getKilled().size());
+        checkBlocks(board);
+        board.undo();
+        board.undo();
+        checkBlocks(board);
+        assertEquals(WHITE, board.getColor(GoPoint.get(0, 0)));
+        board.undo();
+        assertEquals(BLACK, board.getColor(GoPoint.get(0, 0)));
+    }
+
+    public void testInitHash()
+    {
+        Board board = new Board(19);
+        long empty = board.getHash();
+        board.play(BLACK, GoPoint.get(18, 18));
+        board.init(9);
+        board.init(19);
+        assertEquals(empty, board.getHash());
+        assertEquals(EMPTY, board.getColor(GoPoint.get(18, 18)));
+    }
+
     public void testUndo()
     {
         Board board = new Board(19);
@@ -234,4 +420,73 @@ public final class BoardTest
         assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
         assertEquals(BLACK, board.getToMove());
     }
+
+    /** Compare the blocks of the board with a flood fill.
+        Checks that no block is without liberties. */
+    private static void checkBlocks(Board board)
+    {
+        for (GoPoint p : board)
+        {
+            GoColor c = board.getColor(p);
+            if (c == EMPTY)
+                continue;
+            PointList stones = new PointList();
+            board.getStones(p, c, stones);
+            PointList expected = new PointList();
+            boolean hasLiberties = floodFill(board, p, expected);
+            assertEquals(expected.size(), stones.size());
+            for (GoPoint stone : expected)
+                assertTrue(stones.contains(stone));
+            assertTrue(hasLiberties);
+        }
+    }
+
+    /** Find the stones of a block with a flood fill.
+        @return true, if the block has liberties. */
+    private static boolean floodFill(ConstBoard board, GoPoint p,
+                                     PointList stones)
+    {
+        GoColor c = board.getColor(p);
+        boolean hasLiberties = false;
+        stones.add(p);
+        for (int i = 0; i < stones.size(); ++i)
+            for (GoPoint adj : board.getAdjacent(stones.get(i)))
+            {
+                GoColor adjColor = board.getColor(adj);
+                if (adjColor == EMPTY)
+                    hasLiberties = true;
+                else if (adjColor == c && ! stones.contains(adj))
+                    stones.add(adj);
+            }
+        return hasLiberties;
+    }
+
+    /** Check suicide with a flood fill. */
+    private static boolean isSuicide(ConstBoard board, GoColor c, GoPoint p)
+    {
+        Board copy = new Board(board.getSize());
+        PointList black = new PointList();
+        PointList white = new PointList();
+        for (GoPoint q : board)
+            if (board.getColor(q) == BLACK)
+                black.add(q);
+            else if (board.getColor(q) == WHITE)
+                white.add(q);
+        (c == BLACK ? black : white).add(p);
+        copy.setup(black, white, null);
+        for (GoPoint adj : board.getAdjacent(p))
+            if (copy.getColor(adj) == c.otherColor()
+                && ! floodFill(copy, adj, new PointList()))
+                return false;
+        return ! floodFill(copy, p, new PointList());
+    }
+
+    private static PointList rotate(int rotationMode, ConstPointList points,
+                                    int size)
+    {
+        PointList result = new PointList();
+        for (GoPoint p : points)
+            result.add(BoardUtil.rotate(rotationMode, p, size));
+        return result;
+    }
 }
@@ -0,0 +1,193 @@
+// GameRulerSynchronizerTest.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.gtp.GtpEngineClient;
+import net.sf.gogui.gtp.GtpError;
+import net.sf.gogui.gtp.GtpExpectEngine;
+
+public final class GameRulerSynchronizerTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GameRulerSynchronizerTest.class);
+    }
+
+    public void setUp() throws GtpError
+    {
+        m_expect = new GtpExpectEngine(null);
+        m_gtp = new GtpEngineClient(m_expect);
+        m_board = new Board(3);
+        m_synchronizer = new GameRulerSynchronizer(m_gtp);
+    }
+
+    public void testBasic() throws GtpError
+    {
+        querySupportedCommands("undo");
+        expect("clear_board", "");
+        expectFirstPosition(". . .\n. . .\n. . .", "b");
+        setPosition();
+        assertExpectQueueEmpty();
+        assertEquals(BLACK, m_synchronizer.getSideToMove());
+        expect("play B A1", "");
+        expectPosition(". . .\n. . .\nX . .", "w");
+        setPosition(BLACK, 0, 0);
+        assertExpectQueueEmpty();
+        assertEquals(BLACK, m_board.getColor(GoPoint.get(0, 0)));
+        assertEquals(WHITE, m_synchronizer.getSideToMove());
+        expect("play W B2", "");
+        expectPosition(". . .\n. O .\nX . .", "b");
+        setPosition(BLACK, 0, 0, WHITE, 1, 1);
+        assertExpectQueueEmpty();
+        assertEquals(WHITE, m_board.getColor(GoPoint.get(1, 1)));
+        // Visited position, no commands
+        setPosition(BLACK, 0, 0);
+        assertExpectQueueEmpty();
+        assertEquals(EMPTY, m_board.getColor(GoPoint.get(1, 1)));
+        assertEquals(WHITE, m_synchronizer.getSideToMove());
+        expect("undo", "");
+        m_synchronizer.synchronize();
+        assertExpectQueueEmpty();
+        expect("play W C3", "");
+        expectPosition(". . O\n. . .\nX . .", "b");
+        setPosition(BLACK, 0, 0, WHITE, 2, 2);
+        assertExpectQueueEmpty();
+        // Taking back two moves is more expensive than replaying from
+        // clear_board
+        setPosition();
+        assertExpectQueueEmpty();
+        assertEquals(EMPTY, m_board.getColor(GoPoint.get(0, 0)));
+        expect("clear_board", "");
+        m_synchronizer.synchronize();
+        assertExpectQueueEmpty();
+    }
+
+    public void testLegalMoves() throws GtpError
+    {
+        m_synchronizer = GenericBoard.getSynchronizer(m_gtp);
+        querySupportedCommands("gogui-rules_legal_moves");
+        expect("clear_board", "");
+        expectFirstPosition(". . .\n. . .\n. . .", "b");
+        setPosition();
+        expect("gogui-rules_legal_moves", "A10 B2 pass");
+        assertFalse(GenericBoard.isLegalMove(m_gtp,
+                                             Move.get(BLACK, 0, 0)));
+        assertExpectQueueEmpty();
+        assertTrue(GenericBoard.isLegalMove(m_gtp, Move.get(BLACK, 1, 1)));
+        assertFalse(GenericBoard.isLegalMove(m_gtp, Move.get(WHITE, 1, 1)));
+        assertTrue(GenericBoard.isPassLegal(m_gtp));
+        assertFalse(GenericBoard.isGameOver(m_gtp));
+        assertExpectQueueEmpty();
+        assertEquals(1, m_synchronizer.getLegalMovesCacheMisses());
+        assertEquals(4, m_synchronizer.getLegalMovesCacheHits());
+        expect("play B B2", "");
+        expectPosition(". . .\n. X .\n. . .", "w");
+        setPosition(BLACK, 1, 1);
+        expect("gogui-rules_legal_moves", "");
+        assertTrue(GenericBoard.isGameOver(m_gtp));
+        assertFalse(GenericBoard.isPassLegal(m_gtp));
+        assertExpectQueueEmpty();
+        assertEquals(2, m_synchronizer.getLegalMovesCacheMisses());
+        // Legal moves of a visited position are cached
+        setPosition();
+        assertTrue(GenericBoard.isLegalMove(m_gtp, Move.get(BLACK, 1, 1)));
+        assertExpectQueueEmpty();
+    }
+
+    public void testPlaySequence() throws GtpError
+    {
+        querySupportedCommands("gogui-play_sequence");
+        expect("clear_board", "");
+        expect("gogui-play_sequence B A1 W B2 B C3", "");
+        expectFirstPosition(". . X\n. O .\nX . .", "w");
+        setPosition(BLACK, 0, 0, WHITE, 1, 1, BLACK, 2, 2);
+        assertExpectQueueEmpty();
+        // Undo not supported
+        expect("clear_board", "");
+        expect("gogui-play_sequence B A1 W B2", "");
+        expectPosition(". . .\n. O .\nX . .", "b");
+        setPosition(BLACK, 0, 0, WHITE, 1, 1);
+        assertExpectQueueEmpty();
+        assertEquals(EMPTY, m_board.getColor(GoPoint.get(2, 2)));
+    }
+
+    public void testSetOutOfSync() throws GtpError
+    {
+        querySupportedCommands("undo");
+        expect("clear_board", "");
+        expect("play B A1", "");
+        expectFirstPosition(". . .\n. . .\nX . .", "w");
+        setPosition(BLACK, 0, 0);
+        assertExpectQueueEmpty();
+        m_synchronizer.setOutOfSync();
+        expect("clear_board", "");
+        expect("play B A1", "");
+        m_synchronizer.synchronize();
+        assertExpectQueueEmpty();
+        m_synchronizer.synchronize();
+        assertExpectQueueEmpty();
+    }
+
+    private Board m_board;
+
+    private GtpExpectEngine m_expect;
+
+    private GtpEngineClient m_gtp;
+
+    private GameRulerSynchronizer m_synchronizer;
+
+    private void assertExpectQueueEmpty()
+    {
+        assertTrue(m_expect.isExpectQueueEmpty());
+    }
+
+    private void expect(String command, String response)
+    {
+        m_expect.expect(command, response);
+    }
+
+    private void expectPosition(String board, String toMove)
+    {
+        expect("gogui-rules_board", board);
+        expect("gogui-rules_side_to_move", toMove);
+    }
+
+    /** Expect the first position after clear_board.
+        The board size of the ruler is queried only once. */
+    private void expectFirstPosition(String board, String toMove)
+    {
+        expect("gogui-rules_board", board);
+        expect("gogui-rules_board_size", "3");
+        expect("gogui-rules_side_to_move", toMove);
+    }
+
+    private void querySupportedCommands(String extra) throws GtpError
+    {
+        expect("list_commands",
+               "gogui-rules_board\ngogui-rules_board_size\n"
+               + "gogui-rules_side_to_move\n" + extra);
+        m_gtp.querySupportedCommands();
+        assertExpectQueueEmpty();
+    }
+
+    /** Set position.
+        @param moves Triples of color, x, y */
+    private void setPosition(Object... moves) throws GtpError
+    {
+        ArrayList<Move> list = new ArrayList<Move>();
+        for (int i = 0; i < moves.length; i += 3)
+            list.add(Move.get((GoColor)moves[i], (Integer)moves[i + 1],
+                              (Integer)moves[i + 2]));
+        m_synchronizer.setPosition(3, list, m_board);
+    }
+}
@@ -65,4 +65,27 @@ public final class MarkerTest
         marker.clear(p3);
         assertTrue(marker.isCleared());
     }
-}
\ No newline at end of file
+
+    public void testClearAfterClear()
+    {
+        Marker marker = new Marker(19);
+        GoPoint p1 = GoPoint.get(0, 0);
+        GoPoint p2 = GoPoint.get(5, 5);
+        for (int i = 0; i < 3; ++i)
+        {
+            marker.set(p1);
+            marker.set(p1);
+            assertFalse(marker.isCleared());
+            assertFalse(marker.get(p2));
+            marker.clear(p2);
+            marker.clear(p1);
+            assertTrue(marker.isCleared());
+            marker.set(p1);
+            marker.set(p2);
+            marker.clear();
+            assertTrue(marker.isCleared());
+            assertFalse(marker.get(p1));
+            assertFalse(marker.get(p2));
+        }
+    }
+}
@@ -0,0 +1,186 @@
+// GtpClientTest.java
+
+package net.sf.gogui.gtp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+public final class GtpClientTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpClientTest.class);
+    }
+
+    public void setUp() throws IOException, GtpError
+    {
+        m_engine = new GtpEngine(null);
+        m_engine.register("echo", new GtpCallback() {
+                public void run(GtpCommand cmd) {
+                    cmd.setResponse(cmd.getArgLine()); } });
+        m_engine.register("fail", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    throw new GtpError("failed"); } });
+        m_engine.register("sleep", new GtpCallback() {
+                public void run(GtpCommand cmd) throws GtpError {
+                    sleep(cmd.getIntArg()); } });
+        m_gtp = new GtpEngineConnection(m_engine).getGtpClient();
+    }
+
+    public void tearDown() throws GtpError
+    {
+        m_gtp.send("quit");
+        m_gtp.close();
+    }
+
+    /** Test that an empty response to a numbered command is not confused
+        with the command ID. */
+    public void testAutoNumber() throws GtpError
+    {
+        ((GtpClient)m_gtp).setAutoNumber(true);
+        assertEquals("", m_gtp.send("echo"));
+        assertEquals("foo bar", m_gtp.send("echo foo bar"));
+    }
+
+    public void testMetrics() throws GtpError
+    {
+        ((GtpClient)m_gtp).setAutoNumber(true);
+        m_gtp.send("echo foo");
+        m_gtp.send("echo bar");
+        try
+        {
+            m_gtp.send("fail");
+            fail();
+        }
+        catch (GtpError e)
+        {
+        }
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("echo 1");
+        commands.add("sleep 20");
+        m_gtp.sendBatch(commands);
+        GtpMetrics metrics = m_gtp.getMetrics();
+        assertEquals(3, metrics.get("echo").getCount());
+        assertEquals(0, metrics.get("echo").getErrors());
+        assertEquals(1, metrics.get("fail").getCount());
+        assertEquals(1, metrics.get("fail").getErrors());
+        assertTrue(metrics.get("sleep").getMax() >= 0.02);
+        assertNull(metrics.get("quit"));
+        assertTrue(metrics.getCharsOut() > 0);
+        assertTrue(metrics.getCharsIn() > 0);
+    }
+
+    public void testSendAsync() throws Exception
+    {
+        ArrayList<CompletableFuture<String>> futures =
+            new ArrayList<CompletableFuture<String>>();
+        for (int i = 0; i < 100; ++i)
+            futures.add(m_gtp.sendAsync("echo " + i));
+        for (int i = 0; i < 100; ++i)
+            assertEquals(Integer.toString(i), futures.get(i).get());
+        assertEquals("foo", m_gtp.send("echo foo"));
+    }
+
+    /** Test that a cancelled command that was not sent yet is not sent. */
+    public void testSendAsyncCancel() throws Exception
+    {
+        CompletableFuture<String> sleep = m_gtp.sendAsync("sleep 200");
+        CompletableFuture<String> fail = m_gtp.sendAsync("fail");
+        CompletableFuture<String> echo = m_gtp.sendAsync("echo foo");
+        assertTrue(fail.cancel(true));
+        assertEquals("", sleep.get());
+        assertEquals("foo", echo.get());
+        assertTrue(fail.isCancelled());
+    }
+
+    public void testSendAsyncError() throws Exception
+    {
+        try
+        {
+            m_gtp.sendAsync("fail").get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof GtpError);
+            assertEquals("failed", e.getCause().getMessage());
+        }
+        assertEquals("foo", m_gtp.sendAsync("echo foo").get());
+    }
+
+    /** Test that a timeout completes the future and that the next command
+        gets its own response. */
+    public void testSendAsyncTimeout() throws Exception
+    {
+        CompletableFuture<String> sleep =
+            m_gtp.sendAsync("sleep 500", 50, null);
+        try
+        {
+            sleep.get();
+            fail();
+        }
+        catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof GtpError);
+        }
+        assertEquals("foo", m_gtp.sendAsync("echo foo").get());
+    }
+
+    public void testSendBatch() throws GtpError
+    {
+        ArrayList<String> commands = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i)
+            commands.add("echo " + i);
+        ArrayList<String> responses = m_gtp.sendBatch(commands);
+        assertEquals(1000, responses.size());
+        for (int i = 0; i < 1000; ++i)
+            assertEquals(Integer.toString(i), responses.get(i));
+        assertEquals("foo", m_gtp.send("echo foo"));
+    }
+
+    /** Test that all commands are executed, if a command fails, and that
+        no responses are left for the next command. */
+    public void testSendBatchError() throws GtpError
+    {
+        ArrayList<String> commands = new ArrayList<String>();
+        commands.add("echo 1");
+        commands.add("fail");
+        commands.add("fail");
+        commands.add("echo 2");
+        try
+        {
+            m_gtp.sendBatch(commands);
+            fail();
+        }
+        catch (GtpError e)
+        {
+            assertEquals("failed", e.getMessage());
+            assertEquals("fail", e.getCommand());
+        }
+        assertEquals("foo", m_gtp.send("echo foo"));
+    }
+
+    private GtpEngine m_engine;
+
+    private GtpClientBase m_gtp;
+
+    private static void sleep(int millis) throws GtpError
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            throw new GtpError("interrupted");
+        }
+    }
+}
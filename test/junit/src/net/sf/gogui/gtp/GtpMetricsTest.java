@@ -0,0 +1,81 @@
+// GtpMetricsTest.java
+
+package net.sf.gogui.gtp;
+
+public final class GtpMetricsTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GtpMetricsTest.class);
+    }
+
+    public void testAdd()
+    {
+        GtpMetrics metrics1 = new GtpMetrics();
+        metrics1.record("genmove b", 2000000, false);
+        metrics1.recordCharsOut(10);
+        GtpMetrics metrics2 = new GtpMetrics();
+        metrics2.record("genmove w", 3000000, true);
+        metrics2.record("play b a1", 1000, false);
+        metrics2.recordCharsIn(5);
+        metrics1.add(metrics2);
+        assertEquals(2, metrics1.get("genmove").getCount());
+        assertEquals(1, metrics1.get("genmove").getErrors());
+        assertEquals(0.005, metrics1.get("genmove").getTotal(), 1e-12);
+        assertEquals(0.003, metrics1.get("genmove").getMax(), 1e-12);
+        assertEquals(3, metrics1.getTotal().getCount());
+        assertEquals(10, metrics1.getCharsOut());
+        assertEquals(5, metrics1.getCharsIn());
+    }
+
+    public void testCommandName()
+    {
+        GtpMetrics metrics = new GtpMetrics();
+        metrics.record("play b a1", 1000, false);
+        metrics.record("12 play w b2", 1000, false);
+        metrics.record("  showboard ", 1000, false);
+        assertEquals(2, metrics.get("play").getCount());
+        assertEquals(1, metrics.get("showboard").getCount());
+        assertEquals(2, metrics.getCommands().size());
+    }
+
+    /** Test that quantiles are upper bounds within the bin resolution. */
+    public void testQuantile()
+    {
+        GtpMetrics metrics = new GtpMetrics();
+        for (int i = 1; i <= 100; ++i)
+            metrics.record("genmove", i * 1000000L, false);
+        GtpMetrics.CommandMetrics genmove = metrics.get("genmove");
+        assertEquals(0.0505, genmove.getMean(), 1e-12);
+        checkQuantile(0.050, genmove.getQuantile(0.5));
+        checkQuantile(0.090, genmove.getQuantile(0.9));
+        checkQuantile(0.099, genmove.getQuantile(0.99));
+        assertEquals(0.1, genmove.getQuantile(1), 1e-12);
+        assertEquals(0, new GtpMetrics().getTotal().getQuantile(0.5), 0);
+    }
+
+    /** Test that a snapshot does not change with later commands. */
+    public void testSnapshot()
+    {
+        GtpMetrics metrics = new GtpMetrics();
+        metrics.record("genmove", 1000, false);
+        GtpMetrics snapshot = metrics.getSnapshot();
+        metrics.record("genmove", 1000, false);
+        assertEquals(1, snapshot.get("genmove").getCount());
+        assertEquals(2, metrics.get("genmove").getCount());
+    }
+
+    /** Check that a quantile is at least the exact value and less than the
+        width of a histogram bin (factor 2^(1/4)) above. */
+    private static void checkQuantile(double expected, double quantile)
+    {
+        assertTrue(quantile >= expected);
+        assertTrue(quantile < expected * 1.19);
+    }
+}
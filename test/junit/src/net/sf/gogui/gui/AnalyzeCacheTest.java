@@ -0,0 +1,86 @@
+// AnalyzeCacheTest.java
+
+package net.sf.gogui.gui;
+
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.gtp.AnalyzeType;
+
+public final class AnalyzeCacheTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(AnalyzeCacheTest.class);
+    }
+
+    public void testGet()
+    {
+        AnalyzeCache cache = new AnalyzeCache(10);
+        Board board = new Board(9);
+        Komi komi = new Komi(6.5);
+        cache.put(new AnalyzeCache.Key("estimate_score", board, komi), "A");
+        board.play(BLACK, GoPoint.get(2, 2));
+        cache.put(new AnalyzeCache.Key("estimate_score", board, komi), "B");
+        assertEquals("B", cache.get(new AnalyzeCache.Key("estimate_score",
+                                                         board, komi)));
+        assertNull(cache.get(new AnalyzeCache.Key("final_status_list dead",
+                                                  board, komi)));
+        assertNull(cache.get(new AnalyzeCache.Key("estimate_score", board,
+                                                  new Komi(0))));
+        board.undo();
+        assertEquals("A", cache.get(new AnalyzeCache.Key("estimate_score",
+                                                         board, komi)));
+        // Same stones, different color to move
+        board.setToMove(WHITE);
+        assertNull(cache.get(new AnalyzeCache.Key("estimate_score", board,
+                                                  komi)));
+        assertEquals(2, cache.getNumberHits());
+        assertEquals(3, cache.getNumberMisses());
+        assertEquals(40, cache.getHitRate());
+        cache.clear();
+        assertEquals(0, cache.getSize());
+    }
+
+    public void testIsCacheable()
+    {
+        assertTrue(AnalyzeCache.isCacheable(AnalyzeType.DBOARD));
+        assertTrue(AnalyzeCache.isCacheable(AnalyzeType.GFX));
+        assertFalse(AnalyzeCache.isCacheable(AnalyzeType.NONE));
+        assertFalse(AnalyzeCache.isCacheable(AnalyzeType.PARAM));
+        assertFalse(AnalyzeCache.isCacheable(AnalyzeType.STRING));
+    }
+
+    public void testLeastRecentlyUsed()
+    {
+        AnalyzeCache cache = new AnalyzeCache(2);
+        Board board = new Board(9);
+        AnalyzeCache.Key key1 = new AnalyzeCache.Key("cmd1", board, null);
+        AnalyzeCache.Key key2 = new AnalyzeCache.Key("cmd2", board, null);
+        AnalyzeCache.Key key3 = new AnalyzeCache.Key("cmd3", board, null);
+        cache.put(key1, "1");
+        cache.put(key2, "2");
+        assertEquals("1", cache.get(key1));
+        cache.put(key3, "3");
+        assertEquals(2, cache.getSize());
+        assertEquals("1", cache.get(key1));
+        assertNull(cache.get(key2));
+        assertEquals("3", cache.get(key3));
+    }
+
+    public void testZeroSize()
+    {
+        AnalyzeCache cache = new AnalyzeCache(0);
+        AnalyzeCache.Key key = new AnalyzeCache.Key("cmd", new Board(9), null);
+        cache.put(key, "1");
+        assertNull(cache.get(key));
+    }
+}
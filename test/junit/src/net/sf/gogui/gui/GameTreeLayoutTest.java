@@ -0,0 +1,168 @@
+// GameTreeLayoutTest.java
+
+package net.sf.gogui.gui;
+
+import java.util.HashSet;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.Node;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.Move;
+
+public final class GameTreeLayoutTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GameTreeLayoutTest.class);
+    }
+
+    /** Create the tree.
+        <pre>
+        root - a - a1 - a2
+             |   \ a1'
+             + b - b1
+             \ c
+        </pre>
+        Node b is not expanded. */
+    public void setUp()
+    {
+        m_root = new Node();
+        m_a = append(m_root, Move.get(BLACK, 0, 0));
+        m_a1 = append(m_a, Move.get(WHITE, 1, 1));
+        m_a2 = append(m_a1, Move.get(BLACK, 2, 2));
+        m_a1Other = append(m_a, Move.get(WHITE, 3, 3));
+        m_b = append(m_root, Move.get(BLACK, 4, 4));
+        m_b1 = append(m_b, Move.get(WHITE, 5, 5));
+        m_c = append(m_root, null);
+        m_expanded = new HashSet<ConstNode>();
+        m_expanded.add(m_root);
+        m_expanded.add(m_a);
+        m_expanded.add(m_a1);
+    }
+
+    public void testAddSingleChild()
+    {
+        GameTreeLayout layout = new GameTreeLayout(m_root, m_expanded, false);
+        Node c1 = append(m_c, Move.get(BLACK, 6, 6));
+        int c1Index = layout.addSingleChild(layout.find(m_c, -1), c1);
+        Node c2 = append(c1, Move.get(WHITE, 7, 7));
+        int c2Index = layout.addSingleChild(c1Index, c2);
+        checkPosition(layout, c1Index, 2, 3);
+        checkPosition(layout, c2Index, 3, 3);
+        assertEquals(2, layout.getMoveNumber(c2Index));
+        // Node added to a column above an existing node
+        Node d = append(m_a1Other, Move.get(BLACK, 8, 8));
+        int dIndex = layout.addSingleChild(layout.find(m_a1Other, -1), d);
+        checkPosition(layout, dIndex, 3, 1);
+        assertEquals(3, layout.getColumnSize(3));
+        assertEquals(layout.find(m_a2, -1), layout.getColumnNode(3, 0));
+        assertEquals(dIndex, layout.getColumnNode(3, 1));
+        assertEquals(c2Index, layout.getColumnNode(3, 2));
+        assertEquals(dIndex, layout.findAt(3, 1));
+        assertEquals(dIndex, layout.find(d, -1));
+        assertEquals(dIndex, layout.find(d, layout.find(m_a1Other, -1)));
+        assertEquals(4, layout.getNumberColumns());
+        assertEquals(4, layout.getNumberRows());
+    }
+
+    public void testFind()
+    {
+        GameTreeLayout layout = new GameTreeLayout(m_root, m_expanded, false);
+        assertEquals(0, layout.find(m_root, -1));
+        int a1Other = layout.find(m_a1Other, -1);
+        assertEquals(m_a1Other, layout.getNode(a1Other));
+        // Hints
+        int a = layout.find(m_a, -1);
+        assertEquals(a, layout.find(m_a, a));
+        assertEquals(a, layout.find(m_a, a1Other));
+        assertEquals(a1Other, layout.find(m_a1Other, a));
+        assertEquals(a1Other, layout.find(m_a1Other, 0));
+        // Hidden node
+        assertEquals(-1, layout.find(m_b1, -1));
+        assertEquals(-1, layout.find(m_b1, layout.find(m_b, -1)));
+        // Node of another tree
+        assertEquals(-1, layout.find(new Node(), -1));
+    }
+
+    public void testFindInColumn()
+    {
+        GameTreeLayout layout = new GameTreeLayout(m_root, m_expanded, false);
+        assertEquals(3, layout.getColumnSize(1));
+        assertEquals(-1, layout.findInColumn(1, -1));
+        assertEquals(0, layout.findInColumn(1, 0));
+        // Node a is the last node above row 1, its junction crosses row 1
+        assertEquals(0, layout.findInColumn(1, 1));
+        assertEquals(1, layout.findInColumn(1, 2));
+        assertEquals(2, layout.findInColumn(1, 10));
+        assertEquals(layout.find(m_c, -1), layout.getColumnNode(1, 2));
+        assertEquals(-1, layout.findAt(1, 1));
+        assertEquals(-1, layout.findAt(4, 0));
+        assertEquals(-1, layout.findAt(-1, 0));
+        assertEquals(layout.find(m_a1Other, -1), layout.findAt(2, 1));
+    }
+
+    public void testLayout()
+    {
+        GameTreeLayout layout = new GameTreeLayout(m_root, m_expanded, true);
+        assertEquals(7, layout.getNumberNodes());
+        assertEquals(4, layout.getNumberColumns());
+        assertEquals(4, layout.getNumberRows());
+        checkPosition(layout, layout.find(m_root, -1), 0, 0);
+        checkPosition(layout, layout.find(m_a, -1), 1, 0);
+        checkPosition(layout, layout.find(m_a1, -1), 2, 0);
+        checkPosition(layout, layout.find(m_a2, -1), 3, 0);
+        checkPosition(layout, layout.find(m_a1Other, -1), 2, 1);
+        checkPosition(layout, layout.find(m_b, -1), 1, 2);
+        checkPosition(layout, layout.find(m_c, -1), 1, 3);
+        assertEquals(3, layout.getMoveNumber(layout.find(m_a2, -1)));
+        assertEquals(2, layout.getMoveNumber(layout.find(m_a1Other, -1)));
+        assertEquals(0, layout.getMoveNumber(layout.find(m_root, -1)));
+        assertEquals(1, layout.getSubtreeSize(layout.find(m_b, -1)));
+        assertEquals(-1, layout.getSubtreeSize(layout.find(m_a, -1)));
+        assertEquals(-1, layout.getSubtreeSize(layout.find(m_c, -1)));
+        int a = layout.find(m_a, -1);
+        int a1 = layout.getFirstChild(a);
+        assertEquals(m_a1, layout.getNode(a1));
+        assertEquals(a, layout.getFather(a1));
+        assertEquals(m_a1Other, layout.getNode(layout.getNextSibling(a1)));
+        assertEquals(-1, layout.getFirstChild(layout.find(m_b, -1)));
+    }
+
+    private HashSet<ConstNode> m_expanded;
+
+    private Node m_root;
+
+    private Node m_a;
+
+    private Node m_a1;
+
+    private Node m_a1Other;
+
+    private Node m_a2;
+
+    private Node m_b;
+
+    private Node m_b1;
+
+    private Node m_c;
+
+    private static Node append(Node father, Move move)
+    {
+        Node node = new Node(move);
+        father.append(node);
+        return node;
+    }
+
+    private static void checkPosition(GameTreeLayout layout, int index,
+                                      int column, int row)
+    {
+        assertEquals(column, layout.getColumn(index));
+        assertEquals(row, layout.getRow(index));
+    }
+}
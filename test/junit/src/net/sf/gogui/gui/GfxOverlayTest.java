@@ -0,0 +1,101 @@
+// GfxOverlayTest.java
+
+package net.sf.gogui.gui;
+
+import java.awt.Color;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.InvalidPointException;
+
+public final class GfxOverlayTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GfxOverlayTest.class);
+    }
+
+    public void testClear() throws Exception
+    {
+        GuiBoard guiBoard = new GuiBoard(9);
+        GfxOverlay overlay = GfxOverlay.parse("MARK A1\nCLEAR\nSQUARE B2");
+        assertEquals(3, overlay.getNumberCommands());
+        overlay.show(guiBoard, null, null);
+        assertFalse(guiBoard.getMark(parse("A1")));
+        assertTrue(guiBoard.getMarkSquare(parse("B2")));
+    }
+
+    public void testMarks() throws Exception
+    {
+        GuiBoard guiBoard = new GuiBoard(9);
+        GfxOverlay overlay =
+            GfxOverlay.parse("circle A1 PASS\n"
+                             + "MARK B2 xyz\n"
+                             + "UNKNOWN C3\n"
+                             + "TRIANGLE C3\n"
+                             + "BLACK D4\n"
+                             + "WHITE E5\n"
+                             + "COLOR red F6\n"
+                             + "LABEL G7 foo H8\n"
+                             + "INFLUENCE J9 0.5 A2 x\n");
+        assertEquals(8, overlay.getNumberCommands());
+        overlay.show(guiBoard, null, null);
+        assertTrue(guiBoard.getMarkCircle(parse("A1")));
+        assertTrue(guiBoard.getMark(parse("B2")));
+        assertTrue(guiBoard.getMarkTriangle(parse("C3")));
+        assertEquals(BLACK, guiBoard.getFieldConst(parse("D4"))
+                     .getTerritory());
+        assertEquals(WHITE, guiBoard.getFieldConst(parse("E5"))
+                     .getTerritory());
+        assertEquals(Color.red, guiBoard.getFieldConst(parse("F6"))
+                     .getFieldBackground());
+        assertEquals("foo", guiBoard.getLabel(parse("G7")));
+        assertEquals("", guiBoard.getLabel(parse("H8")));
+        assertTrue(guiBoard.getFieldConst(parse("J9")).isInfluenceSet());
+        assertFalse(guiBoard.getFieldConst(parse("A2")).isInfluenceSet());
+    }
+
+    /** Test that points that are valid on larger boards are ignored. */
+    public void testPointsNotOnBoard() throws Exception
+    {
+        GuiBoard guiBoard = new GuiBoard(9);
+        GfxOverlay.parse("MARK A1 T19\nLABEL K10 x").show(guiBoard, null,
+                                                          null);
+        assertTrue(guiBoard.getMark(parse("A1")));
+    }
+
+    public void testText()
+    {
+        StringBuilder buffer = new StringBuilder();
+        GfxOverlay overlay = GfxOverlay.parse("TEXT foo  bar\nTEXT baz");
+        overlay.show(new GuiBoard(9), null, buffer);
+        assertEquals("foo  bar\nbaz", buffer.toString());
+    }
+
+    /** Test that moves of a variation that are not on the board are not
+        counted. */
+    public void testVariation() throws Exception
+    {
+        GuiBoard guiBoard = new GuiBoard(9);
+        GfxOverlay.parse("VAR b A1 w T19 b pass w B2 x C3").show(guiBoard,
+                                                                null, null);
+        assertEquals(BLACK, guiBoard.getFieldConst(parse("A1"))
+                     .getGhostStone());
+        assertEquals("1", guiBoard.getLabel(parse("A1")));
+        assertEquals(WHITE, guiBoard.getFieldConst(parse("B2"))
+                     .getGhostStone());
+        assertEquals("3", guiBoard.getLabel(parse("B2")));
+        assertNull(guiBoard.getFieldConst(parse("C3")).getGhostStone());
+    }
+
+    private static GoPoint parse(String s) throws InvalidPointException
+    {
+        return GoPoint.parsePoint(s, 9);
+    }
+}
@@ -0,0 +1,57 @@
+// GuiBoardTest.java
+
+package net.sf.gogui.gui;
+
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+public final class GuiBoardTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(GuiBoardTest.class);
+    }
+
+    public void testSetStones()
+    {
+        Board board = new Board(9);
+        GuiBoard guiBoard = new GuiBoard(9);
+        GoPoint a1 = GoPoint.get(0, 0);
+        GoPoint b1 = GoPoint.get(1, 0);
+        GoPoint a2 = GoPoint.get(0, 1);
+        board.play(BLACK, a1);
+        guiBoard.setStones(board);
+        assertEquals(BLACK, guiBoard.getFieldConst(a1).getColor());
+        board.play(WHITE, b1);
+        board.play(BLACK, null);
+        board.play(WHITE, a2);
+        guiBoard.setStones(board);
+        assertEquals(EMPTY, guiBoard.getFieldConst(a1).getColor());
+        assertEquals(WHITE, guiBoard.getFieldConst(b1).getColor());
+        assertEquals(WHITE, guiBoard.getFieldConst(a2).getColor());
+        // Stones changed outside of setStones() must be updated
+        guiBoard.setColor(a1, BLACK);
+        guiBoard.setStones(board);
+        assertEquals(EMPTY, guiBoard.getFieldConst(a1).getColor());
+        board.undo();
+        board.undo();
+        guiBoard.setStones(board);
+        assertEquals(WHITE, guiBoard.getFieldConst(b1).getColor());
+        assertEquals(EMPTY, guiBoard.getFieldConst(a2).getColor());
+        assertEquals(BLACK, guiBoard.getFieldConst(a1).getColor());
+        // A different board must be fully synchronized
+        Board other = new Board(9);
+        guiBoard.setStones(other);
+        assertEquals(EMPTY, guiBoard.getFieldConst(a1).getColor());
+        assertEquals(EMPTY, guiBoard.getFieldConst(b1).getColor());
+    }
+}
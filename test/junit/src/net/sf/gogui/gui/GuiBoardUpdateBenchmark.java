@@ -0,0 +1,192 @@
+// GuiBoardUpdateBenchmark.java
+
+package net.sf.gogui.gui;
+
+import java.util.ArrayList;
+import java.util.Random;
+import javax.swing.JComponent;
+import javax.swing.RepaintManager;
+import javax.swing.SwingUtilities;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.Game;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+/** Benchmark for updating GuiBoard from a board after each move.
+    Replays a random game move by move, like the forward key or a game
+    between two programs does. After each move, the board is updated with
+    GuiBoardUtil.updateFromGoBoard() with move numbers shown, cleared with
+    GuiBoard.clearAll() and updated again, like GoGui does in updateViews()
+    and resetBoard(). Prints the time and the number of repaint requests
+    for fields per move. The time of the incremental update is compared to
+    setting the color of every point, which was done before the board
+    reported its changed points, and checked against a budget of BUDGET
+    microseconds per move. The game info panel and the comment are
+    updated separately while stepping forward through the game, which has
+    a comment at every tenth move.
+    Usage: java net.sf.gogui.gui.GuiBoardUpdateBenchmark [number games] */
+public final class GuiBoardUpdateBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        int numberGames = 200;
+        if (args.length > 0)
+            numberGames = Integer.parseInt(args[0]);
+        ArrayList<Move> moves = createGame(19, 300, new Random(0));
+        GuiBoard guiBoard = new GuiBoard(19);
+        CountingRepaintManager repaintManager = new CountingRepaintManager();
+        RepaintManager.setCurrentManager(repaintManager);
+        // Warm up
+        run(guiBoard, moves, 20, false);
+        run(guiBoard, moves, 20, true);
+        double full = run(guiBoard, moves, numberGames, false);
+        repaintManager.m_count = 0;
+        double incremental = run(guiBoard, moves, numberGames, true);
+        double repaints =
+            (double)repaintManager.m_count / (numberGames * moves.size());
+        runViews(moves, 20);
+        double views = runViews(moves, numberGames);
+        System.out.printf("Full:        %8.2f us/move%n", full);
+        System.out.printf("Incremental: %8.2f us/move%n", incremental);
+        System.out.printf("Repaints:    %8.2f fields/move%n", repaints);
+        System.out.printf("Views:       %8.2f us/move%n", views);
+        System.out.printf("Budget:      %8d us/move (%s)%n", BUDGET,
+                          incremental <= BUDGET ? "ok" : "exceeded");
+    }
+
+    /** Budget for updating the board after a move in microseconds.
+        Leaves most of a frame at 60 frames per second for painting the
+        changed fields and for the other views. */
+    private static final int BUDGET = 100;
+
+    /** Counts the repaint requests instead of painting. */
+    private static final class CountingRepaintManager
+        extends RepaintManager
+    {
+        public long m_count;
+
+        public void addDirtyRegion(JComponent component, int x, int y,
+                                   int width, int height)
+        {
+            ++m_count;
+        }
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private GuiBoardUpdateBenchmark()
+    {
+    }
+
+    /** Create a random game of legal moves without suicide. */
+    private static ArrayList<Move> createGame(int size, int numberMoves,
+                                              Random random)
+    {
+        Board board = new Board(size);
+        ArrayList<Move> moves = new ArrayList<Move>();
+        while (moves.size() < numberMoves)
+        {
+            GoColor c = board.getToMove();
+            GoPoint p = GoPoint.get(random.nextInt(size),
+                                    random.nextInt(size));
+            if (board.getColor(p) != EMPTY || board.isSuicide(c, p)
+                || board.isKo(p))
+                continue;
+            Move move = Move.get(c, p);
+            board.play(move);
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    /** Replay the game and update the GUI board after each move.
+        The updates are done in the event dispatch thread. The time
+        includes the handling of the repaint requests of GuiBoard, which
+        is done in a later event.
+        @return The time per move in microseconds. */
+    private static double run(final GuiBoard guiBoard,
+                              ArrayList<Move> moves, int numberGames,
+                              final boolean incremental)
+        throws Exception
+    {
+        final Board board = new Board(guiBoard.getBoardSize());
+        Runnable nothing = new Runnable() {
+                public void run() {
+                } };
+        long time = 0;
+        for (int i = 0; i < numberGames; ++i)
+        {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                    public void run() {
+                        board.clear();
+                        guiBoard.clearAll();
+                    } });
+            for (final Move move : moves)
+            {
+                long start = System.nanoTime();
+                SwingUtilities.invokeAndWait(new Runnable() {
+                        public void run() {
+                            update(guiBoard, board, move, incremental);
+                        } });
+                SwingUtilities.invokeAndWait(nothing);
+                time += System.nanoTime() - start;
+            }
+        }
+        return time / 1000. / (numberGames * moves.size());
+    }
+
+    /** Step forward through the game and update the game info panel and
+        the comment after each move in the event dispatch thread. The time
+        does not include going to the next node in the game.
+        @return The time per move in microseconds. */
+    private static double runViews(ArrayList<Move> moves, int numberGames)
+        throws Exception
+    {
+        final Game game = new Game(19);
+        for (int i = 0; i < moves.size(); ++i)
+        {
+            game.play(moves.get(i));
+            if (i % 10 == 0)
+                game.setComment("Comment at move " + (i + 1));
+        }
+        final GameInfoPanel gameInfoPanel = new GameInfoPanel(game);
+        final Comment comment = new Comment(new Comment.Listener() {
+                public void changed(String comment) {
+                }
+
+                public void textSelected(String text) {
+                } });
+        long time = 0;
+        for (int i = 0; i < numberGames; ++i)
+        {
+            game.gotoNode(game.getTree().getRootConst(), null);
+            while (game.getCurrentNode().hasChildren())
+            {
+                game.gotoNode(game.getCurrentNode().getChildConst(), null);
+                long start = System.nanoTime();
+                SwingUtilities.invokeAndWait(new Runnable() {
+                        public void run() {
+                            ConstNode node = game.getCurrentNode();
+                            gameInfoPanel.update();
+                            comment.setComment(node.getComment());
+                        } });
+                time += System.nanoTime() - start;
+            }
+        }
+        return time / 1000. / (numberGames * moves.size());
+    }
+
+    private static void update(GuiBoard guiBoard, Board board, Move move,
+                               boolean incremental)
+    {
+        board.play(move);
+        if (! incremental)
+            for (GoPoint p : board)
+                guiBoard.setColor(p, board.getColor(p));
+        GuiBoardUtil.updateFromGoBoard(guiBoard, board, true, true);
+        guiBoard.clearAll();
+        GuiBoardUtil.updateFromGoBoard(guiBoard, board, true, true);
+    }
+}
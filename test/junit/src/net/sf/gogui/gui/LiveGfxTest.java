@@ -0,0 +1,96 @@
+// LiveGfxTest.java
+
+package net.sf.gogui.gui;
+
+import java.util.ArrayList;
+import javax.swing.SwingUtilities;
+
+public final class LiveGfxTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(LiveGfxTest.class);
+    }
+
+    /** Test that frames sent faster than the maximum frame rate are
+        dropped, but the latest frame is always shown. */
+    public void testCoalesce() throws Exception
+    {
+        Listener listener = new Listener();
+        LiveGfx liveGfx = new LiveGfx(listener, 5);
+        assertFalse(liveGfx.handleLine("foo"));
+        for (int i = 0; i < 100; ++i)
+        {
+            assertTrue(liveGfx.handleLine("gogui-gfx:"));
+            assertTrue(liveGfx.handleLine("TEXT " + i));
+            assertTrue(liveGfx.handleLine("MARK A1"));
+            assertTrue(liveGfx.handleLine(""));
+        }
+        waitForFrames(liveGfx, 100);
+        int shown = liveGfx.getNumberShownFrames();
+        assertEquals(100, shown + liveGfx.getNumberDroppedFrames());
+        assertTrue(shown < 10);
+        assertEquals(shown, listener.getOverlays().size());
+        StringBuilder buffer = new StringBuilder();
+        listener.getLast().show(new GuiBoard(9), null, buffer);
+        assertEquals("99", buffer.toString());
+    }
+
+    public void testSingleLine() throws Exception
+    {
+        Listener listener = new Listener();
+        LiveGfx liveGfx = new LiveGfx(listener, 0);
+        assertTrue(liveGfx.handleLine("gogui-gfx: MARK A1"));
+        waitForFrames(liveGfx, 1);
+        assertEquals(1, liveGfx.getNumberShownFrames());
+        assertEquals(1, listener.getLast().getNumberCommands());
+    }
+
+    private static final class Listener
+        implements LiveGfx.Listener
+    {
+        public synchronized void showLiveGfx(GfxOverlay overlay)
+        {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            m_overlays.add(overlay);
+        }
+
+        public synchronized ArrayList<GfxOverlay> getOverlays()
+        {
+            return new ArrayList<GfxOverlay>(m_overlays);
+        }
+
+        public synchronized GfxOverlay getLast()
+        {
+            return m_overlays.get(m_overlays.size() - 1);
+        }
+
+        private final ArrayList<GfxOverlay> m_overlays =
+            new ArrayList<GfxOverlay>();
+    }
+
+    private static void waitForFrames(LiveGfx liveGfx, int numberFrames)
+        throws Exception
+    {
+        for (int i = 0; i < 100; ++i)
+        {
+            if (liveGfx.getNumberShownFrames()
+                + liveGfx.getNumberDroppedFrames() == numberFrames)
+            {
+                // Wait for the listener of the last shown frame
+                SwingUtilities.invokeAndWait(new Runnable() {
+                        public void run() {
+                        } });
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("frames not shown");
+    }
+}
@@ -0,0 +1,155 @@
+// SgfCollectionReaderTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import net.sf.gogui.game.ConstNode;
+
+public final class SgfCollectionReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfCollectionReaderTest.class);
+    }
+
+    /** Test that a game with parentheses and escaped brackets in values
+        and variations is not split. */
+    public void testBoundaries() throws Exception
+    {
+        SgfCollectionReader reader =
+            createReader("(;C[a (b\\] c) (d]\n(;B[aa])(;B[bb]C[)]))"
+                         + "(;C[second])", 1);
+        SgfReader game = reader.next();
+        ConstNode root = game.getTree().getRootConst();
+        assertEquals("a (b] c) (d", root.getComment());
+        assertEquals(2, root.getNumberChildren());
+        assertEquals(")", root.getChildConst(1).getComment());
+        assertEquals("second", getComment(reader.next()));
+        assertNull(reader.next());
+        assertEquals(2, reader.getNumberGames());
+    }
+
+    public void testEmpty() throws Exception
+    {
+        SgfCollectionReader reader = createReader("", 1);
+        assertFalse(reader.hasNext());
+        assertNull(reader.next());
+        reader = createReader("no SGF (tree) here", 1);
+        assertFalse(reader.hasNext());
+        assertNull(reader.next());
+    }
+
+    /** Test that an error in a game does not stop reading the following
+        games. */
+    public void testError() throws Exception
+    {
+        SgfCollectionReader reader =
+            createReader("(;C[first])(;SZ[foo])(;C[third])", 2);
+        assertEquals("first", getComment(reader.next()));
+        try
+        {
+            reader.next();
+            fail();
+        }
+        catch (SgfError e)
+        {
+            assertTrue(e.getMessage().startsWith("game 2: "));
+        }
+        assertTrue(reader.hasNext());
+        assertEquals("third", getComment(reader.next()));
+        assertFalse(reader.hasNext());
+    }
+
+    /** Test that the games are returned in the order of the stream, if
+        more games than the read-ahead are parsed in parallel. */
+    public void testOrder() throws Exception
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; ++i)
+        {
+            text.append("(;C[");
+            text.append(i);
+            text.append("]");
+            for (int j = 0; j < i % 50; ++j)
+                text.append(";B[aa];W[bb]");
+            text.append(")\n");
+        }
+        SgfCollectionReader reader = createReader(text.toString(), 4);
+        for (int i = 0; i < 1000; ++i)
+        {
+            assertTrue(reader.hasNext());
+            assertEquals(Integer.toString(i), getComment(reader.next()));
+        }
+        assertNull(reader.next());
+    }
+
+    /** Test a collection in a charset, in which the byte of a backslash
+        occurs in multi-byte characters.
+        The Shift_JIS encoding of U+8868 is 0x95 0x5C. */
+    public void testShiftJis() throws Exception
+    {
+        String text = "(;CA[Shift_JIS]C[\u8868])(;C[\u8868\u8868])";
+        SgfCollectionReader reader =
+            new SgfCollectionReader(
+                   new ByteArrayInputStream(text.getBytes("Shift_JIS")),
+                   null, 1);
+        assertEquals("\u8868", getComment(reader.next()));
+        assertEquals("\u8868\u8868", getComment(reader.next()));
+        assertNull(reader.next());
+    }
+
+    /** Test that text between the trees is ignored and that an unclosed
+        last tree is returned. */
+    public void testText() throws Exception
+    {
+        SgfCollectionReader reader =
+            createReader("header (text) (;C[first])\nfooter\n(;C[second]",
+                         1);
+        assertEquals("first", getComment(reader.next()));
+        SgfReader game = reader.next();
+        assertEquals("second", getComment(game));
+        assertNotNull(game.getWarnings());
+        assertNull(reader.next());
+    }
+
+    /** Test that the games written by SgfWriter can be read back. */
+    public void testWriter() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; ++i)
+        {
+            SgfReader reader = new SgfReader(
+                new ByteArrayInputStream(("(;C[" + i + "])").getBytes()),
+                null, null, 0);
+            new SgfWriter(out, reader.getTree(), "SgfCollectionReaderTest",
+                          null);
+        }
+        SgfCollectionReader reader =
+            new SgfCollectionReader(
+                       new ByteArrayInputStream(out.toByteArray()), null, 2);
+        for (int i = 0; i < 3; ++i)
+            assertEquals(Integer.toString(i), getComment(reader.next()));
+        assertNull(reader.next());
+    }
+
+    private static SgfCollectionReader createReader(String text,
+                                                    int numberThreads)
+        throws Exception
+    {
+        byte[] bytes = text.getBytes("ISO-8859-1");
+        return new SgfCollectionReader(new ByteArrayInputStream(bytes), null,
+                                       numberThreads);
+    }
+
+    private static String getComment(SgfReader reader)
+    {
+        return reader.getTree().getRootConst().getComment();
+    }
+}
@@ -0,0 +1,167 @@
+// SgfLexerTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+public final class SgfLexerTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfLexerTest.class);
+    }
+
+    public void testIncompleteValue() throws Exception
+    {
+        SgfLexer lexer = createLexer("C[foo");
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        try
+        {
+            lexer.readValue();
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+    }
+
+    /** Test that getOffset() does not count a token returned by
+        pushBack(). */
+    public void testOffset() throws Exception
+    {
+        SgfLexer lexer = createLexer("(;B[aa]\n;W[bb])");
+        assertEquals('(', lexer.next());
+        assertEquals(';', lexer.next());
+        assertEquals(2, lexer.getOffset());
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals(';', lexer.next());
+        lexer.pushBack();
+        assertEquals(8, lexer.getOffset());
+        assertEquals(';', lexer.next());
+        assertEquals(9, lexer.getOffset());
+    }
+
+    /** Test that values larger than the read buffer are read correctly. */
+    public void testLargeValue() throws Exception
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 100000; ++i)
+            buffer.append((char)('a' + i % 26));
+        String value = buffer.toString();
+        SgfLexer lexer = createLexer("C[" + value + "]");
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals(value, getValue(lexer, 0));
+        assertEquals(value.length() + 3, lexer.getOffset());
+    }
+
+    /** Test that property identifiers are converted to upper case and
+        interned. */
+    public void testPropertyId() throws Exception
+    {
+        SgfLexer lexer = createLexer("(;b[aa]Ab[bb]\nAddBlack[cc]XYZ[])");
+        assertEquals('(', lexer.next());
+        assertEquals(';', lexer.next());
+        checkPropertyId(lexer, "B");
+        checkPropertyId(lexer, "AB");
+        checkPropertyId(lexer, "ADDBLACK");
+        checkPropertyId(lexer, "XYZ");
+        assertEquals(')', lexer.next());
+        assertEquals(SgfLexer.EOF, lexer.next());
+    }
+
+    /** Test that identifiers can contain the same characters as with
+        java.io.StreamTokenizer used by earlier versions of SgfReader. */
+    public void testPropertyIdNotLetters() throws Exception
+    {
+        SgfLexer lexer = createLexer("X1[a]x-y.z[b]\u00e4b[c]1[d]");
+        checkPropertyId(lexer, "X1");
+        checkPropertyId(lexer, "X-Y.Z");
+        checkPropertyId(lexer, "\u00c4B");
+        assertEquals('1', lexer.next());
+    }
+
+    public void testPushBack() throws Exception
+    {
+        SgfLexer lexer = createLexer("(;");
+        assertEquals('(', lexer.next());
+        lexer.pushBack();
+        assertEquals('(', lexer.next());
+        assertEquals(';', lexer.next());
+    }
+
+    public void testSkipValue() throws Exception
+    {
+        SgfLexer lexer = createLexer("C[a\\]b] [c\\\\]W[dd]", 4);
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.skipValue());
+        assertTrue(lexer.skipValue());
+        assertFalse(lexer.skipValue());
+        assertEquals(0, lexer.getNumberValues());
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertSame("W", lexer.getPropertyId());
+        assertTrue(lexer.readValue());
+        assertEquals("dd", getValue(lexer, 0));
+    }
+
+    /** Test reading several values and reusing the value buffer. */
+    public void testValues() throws Exception
+    {
+        SgfLexer lexer =
+            createLexer("AB[aa] [bb]\n[]C[a\\]b\\\\c]W[dd];");
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.readValue());
+        assertTrue(lexer.readValue());
+        assertTrue(lexer.readValue());
+        assertFalse(lexer.readValue());
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.readValue());
+        assertFalse(lexer.readValue());
+        assertEquals(4, lexer.getNumberValues());
+        assertEquals("aa", getValue(lexer, 0));
+        assertEquals("bb", getValue(lexer, 1));
+        assertEquals("", getValue(lexer, 2));
+        assertEquals("a]b\\c", getValue(lexer, 3));
+        lexer.clearValues();
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertTrue(lexer.readValue());
+        assertEquals(1, lexer.getNumberValues());
+        assertEquals("dd", getValue(lexer, 0));
+        assertEquals(';', lexer.next());
+    }
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private static void checkPropertyId(SgfLexer lexer, String id)
+        throws Exception
+    {
+        assertEquals(SgfLexer.PROPERTY_ID, lexer.next());
+        assertSame(id, lexer.getPropertyId());
+        assertTrue(lexer.readValue());
+    }
+
+    private static SgfLexer createLexer(String text) throws Exception
+    {
+        return new SgfLexer(new ByteArrayInputStream(text.getBytes(CHARSET)));
+    }
+
+    private static SgfLexer createLexer(String text, int bufferSize)
+        throws Exception
+    {
+        return new SgfLexer(new ByteArrayInputStream(text.getBytes(CHARSET)),
+                            bufferSize);
+    }
+
+    private static String getValue(SgfLexer lexer, int index)
+    {
+        return lexer.getValue(index, CHARSET);
+    }
+}
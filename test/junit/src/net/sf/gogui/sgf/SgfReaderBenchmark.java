@@ -0,0 +1,228 @@
+// SgfReaderBenchmark.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.StreamTokenizer;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+/** Benchmark for SgfReader.
+    Prints the parse throughput in MB/s of the tokenizing done by earlier
+    versions of SgfReader with java.io.StreamTokenizer, of SgfLexer and of
+    SgfReader including the creation of the game tree.
+    Usage: java net.sf.gogui.sgf.SgfReaderBenchmark [file.sgf...]
+    Without arguments, a synthetic search trace of about 5 MB with
+    comments on all nodes is used. */
+public final class SgfReaderBenchmark
+{
+    public static void main(String args[]) throws Exception
+    {
+        ArrayList<byte[]> files = new ArrayList<byte[]>();
+        if (args.length == 0)
+            files.add(createTrace(new Random(0)));
+        else
+            for (String arg : args)
+                files.add(readFile(new File(arg)));
+        long size = 0;
+        for (byte[] file : files)
+            size += file.length;
+        System.out.printf("Size: %.1f MB%n", size / 1e6);
+        for (Method method : Method.values())
+        {
+            // Warm up
+            run(files, method);
+            double time = Double.MAX_VALUE;
+            for (int i = 0; i < NUMBER_RUNS; ++i)
+                time = Math.min(time, run(files, method));
+            System.out.printf("%-16s %8.1f MB/s%n", method,
+                              size / 1e6 / time);
+        }
+    }
+
+    private enum Method
+    {
+        STREAMTOKENIZER,
+
+        SGFLEXER,
+
+        SGFREADER
+    }
+
+    private static final int NUMBER_RUNS = 5;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private SgfReaderBenchmark()
+    {
+    }
+
+    /** Create a trace with many short variations and comments on all
+        nodes, similar to the search traces written by Go programs. */
+    private static byte[] createTrace(Random random) throws Exception
+    {
+        GameTree tree = new GameTree(19, null, null, null, null);
+        Node root = tree.getRoot();
+        for (int i = 0; i < 400; ++i)
+        {
+            Node node = root;
+            for (int j = 0; j < 40; ++j)
+            {
+                Node child = createNode(random, j);
+                node.append(child);
+                for (int k = 0; k < 4; ++k)
+                {
+                    Node variation = createNode(random, j + 1);
+                    child.append(variation);
+                    variation.append(createNode(random, j + 2));
+                }
+                node = child;
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, "SgfReaderBenchmark", "1");
+        return out.toByteArray();
+    }
+
+    private static Node createNode(Random random, int moveNumber)
+    {
+        GoColor c = (moveNumber % 2 == 0 ? BLACK : WHITE);
+        GoPoint p = GoPoint.get(random.nextInt(19), random.nextInt(19));
+        Node node = new Node(Move.get(c, p));
+        node.setComment(String.format(Locale.ENGLISH,
+                                      "visits %d value %.3f",
+                                      random.nextInt(100000),
+                                      random.nextDouble()));
+        return node;
+    }
+
+    private static byte[] readFile(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) > 0)
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    /** Run a method on all files.
+        @return The time in seconds. */
+    private static double run(ArrayList<byte[]> files, Method method)
+        throws Exception
+    {
+        long start = System.nanoTime();
+        for (byte[] file : files)
+        {
+            InputStream in = new ByteArrayInputStream(file);
+            if (method == Method.STREAMTOKENIZER)
+                scanStreamTokenizer(in);
+            else if (method == Method.SGFLEXER)
+                scanSgfLexer(in);
+            else
+                new SgfReader(in, null, null, 0);
+        }
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private static int scanSgfLexer(InputStream in) throws Exception
+    {
+        SgfLexer lexer = new SgfLexer(in);
+        int numberValues = 0;
+        while (true)
+        {
+            int t = lexer.next();
+            if (t == SgfLexer.EOF)
+                break;
+            if (t == ';')
+                lexer.clearValues();
+            else if (t == SgfLexer.PROPERTY_ID)
+                while (lexer.readValue())
+                    ++numberValues;
+        }
+        return numberValues;
+    }
+
+    /** Tokenize like SgfReader before SgfLexer was used.
+        Converts all property values to strings. */
+    private static int scanStreamTokenizer(InputStream in) throws Exception
+    {
+        BufferedReader reader =
+            new BufferedReader(new InputStreamReader(in, "ISO-8859-1"));
+        StreamTokenizer tokenizer = new StreamTokenizer(reader);
+        StringBuilder buffer = new StringBuilder(512);
+        int numberValues = 0;
+        while (true)
+        {
+            tokenizer.nextToken();
+            int t = tokenizer.ttype;
+            if (t == StreamTokenizer.TT_EOF)
+                break;
+            if (t != StreamTokenizer.TT_WORD)
+                continue;
+            String p = tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
+            ArrayList<String> values = new ArrayList<String>();
+            while (true)
+            {
+                tokenizer.nextToken();
+                if (tokenizer.ttype != '[')
+                {
+                    tokenizer.pushBack();
+                    break;
+                }
+                buffer.setLength(0);
+                boolean quoted = false;
+                Character last = null;
+                while (true)
+                {
+                    int c = reader.read();
+                    if (c < 0)
+                        throw new SgfError("Property value incomplete");
+                    if (quoted)
+                    {
+                        buffer.append((char)c);
+                        last = Character.valueOf((char)c);
+                        quoted = false;
+                    }
+                    else if (c == ']')
+                        break;
+                    else
+                    {
+                        quoted = (c == '\\');
+                        if (! quoted)
+                        {
+                            buffer.append((char)c);
+                            last = Character.valueOf((char)c);
+                        }
+                    }
+                }
+                values.add(buffer.toString());
+            }
+            assert p != null;
+            numberValues += values.size();
+        }
+        return numberValues;
+    }
+}
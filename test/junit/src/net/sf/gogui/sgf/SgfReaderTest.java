@@ -3,6 +3,7 @@
 package net.sf.gogui.sgf;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -17,6 +18,7 @@ import net.sf.gogui.game.MarkType;
 import net.sf.gogui.game.Node;
 import net.sf.gogui.game.NodeUtil;
 import net.sf.gogui.game.ConstSgfProperties;
+import net.sf.gogui.game.StringInfoColor;
 import net.sf.gogui.game.TimeSettings;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -39,11 +41,91 @@ public final class SgfReaderTest
         return new junit.framework.TestSuite(SgfReaderTest.class);
     }
 
+    /** Test that values are decoded with the charset of the CA property.
+        Does not need to reopen the stream, because the bytes of SGF
+        special characters cannot occur in multi-byte UTF-8 characters. */
+    public void testCharset() throws Exception
+    {
+        String comment = "\u00e4\u4e2d\u6587";
+        byte[] sgf =
+            ("(;CA[UTF-8]C[" + comment + "])").getBytes("UTF-8");
+        SgfReader reader =
+            new SgfReader(new ByteArrayInputStream(sgf), null, null, 0);
+        assertEquals(comment, reader.getTree().getRootConst().getComment());
+    }
+
+    /** Test a charset, in which multi-byte characters can contain the
+        byte of a backslash. */
+    public void testCharsetShiftJis() throws Exception
+    {
+        String comment = "\u30bd\u8868";
+        File file = File.createTempFile("gogui", null);
+        OutputStream out = new FileOutputStream(file);
+        out.write(("(;CA[Shift_JIS]C[" + comment + "]PB["
+                   + comment + "])").getBytes("Shift_JIS"));
+        out.close();
+        SgfReader reader =
+            new SgfReader(new FileInputStream(file), file, null, 0);
+        ConstNode root = reader.getTree().getRootConst();
+        assertEquals(comment, root.getComment());
+        assertEquals(comment,
+                     reader.getTree().getGameInfoConst(root).get(
+                                               StringInfoColor.NAME, BLACK));
+        assertNull(reader.getWarnings());
+        file.delete();
+    }
+
+    /** Test reading and writing a tree with deeply nested variations.
+        The depth is large enough to overflow the stack of the thread, if
+        the tree is read or written recursively. */
+    public void testDeepVariations() throws Exception
+    {
+        int depth = 100000;
+        StringBuilder text = new StringBuilder("(;");
+        for (int i = 0; i < depth; ++i)
+            text.append("(;B[aa]");
+        for (int i = 0; i < depth; ++i)
+            text.append(")(;W[bb])");
+        text.append(')');
+        GameTree tree = getReaderString(text.toString()).getTree();
+        ConstNode node = tree.getRootConst();
+        assertEquals(2 * depth + 1, NodeUtil.subtreeSize(node));
+        for (int i = 0; i < depth; ++i)
+        {
+            assertEquals(2, node.getNumberChildren());
+            assertEquals(WHITE, node.getChildConst(1).getMove().getColor());
+            node = node.getChildConst(0);
+        }
+        assertFalse(node.hasChildren());
+        tree = getReaderString(write(tree)).getTree();
+        assertEquals(2 * depth + 1,
+                     NodeUtil.subtreeSize(tree.getRootConst()));
+        assertEquals(depth,
+                     NodeUtil.getDepth(NodeUtil.getLast(tree.getRoot())));
+    }
+
     public void testDuplicateProperty() throws Exception
     {
         readSgfFileString("(;C[foo]C[bar])", false, true);
     }
 
+    /** Test that errors found by SgfLexer contain the file name. */
+    public void testErrorFileName() throws Exception
+    {
+        InputStream in =
+            new ByteArrayInputStream("(;FF[4]SZ[9];B[aa];C[x".getBytes());
+        try
+        {
+            new SgfReader(in, new File("t1.sgf"), null, 0);
+            fail();
+        }
+        catch (SgfError e)
+        {
+            assertEquals("t1.sgf: Property value incomplete",
+                         e.getMessage());
+        }
+    }
+
     public void testFF4Example() throws Exception
     {
         SgfReader reader = getReader("ff4_ex.1.sgf");
@@ -79,6 +161,146 @@ public final class SgfReaderTest
     }
 
     /** Test that linebreaks in a text value is handled correctly. */
+    /** Test reading the FF4 example in lazy mode. */
+    public void testLazy() throws Exception
+    {
+        File file = File.createTempFile("gogui", null);
+        OutputStream out = new FileOutputStream(file);
+        new SgfWriter(out, getReader("ff4_ex.1.sgf").getTree(), "GoGui",
+                      Version.get());
+        out.close();
+        SgfReader reader = readLazy(file);
+        assertTrue(reader.getNumberLoadedNodes() < 54);
+        checkFF4Example(reader);
+        assertEquals(54, reader.getNumberLoadedNodes());
+        file.delete();
+    }
+
+    /** Test that sequences longer than a chunk are created in parts and
+        that subtree sizes are computed without creating the nodes. */
+    public void testLazyLongSequence() throws Exception
+    {
+        StringBuilder sgf = new StringBuilder("(;SZ[19]");
+        for (int i = 0; i < 2500; ++i)
+            sgf.append(i % 2 == 0 ? ";B[" : ";W[").append((char)('a' + i % 19))
+                .append((char)('a' + i / 19 % 19)).append(']');
+        sgf.append("(;B[tt])(;W[tt]))");
+        File file = writeTempFile(sgf.toString());
+        SgfReader reader = readLazy(file);
+        ConstNode root = reader.getTree().getRootConst();
+        int numberLoaded = reader.getNumberLoadedNodes();
+        assertTrue(numberLoaded <= 1000);
+        assertEquals(2503, NodeUtil.subtreeSize(root));
+        assertFalse(NodeUtil.subtreeGreaterThan(root, 2503));
+        assertTrue(NodeUtil.subtreeGreaterThan(root, 2502));
+        assertEquals(numberLoaded, reader.getNumberLoadedNodes());
+        ConstNode last = NodeUtil.getLast(root).getFatherConst();
+        assertEquals(2500, NodeUtil.getDepth(last));
+        assertEquals(2, last.getNumberChildren());
+        ConstNode node = new SgfReader(new FileInputStream(file), file,
+                                       null, 0).getTree().getRootConst();
+        ConstNode lazyNode = root;
+        while (node != null)
+        {
+            assertEquals(node.getMove(), lazyNode.getMove());
+            assertEquals(node.getNumberChildren(),
+                         lazyNode.getNumberChildren());
+            node = NodeUtil.nextNode(node);
+            lazyNode = NodeUtil.nextNode(lazyNode);
+        }
+        assertNull(lazyNode);
+        file.delete();
+    }
+
+    /** Test that unusual structures are read as in normal mode. */
+    public void testLazyStructure() throws Exception
+    {
+        checkLazy("(;SZ[9](;B[aa];W[bb](;B[cc])(;B[dd]));W[ee]();B[ff]"
+                  + "((;W[gg]))(;W[hh]C[a\\]b(c)])(;W[ii]))");
+        checkLazy("(;GM[1]((;B[aa]));W[bb]");
+        checkLazy("(;C[root](;B[aa](;W[bb])(;W[cc]));B[dd](;W[ee]))");
+    }
+
+    /** Test that no partial subtree is created if the file was modified
+        and that loadAll() fails then. */
+    /** Test that an invalid property value in a node created after the
+        constructor returned is a load error and not only a warning. */
+    public void testLazyInvalidValue() throws Exception
+    {
+        File file = writeTempFile(
+                  "(;FF[4]SZ[9];B[aa];W[bb](;C[hello]B[zz];W[ee])(;B[ff]))");
+        SgfReader reader = readLazy(file);
+        assertNull(reader.getLoadError());
+        ConstNode node = reader.getTree().getRootConst().getChildConst()
+            .getChildConst();
+        assertEquals(0, node.getNumberChildren());
+        assertNotNull(node.getChildLoader());
+        assertNotNull(reader.getLoadError());
+        try
+        {
+            reader.loadAll();
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+        file.delete();
+    }
+
+    public void testLazyModifiedFile() throws Exception
+    {
+        File file = writeTempFile("(;SZ[9];B[aa](;W[bb];B[cc])(;W[dd]))");
+        SgfReader reader = readLazy(file);
+        long lastModified = file.lastModified();
+        assertTrue(file.setLastModified(lastModified + 2000));
+        ConstNode node = reader.getTree().getRootConst().getChildConst();
+        assertNotNull(node.getChildLoader());
+        assertEquals(0, node.getNumberChildren());
+        assertNull(node.getChildConst());
+        assertNotNull(node.getChildLoader());
+        assertNotNull(reader.getLoadError());
+        try
+        {
+            reader.loadAll();
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+        assertTrue(file.setLastModified(lastModified));
+        reader.loadAll();
+        assertEquals(2, node.getNumberChildren());
+        file.delete();
+    }
+
+    public void testLazyUnloadSubtrees() throws Exception
+    {
+        StringBuilder sgf = new StringBuilder("(;SZ[9]");
+        for (int i = 0; i < 9; ++i)
+        {
+            sgf.append("(;B[").append((char)('a' + i)).append("a]");
+            for (int j = 0; j < 9; ++j)
+                sgf.append("(;W[").append((char)('a' + j))
+                    .append("b];B[cc];W[dd])");
+            sgf.append(')');
+        }
+        sgf.append(')');
+        File file = writeTempFile(sgf.toString());
+        SgfReader reader = readLazy(file);
+        String expected = write(reader.getTree());
+        assertEquals(1 + 9 * (1 + 9 * 3), reader.getNumberLoadedNodes());
+        ConstNode root = reader.getTree().getRootConst();
+        ConstNode current = root.getChildConst(8).getChildConst(8);
+        assertFalse(reader.unloadSubtrees(current, 1000));
+        assertTrue(reader.unloadSubtrees(current, 100));
+        assertTrue(reader.getNumberLoadedNodes() <= 50);
+        assertSame(root, NodeUtil.getRoot(current));
+        assertEquals(3, NodeUtil.subtreeSize(current));
+        assertEquals(9, root.getChildConst(8).getNumberChildren());
+        assertEquals(expected, write(reader.getTree()));
+        file.delete();
+    }
+
     public void testLinebreaks() throws Exception
     {
         // Test soft and hard linebreaks (see SGF spec)
@@ -110,6 +332,20 @@ public final class SgfReaderTest
         assertEquals("foo", getSgfPropertyValue(tree.getRootConst(), "XY"));
     }
 
+    /** Test that property identifiers with digits and other characters,
+        which are not valid SGF, are accepted as in earlier versions. */
+    public void testPropertyIdNotLetters() throws Exception
+    {
+        ConstGameTree tree =
+            getReaderString("(;FF[4]SZ[9];B[aa]X1[foo]X-Y.Z[bar];W[bb])")
+            .getTree();
+        ConstNode node = tree.getRootConst().getChildConst();
+        checkSgfProperty(node, "X1", "foo");
+        checkSgfProperty(node, "X-Y.Z", "bar");
+        assertEquals(Move.get(WHITE, 1, 7),
+                     node.getChildConst().getMove());
+    }
+
     public void testRead() throws Exception
     {
         readSgfFile("verbose-property-names.sgf", false, false);
@@ -277,6 +513,19 @@ public final class SgfReaderTest
         assertEquals(node.getNumberChildren(), 4);
     }
 
+    /** Check that a file read in lazy mode is written in the same way as
+        when read in normal mode. */
+    private void checkLazy(String sgf) throws Exception
+    {
+        File file = writeTempFile(sgf);
+        SgfReader reader =
+            new SgfReader(new FileInputStream(file), file, null, 0);
+        SgfReader lazyReader = readLazy(file);
+        assertEquals(write(reader.getTree()), write(lazyReader.getTree()));
+        assertEquals(reader.getWarnings(), lazyReader.getWarnings());
+        file.delete();
+    }
+
     private void checkLabel(ConstNode node, String pointString, String label)
         throws InvalidPointException
     {
@@ -321,6 +570,11 @@ public final class SgfReaderTest
         return node.getSgfPropertiesConst().getValue(key, 0);
     }
 
+    private static SgfReader readLazy(File file) throws Exception
+    {
+        return new SgfReader(new FileInputStream(file), file, null, 0, true);
+    }
+
     private ConstGameTree readSgfFile(String name, boolean expectFailure,
                                       boolean expectWarnings) throws Exception
     {
@@ -378,4 +632,20 @@ public final class SgfReaderTest
     {
         return readSgfFileString(name, false, false);
     }
+
+    private static String write(ConstGameTree tree) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, tree, "GoGui", "1");
+        return out.toString("UTF-8");
+    }
+
+    private static File writeTempFile(String text) throws Exception
+    {
+        File file = File.createTempFile("gogui", null);
+        OutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes("ISO-8859-1"));
+        out.close();
+        return file;
+    }
 }
@@ -2,13 +2,23 @@
 
 package net.sf.gogui.sgf;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import net.sf.gogui.game.CompactGameTree;
 import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.Node;
 import net.sf.gogui.game.TimeSettings;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
 
 public final class SgfWriterTest
     extends junit.framework.TestCase
@@ -46,6 +56,45 @@ public final class SgfWriterTest
         assertTrue(s.indexOf("KM[4]") >= 0);
     }
 
+    /** Test that a CompactGameTree copy is written like the original. */
+    public void testWriteCompactGameTree() throws Exception
+    {
+        InputStream in = getClass().getResourceAsStream("ff4_ex.1.sgf");
+        GameTree tree = new SgfReader(in, null, null, 0).getTree();
+        assertEquals(writeToString(tree),
+                     writeToString(new CompactGameTree(tree)));
+    }
+
+    /** Test writing a sequence of nodes, which are not children of each
+        other in their tree. */
+    public void testWriteNodes() throws Exception
+    {
+        Node father = new Node();
+        Node node1 = new Node(Move.get(BLACK, GoPoint.get(3, 3)));
+        Node node2 = new Node(Move.get(WHITE, GoPoint.get(4, 4)));
+        father.append(node1);
+        father.append(node2);
+        node2.setComment("Variation");
+        ArrayList<ConstNode> nodes = new ArrayList<ConstNode>();
+        nodes.add(node1);
+        nodes.add(node2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SgfWriter(out, 9, nodes);
+        GameTree tree =
+            new SgfReader(new ByteArrayInputStream(out.toByteArray()), null,
+                          null, 0).getTree();
+        assertEquals(9, tree.getBoardSize());
+        ConstNode root = tree.getRootConst();
+        assertNull(root.getMove());
+        ConstNode child = root.getChildConst();
+        assertEquals(node1.getMove(), child.getMove());
+        assertEquals(1, root.getNumberChildren());
+        child = child.getChildConst();
+        assertEquals(node2.getMove(), child.getMove());
+        assertEquals("Variation", child.getComment());
+        assertFalse(child.hasChildren());
+    }
+
     public void testWriteTimeSettings() throws Exception
     {
         GameTree tree = new GameTree();
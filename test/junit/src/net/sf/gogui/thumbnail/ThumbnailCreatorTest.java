@@ -0,0 +1,73 @@
+// ThumbnailCreatorTest.java
+
+package net.sf.gogui.thumbnail;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import net.sf.gogui.boardpainter.BoardPainterUtil;
+
+public final class ThumbnailCreatorTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ThumbnailCreatorTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_dir = File.createTempFile("gogui", "");
+        m_dir.delete();
+        m_dir.mkdir();
+    }
+
+    public void tearDown()
+    {
+        for (File file : m_dir.listFiles())
+            file.delete();
+        m_dir.delete();
+    }
+
+    /** Test that each pixel is the rounded average of a 2x2 block. */
+    public void testDownscale()
+    {
+        BufferedImage image = BoardPainterUtil.createImage(4, 2);
+        image.setRGB(0, 0, 0x000000);
+        image.setRGB(1, 0, 0xffffff);
+        image.setRGB(0, 1, 0xffffff);
+        image.setRGB(1, 1, 0xffffff);
+        image.setRGB(2, 0, 0x102030);
+        image.setRGB(3, 0, 0x102030);
+        image.setRGB(2, 1, 0x102030);
+        image.setRGB(3, 1, 0x112131);
+        BufferedImage result = ThumbnailCreator.downscale(image);
+        assertEquals(2, result.getWidth());
+        assertEquals(1, result.getHeight());
+        assertEquals(0xbfbfbf, result.getRGB(0, 0) & 0xffffff);
+        assertEquals(0x102030, result.getRGB(1, 0) & 0xffffff);
+    }
+
+    public void testIsUpToDate() throws Exception
+    {
+        File input = new File(m_dir, "game.sgf");
+        OutputStream out = new FileOutputStream(input);
+        out.write("(;FF[4]SZ[9];B[cc];W[gg])".getBytes("US-ASCII"));
+        out.close();
+        File thumbnail = new File(m_dir, "game.png");
+        ThumbnailCreator creator = new ThumbnailCreator(false);
+        assertFalse(creator.isUpToDate(input, thumbnail));
+        creator.create(input, thumbnail, 64, false);
+        assertTrue(creator.isUpToDate(input, thumbnail));
+        assertTrue(input.setLastModified(input.lastModified() + 2000));
+        assertFalse(creator.isUpToDate(input, thumbnail));
+    }
+
+    private File m_dir;
+}
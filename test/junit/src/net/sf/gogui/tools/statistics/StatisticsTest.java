@@ -2,10 +2,16 @@
 
 package net.sf.gogui.tools.statistics;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.util.ArrayList;
+import net.sf.gogui.gtp.GtpCallback;
 import net.sf.gogui.gtp.GtpClientBase;
+import net.sf.gogui.gtp.GtpCommand;
+import net.sf.gogui.gtp.GtpEngine;
 import net.sf.gogui.gtp.GtpEngineClient;
 import net.sf.gogui.gtp.GtpExpectEngine;
+import net.sf.gogui.util.Table;
 
 public final class StatisticsTest
     extends junit.framework.TestCase
@@ -51,4 +57,135 @@ public final class StatisticsTest
                        allowSetup, backward, false);
         assertTrue(expect.isExpectQueueEmpty());
     }
+
+    /** Test a file with an SGF collection. */
+    public void testCollection() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        File output = File.createTempFile("gogui", ".dat");
+        try
+        {
+            FileWriter writer = new FileWriter(file);
+            for (int i = 0; i < 5; ++i)
+            {
+                writer.write("(;SZ[9]");
+                for (int j = 0; j < i; ++j)
+                    writer.write((j % 2 == 0 ? ";B[" : ";W[")
+                                 + (char)('a' + j) + "a]");
+                writer.write(")\n");
+            }
+            writer.close();
+            ArrayList<String> sgfFiles = new ArrayList<String>();
+            sgfFiles.add(file.toString());
+            ArrayList<GtpClientBase> gtp = new ArrayList<GtpClientBase>();
+            for (int i = 0; i < 2; ++i)
+                gtp.add(new GtpEngineClient(new MoveCountEngine()));
+            ArrayList<String> commands = new ArrayList<String>();
+            commands.add("movecount");
+            Statistics statistics = new Statistics();
+            statistics.setQuiet(true);
+            statistics.run(gtp, null, sgfFiles, 9, commands, null, null,
+                           false, false, false);
+            statistics.saveTable(output);
+            Table table = new Table();
+            table.read(output);
+            int row = 0;
+            for (int i = 0; i < 5; ++i)
+                for (int j = 0; j <= i; ++j)
+                {
+                    assertEquals(Statistics.getGameName(file.toString(),
+                                                        i + 1),
+                                 table.get("File", row));
+                    assertEquals(j, table.getInt("movecount", row));
+                    ++row;
+                }
+            assertEquals(row, table.getNumberRows());
+            assertEquals("5", table.getProperty("Games"));
+        }
+        finally
+        {
+            file.delete();
+            output.delete();
+        }
+    }
+
+    /** Test that the result table with several engines has the rows in the
+        same order as with a single engine. */
+    public void testThreads() throws Exception
+    {
+        ArrayList<String> sgfFiles = new ArrayList<String>();
+        ArrayList<File> files = new ArrayList<File>();
+        try
+        {
+            for (int i = 0; i < 20; ++i)
+            {
+                File file = File.createTempFile("gogui", ".sgf");
+                files.add(file);
+                FileWriter writer = new FileWriter(file);
+                writer.write("(;SZ[9]");
+                for (int j = 0; j < i; ++j)
+                    writer.write((j % 2 == 0 ? ";B[" : ";W[")
+                                 + (char)('a' + j % 9) + (char)('a' + j / 9)
+                                 + "]");
+                writer.write(")");
+                writer.close();
+                sgfFiles.add(file.toString());
+            }
+            ArrayList<GtpClientBase> gtp = new ArrayList<GtpClientBase>();
+            for (int i = 0; i < 3; ++i)
+                gtp.add(new GtpEngineClient(new MoveCountEngine()));
+            ArrayList<String> commands = new ArrayList<String>();
+            commands.add("movecount");
+            Statistics statistics = new Statistics();
+            statistics.setQuiet(true);
+            statistics.run(gtp, null, sgfFiles, 9, commands, null, null,
+                           false, false, false);
+            File output = File.createTempFile("gogui", ".dat");
+            files.add(output);
+            statistics.saveTable(output);
+            Table table = new Table();
+            table.read(output);
+            int row = 0;
+            for (int i = 0; i < sgfFiles.size(); ++i)
+                for (int j = 0; j <= i; ++j)
+                {
+                    assertEquals(sgfFiles.get(i), table.get("File", row));
+                    assertEquals(j, table.getInt("Move", row));
+                    assertEquals(j, table.getInt("movecount", row));
+                    ++row;
+                }
+            assertEquals(row, table.getNumberRows());
+            assertEquals("20", table.getProperty("Games"));
+        }
+        finally
+        {
+            for (File file : files)
+                file.delete();
+        }
+    }
+
+    /** Engine that responds to movecount with the number of moves played
+        since clear_board. */
+    private static final class MoveCountEngine
+        extends GtpEngine
+    {
+        public MoveCountEngine()
+        {
+            super(null);
+            register("boardsize", new GtpCallback() {
+                    public void run(GtpCommand cmd) {
+                        m_numberMoves = 0; } });
+            register("clear_board", new GtpCallback() {
+                    public void run(GtpCommand cmd) {
+                        m_numberMoves = 0; } });
+            register("movecount", new GtpCallback() {
+                    public void run(GtpCommand cmd) {
+                        cmd.setResponse(Integer.toString(m_numberMoves)); } });
+            register("play", new GtpCallback() {
+                    public void run(GtpCommand cmd) {
+                        ++m_numberMoves; } });
+        }
+
+        private int m_numberMoves;
+    }
 }
@@ -0,0 +1,159 @@
+// DuplicateIndexBenchmark.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+/** Benchmark for DuplicateIndex.
+    Checks and adds a synthetic corpus of random 19x19 games, of which
+    a tenth are rotated copies of earlier games and another tenth are
+    rotated copies with a few changed moves. A second corpus is created in
+    the same way, but all new games start with one of a few openings, like
+    games between deterministic programs. Prints the time for the index
+    and for Compare.checkDuplicate on the first games of each corpus.
+    Usage: java net.sf.gogui.tools.twogtp.DuplicateIndexBenchmark
+    [numberGames [numberBruteForce]] */
+public final class DuplicateIndexBenchmark
+{
+    public static void main(String args[])
+    {
+        int numberGames = 50000;
+        int numberBruteForce = 2000;
+        if (args.length > 0)
+            numberGames = Integer.parseInt(args[0]);
+        if (args.length > 1)
+            numberBruteForce = Integer.parseInt(args[1]);
+        run("Random games", createCorpus(numberGames, 0),
+            numberBruteForce);
+        run("Shared openings", createCorpus(numberGames, OPENING_LENGTH),
+            numberBruteForce);
+    }
+
+    private static final int SIZE = 19;
+
+    /** Number of different openings in the corpus with shared openings. */
+    private static final int NUMBER_OPENINGS = 4;
+
+    /** Number of placements of the shared openings. */
+    private static final int OPENING_LENGTH = 40;
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private DuplicateIndexBenchmark()
+    {
+    }
+
+    /** Create a corpus.
+        @param openingLength The length of the shared openings, 0 for no
+        shared openings. */
+    private static ArrayList<ArrayList<Compare.Placement>>
+        createCorpus(int numberGames, int openingLength)
+    {
+        Random random = new Random(0);
+        ArrayList<ArrayList<Compare.Placement>> openings =
+            new ArrayList<ArrayList<Compare.Placement>>();
+        for (int i = 0; i < NUMBER_OPENINGS; ++i)
+        {
+            ArrayList<Compare.Placement> opening =
+                new ArrayList<Compare.Placement>();
+            for (int j = 0; j < openingLength; ++j)
+                opening.add(createPlacement(random, j));
+            openings.add(opening);
+        }
+        ArrayList<ArrayList<Compare.Placement>> games =
+            new ArrayList<ArrayList<Compare.Placement>>(numberGames);
+        for (int i = 0; i < numberGames; ++i)
+        {
+            int type = random.nextInt(10);
+            ArrayList<Compare.Placement> game;
+            if (i == 0 || type > 1)
+            {
+                game = new ArrayList<Compare.Placement>();
+                if (openingLength > 0)
+                    game.addAll(openings.get(random.nextInt(NUMBER_OPENINGS)));
+                int length = 150 + random.nextInt(150);
+                for (int j = game.size(); j < length; ++j)
+                    game.add(createPlacement(random, j));
+            }
+            else
+            {
+                ArrayList<Compare.Placement> original =
+                    games.get(random.nextInt(i));
+                int rot = random.nextInt(BoardUtil.NUMBER_ROTATIONS);
+                game = new ArrayList<Compare.Placement>(original.size());
+                for (Compare.Placement placement : original)
+                    game.add(new Compare.Placement(placement.m_isSetup,
+                                                   placement.m_color,
+                                                   BoardUtil.rotate(rot,
+                                                            placement.m_point,
+                                                            SIZE)));
+                if (type == 1)
+                    for (int j = 0; j < 5; ++j)
+                    {
+                        int k = random.nextInt(game.size());
+                        game.set(k, createPlacement(random, k));
+                    }
+            }
+            games.add(game);
+        }
+        return games;
+    }
+
+    private static Compare.Placement createPlacement(Random random, int i)
+    {
+        return new Compare.Placement(false, i % 2 == 0 ? BLACK : WHITE,
+                                     GoPoint.get(random.nextInt(SIZE),
+                                                 random.nextInt(SIZE)));
+    }
+
+    private static void run(String name,
+                            ArrayList<ArrayList<Compare.Placement>> games,
+                            int numberBruteForce)
+    {
+        System.out.println(name + ":");
+        int numberGames = games.size();
+        DuplicateIndex index = new DuplicateIndex(SIZE);
+        String[] results = new String[numberGames];
+        int numberIdentical = 0;
+        int numberNearlyIdentical = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < numberGames; ++i)
+        {
+            results[i] = index.check(games.get(i), false, false).toString();
+            index.add(i, games.get(i));
+            if (results[i].endsWith("?"))
+                ++numberNearlyIdentical;
+            else if (! results[i].equals("-"))
+                ++numberIdentical;
+        }
+        double time = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Index:       %d games in %.2f s (%.1f us/game),"
+                          + " %d identical, %d nearly identical%n",
+                          numberGames, time, time * 1e6 / numberGames,
+                          numberIdentical, numberNearlyIdentical);
+        numberBruteForce = Math.min(numberBruteForce, numberGames);
+        Board board = new Board(SIZE);
+        TreeMap<Integer, ArrayList<Compare.Placement>> map =
+            new TreeMap<Integer, ArrayList<Compare.Placement>>();
+        start = System.nanoTime();
+        for (int i = 0; i < numberBruteForce; ++i)
+        {
+            String result = Compare.checkDuplicate(board, games.get(i), map,
+                                                   false, false);
+            if (! result.equals(results[i]))
+                System.out.println("Mismatch game " + i + ": " + result
+                                   + " " + results[i]);
+            map.put(i, games.get(i));
+        }
+        time = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Brute force: %d games in %.2f s (%.1f us/game)%n",
+                          numberBruteForce, time,
+                          time * 1e6 / numberBruteForce);
+    }
+}
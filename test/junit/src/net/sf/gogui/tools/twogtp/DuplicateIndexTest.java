@@ -0,0 +1,175 @@
+// DuplicateIndexTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import net.sf.gogui.go.Board;
+import net.sf.gogui.go.BoardUtil;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+
+public final class DuplicateIndexTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(DuplicateIndexTest.class);
+    }
+
+    public void testBasics()
+    {
+        DuplicateIndex index = new DuplicateIndex(SIZE);
+        Random random = new Random(0);
+        ArrayList<Compare.Placement> game = createGame(random, 20);
+        assertEquals("-", index.check(game, false, false).toString());
+        index.add(0, game);
+        assertEquals("0", index.check(game, false, false).toString());
+        assertEquals("0", index.check(rotate(game, 5), false, false)
+                     .toString());
+        ArrayList<Compare.Placement> nearlyIdentical =
+            new ArrayList<Compare.Placement>(game);
+        nearlyIdentical.set(10, nearlyIdentical.get(11));
+        assertEquals("0?", index.check(nearlyIdentical, false, false)
+                     .toString());
+        assertEquals("-", index.check(createGame(random, 20), false, false)
+                     .toString());
+        // Only games with the same alternation are compared
+        assertEquals("-", index.check(game, true, true).toString());
+    }
+
+    /** Test that games added after a check are found by checkAdded. */
+    public void testCheckAdded()
+    {
+        DuplicateIndex index = new DuplicateIndex(SIZE);
+        ArrayList<Compare.Placement> game = createGame(new Random(0), 20);
+        DuplicateIndex.Duplicate duplicate = index.check(game, false, false);
+        index.add(0, game);
+        assertEquals("-", duplicate.toString());
+        index.checkAdded(duplicate);
+        assertEquals("0", duplicate.toString());
+    }
+
+    /** Compare the results with Compare.checkDuplicate. */
+    public void testCompare()
+    {
+        checkCompare(new Random(1), 0);
+    }
+
+    /** Compare the results with Compare.checkDuplicate for games with
+        shared openings.
+        Tests that skipping segments, which occur in many games, does not
+        miss nearly identical games. */
+    public void testCompareSharedOpenings()
+    {
+        checkCompare(new Random(2), 12);
+    }
+
+    private static final int SIZE = 9;
+
+    /** Compare the results of the index with Compare.checkDuplicate.
+        @param openingLength If not 0, new games start with one of two
+        openings of this length. */
+    private static void checkCompare(Random random, int openingLength)
+    {
+        Board board = new Board(SIZE);
+        ArrayList<ArrayList<Compare.Placement>> openings =
+            new ArrayList<ArrayList<Compare.Placement>>();
+        for (int i = 0; i < 2; ++i)
+            openings.add(createGame(random, openingLength));
+        for (boolean useAlternate : new boolean[] { false, true })
+        {
+            DuplicateIndex index = new DuplicateIndex(SIZE);
+            TreeMap<Integer, ArrayList<Compare.Placement>> games =
+                new TreeMap<Integer, ArrayList<Compare.Placement>>();
+            ArrayList<ArrayList<Compare.Placement>> list =
+                new ArrayList<ArrayList<Compare.Placement>>();
+            for (int i = 0; i < 400; ++i)
+            {
+                ArrayList<Compare.Placement> game;
+                if (list.isEmpty() || random.nextInt(3) == 0)
+                {
+                    game = new ArrayList<Compare.Placement>(
+                                             openings.get(random.nextInt(2)));
+                    int length = 1 + random.nextInt(60);
+                    for (int j = game.size(); j < length; ++j)
+                        game.add(createPlacement(random, j));
+                }
+                else
+                    game = mutate(random,
+                                  list.get(random.nextInt(list.size())));
+                boolean isAlternated = (i % 2 != 0);
+                String expected = Compare.checkDuplicate(board, game, games,
+                                                         useAlternate,
+                                                         isAlternated);
+                assertEquals(expected,
+                             index.check(game, useAlternate, isAlternated)
+                             .toString());
+                games.put(i, game);
+                index.add(i, game);
+                list.add(game);
+            }
+        }
+    }
+
+    private static ArrayList<Compare.Placement> createGame(Random random,
+                                                          int length)
+    {
+        ArrayList<Compare.Placement> game =
+            new ArrayList<Compare.Placement>();
+        for (int i = 0; i < length; ++i)
+            game.add(createPlacement(random, i));
+        return game;
+    }
+
+    private static Compare.Placement createPlacement(Random random, int i)
+    {
+        GoPoint p = null;
+        if (random.nextInt(20) > 0)
+            p = GoPoint.get(random.nextInt(SIZE), random.nextInt(SIZE));
+        return new Compare.Placement(random.nextInt(20) == 0,
+                                     i % 2 == 0 ? BLACK : WHITE, p);
+    }
+
+    /** Create a rotated copy of a game with some changes. */
+    private static ArrayList<Compare.Placement>
+        mutate(Random random, ArrayList<Compare.Placement> game)
+    {
+        ArrayList<Compare.Placement> result =
+            rotate(game, random.nextInt(BoardUtil.NUMBER_ROTATIONS));
+        int numberChanges = random.nextInt(result.size() / 4 + 2);
+        for (int i = 0; i < numberChanges; ++i)
+        {
+            int j = random.nextInt(result.size() + 1);
+            int type = random.nextInt(3);
+            if (type == 0 && j < result.size())
+                result.set(j, createPlacement(random, j));
+            else if (type == 1)
+                result.add(createPlacement(random, result.size()));
+            else if (result.size() > 1)
+                result.remove(result.size() - 1);
+        }
+        return result;
+    }
+
+    private static ArrayList<Compare.Placement>
+        rotate(ArrayList<Compare.Placement> game, int rotationMode)
+    {
+        ArrayList<Compare.Placement> result =
+            new ArrayList<Compare.Placement>();
+        for (Compare.Placement placement : game)
+            result.add(new Compare.Placement(placement.m_isSetup,
+                                             placement.m_color,
+                                             BoardUtil.rotate(rotationMode,
+                                                              placement.m_point,
+                                                              SIZE)));
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+// OpeningsTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.File;
+import java.io.FileWriter;
+import net.sf.gogui.game.GameTree;
+import net.sf.gogui.game.NodeUtil;
+
+public final class OpeningsTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(OpeningsTest.class);
+    }
+
+    /** Test openings from a file with an SGF collection. */
+    public void testCollection() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        try
+        {
+            FileWriter writer = new FileWriter(file);
+            writer.write("(;SZ[9];B[ee])\n(;SZ[9];B[cc];W[gg])\n");
+            writer.close();
+            Openings openings = new Openings(file);
+            assertTrue(openings.isCollection());
+            assertEquals(2, openings.getNumber());
+            openings.loadFile(1);
+            GameTree tree = openings.getTree();
+            assertEquals(9, openings.getBoardSize());
+            assertEquals(2, NodeUtil.getDepth(NodeUtil.getLast(
+                                                          tree.getRoot())));
+            assertEquals(file + " (game 2)", openings.getFilename());
+            openings.loadFile(1);
+            assertNotSame(tree, openings.getTree());
+            openings.loadFile(0);
+            assertEquals(file + " (game 1)", openings.getFilename());
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+// ResultFileTest.java
+
+package net.sf.gogui.tools.twogtp;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import net.sf.gogui.game.Game;
+import static net.sf.gogui.go.GoColor.BLACK;
+import net.sf.gogui.go.Komi;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.util.Table;
+
+public final class ResultFileTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ResultFileTest.class);
+    }
+
+    public void setUp() throws Exception
+    {
+        m_dir = File.createTempFile("gogui", null);
+        m_dir.delete();
+        m_dir.mkdir();
+        m_prefix = new File(m_dir, "result").toString();
+        m_tableFile = new File(m_prefix + ".dat");
+        m_journalFile = new File(m_prefix + ".journal");
+    }
+
+    public void tearDown()
+    {
+        for (File file : m_dir.listFiles())
+            file.delete();
+        m_dir.delete();
+    }
+
+    /** Test continuing a run after a crash.
+        The journal contains a game that is already in the table file and
+        an incomplete last line. */
+    public void testRecoverJournal() throws Exception
+    {
+        Table table = new Table(new ArrayList<String>(Arrays.asList(COLUMNS)));
+        table.startRow();
+        table.set("GAME", "0");
+        table.save(m_tableFile);
+        FileWriter writer = new FileWriter(m_journalFile);
+        writer.write(getRow(2) + getRow(1) + getRow(0) + "3\t1");
+        writer.close();
+        ResultFile resultFile = createResultFile();
+        assertEquals(3, readTable().getNumberRows());
+        assertEquals(0, m_journalFile.length());
+        assertEquals(3, resultFile.getNextGameIndex());
+        addResult(resultFile, 3);
+        assertTrue(new File(m_prefix + "-3.sgf").exists());
+        // The result is only in the journal until close()
+        assertEquals(3, readTable().getNumberRows());
+        assertTrue(m_journalFile.length() > 0);
+        resultFile.close();
+        assertFalse(m_journalFile.exists());
+        table = readTable();
+        assertEquals(4, table.getNumberRows());
+        for (int i = 0; i < 4; ++i)
+            assertEquals(i, table.getInt("GAME", i));
+        assertEquals("B+R", table.get("RES_B", 3));
+    }
+
+    /** Test that continuing a run uses the game index instead of the game
+        files, unless a game file has changed. */
+    public void testResumeFromIndex() throws Exception
+    {
+        Table table = new Table(new ArrayList<String>(Arrays.asList(COLUMNS)));
+        table.save(m_tableFile);
+        ResultFile resultFile = createResultFile();
+        assertEquals(0, resultFile.getNextGameIndex());
+        addResult(resultFile, 0);
+        resultFile.close();
+        // Replace the game file by an invalid file with the same length and
+        // modification time, which can only be found with the index
+        File gameFile = new File(m_prefix + "-0.sgf");
+        long lastModified = gameFile.lastModified();
+        long length = gameFile.length();
+        FileWriter writer = new FileWriter(gameFile);
+        for (long i = 0; i < length; ++i)
+            writer.write('x');
+        writer.close();
+        assertTrue(gameFile.setLastModified(lastModified));
+        resultFile = createResultFile();
+        assertEquals(1, resultFile.getNextGameIndex());
+        addResult(resultFile, 1);
+        resultFile.close();
+        assertEquals("0", readTable().get("DUP", 1));
+        // A changed game file is parsed and ignored, because it is invalid
+        assertTrue(gameFile.setLastModified(lastModified - 10000));
+        resultFile = createResultFile();
+        assertEquals(2, resultFile.getNextGameIndex());
+        addResult(resultFile, 2);
+        resultFile.close();
+        assertEquals("1", readTable().get("DUP", 2));
+    }
+
+    private static final String[] COLUMNS = {
+        "GAME", "RES_B", "RES_W", "RES_R", "ALT", "DUP", "LEN", "TIME_B",
+        "TIME_W", "CPU_B", "CPU_W", "ERR", "ERR_MSG"
+    };
+
+    private File m_dir;
+
+    private File m_journalFile;
+
+    private File m_tableFile;
+
+    private String m_prefix;
+
+    private ResultFile createResultFile() throws Exception
+    {
+        return new ResultFile(false, null, null, null, 10, 9, new Komi(6.5),
+                              m_prefix, null, false, false);
+    }
+
+    private static void addResult(ResultFile resultFile, int gameIndex)
+        throws Exception
+    {
+        Game game = new Game(9, new Komi(6.5), null, null, null);
+        game.play(Move.get(BLACK, 2, 2));
+        resultFile.addResult(gameIndex, game, "B+R", "B+R", "?", false, 1,
+                             false, "", 0, 0, 0, 0);
+    }
+
+    private static String getRow(int game)
+    {
+        return game + "\tW+R\tW+R\t?\t0\t-\t10\t0\t0\t0\t0\t0\n";
+    }
+
+    private Table readTable() throws Exception
+    {
+        Table table = new Table();
+        table.read(m_tableFile);
+        return table;
+    }
+}
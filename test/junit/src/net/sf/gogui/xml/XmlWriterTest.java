@@ -3,6 +3,8 @@
 package net.sf.gogui.xml;
 
 import java.io.ByteArrayOutputStream;
+import net.sf.gogui.game.CompactGameTree;
+import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.Node;
 import net.sf.gogui.game.StringInfoColor;
@@ -214,9 +216,32 @@ public final class XmlWriterTest
                      getText(19, root));
     }
 
+    /** Test that variations are written for a CompactGameTree, which is
+        used for saving files and returns different node objects on each
+        access. */
+    public void testVariationsCompactGameTree() throws Exception
+    {
+        Node root = new Node();
+        Node node1 = new Node(Move.get(BLACK, 2, 2));
+        Node node2 = new Node(Move.get(BLACK, 3, 3));
+        root.append(node1);
+        root.append(node2);
+        node1.append(new Node(Move.get(WHITE, 4, 4)));
+        node2.append(new Node(Move.get(WHITE, 5, 5)));
+        node2.append(new Node(Move.get(WHITE, 6, 6)));
+        GameTree tree = new GameTree(9, root);
+        String text = getText(tree);
+        assertEquals(2, text.split("<Variation>", -1).length - 1);
+        assertEquals(text, getText(new CompactGameTree(tree)));
+    }
+
     private static String getText(int boardSize, Node root)
     {
-        GameTree tree = new GameTree(boardSize, root);
+        return getText(new GameTree(boardSize, root));
+    }
+
+    private static String getText(ConstGameTree tree)
+    {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         new XmlWriter(out, tree, null);
         return out.toString();